@@ -0,0 +1,391 @@
+package org.interledger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the expiry of many items, such as cached quotes, held payments or PSK messages, at a
+ * resolution of one tick, with constant time scheduling and cancellation.
+ *
+ * <p>The wheel is a hierarchy of levels of 64 slots. Level 0 holds the items due in the current
+ * run of 64 ticks, one slot per tick, level 1 those due in the current run of 64 * 64 ticks, one
+ * slot per 64 ticks, and so on, with enough levels to cover any tick. As time reaches the start of
+ * a higher level slot, its items are moved down to the level that now covers them, so each item
+ * moves at most once per level. Each level keeps a 64 bit mask of its occupied slots, so advancing
+ * over empty slots costs nothing per slot.
+ *
+ * <p>Items are scheduled and cancelled from any thread, under one lock that is held only for the
+ * few link updates of each operation. A single thread should call {@link #advance(Consumer)}, once
+ * per tick or less often, or {@link #start(ScheduledExecutorService, Consumer)} can do so. It
+ * hands each batch of expired items to a callback outside of the lock. For example, to evict
+ * cached quotes when they expire and release payments still held when they expire:
+ *
+ * <pre>
+ * TimingWheel&lt;Runnable&gt; wheel = TimingWheel.&lt;Runnable&gt;builder().build();
+ * wheel.schedule(cache::evictExpired, response.getExpiresAt());
+ * wheel.schedule(() -&gt; release(payments.remove(condition)), expiresAt);
+ * wheel.start(executor, expired -&gt; expired.forEach(Runnable::run));
+ * </pre>
+ *
+ * <p>Items are never expired before their deadline, and are expired by the first advance that
+ * reaches the tick containing it.
+ *
+ * @param <T> The type of item scheduled.
+ */
+public class TimingWheel<T> {
+
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+  private final Clock clock;
+  private final long tickMillis;
+
+  /* guarded by this */
+  private final Timeout<?>[] slots = new Timeout<?>[LEVELS * SLOTS];
+  private final long[] occupied = new long[LEVELS];
+  private long currentTick;
+  private int size;
+
+  private TimingWheel(final Builder<T> builder) {
+    this.clock = builder.clock;
+    this.tickMillis = builder.tickDuration.toMillis();
+    this.currentTick = Math.floorDiv(clock.millis(), tickMillis);
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @param <T> The type of item scheduled.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static <T> Builder<T> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Schedule an item to expire at a deadline.
+   *
+   * @param item     The item.
+   * @param deadline When the item expires.
+   *
+   * @return a handle with which the item can be cancelled.
+   */
+  public Timeout<T> schedule(final T item, final Instant deadline) {
+    Objects.requireNonNull(deadline);
+    return schedule(item, deadline.toEpochMilli());
+  }
+
+  /**
+   * Schedule an item to expire after a delay.
+   *
+   * @param item  The item.
+   * @param delay How long after now the item expires.
+   *
+   * @return a handle with which the item can be cancelled.
+   */
+  public Timeout<T> schedule(final T item, final Duration delay) {
+    Objects.requireNonNull(delay);
+    return schedule(item, clock.millis() + delay.toMillis());
+  }
+
+  /**
+   * Schedule an item to expire at a deadline.
+   *
+   * @param item           The item.
+   * @param deadlineMillis When the item expires, in milliseconds since the epoch.
+   *
+   * @return a handle with which the item can be cancelled.
+   */
+  public Timeout<T> schedule(final T item, final long deadlineMillis) {
+    Objects.requireNonNull(item);
+    /* round up, so that the item is not expired before its deadline */
+    final long deadlineTick = -Math.floorDiv(-deadlineMillis, tickMillis);
+    final Timeout<T> timeout = new Timeout<>(this, item, deadlineTick);
+    synchronized (this) {
+      /* the current tick has been expired already, so expire late items at the next */
+      insert(timeout, Math.max(deadlineTick, currentTick + 1));
+      size++;
+    }
+    return timeout;
+  }
+
+  /**
+   * Expire the items whose deadlines have been reached.
+   *
+   * @param onExpired Called, outside of the wheel's lock, with the items expired, if any.
+   *
+   * @return the number of items expired.
+   */
+  public int advance(final Consumer<? super List<T>> onExpired) {
+    Objects.requireNonNull(onExpired);
+    final long targetTick = Math.floorDiv(clock.millis(), tickMillis);
+    final List<T> expired = new ArrayList<>();
+
+    synchronized (this) {
+      while (currentTick < targetTick) {
+        if (occupied[0] == 0) {
+          /* skip to the tick before the next higher level slot due, in which nothing expires */
+          final long next = nextCascadeTick();
+          if (next > targetTick) {
+            currentTick = targetTick;
+            break;
+          }
+          currentTick = next - 1;
+        }
+        if ((currentTick & SLOT_MASK) == SLOT_MASK) {
+          currentTick++;
+          cascade();
+          expire(slotIndex(0, currentTick), expired);
+        } else {
+          final long upTo = Math.min(targetTick, currentTick | SLOT_MASK);
+          final int from = (int) (currentTick & SLOT_MASK) + 1;
+          final int to = (int) (upTo & SLOT_MASK);
+          long due = occupied[0] & (-1L << from) & (-1L >>> (SLOT_MASK - to));
+          while (due != 0) {
+            expire(Long.numberOfTrailingZeros(due), expired);
+            due &= due - 1;
+          }
+          currentTick = upTo;
+        }
+      }
+      size -= expired.size();
+    }
+
+    if (!expired.isEmpty()) {
+      onExpired.accept(Collections.unmodifiableList(expired));
+    }
+    return expired.size();
+  }
+
+  /**
+   * Advance the wheel once per tick on an executor.
+   *
+   * @param executor  The executor to advance the wheel on.
+   * @param onExpired Called on the executor with each batch of items expired.
+   *
+   * @return the future of the periodic task, which stops advancing the wheel when cancelled.
+   */
+  public ScheduledFuture<?> start(final ScheduledExecutorService executor,
+      final Consumer<? super List<T>> onExpired) {
+    Objects.requireNonNull(executor);
+    Objects.requireNonNull(onExpired);
+    return executor.scheduleAtFixedRate(() -> advance(onExpired), tickMillis, tickMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Get the number of items scheduled and neither expired nor cancelled.
+   *
+   * @return the number of items.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private synchronized boolean cancel(final Timeout<?> timeout) {
+    if (timeout.slot < 0) {
+      return false;
+    }
+    unlink(timeout);
+    size--;
+    return true;
+  }
+
+  /**
+   * Move the items of the higher level slots that start at the current tick down the levels. A
+   * level's slot only starts at the current tick if the slot of the level below it starts at slot
+   * 0, so stop at the first level whose slot is not 0.
+   */
+  private void cascade() {
+    for (int level = 1; level < LEVELS; level++) {
+      final int index = slotIndex(level, currentTick);
+      Timeout<?> timeout = slots[index];
+      if (timeout != null) {
+        slots[index] = null;
+        occupied[level] &= ~(1L << (index & SLOT_MASK));
+        while (timeout != null) {
+          final Timeout<?> next = timeout.next;
+          /* an item scheduled late waits at the tick after it was scheduled, not its deadline */
+          insert(timeout, Math.max(timeout.deadlineTick, currentTick));
+          timeout = next;
+        }
+      }
+      if ((index & SLOT_MASK) != 0) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Find the first tick after the current one at which an occupied higher level slot starts. The
+   * items of each level are all due later in the current run of slots of the level above it.
+   */
+  private long nextCascadeTick() {
+    long next = Long.MAX_VALUE;
+    for (int level = 1; level < LEVELS; level++) {
+      final int shift = level * SLOT_BITS;
+      final int digit = (int) ((currentTick >>> shift) & SLOT_MASK);
+      final long later = digit == SLOT_MASK ? 0 : occupied[level] & (-1L << (digit + 1));
+      if (later != 0) {
+        final int runShift = shift + SLOT_BITS;
+        final long run = runShift >= Long.SIZE ? 0 : currentTick >>> runShift << runShift;
+        next = Math.min(next, run | (long) Long.numberOfTrailingZeros(later) << shift);
+      }
+    }
+    return next;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void expire(final int index, final List<T> expired) {
+    Timeout<?> timeout = slots[index];
+    slots[index] = null;
+    occupied[0] &= ~(1L << index);
+    while (timeout != null) {
+      final Timeout<?> next = timeout.next;
+      timeout.slot = -1;
+      timeout.previous = null;
+      timeout.next = null;
+      expired.add((T) timeout.item);
+      timeout = next;
+    }
+  }
+
+  /**
+   * Link an item into the slot of the lowest level whose current run of slots contains its tick,
+   * which is the level of the highest bit in which the tick differs from the current tick.
+   */
+  private void insert(final Timeout<?> timeout, final long tick) {
+    final long difference = tick ^ currentTick;
+    final int level = difference == 0 ? 0
+        : (Long.SIZE - 1 - Long.numberOfLeadingZeros(difference)) / SLOT_BITS;
+    final int index = slotIndex(level, tick);
+
+    final Timeout<?> head = slots[index];
+    timeout.slot = index;
+    timeout.previous = null;
+    timeout.next = head;
+    if (head != null) {
+      head.previous = timeout;
+    }
+    slots[index] = timeout;
+    occupied[level] |= 1L << (index & SLOT_MASK);
+  }
+
+  private void unlink(final Timeout<?> timeout) {
+    final int index = timeout.slot;
+    if (timeout.previous != null) {
+      timeout.previous.next = timeout.next;
+    } else {
+      slots[index] = timeout.next;
+      if (timeout.next == null) {
+        occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+      }
+    }
+    if (timeout.next != null) {
+      timeout.next.previous = timeout.previous;
+    }
+    timeout.slot = -1;
+    timeout.previous = null;
+    timeout.next = null;
+  }
+
+  private static int slotIndex(final int level, final long tick) {
+    return level * SLOTS + (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK);
+  }
+
+  /**
+   * An item scheduled on a {@link TimingWheel}, with which it can be cancelled.
+   *
+   * @param <T> The type of item scheduled.
+   */
+  public static final class Timeout<T> {
+
+    private final TimingWheel<?> wheel;
+    private final T item;
+    private final long deadlineTick;
+
+    /* the wheel's links, guarded by the wheel; slot is -1 once expired or cancelled */
+    private int slot;
+    private Timeout<?> previous;
+    private Timeout<?> next;
+
+    private Timeout(final TimingWheel<?> wheel, final T item, final long deadlineTick) {
+      this.wheel = wheel;
+      this.item = item;
+      this.deadlineTick = deadlineTick;
+    }
+
+    public T getItem() {
+      return item;
+    }
+
+    /**
+     * Cancel the item, so that it is not expired.
+     *
+     * @return true if the item was cancelled, or false if it had already expired or been
+     *     cancelled.
+     */
+    public boolean cancel() {
+      return wheel.cancel(this);
+    }
+  }
+
+  /**
+   * A builder for instances of {@link TimingWheel}.
+   *
+   * @param <T> The type of item scheduled.
+   */
+  public static class Builder<T> {
+
+    private Duration tickDuration = Duration.ofMillis(1);
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Sets the resolution of the wheel. Items are expired up to one tick after their deadline.
+     *
+     * @param tickDuration The duration of a tick, a whole number of milliseconds.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<T> tickDuration(final Duration tickDuration) {
+      Objects.requireNonNull(tickDuration, "tickDuration must not be null");
+      if (tickDuration.toMillis() < 1) {
+        throw new IllegalArgumentException("tickDuration must be at least one millisecond");
+      }
+      this.tickDuration = tickDuration;
+      return this;
+    }
+
+    /**
+     * Sets the clock used to decide whether items have expired.
+     *
+     * @param clock The clock.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<T> clock(final Clock clock) {
+      this.clock = Objects.requireNonNull(clock, "clock must not be null");
+      return this;
+    }
+
+    /**
+     * Builds the wheel.
+     *
+     * @return A new {@link TimingWheel} instance.
+     */
+    public TimingWheel<T> build() {
+      return new TimingWheel<>(this);
+    }
+  }
+
+}
@@ -0,0 +1,419 @@
+package org.interledger.codecs;
+
+import org.interledger.InterledgerPacket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Decodes {@link InterledgerPacket}s from a stream of bytes that arrives in chunks of any size,
+ * such as the reads of a non-blocking connection, without a thread blocking on the stream.
+ *
+ * <p>Packets carry no length of their own, so the decoder holds the bytes of the packet it has
+ * not yet seen the end of and decodes it with the codecs of a {@link CodecContext}, retrying when
+ * more bytes arrive for as long as the codecs read past the bytes held. Only the bytes of packets
+ * not yet delivered are held, up to a fixed maximum.
+ *
+ * <p>Packets are delivered to a {@link Subscriber} only as it requests them. While the subscriber
+ * has not requested any, the decoder holds the bytes offered until it is full and then accepts no
+ * more, so that the transport stops reading until the subscriber catches up. The methods of this
+ * class may be called from any thread. The subscriber is called by whichever thread offers bytes
+ * or requests packets, never by two at once, and may request more packets from within its
+ * callbacks.
+ */
+public class InterledgerPacketDecoder {
+
+  private final CodecContext context;
+  private final Subscriber subscriber;
+  private final Runnable resumeListener;
+
+  /* guarded by this */
+  private final byte[] buffer;
+  private final BufferInputStream in = new BufferInputStream();
+  private int start;
+  private int end;
+  private int incompleteLength;
+  private long demand;
+  private boolean delivering;
+  private boolean missed;
+  private boolean refused;
+  private boolean completed;
+  private boolean terminated;
+
+  private InterledgerPacketDecoder(final Builder builder) {
+    this.context = builder.context;
+    this.subscriber = builder.subscriber;
+    this.resumeListener = builder.resumeListener;
+    this.buffer = new byte[builder.maximumBufferSize];
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Offer the next chunk of the stream, and deliver the packets it completes as far as the
+   * subscriber has requested them. The bytes accepted are consumed from the chunk.
+   *
+   * @param chunk The bytes read from the stream, from its position to its limit.
+   *
+   * @return true if all of the chunk was accepted, or false if the decoder is full and the rest of
+   *     the chunk should be offered again once the resume listener is called, which is never before
+   *     this method returns.
+   */
+  public boolean offer(final ByteBuffer chunk) {
+    Objects.requireNonNull(chunk);
+    while (true) {
+      synchronized (this) {
+        if (terminated) {
+          chunk.position(chunk.limit());
+          return true;
+        }
+        if (completed) {
+          throw new IllegalStateException("The stream has already completed.");
+        }
+
+        if (buffer.length - end < chunk.remaining() && start > 0) {
+          System.arraycopy(buffer, start, buffer, 0, end - start);
+          end -= start;
+          start = 0;
+        }
+        final int accepted = Math.min(chunk.remaining(), buffer.length - end);
+        chunk.get(buffer, end, accepted);
+        end += accepted;
+        if (!chunk.hasRemaining()) {
+          break;
+        }
+        if (accepted == 0) {
+          /* delivering the bytes accepted made no room, so the next packet decoded resumes */
+          refused = true;
+          return false;
+        }
+      }
+      deliver();
+    }
+    deliver();
+    return true;
+  }
+
+  /**
+   * Request packets, delivering any already held.
+   *
+   * @param count The number of packets to request, added to those already requested.
+   */
+  public void request(final long count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("count must be positive");
+    }
+    synchronized (this) {
+      demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+    }
+    deliver();
+  }
+
+  /**
+   * Signal the end of the stream. The subscriber completes once it has been delivered the packets
+   * held, or fails if the stream ended part way through a packet.
+   */
+  public void complete() {
+    synchronized (this) {
+      completed = true;
+    }
+    deliver();
+  }
+
+  /**
+   * Stop decoding and discard the bytes held. The subscriber is not called again.
+   */
+  public synchronized void cancel() {
+    terminated = true;
+    start = 0;
+    end = 0;
+  }
+
+  /**
+   * Deliver packets while the subscriber wants them and the bytes held complete them. Only one
+   * thread delivers at a time. A thread that finds another delivering marks the delivery missed,
+   * and the delivering thread goes round again before it stops, so that bytes, requests and the
+   * end of the stream arriving meanwhile, including from within a callback, are served by it.
+   */
+  private void deliver() {
+    synchronized (this) {
+      if (delivering) {
+        missed = true;
+        return;
+      }
+      delivering = true;
+    }
+
+    boolean resume = false;
+    boolean stopped = false;
+    try {
+      while (!stopped) {
+        InterledgerPacket packet = null;
+        CodecException error = null;
+        synchronized (this) {
+          missed = false;
+          if (!terminated && demand > 0) {
+            try {
+              packet = decode();
+            } catch (CodecException e) {
+              terminated = true;
+              error = e;
+            }
+          }
+          if (packet != null) {
+            demand--;
+            if (refused) {
+              refused = false;
+              resume = true;
+            }
+          }
+        }
+        if (error != null) {
+          subscriber.onError(error);
+        }
+        if (packet != null) {
+          subscriber.onNext(packet);
+          continue;
+        }
+        terminate();
+        synchronized (this) {
+          if (!missed) {
+            delivering = false;
+            stopped = true;
+          }
+        }
+      }
+    } finally {
+      if (!stopped) {
+        synchronized (this) {
+          delivering = false;
+        }
+      }
+      /* resume even if the subscriber threw, or a transport paused by offer would never be */
+      if (resume && resumeListener != null) {
+        resumeListener.run();
+      }
+    }
+  }
+
+  /**
+   * Decode the next packet from the bytes held.
+   *
+   * @return the packet, or null if the bytes held end part way through it.
+   *
+   * @throws CodecException if the bytes held are not a valid packet, or the packet does not fit in
+   *                        the decoder.
+   */
+  private InterledgerPacket decode() {
+    final int length = end - start;
+    /* decoding again is only worth it once more bytes have arrived */
+    if (length == 0 || length == incompleteLength) {
+      return null;
+    }
+
+    in.reset(start, end);
+    InterledgerPacket packet = null;
+    RuntimeException failure = null;
+    try {
+      packet = context.read(in);
+    } catch (IOException e) {
+      failure = new CodecException("Unable to decode packet.", e);
+    } catch (CodecException e) {
+      failure = e;
+    } catch (RuntimeException e) {
+      failure = new CodecException("Unable to decode packet.", e);
+    }
+
+    if (in.underflow) {
+      if (length == buffer.length) {
+        throw new CodecException(
+            "Packet exceeds the maximum buffer size of " + buffer.length + " bytes.");
+      }
+      incompleteLength = length;
+      return null;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    start = in.position;
+    incompleteLength = 0;
+    if (start == end) {
+      start = 0;
+      end = 0;
+    }
+    return packet;
+  }
+
+  /**
+   * Complete or fail the subscriber once the stream has ended and the packets it held have been
+   * delivered.
+   */
+  private void terminate() {
+    final boolean truncated;
+    synchronized (this) {
+      if (terminated || !completed || (end > start && incompleteLength != end - start)) {
+        return;
+      }
+      terminated = true;
+      truncated = end > start;
+    }
+    if (truncated) {
+      subscriber.onError(new CodecException("Stream ended part way through a packet."));
+    } else {
+      subscriber.onComplete();
+    }
+  }
+
+  /**
+   * Receives the packets of an {@link InterledgerPacketDecoder}, modelled on the subscriber of
+   * Reactive Streams.
+   */
+  public interface Subscriber {
+
+    /**
+     * Accept the next packet.
+     *
+     * @param packet The packet decoded.
+     */
+    void onNext(InterledgerPacket packet);
+
+    /**
+     * Handle a stream that could not be decoded. No more packets are delivered.
+     *
+     * @param error The reason the stream could not be decoded.
+     */
+    void onError(CodecException error);
+
+    /**
+     * Handle the end of the stream, after every packet in it has been delivered.
+     */
+    void onComplete();
+  }
+
+  /**
+   * Reads the bytes held, noting whether a codec asked for more than there are.
+   */
+  private final class BufferInputStream extends InputStream {
+
+    private int position;
+    private int limit;
+    private boolean underflow;
+
+    private void reset(final int start, final int end) {
+      this.position = start;
+      this.limit = end;
+      this.underflow = false;
+    }
+
+    @Override
+    public int read() {
+      if (position == limit) {
+        underflow = true;
+        return -1;
+      }
+      return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (length > limit - position) {
+        underflow = true;
+        if (position == limit) {
+          return -1;
+        }
+      }
+      final int read = Math.min(length, limit - position);
+      System.arraycopy(buffer, position, bytes, offset, read);
+      position += read;
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return limit - position;
+    }
+  }
+
+  /**
+   * A builder for instances of {@link InterledgerPacketDecoder}.
+   */
+  public static class Builder {
+
+    private CodecContext context;
+    private Subscriber subscriber;
+    private Runnable resumeListener;
+    private int maximumBufferSize = 64 * 1024;
+
+    /**
+     * Sets the codecs to decode packets with.
+     *
+     * @param context The codec context.
+     * @return This {@link Builder} instance.
+     */
+    public Builder codecContext(final CodecContext context) {
+      this.context = Objects.requireNonNull(context, "context must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the subscriber to deliver packets to.
+     *
+     * @param subscriber The subscriber.
+     * @return This {@link Builder} instance.
+     */
+    public Builder subscriber(final Subscriber subscriber) {
+      this.subscriber = Objects.requireNonNull(subscriber, "subscriber must not be null");
+      return this;
+    }
+
+    /**
+     * Sets a listener to call when the decoder has room again after refusing part of a chunk.
+     *
+     * @param resumeListener The listener, which typically resumes reading the connection.
+     * @return This {@link Builder} instance.
+     */
+    public Builder resumeListener(final Runnable resumeListener) {
+      this.resumeListener = Objects.requireNonNull(resumeListener,
+          "resumeListener must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes the decoder holds at most, which bounds the size of a packet.
+     *
+     * @param maximumBufferSize The number of bytes.
+     * @return This {@link Builder} instance.
+     */
+    public Builder maximumBufferSize(final int maximumBufferSize) {
+      if (maximumBufferSize < 1) {
+        throw new IllegalArgumentException("maximumBufferSize must be positive");
+      }
+      this.maximumBufferSize = maximumBufferSize;
+      return this;
+    }
+
+    /**
+     * Builds the decoder.
+     *
+     * @return A new {@link InterledgerPacketDecoder} instance.
+     */
+    public InterledgerPacketDecoder build() {
+      Objects.requireNonNull(context, "context must not be null");
+      Objects.requireNonNull(subscriber, "subscriber must not be null");
+      return new InterledgerPacketDecoder(this);
+    }
+  }
+
+}
@@ -36,15 +36,32 @@ public class OerUint256Codec implements Codec<OerUint256> {
     Objects.requireNonNull(context);
     Objects.requireNonNull(inputStream);
 
-    final byte[] returnable = new byte[32];
-    int bytesRead = inputStream.read(returnable);
+    return new OerUint256(readValue(inputStream));
+  }
 
-    if (bytesRead != 32) {
-      throw new CodecException(
-          format("Attempted to read a UInt256 and only got %s bytes.", bytesRead));
+  /**
+   * Read the 32 octets of a UInt256 without wrapping them, for codecs of types that are simply a
+   * 256-bit value.
+   *
+   * @param inputStream An instance of {@link InputStream}.
+   *
+   * @return the 32 octets read.
+   *
+   * @throws IOException    If there is a problem reading from the {@code stream}.
+   * @throws CodecException If the stream ends before 32 octets have been read.
+   */
+  public static byte[] readValue(final InputStream inputStream) throws IOException {
+    final byte[] value = new byte[32];
+    int bytesRead = 0;
+    while (bytesRead < value.length) {
+      final int read = inputStream.read(value, bytesRead, value.length - bytesRead);
+      if (read < 0) {
+        throw new CodecException(
+            format("Attempted to read a UInt256 and only got %s bytes.", bytesRead));
+      }
+      bytesRead += read;
     }
-
-    return new OerUint256(returnable);
+    return value;
   }
 
   /**
@@ -46,6 +46,46 @@ public class OerUint64Codec implements Codec<OerUint64> {
     return new OerUint64(new BigInteger(1, value));
   }
 
+  /**
+   * Read the 8 octets of a UInt64 into a {@code long} without wrapping them, for codecs that hold
+   * many such values in primitive arrays. Values above {@link Long#MAX_VALUE} are returned as
+   * negative numbers and must be treated as unsigned, for instance with
+   * {@link Long#compareUnsigned(long, long)}.
+   *
+   * @param inputStream An instance of {@link InputStream}.
+   *
+   * @return the unsigned value read.
+   *
+   * @throws IOException If there is a problem reading from the {@code stream}, or the stream ends
+   *                     before 8 octets have been read.
+   */
+  public static long readValue(final InputStream inputStream) throws IOException {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      final int read = inputStream.read();
+      if (read < 0) {
+        throw new IOException("unexpected end of stream. expected 8 bytes, read " + i);
+      }
+      value = (value << 8) | read;
+    }
+    return value;
+  }
+
+  /**
+   * Write an unsigned {@code long} as the 8 octets of a UInt64.
+   *
+   * @param value        The value to write, treated as unsigned.
+   * @param outputStream An instance of {@link OutputStream}.
+   *
+   * @throws IOException If there is a problem writing to the {@code stream}.
+   */
+  public static void writeValue(final long value, final OutputStream outputStream)
+      throws IOException {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      outputStream.write((int) (value >>> shift));
+    }
+  }
+
   /**
    * ASN.1 64BitUInt: If the lower bound of the value range constraint is not less than 0 and the
    * upper bound is not greater than 18446744073709551615 and the constraint is not extensible, the
@@ -3,7 +3,7 @@ package org.interledger.codecs.oer.ilp;
 import org.interledger.codecs.Codec;
 import org.interledger.codecs.CodecContext;
 import org.interledger.codecs.ConditionCodec;
-import org.interledger.codecs.oer.OerUint256Codec.OerUint256;
+import org.interledger.codecs.oer.OerUint256Codec;
 import org.interledger.cryptoconditions.Condition;
 import org.interledger.cryptoconditions.PreimageSha256Condition;
 
@@ -28,8 +28,7 @@ public class ConditionOerCodec implements ConditionCodec {
       throws IOException {
     Objects.requireNonNull(context);
     Objects.requireNonNull(inputStream);
-    final byte[] value = context.read(OerUint256.class, inputStream)
-        .getValue();
+    final byte[] value = OerUint256Codec.readValue(inputStream);
 
     //Cost (equal to the length of the preimage) is always 32 bytes in universal mode ILP
     return new PreimageSha256Condition(32, value);
@@ -46,7 +45,11 @@ public class ConditionOerCodec implements ConditionCodec {
       throw new IllegalArgumentException("Instance.getCost() must be equal to 32");
     }
 
-    context.write(OerUint256.class, new OerUint256(instance.getFingerprint()), outputStream);
+    final byte[] fingerprint = instance.getFingerprint();
+    if (fingerprint.length != 32) {
+      throw new IllegalArgumentException("Instance.getFingerprint() must be 32 bytes");
+    }
+    outputStream.write(fingerprint);
   }
 
 }
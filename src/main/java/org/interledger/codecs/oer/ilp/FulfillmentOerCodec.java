@@ -3,18 +3,21 @@ package org.interledger.codecs.oer.ilp;
 import org.interledger.codecs.Codec;
 import org.interledger.codecs.CodecContext;
 import org.interledger.codecs.FulfillmentCodec;
-import org.interledger.codecs.oer.OerUint256Codec.OerUint256;
+import org.interledger.codecs.oer.OerUint256Codec;
 import org.interledger.cryptoconditions.Fulfillment;
 import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.ilp.PreimageSha256;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Base64;
 import java.util.Objects;
 
 /**
  * An implementation of {@link Codec} that reads and writes instances of {@link Fulfillment}.
+ *
+ * <p>In universal mode ILP, fulfillments are PreimageSha256 Crypto Conditions encoded simply as
+ * their 32 byte preimage, which is read and written directly.
  */
 public class FulfillmentOerCodec implements FulfillmentCodec {
 
@@ -23,9 +26,7 @@ public class FulfillmentOerCodec implements FulfillmentCodec {
       throws IOException {
     Objects.requireNonNull(context);
     Objects.requireNonNull(inputStream);
-    final byte[] value = context.read(OerUint256.class, inputStream)
-        .getValue();
-    return new PreimageSha256Fulfillment(value);
+    return new PreimageSha256Fulfillment(OerUint256Codec.readValue(inputStream));
   }
 
   @Override
@@ -37,9 +38,7 @@ public class FulfillmentOerCodec implements FulfillmentCodec {
 
     //TODO Review after https://github.com/interledger/java-crypto-conditions/issues/75 is closed
     if (instance instanceof PreimageSha256Fulfillment) {
-      PreimageSha256Fulfillment fulfillment = (PreimageSha256Fulfillment) instance;
-      byte[] preimage = Base64.getUrlDecoder().decode(fulfillment.getPreimage());
-      context.write(OerUint256.class, new OerUint256(preimage), outputStream);
+      outputStream.write(PreimageSha256.getPreimage(instance));
     } else {
       throw new IllegalArgumentException("Only PreimageSha256Fulfillment instances can be encoded");
     }
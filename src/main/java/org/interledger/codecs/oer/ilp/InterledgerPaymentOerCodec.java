@@ -3,6 +3,7 @@ package org.interledger.codecs.oer.ilp;
 import org.interledger.InterledgerAddress;
 import org.interledger.codecs.Codec;
 import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecException;
 import org.interledger.codecs.InterledgerPaymentCodec;
 import org.interledger.codecs.oer.OerOctetStringCodec.OerOctetString;
 import org.interledger.codecs.oer.OerUint64Codec.OerUint64;
@@ -13,6 +14,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -96,5 +98,85 @@ public class InterledgerPaymentOerCodec implements InterledgerPaymentCodec {
     context.write(OerOctetString.class, new OerOctetString(instance.getData()), outputStream);
   }
 
+  /**
+   * Locate the data field of an encoded payment packet without decoding the packet or copying the
+   * data, for instance to open the PSK message it carries in place.
+   *
+   * @param packet The buffer holding the encoded payment, starting with its packet type.
+   * @param offset The offset of the packet within the buffer.
+   * @param length The length of the packet.
+   *
+   * @return A buffer wrapping {@code packet}, positioned at the start of the data field and
+   *         limited to its end.
+   *
+   * @throws CodecException if the buffer does not hold a complete payment packet.
+   */
+  public static ByteBuffer locateData(final byte[] packet, final int offset, final int length) {
+    Objects.requireNonNull(packet);
+
+    final int end = offset + length;
+    if (offset < 0 || length < 1 || end > packet.length) {
+      throw new CodecException("Invalid payment packet bounds.");
+    }
+    if ((packet[offset] & 0xff) != InterledgerPacketType.ILP_PAYMENT_TYPE) {
+      throw new CodecException("Not an Interledger payment packet.");
+    }
+
+    // Skip the packet type and the fixed width UInt64 amount, then the length prefixed address.
+    int position = offset + 1 + 8;
+    position = skipLengthPrefixed(packet, position, end);
+
+    final int dataStart = skipLengthPrefix(packet, position, end);
+    final int dataEnd = skipLengthPrefixed(packet, position, end);
+    return ByteBuffer.wrap(packet, dataStart, dataEnd - dataStart);
+  }
+
+  /**
+   * Read the OER length prefix at {@code position} and return the position after the value it
+   * prefixes.
+   */
+  private static int skipLengthPrefixed(final byte[] packet, final int position, final int end) {
+    final int start = skipLengthPrefix(packet, position, end);
+    final int valueEnd = start + readLengthPrefix(packet, position);
+    if (valueEnd < start || valueEnd > end) {
+      throw new CodecException("Truncated payment packet.");
+    }
+    return valueEnd;
+  }
+
+  /**
+   * Return the position after the OER length prefix at {@code position}.
+   */
+  private static int skipLengthPrefix(final byte[] packet, final int position, final int end) {
+    if (position >= end) {
+      throw new CodecException("Truncated payment packet.");
+    }
+    final int initial = packet[position] & 0xff;
+    final int next = initial < 128 ? position + 1 : position + 1 + (initial & 0x7f);
+    if (next > end) {
+      throw new CodecException("Truncated payment packet.");
+    }
+    return next;
+  }
+
+  private static int readLengthPrefix(final byte[] packet, final int position) {
+    final int initial = packet[position] & 0xff;
+    if (initial < 128) {
+      return initial;
+    }
+    final int lengthOfLength = initial & 0x7f;
+    if (lengthOfLength > 4) {
+      throw new CodecException("Unsupported length prefix of " + lengthOfLength + " octets.");
+    }
+    int value = 0;
+    for (int i = 1; i <= lengthOfLength; i++) {
+      value = (value << 8) | (packet[position + i] & 0xff);
+    }
+    if (value < 0) {
+      throw new CodecException("Unsupported length prefix of " + lengthOfLength + " octets.");
+    }
+    return value;
+  }
+
 
 }
@@ -3,12 +3,15 @@ package org.interledger.codecs.oer.ilqp;
 import org.interledger.InterledgerAddress;
 import org.interledger.codecs.Codec;
 import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecException;
 import org.interledger.codecs.QuoteLiquidityResponseCodec;
 import org.interledger.codecs.oer.OerGeneralizedTimeCodec.OerGeneralizedTime;
 import org.interledger.codecs.oer.OerLengthPrefixCodec.OerLengthPrefix;
 import org.interledger.codecs.oer.OerUint32Codec.OerUint32;
+import org.interledger.codecs.oer.OerUint64Codec;
 import org.interledger.codecs.oer.OerUint64Codec.OerUint64;
 import org.interledger.codecs.packettypes.InterledgerPacketType;
+import org.interledger.ilqp.ArrayLiquidityCurve;
 import org.interledger.ilqp.LiquidityCurve;
 import org.interledger.ilqp.LiquidityPoint;
 import org.interledger.ilqp.QuoteLiquidityResponse;
@@ -16,7 +19,6 @@ import org.interledger.ilqp.QuoteLiquidityResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.math.BigInteger;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
@@ -39,21 +41,24 @@ public class QuoteLiquidityResponseOerCodec implements QuoteLiquidityResponseCod
     Objects.requireNonNull(context);
     Objects.requireNonNull(inputStream);
 
-    /* read the Liquidity curve */
+    /* read the Liquidity curve directly into its arrays */
     int nrLiquidityPoints = context.read(OerLengthPrefix.class, inputStream).getLength();
 
-    final LiquidityCurve.Builder curveBuilder = LiquidityCurve.Builder.builder();
+    final long[] inputAmounts = new long[nrLiquidityPoints];
+    final long[] outputAmounts = new long[nrLiquidityPoints];
 
     for (int i = 0; i < nrLiquidityPoints; i++) {
-      final BigInteger x = context.read(OerUint64.class, inputStream).getValue();
-      final BigInteger y = context.read(OerUint64.class, inputStream).getValue();
-
-      final LiquidityPoint point =
-          LiquidityPoint.Builder.builder().inputAmount(x).outputAmount(y).build();
+      inputAmounts[i] = OerUint64Codec.readValue(inputStream);
+      outputAmounts[i] = OerUint64Codec.readValue(inputStream);
+    }
 
-      curveBuilder.liquidityPoint(point);
+    final LiquidityCurve curve;
+    try {
+      curve = ArrayLiquidityCurve.of(inputAmounts, outputAmounts);
+    } catch (IllegalArgumentException e) {
+      throw new CodecException("Invalid liquidity curve: " + e.getMessage(), e);
     }
-    
+
     /* read the applies-to Address. */
     final InterledgerAddress appliesTo = context.read(InterledgerAddress.class, inputStream);
 
@@ -64,7 +69,7 @@ public class QuoteLiquidityResponseOerCodec implements QuoteLiquidityResponseCod
     Instant expiresAt = context.read(OerGeneralizedTime.class, inputStream).getValue();
 
     return QuoteLiquidityResponse.Builder.builder()
-        .liquidityCurve(curveBuilder.build())
+        .liquidityCurve(curve)
         .appliesTo(appliesTo)
         .sourceHoldDuration(Duration.of(sourceHoldDuration, ChronoUnit.MILLIS))
         .expiresAt(expiresAt)
@@ -83,13 +88,27 @@ public class QuoteLiquidityResponseOerCodec implements QuoteLiquidityResponseCod
     context.write(InterledgerPacketType.class, this.getTypeId(), outputStream);
 
     /* the liquidity curve */
-    Collection<LiquidityPoint> points = instance.getLiquidityCurve().getLiquidityPoints();
-
-    context.write(OerLengthPrefix.class, new OerLengthPrefix(points.size()), outputStream);
-
-    for (LiquidityPoint liquidityPoint : points) {
-      context.write(OerUint64.class, new OerUint64(liquidityPoint.getInputAmount()), outputStream);
-      context.write(OerUint64.class, new OerUint64(liquidityPoint.getOutputAmount()), outputStream);
+    final LiquidityCurve curve = instance.getLiquidityCurve();
+
+    if (curve instanceof ArrayLiquidityCurve) {
+      final ArrayLiquidityCurve arrayCurve = (ArrayLiquidityCurve) curve;
+      context.write(OerLengthPrefix.class, new OerLengthPrefix(arrayCurve.size()), outputStream);
+
+      for (int i = 0; i < arrayCurve.size(); i++) {
+        OerUint64Codec.writeValue(arrayCurve.getInputAmount(i), outputStream);
+        OerUint64Codec.writeValue(arrayCurve.getOutputAmount(i), outputStream);
+      }
+    } else {
+      Collection<LiquidityPoint> points = curve.getLiquidityPoints();
+
+      context.write(OerLengthPrefix.class, new OerLengthPrefix(points.size()), outputStream);
+
+      for (LiquidityPoint liquidityPoint : points) {
+        context.write(OerUint64.class, new OerUint64(liquidityPoint.getInputAmount()),
+            outputStream);
+        context.write(OerUint64.class, new OerUint64(liquidityPoint.getOutputAmount()),
+            outputStream);
+      }
     }
     
     /* applies-to prefix */
@@ -7,16 +7,16 @@ import org.interledger.codecs.PskMessageCodec;
 import org.interledger.psk.PskEncryptionType;
 import org.interledger.psk.PskMessage;
 import org.interledger.psk.PskMessage.Header;
+import org.interledger.psk.PskMessage.Header.WellKnown;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -24,127 +24,70 @@ import java.util.Objects;
  */
 public class PskMessageBinaryCodec implements PskMessageCodec {
 
-  private static final char CR = '\r';
-  private static final char LF = '\n';
+  private static final byte LF = '\n';
+  private static final byte SEPARATOR = ':';
+
+  /* the status line and well-known header names, encoded once */
+  private static final byte[] STATUS_LINE =
+      (PskMessage.STATUS_LINE + "\n").getBytes(StandardCharsets.US_ASCII);
+  private static final String[] WELL_KNOWN_NAMES = {
+      WellKnown.NONCE,
+      WellKnown.ENCRYPTION,
+      WellKnown.PAYMENT_ID,
+      WellKnown.EXPIRES_AT
+  };
+  private static final byte[][] WELL_KNOWN_NAME_BYTES = {
+      WellKnown.NONCE.getBytes(StandardCharsets.US_ASCII),
+      WellKnown.ENCRYPTION.getBytes(StandardCharsets.US_ASCII),
+      WellKnown.PAYMENT_ID.getBytes(StandardCharsets.US_ASCII),
+      WellKnown.EXPIRES_AT.getBytes(StandardCharsets.US_ASCII)
+  };
 
   /**
-   * Reads data of the input stream until a line feed character ('\n') is found or the input
-   * stream is exhausted. Returns the data interpreted as a *UTF-8* string. Note that lines ending
-   * with '\n' or '\r\n' are treated the same, the trailing '\r' will be removed if present.
-   *
-   * <p>A single '\r' (not followed immediately by a '\n') is not treated as an end of line.
-   *
-   * @return A UTF-8 encoded string read from the input stream.
+   * Consumes the remaining data in the stream, returning it as a byte array. The buffer is sized
+   * using {@link InputStream#available()} so that in-memory streams are read in a single pass.
    */
-  private static String readLine(InputStream in) throws IOException {
-
-    boolean readCarriageReturn = false;
-
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream(256)) {
-      int byteValue;
-      while ((byteValue = in.read()) != -1) {
-
-        if (byteValue == CR) {
-          // Found CR, only write it if next char is NOT a LF
-          readCarriageReturn = true;
-          continue;
-        }
-
-        if (byteValue == LF) {
-          break;
-        }
-
-        if (readCarriageReturn) {
-          // Not end of the line but we read a CR previously so write it before the current byte
-          bos.write(CR);
-          readCarriageReturn = false;
+  private static byte[] readRemainingBytes(InputStream in) throws IOException {
+    final int available = in.available();
+    byte[] buffer = new byte[available > 0 ? available : 256];
+    int length = 0;
+    while (true) {
+      if (length == buffer.length) {
+        final int next = in.read();
+        if (next == -1) {
+          return buffer;
         }
-
-        bos.write(byteValue);
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        buffer[length++] = (byte) next;
       }
-
-      return bos.toString(StandardCharsets.UTF_8.name());
-    }
-  }
-
-  /**
-   * Consumes the remaining data in the stream, returning it as a byte array.
-   */
-  private static byte[] readRemainingBytes(InputStream in) throws IOException {
-    try (ByteArrayOutputStream out = new ByteArrayOutputStream(256)) {
-      /*
-       * copy the remaining data of the input stream to the output stream in blocks of 256 bytes
-       */
-      byte[] buffer = new byte[256];
-      int length;
-      while ((length = in.read(buffer)) != -1) {
-        out.write(buffer, 0, length);
+      final int read = in.read(buffer, length, buffer.length - length);
+      if (read == -1) {
+        return Arrays.copyOf(buffer, length);
       }
-      return out.toByteArray();
+      length += read;
     }
   }
 
   @Override
   public PskMessage read(final CodecContext context, final InputStream inputStream)
       throws IOException {
-    return read(inputStream, ReadState.STATUS_LINE);
-  }
-
-  private PskMessage read(final InputStream inputStream,
-      ReadState state) throws IOException {
-
     Objects.requireNonNull(inputStream);
+    return PskMessageIndex.of(readRemainingBytes(inputStream))
+        .toMessage();
+  }
 
-    PskMessage.Builder builder = PskMessage.builder();
-    ReadState currentState = state;
-
-    while (true) {
-
-      if (currentState == ReadState.DATA) {
-        builder.data(readRemainingBytes(inputStream));
-        break;
-      }
-
-      String line = readLine(inputStream);
-      if (line == null) {
-        throw new CodecException("Premature end of stream.");
-      }
-
-      switch (currentState) {
-        case STATUS_LINE:
-
-          if (!line.equalsIgnoreCase(PskMessage.STATUS_LINE)) {
-            throw new CodecException("Expecting valid status line but got [" + line + "]");
-          }
-          currentState = ReadState.PUBLIC_HEADERS;
-          break;
-
-        case PUBLIC_HEADERS:
-
-          if (line.length() == 0) {
-            currentState = builder.usesEncryption() ? ReadState.DATA : ReadState.PRIVATE_HEADERS;
-          } else {
-            builder.addPublicHeader(parseHeader(line));
-          }
-          break;
-        case PRIVATE_HEADERS:
-
-          if (line.length() == 0) {
-            currentState = ReadState.DATA;
-          } else {
-            builder.addPrivateHeader(parseHeader(line));
-          }
-          break;
-
-        case DATA:
-        default:
-          // We'll never get here
-          break;
-      }
-    }
-
-    return builder.build();
-
+  /**
+   * Reads a PSK message directly of a buffer, without wrapping it in a stream.
+   *
+   * @param buffer The buffer holding the encoded PSK message.
+   * @param offset The offset of the message within the buffer.
+   * @param length The length of the message.
+   *
+   * @return The decoded PSK message.
+   */
+  public PskMessage read(final byte[] buffer, final int offset, final int length) {
+    return PskMessageIndex.of(buffer, offset, length)
+        .toMessage();
   }
 
   @Override
@@ -154,40 +97,77 @@ public class PskMessageBinaryCodec implements PskMessageCodec {
     Objects.requireNonNull(instance);
     Objects.requireNonNull(outputStream);
 
-    OutputStreamWriter out = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-    BufferedWriter writer = new BufferedWriter(out);
+    final byte[] encoded = new byte[getEncodedLength(instance)];
+    write(instance, encoded, 0);
+    outputStream.write(encoded);
+  }
 
-    // Write Status
-    writer.write(PskMessage.STATUS_LINE);
-    writer.write(LF);
+  /**
+   * Calculate the number of bytes required to encode a PSK message.
+   *
+   * @param message The PSK message.
+   *
+   * @return the encoded length of the message, in bytes.
+   */
+  public int getEncodedLength(final PskMessage message) {
+    Objects.requireNonNull(message);
 
-    // Write Public Headers
-    for (PskMessage.Header header : instance.getPublicHeaders()) {
-      writeHeader(header, writer);
+    int length = STATUS_LINE.length + getHeadersLength(message.getPublicHeaders());
+    if (message.getEncryptionHeader()
+        .getEncryptionType() == PskEncryptionType.NONE) {
+      length += getHeadersLength(message.getPrivateHeaders());
     }
-    writer.write(LF);
+    return length + message.getDataBuffer().remaining();
+  }
 
-    if (instance.getEncryptionHeader()
-        .getEncryptionType() == PskEncryptionType.NONE) {
+  /**
+   * Write a PSK message into a caller-supplied buffer, without any intermediate writers or
+   * buffers.
+   *
+   * @param message The PSK message to encode.
+   * @param buffer  The buffer to write to. Must have at least
+   *                {@link #getEncodedLength(PskMessage)} bytes available of {@code offset}.
+   * @param offset  The position in the buffer at which to start writing.
+   *
+   * @return the number of bytes written.
+   */
+  public int write(final PskMessage message, final byte[] buffer, final int offset) {
+    Objects.requireNonNull(message);
+    Objects.requireNonNull(buffer);
 
-      // Write Private Headers
-      for (PskMessage.Header header : instance.getPrivateHeaders()) {
-        writeHeader(header, writer);
-      }
-      writer.write(LF);
+    final List<Header> publicHeaders = message.getPublicHeaders();
+    final boolean unencrypted = message.getEncryptionHeader()
+        .getEncryptionType() == PskEncryptionType.NONE;
+    final List<Header> privateHeaders =
+        unencrypted ? message.getPrivateHeaders() : Collections.emptyList();
+    final ByteBuffer data = message.getDataBuffer();
+
+    final int length = STATUS_LINE.length + getHeadersLength(publicHeaders)
+        + (unencrypted ? getHeadersLength(privateHeaders) : 0) + data.remaining();
+    checkCapacity(buffer, offset, length);
+
+    // Write Status
+    System.arraycopy(STATUS_LINE, 0, buffer, offset, STATUS_LINE.length);
+    int position = offset + STATUS_LINE.length;
 
+    // Write Public Headers
+    position = writeHeaders(publicHeaders, buffer, position);
+
+    // Write Private Headers
+    if (unencrypted) {
+      position = writeHeaders(privateHeaders, buffer, position);
     }
 
     // Write Data
-    writer.flush();
-    outputStream.write(instance.getData());
-
+    data.get(buffer, position, data.remaining());
+    return length;
   }
 
   /**
    * Parse the private data portion of a PSK Message.
    *
-   * <p>This uses the standard read method but starts in the private headers state.
+   * <p>This indexes the data as the private portion of a message, with no status line or public
+   * headers.
    *
    * @param data The private data of a PSK message (headers and data separated by an empty line).
    *
@@ -195,75 +175,178 @@ public class PskMessageBinaryCodec implements PskMessageCodec {
    */
   public PskMessage parsePrivateData(byte[] data) {
 
-    try (ByteArrayInputStream bais = new ByteArrayInputStream(data)) {
-      return read(bais, ReadState.PRIVATE_HEADERS);
-    } catch (IOException e) {
-      throw new CodecException("Error parsing private data.", e);
-    }
-
+    Objects.requireNonNull(data);
+    return PskMessageIndex.ofPrivateData(data, 0, data.length)
+        .toMessage();
   }
 
-  private PskMessage.Header parseHeader(String line) {
-
-    int split = line.indexOf(":");
-    if (split == -1) {
-      throw new CodecException("Invalid Public Header [" + line + "]. Expected ':' separator.");
-    }
-
-    final String name = line.substring(0, split)
-        .trim();
-    final String value = line.substring(split + 1)
-        .trim();
+  /**
+   * Write the private headers and data of the message to a stream and return as a byte array.
+   *
+   * @param message The decrypted PSK message
+   *
+   * @return private headers and data encoded to bytes
+   */
+  public byte[] writePrivateData(PskMessage message) {
+    Objects.requireNonNull(message);
 
-    return new Header(name, value);
+    final byte[] encoded = new byte[getPrivateDataLength(message)];
+    writePrivateData(message, encoded, 0);
+    return encoded;
   }
 
-  private void writeHeader(PskMessage.Header header, Writer writer) throws IOException {
-    if (header == null) {
-      return;
-    }
-    writer.write(header.getName());
-    writer.write(':');
-    writer.write(header.getValue());
-    writer.write(LF);
+  /**
+   * Calculate the number of bytes required to encode the private headers and data of a message.
+   *
+   * @param message The decrypted PSK message
+   *
+   * @return the encoded length of the private portion of the message, in bytes.
+   */
+  public int getPrivateDataLength(final PskMessage message) {
+    Objects.requireNonNull(message);
+    return getHeadersLength(message.getPrivateHeaders()) + message.getDataBuffer().remaining();
   }
 
   /**
-   * Write the private headers and data of the message to a stream and return as a byte array.
+   * Write the private headers and data of the message into a caller-supplied buffer.
    *
    * @param message The decrypted PSK message
+   * @param buffer  The buffer to write to. Must have at least
+   *                {@link #getPrivateDataLength(PskMessage)} bytes available of {@code offset}.
+   * @param offset  The position in the buffer at which to start writing.
    *
-   * @return private headers and data encoded to bytes
+   * @return the number of bytes written.
    */
-  public byte[] writePrivateData(PskMessage message) {
+  public int writePrivateData(final PskMessage message, final byte[] buffer, final int offset) {
+    Objects.requireNonNull(message);
+    Objects.requireNonNull(buffer);
 
-    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-      OutputStreamWriter out = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-      BufferedWriter writer = new BufferedWriter(out);
+    final List<Header> privateHeaders = message.getPrivateHeaders();
+    final ByteBuffer data = message.getDataBuffer();
 
-      // Write Private Headers
-      for (PskMessage.Header header : message.getPrivateHeaders()) {
-        writeHeader(header, writer);
-      }
-      writer.write(LF);
+    final int length = getHeadersLength(privateHeaders) + data.remaining();
+    checkCapacity(buffer, offset, length);
 
-      // Write Data
-      writer.flush();
-      baos.write(message.getData());
-      return baos.toByteArray();
+    final int position = writeHeaders(privateHeaders, buffer, offset);
+    data.get(buffer, position, data.remaining());
+    return length;
+  }
 
-    } catch (IOException e) {
-      throw new CodecException("Error writing private data.", e);
+  private static void checkCapacity(final byte[] buffer, final int offset, final int length) {
+    if (offset < 0 || offset > buffer.length - length) {
+      throw new CodecException("Buffer too small. Need " + length + " bytes at offset " + offset
+          + " but buffer length is " + buffer.length + ".");
     }
+  }
 
+  /**
+   * Calculate the encoded length of a block of headers, including the terminating empty line.
+   */
+  private static int getHeadersLength(final List<Header> headers) {
+    int length = 1;
+    for (int i = 0; i < headers.size(); i++) {
+      final Header header = headers.get(i);
+      if (header != null) {
+        length += getUtf8Length(header.getName()) + 1 + getUtf8Length(header.getValue()) + 1;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Write a block of headers, followed by the terminating empty line.
+   *
+   * @return the position after the last byte written.
+   */
+  private static int writeHeaders(final List<Header> headers, final byte[] buffer,
+      final int offset) {
+    int position = offset;
+    for (int i = 0; i < headers.size(); i++) {
+      final Header header = headers.get(i);
+      if (header == null) {
+        continue;
+      }
+      final byte[] wellKnownName = getWellKnownName(header.getName());
+      if (wellKnownName != null) {
+        System.arraycopy(wellKnownName, 0, buffer, position, wellKnownName.length);
+        position += wellKnownName.length;
+      } else {
+        position = writeUtf8(header.getName(), buffer, position);
+      }
+      buffer[position++] = SEPARATOR;
+      position = writeUtf8(header.getValue(), buffer, position);
+      buffer[position++] = LF;
+    }
+    buffer[position++] = LF;
+    return position;
   }
 
-  private enum ReadState {
-    STATUS_LINE,
-    PUBLIC_HEADERS,
-    PRIVATE_HEADERS,
-    DATA,
+  private static byte[] getWellKnownName(final String name) {
+    for (int i = 0; i < WELL_KNOWN_NAMES.length; i++) {
+      if (WELL_KNOWN_NAMES[i].equals(name)) {
+        return WELL_KNOWN_NAME_BYTES[i];
+      }
+    }
+    return null;
   }
 
+  /**
+   * Calculate the UTF-8 encoded length of a string without encoding it. Unpaired surrogates are
+   * counted as a single replacement byte, matching the JDK UTF-8 encoder.
+   */
+  private static int getUtf8Length(final String value) {
+    final int chars = value.length();
+    int length = chars;
+    for (int i = 0; i < chars; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        length += 1;
+      } else if (Character.isHighSurrogate(c) && i + 1 < chars
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 2;
+        i++;
+      } else if (!Character.isSurrogate(c)) {
+        length += 2;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Encode a string as UTF-8 directly into the buffer. ASCII characters, which make up nearly all
+   * PSK header content, are written as single bytes with no encoder involved.
+   *
+   * @return the position after the last byte written.
+   */
+  private static int writeUtf8(final String value, final byte[] buffer, final int offset) {
+    int position = offset;
+    final int chars = value.length();
+    for (int i = 0; i < chars; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xc0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < chars
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        buffer[position++] = '?';
+      } else {
+        buffer[position++] = (byte) (0xe0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return position;
+  }
 
 }
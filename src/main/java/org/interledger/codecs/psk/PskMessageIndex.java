@@ -0,0 +1,473 @@
+package org.interledger.codecs.psk;
+
+import org.interledger.codecs.CodecException;
+import org.interledger.psk.PskMessage;
+import org.interledger.psk.PskMessage.Header.WellKnown;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A zero-copy index over the binary encoding of a PSK message.
+ *
+ * <p>The index scans the underlying buffer once, recording the offsets of the status line, of each
+ * header name and value, and of the data section. No {@link String} instances are created during
+ * parsing; header names and values are only decoded when they are requested and the data section
+ * is exposed as a {@link ByteBuffer} slice of the original buffer.
+ *
+ * <p>If the message is encrypted, parsing stops after the public headers and the data section
+ * holds the encrypted private portion of the message.
+ *
+ * <p>The index does not copy the buffer it is built on, so the caller must not modify that region
+ * of the buffer while the index is in use.
+ */
+public final class PskMessageIndex {
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final byte SEPARATOR = ':';
+
+  /* the number of ints used to record the offsets of a single header */
+  private static final int SLOT_SIZE = 4;
+  private static final int NAME_START = 0;
+  private static final int NAME_END = 1;
+  private static final int VALUE_START = 2;
+  private static final int VALUE_END = 3;
+
+  private final byte[] buffer;
+  private final int offset;
+  private final int length;
+
+  /* name and value offsets of the public headers followed by those of the private headers */
+  private int[] headers = new int[8 * SLOT_SIZE];
+  private int headerCount;
+  private int publicHeaderCount;
+  private int privateHeaderCount;
+
+  private boolean encrypted;
+  private int dataOffset;
+
+  private PskMessageIndex(final byte[] buffer, final int offset, final int length) {
+    Objects.requireNonNull(buffer, "buffer must not be null");
+    if (offset < 0 || length < 0 || offset > buffer.length - length) {
+      throw new IndexOutOfBoundsException("Invalid offset [" + offset + "] or length [" + length
+          + "] for buffer of length " + buffer.length);
+    }
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Index a complete PSK message, starting with the status line.
+   *
+   * @param buffer The encoded PSK message.
+   *
+   * @return An index over the message.
+   */
+  public static PskMessageIndex of(final byte[] buffer) {
+    Objects.requireNonNull(buffer, "buffer must not be null");
+    return of(buffer, 0, buffer.length);
+  }
+
+  /**
+   * Index a complete PSK message, starting with the status line.
+   *
+   * @param buffer The buffer holding the encoded PSK message.
+   * @param offset The offset of the message within the buffer.
+   * @param length The length of the message.
+   *
+   * @return An index over the message.
+   */
+  public static PskMessageIndex of(final byte[] buffer, final int offset, final int length) {
+    final PskMessageIndex index = new PskMessageIndex(buffer, offset, length);
+    index.parse(true);
+    return index;
+  }
+
+  /**
+   * Index a complete PSK message held in the remaining bytes of a {@link ByteBuffer}.
+   *
+   * <p>The position of the given buffer is not changed. Buffers that are not backed by an
+   * accessible array are copied once before indexing.
+   *
+   * @param buffer The buffer holding the encoded PSK message.
+   *
+   * @return An index over the message.
+   */
+  public static PskMessageIndex of(final ByteBuffer buffer) {
+    Objects.requireNonNull(buffer, "buffer must not be null");
+    if (buffer.hasArray()) {
+      return of(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    final byte[] copy = new byte[buffer.remaining()];
+    buffer.duplicate().get(copy);
+    return of(copy);
+  }
+
+  /**
+   * Index the private portion of a PSK message (private headers and data separated by an empty
+   * line), typically the output of decrypting the data of an encrypted message.
+   *
+   * @param buffer The buffer holding the private portion of the message.
+   * @param offset The offset of the private portion within the buffer.
+   * @param length The length of the private portion.
+   *
+   * @return An index with only private headers and data.
+   */
+  public static PskMessageIndex ofPrivateData(final byte[] buffer, final int offset,
+      final int length) {
+    final PskMessageIndex index = new PskMessageIndex(buffer, offset, length);
+    index.parse(false);
+    return index;
+  }
+
+  /**
+   * Indicates if the public Encryption header declares the private portion to be encrypted.
+   *
+   * @return true if the message is encrypted, in which case the data section holds the encrypted
+   *         private headers and data.
+   */
+  public boolean isEncrypted() {
+    return encrypted;
+  }
+
+  /**
+   * Get the number of public headers in the message.
+   *
+   * @return the number of public headers.
+   */
+  public int getPublicHeaderCount() {
+    return publicHeaderCount;
+  }
+
+  /**
+   * Get the number of private headers in the message. Always zero for encrypted messages.
+   *
+   * @return the number of private headers.
+   */
+  public int getPrivateHeaderCount() {
+    return privateHeaderCount;
+  }
+
+  /**
+   * Decode the name of a public header.
+   *
+   * @param index The position of the header in the message, starting at zero.
+   *
+   * @return The name of the header.
+   */
+  public String getPublicHeaderName(final int index) {
+    return decode(publicSlot(index) + NAME_START);
+  }
+
+  /**
+   * Decode the value of a public header.
+   *
+   * @param index The position of the header in the message, starting at zero.
+   *
+   * @return The value of the header.
+   */
+  public String getPublicHeaderValue(final int index) {
+    return decode(publicSlot(index) + VALUE_START);
+  }
+
+  /**
+   * Decode the name of a private header.
+   *
+   * @param index The position of the header in the private portion, starting at zero.
+   *
+   * @return The name of the header.
+   */
+  public String getPrivateHeaderName(final int index) {
+    return decode(privateSlot(index) + NAME_START);
+  }
+
+  /**
+   * Decode the value of a private header.
+   *
+   * @param index The position of the header in the private portion, starting at zero.
+   *
+   * @return The value of the header.
+   */
+  public String getPrivateHeaderValue(final int index) {
+    return decode(privateSlot(index) + VALUE_START);
+  }
+
+  /**
+   * Find the first public header with the given name, ignoring case, without decoding any header
+   * names.
+   *
+   * @param name The header name to look for.
+   *
+   * @return The position of the first matching public header, or -1 if there is none.
+   */
+  public int indexOfPublicHeader(final String name) {
+    return indexOf(name, 0, publicHeaderCount);
+  }
+
+  /**
+   * Find the first private header with the given name, ignoring case, without decoding any header
+   * names.
+   *
+   * @param name The header name to look for.
+   *
+   * @return The position of the first matching private header, or -1 if there is none.
+   */
+  public int indexOfPrivateHeader(final String name) {
+    final int found = indexOf(name, publicHeaderCount, publicHeaderCount + privateHeaderCount);
+    return found == -1 ? -1 : found - publicHeaderCount;
+  }
+
+  /**
+   * Get the data section of the message as a read-only slice of the underlying buffer. No data is
+   * copied.
+   *
+   * @return A read-only {@link ByteBuffer} positioned at the start of the data section.
+   */
+  public ByteBuffer getData() {
+    return ByteBuffer.wrap(buffer, dataOffset, getDataLength())
+        .slice()
+        .asReadOnlyBuffer();
+  }
+
+  /**
+   * Get the buffer this index was built on.
+   *
+   * @return the underlying buffer (not a copy).
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Get the offset of the data section within the underlying buffer.
+   *
+   * @return the offset of the first byte of data.
+   */
+  public int getDataOffset() {
+    return dataOffset;
+  }
+
+  /**
+   * Get the length of the data section.
+   *
+   * @return the number of bytes of data.
+   */
+  public int getDataLength() {
+    return offset + length - dataOffset;
+  }
+
+  /**
+   * Build a {@link PskMessage} of the indexed headers and data. This is the point at which header
+   * names and values are decoded and the data section is copied.
+   *
+   * @return A new PSK message.
+   */
+  public PskMessage toMessage() {
+    final PskMessage.Builder builder = PskMessage.builder();
+    for (int i = 0; i < publicHeaderCount; i++) {
+      builder.addPublicHeader(getPublicHeaderName(i), getPublicHeaderValue(i));
+    }
+    for (int i = 0; i < privateHeaderCount; i++) {
+      builder.addPrivateHeader(getPrivateHeaderName(i), getPrivateHeaderValue(i));
+    }
+    return builder
+        .data(Arrays.copyOfRange(buffer, dataOffset, offset + length))
+        .build();
+  }
+
+  private void parse(final boolean fromStatusLine) {
+    final int end = offset + length;
+    int position = offset;
+
+    if (fromStatusLine) {
+      final int lineEnd = indexOfLineFeed(position, end);
+      final int contentEnd = trimCarriageReturn(position, lineEnd);
+      if (!equalsIgnoreCase(position, contentEnd, PskMessage.STATUS_LINE)) {
+        throw new CodecException("Expecting valid status line but got ["
+            + new String(buffer, position, contentEnd - position, StandardCharsets.UTF_8) + "]");
+      }
+      position = next(lineEnd, end);
+
+      position = parseHeaders(position, end);
+      publicHeaderCount = headerCount;
+
+      final int encryption = indexOfPublicHeader(WellKnown.ENCRYPTION);
+      if (encryption == -1) {
+        throw new CodecException("Invalid PSK message. No encryption header.");
+      }
+      final int slot = encryption * SLOT_SIZE;
+      encrypted = !equalsIgnoreCase(headers[slot + VALUE_START], headers[slot + VALUE_END],
+          "none");
+
+      if (encrypted) {
+        dataOffset = position;
+        return;
+      }
+    }
+
+    dataOffset = parseHeaders(position, end);
+    privateHeaderCount = headerCount - publicHeaderCount;
+  }
+
+  /**
+   * Index header lines until an empty line or the end of the buffer.
+   *
+   * @return the position of the first byte after the terminating empty line.
+   */
+  private int parseHeaders(final int start, final int end) {
+    int position = start;
+    while (position < end) {
+      final int lineEnd = indexOfLineFeed(position, end);
+      final int contentEnd = trimCarriageReturn(position, lineEnd);
+      if (contentEnd == position) {
+        return next(lineEnd, end);
+      }
+      addHeader(position, contentEnd);
+      position = next(lineEnd, end);
+    }
+    return end;
+  }
+
+  private void addHeader(final int start, final int end) {
+    int split = start;
+    while (split < end && buffer[split] != SEPARATOR) {
+      split++;
+    }
+    if (split == end) {
+      throw new CodecException("Invalid Header ["
+          + new String(buffer, start, end - start, StandardCharsets.UTF_8)
+          + "]. Expected ':' separator.");
+    }
+
+    final int slot = headerCount * SLOT_SIZE;
+    if (slot + SLOT_SIZE > headers.length) {
+      headers = Arrays.copyOf(headers, headers.length * 2);
+    }
+    headers[slot + NAME_START] = trimStart(start, split);
+    headers[slot + NAME_END] = trimEnd(headers[slot + NAME_START], split);
+    headers[slot + VALUE_START] = trimStart(split + 1, end);
+    headers[slot + VALUE_END] = trimEnd(headers[slot + VALUE_START], end);
+    headerCount++;
+  }
+
+  /* scan for the next line feed in bulk, returning end if there is none */
+  private int indexOfLineFeed(final int start, final int end) {
+    for (int i = start; i < end; i++) {
+      if (buffer[i] == LF) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  /*
+   * lines ending with '\n' or '\r\n' are treated the same. A trailing '\r' at the end of the
+   * buffer is also dropped, while a '\r' elsewhere in a line is kept.
+   */
+  private int trimCarriageReturn(final int start, final int lineEnd) {
+    if (lineEnd > start && buffer[lineEnd - 1] == CR) {
+      return lineEnd - 1;
+    }
+    return lineEnd;
+  }
+
+  private static int next(final int lineEnd, final int end) {
+    return lineEnd < end ? lineEnd + 1 : end;
+  }
+
+  /* same semantics as String.trim(), which removes all characters up to and including space */
+  private int trimStart(final int start, final int end) {
+    int position = start;
+    while (position < end && (buffer[position] & 0xff) <= ' ') {
+      position++;
+    }
+    return position;
+  }
+
+  private int trimEnd(final int start, final int end) {
+    int position = end;
+    while (position > start && (buffer[position - 1] & 0xff) <= ' ') {
+      position--;
+    }
+    return position;
+  }
+
+  private int indexOf(final String name, final int from, final int to) {
+    Objects.requireNonNull(name, "name must not be null");
+    for (int i = from; i < to; i++) {
+      final int slot = i * SLOT_SIZE;
+      if (equalsIgnoreCase(headers[slot + NAME_START], headers[slot + NAME_END], name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /*
+   * compares ASCII bytes to the given string without decoding them, falling back to
+   * String.equalsIgnoreCase if either side is not plain ASCII
+   */
+  private boolean equalsIgnoreCase(final int start, final int end, final String value) {
+    final int len = end - start;
+    if (len != value.length()) {
+      return slowEqualsIgnoreCase(start, end, value);
+    }
+    for (int i = 0; i < len; i++) {
+      final int b = buffer[start + i];
+      final char c = value.charAt(i);
+      if (b < 0 || c > 0x7f) {
+        return slowEqualsIgnoreCase(start, end, value);
+      }
+      if (b != c && toLowerCase(b) != toLowerCase(c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean slowEqualsIgnoreCase(final int start, final int end, final String value) {
+    for (int i = start; i < end; i++) {
+      if (buffer[i] < 0) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8)
+            .equalsIgnoreCase(value);
+      }
+    }
+    /* the bytes are plain ASCII, so a length mismatch is a real mismatch unless value is not */
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) > 0x7f) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8)
+            .equalsIgnoreCase(value);
+      }
+    }
+    return false;
+  }
+
+  private static int toLowerCase(final int c) {
+    return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+  }
+
+  private String decode(final int slotOffset) {
+    final int start = headers[slotOffset];
+    final int end = headers[slotOffset + 1];
+    return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  private int publicSlot(final int index) {
+    if (index < 0 || index >= publicHeaderCount) {
+      throw new IndexOutOfBoundsException("No public header at index " + index);
+    }
+    return index * SLOT_SIZE;
+  }
+
+  private int privateSlot(final int index) {
+    if (index < 0 || index >= privateHeaderCount) {
+      throw new IndexOutOfBoundsException("No private header at index " + index);
+    }
+    return (publicHeaderCount + index) * SLOT_SIZE;
+  }
+
+}
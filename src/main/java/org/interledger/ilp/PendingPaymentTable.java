@@ -0,0 +1,464 @@
+package org.interledger.ilp;
+
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.Fulfillment;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Holds in-flight payments until a fulfillment of their condition arrives or they expire, keyed by
+ * the 32 byte fingerprint of the condition.
+ *
+ * <p>Fingerprints are stored as four longs in primitive arrays, alongside longs for the mixed hash
+ * and the expiry, in open-addressing tables with linear probing. Each entry costs 48 bytes plus
+ * one reference to its value, with no per-entry objects. The table is divided into segments, each
+ * guarded by its own lock, so that inserts, fulfillments and expiry sweeps on different segments
+ * proceed concurrently.
+ *
+ * <p>Conditions are chosen by whoever creates the payment, so fingerprints are mixed with a
+ * per-instance random seed before being placed, to stop chosen conditions from colliding.
+ *
+ * @param <V> The type of payment state held for each condition.
+ */
+public class PendingPaymentTable<V> {
+
+  private static final int KEY_LONGS = 4;
+
+  private final Clock clock;
+  private final Segment<V>[] segments;
+  private final int segmentShift;
+  private final long seed;
+
+  @SuppressWarnings("unchecked")
+  private PendingPaymentTable(final Builder<V> builder) {
+    this.clock = builder.clock;
+
+    final int segmentCount = powerOfTwoAtLeast(builder.concurrencyLevel);
+    this.segments = (Segment<V>[]) new Segment<?>[segmentCount];
+    this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    final int segmentCapacity = powerOfTwoAtLeast(
+        (int) Math.min(1 << 30, 2L * builder.expectedSize / segmentCount + 1));
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>(segmentCapacity);
+    }
+
+    this.seed = new SecureRandom().nextLong();
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @param <V> The type of payment state held for each condition.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static <V> Builder<V> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Add a pending payment.
+   *
+   * @param condition The condition of the payment.
+   * @param expiresAt When the payment expires.
+   * @param value     The payment state to hold.
+   *
+   * @return true if the payment was added, or false if a payment with the same condition is already
+   *     pending.
+   */
+  public boolean put(final Condition condition, final Instant expiresAt, final V value) {
+    Objects.requireNonNull(condition);
+    Objects.requireNonNull(expiresAt);
+    return put(condition.getFingerprint(), 0, expiresAt.toEpochMilli(), value);
+  }
+
+  /**
+   * Add a pending payment by the raw fingerprint of its condition.
+   *
+   * @param fingerprint     A buffer holding the fingerprint.
+   * @param offset          The offset of the 32 byte fingerprint within the buffer.
+   * @param expiresAtMillis When the payment expires, in milliseconds since the epoch.
+   * @param value           The payment state to hold.
+   *
+   * @return true if the payment was added, or false if a payment with the same condition is already
+   *     pending.
+   */
+  public boolean put(final byte[] fingerprint, final int offset, final long expiresAtMillis,
+      final V value) {
+    Objects.requireNonNull(value);
+    checkFingerprint(fingerprint, offset);
+    final long k0 = readLong(fingerprint, offset);
+    final long k1 = readLong(fingerprint, offset + 8);
+    final long k2 = readLong(fingerprint, offset + 16);
+    final long k3 = readLong(fingerprint, offset + 24);
+    final long hash = hash(k0, k1, k2, k3);
+    return segmentFor(hash).put(hash, k0, k1, k2, k3, expiresAtMillis, value);
+  }
+
+  /**
+   * Get the pending payment for a condition, without removing it.
+   *
+   * @param condition The condition of the payment.
+   *
+   * @return the payment state, or null if no payment with the condition is pending.
+   */
+  public V get(final Condition condition) {
+    Objects.requireNonNull(condition);
+    return get(condition.getFingerprint(), 0);
+  }
+
+  /**
+   * Get the pending payment for a raw fingerprint, without removing it.
+   *
+   * @param fingerprint A buffer holding the fingerprint.
+   * @param offset      The offset of the 32 byte fingerprint within the buffer.
+   *
+   * @return the payment state, or null if no payment with the condition is pending.
+   */
+  public V get(final byte[] fingerprint, final int offset) {
+    checkFingerprint(fingerprint, offset);
+    final long k0 = readLong(fingerprint, offset);
+    final long k1 = readLong(fingerprint, offset + 8);
+    final long k2 = readLong(fingerprint, offset + 16);
+    final long k3 = readLong(fingerprint, offset + 24);
+    final long hash = hash(k0, k1, k2, k3);
+    return segmentFor(hash).get(hash, k0, k1, k2, k3);
+  }
+
+  /**
+   * Remove the pending payment fulfilled by a fulfillment, if it has not expired.
+   *
+   * @param fulfillment A PREIMAGE-SHA-256 fulfillment.
+   *
+   * @return the payment state, or null if no unexpired payment is pending on the fulfillment's
+   *     condition. Expired payments are left for {@link #expire(Consumer)}.
+   */
+  public V fulfill(final Fulfillment fulfillment) {
+    return fulfill(PreimageSha256.getPreimage(fulfillment));
+  }
+
+  /**
+   * Remove the pending payment fulfilled by a raw preimage, if it has not expired.
+   *
+   * @param preimage The 32 byte preimage.
+   *
+   * @return the payment state, or null if no unexpired payment is pending on the preimage's
+   *     condition. Expired payments are left for {@link #expire(Consumer)}.
+   */
+  public V fulfill(final byte[] preimage) {
+    Objects.requireNonNull(preimage);
+    if (preimage.length != PreimageSha256.PREIMAGE_LEN_BYTES) {
+      return null;
+    }
+    final byte[] fingerprint = new byte[PreimageSha256.FINGERPRINT_LEN_BYTES];
+    PreimageSha256.fingerprint(preimage, fingerprint, 0);
+    return remove(fingerprint, 0, clock.millis());
+  }
+
+  /**
+   * Remove the pending payment for a condition, whether or not it has expired.
+   *
+   * @param condition The condition of the payment.
+   *
+   * @return the payment state, or null if no payment with the condition is pending.
+   */
+  public V remove(final Condition condition) {
+    Objects.requireNonNull(condition);
+    return remove(condition.getFingerprint(), 0, Long.MIN_VALUE);
+  }
+
+  /**
+   * Remove every payment that has expired.
+   *
+   * @param onExpired Called, outside of any lock, with the state of each payment removed.
+   *
+   * @return the number of payments removed.
+   */
+  public int expire(final Consumer<? super V> onExpired) {
+    Objects.requireNonNull(onExpired);
+    final long now = clock.millis();
+    final List<V> expired = new ArrayList<>();
+    int removed = 0;
+    for (Segment<V> segment : segments) {
+      segment.expire(now, expired);
+      for (V value : expired) {
+        onExpired.accept(value);
+      }
+      removed += expired.size();
+      expired.clear();
+    }
+    return removed;
+  }
+
+  /**
+   * Get the number of payments pending, including any that have expired but not been removed.
+   *
+   * @return the number of payments.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  private V remove(final byte[] fingerprint, final int offset, final long unexpiredAt) {
+    checkFingerprint(fingerprint, offset);
+    final long k0 = readLong(fingerprint, offset);
+    final long k1 = readLong(fingerprint, offset + 8);
+    final long k2 = readLong(fingerprint, offset + 16);
+    final long k3 = readLong(fingerprint, offset + 24);
+    final long hash = hash(k0, k1, k2, k3);
+    return segmentFor(hash).remove(hash, k0, k1, k2, k3, unexpiredAt);
+  }
+
+  private Segment<V> segmentFor(final long hash) {
+    return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+  }
+
+  private long hash(final long k0, final long k1, final long k2, final long k3) {
+    long hash = mix(k0 ^ seed);
+    hash = mix(hash ^ k1);
+    hash = mix(hash ^ k2);
+    return mix(hash ^ k3);
+  }
+
+  /* the MurmurHash3 64-bit finalizer */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  private static void checkFingerprint(final byte[] fingerprint, final int offset) {
+    Objects.requireNonNull(fingerprint);
+    if (offset < 0 || offset + PreimageSha256.FINGERPRINT_LEN_BYTES > fingerprint.length) {
+      throw new IllegalArgumentException("Fingerprint must be 32 bytes.");
+    }
+  }
+
+  private static long readLong(final byte[] bytes, final int offset) {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (bytes[offset + i] & 0xff);
+    }
+    return value;
+  }
+
+  private static int powerOfTwoAtLeast(final int value) {
+    return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+
+  /**
+   * One lock's share of the table: an open-addressing table with linear probing, whose entries are
+   * removed by shifting later entries of the same probe sequence back, so no tombstones build up.
+   */
+  private static final class Segment<V> {
+
+    private long[] keys;
+    private long[] hashes;
+    private long[] expiries;
+    private Object[] values;
+    private int size;
+
+    private Segment(final int capacity) {
+      allocate(capacity);
+    }
+
+    private void allocate(final int capacity) {
+      keys = new long[capacity * KEY_LONGS];
+      hashes = new long[capacity];
+      expiries = new long[capacity];
+      values = new Object[capacity];
+    }
+
+    synchronized boolean put(final long hash, final long k0, final long k1, final long k2,
+        final long k3, final long expiresAt, final V value) {
+      if (find(hash, k0, k1, k2, k3) >= 0) {
+        return false;
+      }
+      if ((size + 1) * 4L > values.length * 3L) {
+        resize();
+      }
+      insert(hash, k0, k1, k2, k3, expiresAt, value);
+      size++;
+      return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V get(final long hash, final long k0, final long k1, final long k2,
+        final long k3) {
+      final int slot = find(hash, k0, k1, k2, k3);
+      return slot < 0 ? null : (V) values[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V remove(final long hash, final long k0, final long k1, final long k2,
+        final long k3, final long unexpiredAt) {
+      final int slot = find(hash, k0, k1, k2, k3);
+      if (slot < 0 || expiries[slot] <= unexpiredAt) {
+        return null;
+      }
+      final V value = (V) values[slot];
+      delete(slot);
+      return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized void expire(final long now, final List<V> expired) {
+      int slot = 0;
+      while (slot < values.length) {
+        if (values[slot] != null && expiries[slot] <= now) {
+          expired.add((V) values[slot]);
+          /* deleting may shift another entry into this slot, so check it again */
+          delete(slot);
+        } else {
+          slot++;
+        }
+      }
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    private int find(final long hash, final long k0, final long k1, final long k2,
+        final long k3) {
+      final int mask = values.length - 1;
+      for (int slot = (int) hash & mask; values[slot] != null; slot = (slot + 1) & mask) {
+        final int key = slot * KEY_LONGS;
+        if (hashes[slot] == hash && keys[key] == k0 && keys[key + 1] == k1
+            && keys[key + 2] == k2 && keys[key + 3] == k3) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    private void insert(final long hash, final long k0, final long k1, final long k2,
+        final long k3, final long expiresAt, final Object value) {
+      final int mask = values.length - 1;
+      int slot = (int) hash & mask;
+      while (values[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      final int key = slot * KEY_LONGS;
+      keys[key] = k0;
+      keys[key + 1] = k1;
+      keys[key + 2] = k2;
+      keys[key + 3] = k3;
+      hashes[slot] = hash;
+      expiries[slot] = expiresAt;
+      values[slot] = value;
+    }
+
+    private void delete(int hole) {
+      final int mask = values.length - 1;
+      values[hole] = null;
+      size--;
+
+      for (int slot = (hole + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+        final int home = (int) hashes[slot] & mask;
+        /* move the entry back if the hole lies between its home slot and where it sits */
+        if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+          System.arraycopy(keys, slot * KEY_LONGS, keys, hole * KEY_LONGS, KEY_LONGS);
+          hashes[hole] = hashes[slot];
+          expiries[hole] = expiries[slot];
+          values[hole] = values[slot];
+          values[slot] = null;
+          hole = slot;
+        }
+      }
+    }
+
+    private void resize() {
+      final long[] oldKeys = keys;
+      final long[] oldHashes = hashes;
+      final long[] oldExpiries = expiries;
+      final Object[] oldValues = values;
+
+      allocate(oldValues.length * 2);
+      for (int slot = 0; slot < oldValues.length; slot++) {
+        if (oldValues[slot] != null) {
+          final int key = slot * KEY_LONGS;
+          insert(oldHashes[slot], oldKeys[key], oldKeys[key + 1], oldKeys[key + 2],
+              oldKeys[key + 3], oldExpiries[slot], oldValues[slot]);
+        }
+      }
+    }
+  }
+
+  /**
+   * A builder for instances of {@link PendingPaymentTable}.
+   *
+   * @param <V> The type of payment state held for each condition.
+   */
+  public static class Builder<V> {
+
+    private int expectedSize = 1024;
+    private int concurrencyLevel = Runtime.getRuntime()
+        .availableProcessors() * 4;
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Sets the number of payments expected to be pending at once, so that the table does not need
+     * to grow to hold them.
+     *
+     * @param expectedSize The expected number of payments.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<V> expectedSize(final int expectedSize) {
+      if (expectedSize < 0) {
+        throw new IllegalArgumentException("expectedSize must not be negative");
+      }
+      this.expectedSize = expectedSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of threads expected to use the table at once. The table is divided into at
+     * least this many independently locked segments.
+     *
+     * @param concurrencyLevel The expected number of concurrent threads.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<V> concurrencyLevel(final int concurrencyLevel) {
+      if (concurrencyLevel < 1 || concurrencyLevel > 1 << 16) {
+        throw new IllegalArgumentException("concurrencyLevel must be between 1 and 2^16");
+      }
+      this.concurrencyLevel = concurrencyLevel;
+      return this;
+    }
+
+    /**
+     * Sets the clock used to decide whether payments have expired.
+     *
+     * @param clock The clock.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<V> clock(final Clock clock) {
+      this.clock = Objects.requireNonNull(clock, "clock must not be null");
+      return this;
+    }
+
+    /**
+     * Builds the table.
+     *
+     * @return A new {@link PendingPaymentTable} instance.
+     */
+    public PendingPaymentTable<V> build() {
+      return new PendingPaymentTable<>(this);
+    }
+  }
+
+}
@@ -0,0 +1,143 @@
+package org.interledger.ilp;
+
+import org.interledger.InterledgerRuntimeException;
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Raw byte operations on the PREIMAGE-SHA-256 conditions and fulfillments used by universal mode
+ * ILP, in which a fulfillment is a 32 byte preimage and its condition is the 32 byte SHA-256 hash
+ * of that preimage.
+ *
+ * <p>Every hop of a fulfilled payment checks the fulfillment against the condition. Doing so
+ * through {@link Fulfillment#verify(Condition, byte[])} derives and compares a whole new
+ * {@link Condition}. {@link #verify(byte[], byte[])} hashes the preimage with a per-thread
+ * {@link MessageDigest} into a per-thread buffer and compares it with the fingerprint, allocating
+ * nothing.
+ */
+public final class PreimageSha256 {
+
+  /* the length of a preimage, which is also the cost of its condition in universal mode ILP */
+  public static final int PREIMAGE_LEN_BYTES = 32;
+  /* the length of a SHA-256 fingerprint */
+  public static final int FINGERPRINT_LEN_BYTES = 32;
+
+  private static final ThreadLocal<Sha256> SHA_256 = ThreadLocal.withInitial(Sha256::new);
+
+  private PreimageSha256() {
+  }
+
+  /**
+   * Get the raw preimage of a fulfillment.
+   *
+   * <p>{@link PreimageSha256Fulfillment} only exposes its preimage base64url encoded, so this
+   * decodes it directly into the returned array.
+   *
+   * @param fulfillment A PREIMAGE-SHA-256 fulfillment.
+   *
+   * @return the 32 byte preimage.
+   *
+   * @throws IllegalArgumentException if the fulfillment is not a 32 byte PREIMAGE-SHA-256
+   *                                  fulfillment.
+   */
+  public static byte[] getPreimage(final Fulfillment fulfillment) {
+    Objects.requireNonNull(fulfillment);
+    if (!(fulfillment instanceof PreimageSha256Fulfillment)) {
+      throw new IllegalArgumentException("Only PreimageSha256Fulfillment instances are supported");
+    }
+
+    final byte[] encoded = ((PreimageSha256Fulfillment) fulfillment).getPreimage()
+        .getBytes(StandardCharsets.ISO_8859_1);
+    final byte[] preimage = new byte[PREIMAGE_LEN_BYTES];
+    if (Base64.getUrlDecoder().decode(encoded, preimage) != PREIMAGE_LEN_BYTES) {
+      throw new IllegalArgumentException("Preimage must be exactly 32 bytes.");
+    }
+    return preimage;
+  }
+
+  /**
+   * Compute the fingerprint of a preimage into a buffer.
+   *
+   * @param preimage    The preimage.
+   * @param fingerprint The buffer to write the fingerprint to.
+   * @param offset      The offset in the buffer to write the 32 byte fingerprint at.
+   */
+  public static void fingerprint(final byte[] preimage, final byte[] fingerprint,
+      final int offset) {
+    Objects.requireNonNull(preimage);
+    Objects.requireNonNull(fingerprint);
+    SHA_256.get()
+        .digest(preimage, fingerprint, offset);
+  }
+
+  /**
+   * Check that a fulfillment fulfills a condition.
+   *
+   * @param fulfillment A PREIMAGE-SHA-256 fulfillment.
+   * @param condition   A PREIMAGE-SHA-256 condition.
+   *
+   * @return true if the fulfillment's preimage hashes to the condition's fingerprint and has the
+   *     condition's cost as its length.
+   */
+  public static boolean verify(final Fulfillment fulfillment, final Condition condition) {
+    Objects.requireNonNull(condition);
+    return condition.getCost() == PREIMAGE_LEN_BYTES
+        && verify(getPreimage(fulfillment), condition.getFingerprint());
+  }
+
+  /**
+   * Check that a raw preimage hashes to a raw fingerprint, in constant time.
+   *
+   * @param preimage    The 32 byte preimage.
+   * @param fingerprint The 32 byte fingerprint.
+   *
+   * @return true if SHA-256 of the preimage equals the fingerprint.
+   */
+  public static boolean verify(final byte[] preimage, final byte[] fingerprint) {
+    Objects.requireNonNull(preimage);
+    Objects.requireNonNull(fingerprint);
+    if (preimage.length != PREIMAGE_LEN_BYTES || fingerprint.length != FINGERPRINT_LEN_BYTES) {
+      return false;
+    }
+
+    final Sha256 sha256 = SHA_256.get();
+    sha256.digest(preimage, sha256.buffer, 0);
+    return MessageDigest.isEqual(sha256.buffer, fingerprint);
+  }
+
+  /**
+   * A reusable SHA-256 digest and output buffer, one per thread.
+   */
+  private static final class Sha256 {
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[FINGERPRINT_LEN_BYTES];
+
+    private Sha256() {
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new InterledgerRuntimeException("Error getting SHA-256 digest", e);
+      }
+    }
+
+    private void digest(final byte[] input, final byte[] output, final int offset) {
+      digest.update(input);
+      try {
+        digest.digest(output, offset, FINGERPRINT_LEN_BYTES);
+      } catch (DigestException e) {
+        digest.reset();
+        throw new IllegalArgumentException("Fingerprint does not fit in the buffer.", e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,901 @@
+package org.interledger.ilqp;
+
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * A {@link LiquidityCurve} whose points are held in two sorted arrays of unsigned 64-bit amounts,
+ * the ILQP UInt64 encoding of an amount, so that it can be evaluated without allocating.
+ *
+ * <p>{@link #outputFor(long)} and {@link #inputFor(long)} find the segment containing the amount
+ * by binary search and interpolate linearly between its end points using exact integer
+ * arithmetic. Output amounts are rounded down, and input amounts up, so that the input returned
+ * for an output always yields at least that output.
+ *
+ * <p>All {@code long} amounts taken and returned by this class are unsigned, so amounts above
+ * {@link Long#MAX_VALUE} appear as negative numbers.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ */
+public final class ArrayLiquidityCurve implements LiquidityCurve {
+
+  private static final BigInteger MAX_UINT64 =
+      BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+  private static final long LOWER_32_BITS = 0xFFFFFFFFL;
+  private static final ArrayLiquidityCurve EMPTY = new ArrayLiquidityCurve(new long[0],
+      new long[0]);
+
+  private final long[] inputAmounts;
+  private final long[] outputAmounts;
+
+  private ArrayLiquidityCurve(final long[] inputAmounts, final long[] outputAmounts) {
+    this.inputAmounts = inputAmounts;
+    this.outputAmounts = outputAmounts;
+  }
+
+  /**
+   * Create a curve from the unsigned input and output amounts of its points.
+   *
+   * @param inputAmounts  The input amounts, which must be strictly increasing.
+   * @param outputAmounts The output amounts of the same points, which must be increasing.
+   *
+   * @return a curve through the points.
+   *
+   * @throws IllegalArgumentException if the arrays have different lengths or the amounts are not
+   *                                  increasing.
+   */
+  public static ArrayLiquidityCurve of(final long[] inputAmounts, final long[] outputAmounts) {
+    Objects.requireNonNull(inputAmounts);
+    Objects.requireNonNull(outputAmounts);
+    if (inputAmounts.length != outputAmounts.length) {
+      throw new IllegalArgumentException("There must be as many output amounts as input amounts.");
+    }
+
+    final long[] inputs = inputAmounts.clone();
+    final long[] outputs = outputAmounts.clone();
+    for (int i = 1; i < inputs.length; i++) {
+      if (Long.compareUnsigned(inputs[i - 1], inputs[i]) >= 0) {
+        throw new IllegalArgumentException("Input amounts must be strictly increasing.");
+      }
+      if (Long.compareUnsigned(outputs[i - 1], outputs[i]) > 0) {
+        throw new IllegalArgumentException("Output amounts must be increasing.");
+      }
+    }
+    return new ArrayLiquidityCurve(inputs, outputs);
+  }
+
+  /**
+   * Create a curve from liquidity points in any order.
+   *
+   * @param points The points of the curve.
+   *
+   * @return a curve through the points.
+   *
+   * @throws IllegalArgumentException if two points have the same input amount, the amounts are
+   *                                  not increasing, or an amount is not a UInt64.
+   */
+  public static ArrayLiquidityCurve of(final Collection<LiquidityPoint> points) {
+    Objects.requireNonNull(points);
+    final LiquidityPoint[] sorted = points.toArray(new LiquidityPoint[points.size()]);
+    Arrays.sort(sorted);
+
+    final long[] inputs = new long[sorted.length];
+    final long[] outputs = new long[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      inputs[i] = toUnsignedLong(sorted[i].getInputAmount());
+      outputs[i] = toUnsignedLong(sorted[i].getOutputAmount());
+    }
+    return of(inputs, outputs);
+  }
+
+  /**
+   * Get the number of points on the curve.
+   *
+   * @return the number of points.
+   */
+  public int size() {
+    return inputAmounts.length;
+  }
+
+  /**
+   * Get the input amount of a point.
+   *
+   * @param index The index of the point, in order of input amount.
+   *
+   * @return the unsigned input amount.
+   */
+  public long getInputAmount(final int index) {
+    return inputAmounts[index];
+  }
+
+  /**
+   * Get the output amount of a point.
+   *
+   * @param index The index of the point, in order of input amount.
+   *
+   * @return the unsigned output amount.
+   */
+  public long getOutputAmount(final int index) {
+    return outputAmounts[index];
+  }
+
+  /**
+   * Get the amount received for an input amount.
+   *
+   * @param inputAmount The unsigned input amount.
+   *
+   * @return the unsigned output amount, rounded down. This is zero below the first point and the
+   *     output of the last point beyond it, or zero if the curve has no points.
+   */
+  public long outputFor(final long inputAmount) {
+    final int last = inputAmounts.length - 1;
+    if (last < 0 || Long.compareUnsigned(inputAmount, inputAmounts[0]) < 0) {
+      return 0;
+    }
+    if (Long.compareUnsigned(inputAmount, inputAmounts[last]) >= 0) {
+      return outputAmounts[last];
+    }
+
+    /* find the last point at or below the input, which is followed by another point */
+    int low = 0;
+    int high = last;
+    while (high - low > 1) {
+      final int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(inputAmounts[mid], inputAmount) <= 0) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+
+    return outputAt(low, inputAmount);
+  }
+
+  /**
+   * Get the smallest input amount that yields an output amount. If several points have exactly
+   * that output amount, the input amount of the first of them is returned.
+   *
+   * @param outputAmount The unsigned output amount.
+   *
+   * @return the unsigned input amount, rounded up. This is the input of the first point for any
+   *     output up to that point's output.
+   *
+   * @throws InterledgerQuotingException if the output amount is larger than the output of the
+   *                                     last point.
+   */
+  public long inputFor(final long outputAmount) {
+    final int last = outputAmounts.length - 1;
+    if (last < 0 || Long.compareUnsigned(outputAmount, outputAmounts[last]) > 0) {
+      throw new InterledgerQuotingException(
+          "Output amount " + Long.toUnsignedString(outputAmount) + " exceeds liquidity.");
+    }
+    if (Long.compareUnsigned(outputAmount, outputAmounts[0]) <= 0) {
+      return inputAmounts[0];
+    }
+
+    /* find the first point at or above the output, which is preceded by another point */
+    int low = 0;
+    int high = last;
+    while (high - low > 1) {
+      final int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(outputAmounts[mid], outputAmount) < 0) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+
+    return inputAmounts[low] + multiplyDivide(outputAmount - outputAmounts[low],
+        inputAmounts[high] - inputAmounts[low], outputAmounts[high] - outputAmounts[low], true);
+  }
+
+  /**
+   * Compose this curve with the curve of the next hop, feeding the output of this curve into the
+   * input of the next.
+   *
+   * <p>The composed curve has a point at each point of this curve and wherever the output of this
+   * curve reaches the input of a point of the next curve, each evaluated exactly, so it is built
+   * in linear passes over the points of both curves. Where that input is not a whole amount, the
+   * amounts on either side of it are both points, so that no segment spans a bend of the next
+   * curve. Where this curve yields fractions of an amount between points, evaluating the two
+   * curves in turn rounds the intermediate amount down, so the composed curve holds its output and
+   * then follows the next curve lowered by one of its steps, and never yields more than the two
+   * curves in turn would. The input at which it stops holding is found in closed form, so each
+   * point costs constant time.
+   *
+   * @param next The curve from the output of this curve to the final output.
+   *
+   * @return the curve from the input of this curve to the output of the next.
+   */
+  public ArrayLiquidityCurve compose(final ArrayLiquidityCurve next) {
+    Objects.requireNonNull(next);
+    final int size = inputAmounts.length;
+    final int nextSize = next.inputAmounts.length;
+    if (size == 0 || nextSize == 0) {
+      return EMPTY;
+    }
+
+    /* merge the points of this curve with the inputs that reach each point of the next curve */
+    final long[] inputs = new long[size + 2 * nextSize + 1];
+    int count = 0;
+    int nextPoint = 0;
+    while (nextPoint < nextSize
+        && Long.compareUnsigned(next.inputAmounts[nextPoint], outputAmounts[0]) <= 0) {
+      nextPoint++;
+    }
+    for (int i = 0; i < size; i++) {
+      while (nextPoint < nextSize
+          && Long.compareUnsigned(next.inputAmounts[nextPoint], outputAmounts[i]) <= 0) {
+        final long rise = next.inputAmounts[nextPoint] - outputAmounts[i - 1];
+        final long run = inputAmounts[i] - inputAmounts[i - 1];
+        final long slope = outputAmounts[i] - outputAmounts[i - 1];
+        final long input = inputAmounts[i - 1] + multiplyDivide(rise, run, slope, true);
+        final long floor = inputAmounts[i - 1] + multiplyDivide(rise, run, slope, false);
+        if (nextPoint == 0 || floor != input) {
+          /* the next curve bends between these two consecutive amounts, or below its first point
+           * yields nothing, so keep a point on each side rather than interpolate across it */
+          count = append(inputs, count, input - 1);
+        }
+        count = append(inputs, count, input);
+        nextPoint++;
+      }
+      count = append(inputs, count, inputAmounts[i]);
+    }
+
+    /* evaluate both curves at the merged inputs, advancing through their segments in turn */
+    final long[] outputs = new long[count];
+    int segment = 0;
+    int nextSegment = 0;
+    for (int i = 0; i < count; i++) {
+      segment = advance(segment, inputs[i]);
+      final long intermediate = outputAt(segment, inputs[i]);
+      nextSegment = next.advance(nextSegment, intermediate);
+      outputs[i] = next.outputAt(nextSegment, intermediate);
+    }
+
+    /* the intermediate amount is rounded down between merged inputs unless this curve rises by
+     * whole amounts there, which costs up to one step of the next curve; such a segment holds its
+     * output until the next curve lowered by the step catches up, adding at most three points */
+    final long[] drops = new long[count];
+    int lowered = 0;
+    segment = 0;
+    nextSegment = 0;
+    for (int i = 0; i + 1 < count; i++) {
+      segment = advance(segment, inputs[i]);
+      final long intermediate = outputAt(segment, inputs[i]);
+      nextSegment = next.advance(nextSegment, intermediate);
+      if (Long.compareUnsigned(inputs[i + 1] - inputs[i], 1) > 0 && outputs[i + 1] != outputs[i]
+          && !risesWhole(segment)) {
+        drops[i] = next.stepAt(nextSegment, intermediate);
+        lowered += drops[i] == 0 ? 0 : 1;
+      }
+    }
+    if (lowered == 0) {
+      return new ArrayLiquidityCurve(Arrays.copyOf(inputs, count), outputs);
+    }
+
+    final long[] composedInputs = new long[count + 3 * lowered];
+    final long[] composedOutputs = new long[count + 3 * lowered];
+    int composed = 0;
+    segment = 0;
+    nextSegment = 0;
+    for (int i = 0; i < count; i++) {
+      composedInputs[composed] = inputs[i];
+      composedOutputs[composed++] = outputs[i];
+      if (drops[i] == 0) {
+        continue;
+      }
+      segment = advance(segment, inputs[i]);
+      nextSegment = next.advance(nextSegment, outputAt(segment, inputs[i]));
+
+      final long last = inputs[i + 1] - 1;
+      final long target = outputs[i] + drops[i];
+      final long caughtUp = Long.compareUnsigned(target, outputs[i]) < 0 ? -1L
+          : firstInputReaching(segment, next, nextSegment, target);
+      if (Long.compareUnsigned(caughtUp, last) > 0) {
+        composedInputs[composed] = last;
+        composedOutputs[composed++] = outputs[i];
+        continue;
+      }
+      if (caughtUp - 1 != inputs[i]) {
+        composedInputs[composed] = caughtUp - 1;
+        composedOutputs[composed++] = outputs[i];
+      }
+      composedInputs[composed] = caughtUp;
+      composedOutputs[composed++] =
+          next.outputAt(nextSegment, outputAt(segment, caughtUp)) - drops[i];
+      if (last != caughtUp) {
+        composedInputs[composed] = last;
+        composedOutputs[composed++] =
+            next.outputAt(nextSegment, outputAt(segment, last)) - drops[i];
+      }
+    }
+    return new ArrayLiquidityCurve(Arrays.copyOf(composedInputs, composed),
+        Arrays.copyOf(composedOutputs, composed));
+  }
+
+  /**
+   * Shift this curve down by a fixed fee deducted from every output amount. Inputs whose output
+   * would not cover the fee yield nothing.
+   *
+   * @param fee The unsigned fee, in units of the output amount.
+   *
+   * @return the curve of output amounts less the fee.
+   */
+  public ArrayLiquidityCurve shift(final long fee) {
+    if (fee == 0) {
+      return this;
+    }
+
+    final int first = firstOutputAtLeast(fee);
+    if (first == outputAmounts.length) {
+      return EMPTY;
+    }
+
+    /* start the curve at the smallest input whose output covers the fee */
+    int count = 0;
+    final long[] inputs = new long[outputAmounts.length - first + 1];
+    final long[] outputs = new long[inputs.length];
+    if (first > 0) {
+      final long input = inputAmounts[first - 1] + multiplyDivide(fee - outputAmounts[first - 1],
+          inputAmounts[first] - inputAmounts[first - 1],
+          outputAmounts[first] - outputAmounts[first - 1], true);
+      if (input != inputAmounts[first]) {
+        inputs[count] = input;
+        outputs[count++] = outputAt(first - 1, input) - fee;
+      }
+    }
+    for (int i = first; i < outputAmounts.length; i++) {
+      inputs[count] = inputAmounts[i];
+      outputs[count++] = outputAmounts[i] - fee;
+    }
+    return new ArrayLiquidityCurve(Arrays.copyOf(inputs, count), Arrays.copyOf(outputs, count));
+  }
+
+  /**
+   * Scale the output amounts of this curve by a rate, rounding down.
+   *
+   * @param numerator   The unsigned numerator of the rate.
+   * @param denominator The unsigned, non-zero denominator of the rate.
+   *
+   * @return the curve of output amounts multiplied by the rate.
+   *
+   * @throws ArithmeticException if a scaled output amount does not fit in a UInt64.
+   */
+  public ArrayLiquidityCurve scale(final long numerator, final long denominator) {
+    if (denominator == 0) {
+      throw new IllegalArgumentException("Denominator must not be zero.");
+    }
+
+    final long[] outputs = new long[outputAmounts.length];
+    for (int i = 0; i < outputs.length; i++) {
+      outputs[i] = multiplyDivide(outputAmounts[i], numerator, denominator, false);
+    }
+    return new ArrayLiquidityCurve(inputAmounts, outputs);
+  }
+
+  /**
+   * Clip this curve to a maximum output amount, for instance the liquidity available to deliver
+   * it. The clipped curve ends at the smallest input that yields the maximum.
+   *
+   * @param maxOutputAmount The unsigned maximum output amount.
+   *
+   * @return the curve with no output amount above the maximum.
+   */
+  public ArrayLiquidityCurve clip(final long maxOutputAmount) {
+    final int last = outputAmounts.length - 1;
+    if (last < 0 || Long.compareUnsigned(outputAmounts[last], maxOutputAmount) <= 0) {
+      return this;
+    }
+
+    final int reached = firstOutputAtLeast(maxOutputAmount);
+    if (outputAmounts[reached] == maxOutputAmount) {
+      return new ArrayLiquidityCurve(Arrays.copyOf(inputAmounts, reached + 1),
+          Arrays.copyOf(outputAmounts, reached + 1));
+    }
+    if (reached == 0) {
+      return EMPTY;
+    }
+
+    final long[] inputs = Arrays.copyOf(inputAmounts, reached + 1);
+    final long[] outputs = Arrays.copyOf(outputAmounts, reached + 1);
+    inputs[reached] = inputAmounts[reached - 1] + multiplyDivide(
+        maxOutputAmount - outputAmounts[reached - 1],
+        inputAmounts[reached] - inputAmounts[reached - 1],
+        outputAmounts[reached] - outputAmounts[reached - 1], true);
+    outputs[reached] = maxOutputAmount;
+    return new ArrayLiquidityCurve(inputs, outputs);
+  }
+
+  /**
+   * Simplify this curve to at most a number of points, removing first the points whose removal
+   * loses the least output. The simplified curve never yields more output than this curve.
+   *
+   * @param maxPoints The maximum number of points, at least two.
+   *
+   * @return a curve of at most {@code maxPoints} points.
+   */
+  public ArrayLiquidityCurve simplifyToSize(final int maxPoints) {
+    if (maxPoints < 2) {
+      throw new IllegalArgumentException("A simplified curve must have at least two points.");
+    }
+    return new Simplifier(this).simplify(maxPoints, 0);
+  }
+
+  /**
+   * Simplify this curve by removing points for as long as the output lost at any input stays
+   * within a maximum error. The simplified curve never yields more output than this curve. With a
+   * maximum error of zero only points on a straight line between their neighbours are removed.
+   *
+   * @param maxOutputError The unsigned maximum output amount by which the simplified curve may
+   *                       fall below this curve.
+   *
+   * @return a curve whose output is at most {@code maxOutputError} below this curve.
+   */
+  public ArrayLiquidityCurve simplifyToError(final long maxOutputError) {
+    return new Simplifier(this).simplify(Integer.MAX_VALUE, maxOutputError);
+  }
+
+  @Override
+  public BigInteger outputFor(final BigInteger inputAmount) {
+    Objects.requireNonNull(inputAmount);
+    if (inputAmount.signum() < 0) {
+      throw new IllegalArgumentException("Input amount must not be negative.");
+    }
+    final long input = inputAmount.compareTo(MAX_UINT64) > 0 ? -1L : inputAmount.longValue();
+    return toBigInteger(outputFor(input));
+  }
+
+  @Override
+  public BigInteger inputFor(final BigInteger outputAmount) {
+    Objects.requireNonNull(outputAmount);
+    if (outputAmount.signum() < 0) {
+      throw new IllegalArgumentException("Output amount must not be negative.");
+    }
+    if (outputAmount.compareTo(MAX_UINT64) > 0) {
+      throw new InterledgerQuotingException(
+          "Output amount " + outputAmount + " exceeds liquidity.");
+    }
+    return toBigInteger(inputFor(outputAmount.longValue()));
+  }
+
+  @Override
+  public Collection<LiquidityPoint> getLiquidityPoints() {
+    return Collections.unmodifiableList(new AbstractList<LiquidityPoint>() {
+      @Override
+      public LiquidityPoint get(final int index) {
+        return LiquidityPoint.builder()
+            .inputAmount(toBigInteger(inputAmounts[index]))
+            .outputAmount(toBigInteger(outputAmounts[index]))
+            .build();
+      }
+
+      @Override
+      public int size() {
+        return inputAmounts.length;
+      }
+    });
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(inputAmounts) + Arrays.hashCode(outputAmounts);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+
+    ArrayLiquidityCurve other = (ArrayLiquidityCurve) obj;
+    return Arrays.equals(inputAmounts, other.inputAmounts)
+        && Arrays.equals(outputAmounts, other.outputAmounts);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("ArrayLiquidityCurve{curve=[");
+    for (int i = 0; i < inputAmounts.length; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append('[')
+          .append(Long.toUnsignedString(inputAmounts[i]))
+          .append(", ")
+          .append(Long.toUnsignedString(outputAmounts[i]))
+          .append(']');
+    }
+    return builder.append("]}").toString();
+  }
+
+  /**
+   * Get the index of the first point with an output amount of at least the given amount, or the
+   * number of points if there is none.
+   */
+  private int firstOutputAtLeast(final long outputAmount) {
+    int index = 0;
+    while (index < outputAmounts.length
+        && Long.compareUnsigned(outputAmounts[index], outputAmount) < 0) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Advance the index of a segment, starting from {@code segment}, to the last point at or below
+   * an input amount, or to the first point if there is none.
+   */
+  private int advance(int segment, final long inputAmount) {
+    while (segment + 1 < inputAmounts.length
+        && Long.compareUnsigned(inputAmounts[segment + 1], inputAmount) <= 0) {
+      segment++;
+    }
+    return segment;
+  }
+
+  /**
+   * Evaluate the curve in the segment starting at a point, which must be the last point at or
+   * below the input amount, or the first point.
+   */
+  private long outputAt(final int segment, final long inputAmount) {
+    if (Long.compareUnsigned(inputAmount, inputAmounts[segment]) < 0) {
+      return 0;
+    }
+    if (segment == inputAmounts.length - 1) {
+      return outputAmounts[segment];
+    }
+    return outputAmounts[segment] + multiplyDivide(inputAmount - inputAmounts[segment],
+        outputAmounts[segment + 1] - outputAmounts[segment],
+        inputAmounts[segment + 1] - inputAmounts[segment], false);
+  }
+
+  /**
+   * Find the first input in the segment of this curve starting at a point whose output, fed to
+   * the next curve in its segment starting at a point, yields at least a target amount. Both
+   * segments must rise, and the target must be above what the next curve yields at the output of
+   * this curve at the start of its segment.
+   *
+   * @return the input, or the largest UInt64 if the target is beyond the end of either segment.
+   */
+  private long firstInputReaching(final int segment, final ArrayLiquidityCurve next,
+      final int nextSegment, final long target) {
+    final long[] nextInputs = next.inputAmounts;
+    final long[] nextOutputs = next.outputAmounts;
+    if (Long.compareUnsigned(target, nextOutputs[nextSegment]) < 0
+        || Long.compareUnsigned(target, nextOutputs[nextSegment + 1]) > 0) {
+      return -1L;
+    }
+    /* the least whole intermediate amount the next curve rounds down to at least the target */
+    final long intermediate = nextInputs[nextSegment] + multiplyDivide(
+        target - nextOutputs[nextSegment], nextInputs[nextSegment + 1] - nextInputs[nextSegment],
+        nextOutputs[nextSegment + 1] - nextOutputs[nextSegment], true);
+    if (Long.compareUnsigned(intermediate, outputAmounts[segment + 1]) > 0) {
+      return -1L;
+    }
+    return inputAmounts[segment] + multiplyDivide(intermediate - outputAmounts[segment],
+        inputAmounts[segment + 1] - inputAmounts[segment],
+        outputAmounts[segment + 1] - outputAmounts[segment], true);
+  }
+
+  /**
+   * Check whether the segment starting at a point yields a whole output amount for every input
+   * amount, so that evaluating it never rounds.
+   */
+  private boolean risesWhole(final int segment) {
+    return segment + 1 == inputAmounts.length
+        || Long.remainderUnsigned(outputAmounts[segment + 1] - outputAmounts[segment],
+            inputAmounts[segment + 1] - inputAmounts[segment]) == 0;
+  }
+
+  /**
+   * Get the most the output rises for one more input amount within the segment starting at a
+   * point, rounded up, or zero if the input amount is outside the segments of the curve.
+   */
+  private long stepAt(final int segment, final long inputAmount) {
+    if (segment + 1 == inputAmounts.length
+        || Long.compareUnsigned(inputAmount, inputAmounts[segment]) < 0) {
+      return 0;
+    }
+    return multiplyDivide(1, outputAmounts[segment + 1] - outputAmounts[segment],
+        inputAmounts[segment + 1] - inputAmounts[segment], true);
+  }
+
+  private static int append(final long[] amounts, final int count, final long amount) {
+    if (count > 0 && Long.compareUnsigned(amounts[count - 1], amount) >= 0) {
+      return count;
+    }
+    amounts[count] = amount;
+    return count + 1;
+  }
+
+  /**
+   * Compute {@code a * b / c} for unsigned amounts. The product is held in 128 bits when it does
+   * not fit in 64.
+   *
+   * @throws ArithmeticException if the quotient, once rounded, does not fit in 64 bits.
+   */
+  static long multiplyDivide(final long a, final long b, final long c, final boolean roundUp) {
+    final long low = a * b;
+    final long high = multiplyHighUnsigned(a, b);
+
+    if (high == 0) {
+      final long quotient = Long.divideUnsigned(low, c);
+      return roundUp && quotient * c != low ? increment(quotient) : quotient;
+    }
+    if (Long.compareUnsigned(high, c) >= 0) {
+      throw new ArithmeticException("Amount does not fit in a UInt64.");
+    }
+    return divideUnsigned(high, low, c, roundUp);
+  }
+
+  /**
+   * Compare the unsigned 128-bit products {@code a * b} and {@code c * d}, for instance to compare
+   * the rates {@code b / d} and {@code c / a} of two segments without dividing.
+   */
+  static int compareProducts(final long a, final long b, final long c, final long d) {
+    final int high = Long.compareUnsigned(multiplyHighUnsigned(a, b), multiplyHighUnsigned(c, d));
+    return high != 0 ? high : Long.compareUnsigned(a * b, c * d);
+  }
+
+  /**
+   * The upper 64 bits of the unsigned 128-bit product of two longs.
+   */
+  private static long multiplyHighUnsigned(final long x, final long y) {
+    final long x0 = x & LOWER_32_BITS;
+    final long x1 = x >>> 32;
+    final long y0 = y & LOWER_32_BITS;
+    final long y1 = y >>> 32;
+
+    final long w0 = x0 * y0;
+    final long t = x1 * y0 + (w0 >>> 32);
+    final long w1 = (t & LOWER_32_BITS) + x0 * y1;
+    return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+  }
+
+  /**
+   * Divide the unsigned 128-bit value {@code high:low} by {@code divisor}, where {@code high} is
+   * less than the divisor so that the quotient fits in 64 bits. This is the two digit long
+   * division of Hacker's Delight, section 9-4, in base 2^32.
+   */
+  private static long divideUnsigned(final long high, final long low, final long divisor,
+      final boolean roundUp) {
+    final long base = 1L << 32;
+
+    /* normalize so that the top bit of the divisor is set */
+    final int shift = Long.numberOfLeadingZeros(divisor);
+    final long v = divisor << shift;
+    final long vn1 = v >>> 32;
+    final long vn0 = v & LOWER_32_BITS;
+
+    final long un32 = shift == 0 ? high : (high << shift) | (low >>> (64 - shift));
+    final long un10 = low << shift;
+    final long un1 = un10 >>> 32;
+    final long un0 = un10 & LOWER_32_BITS;
+
+    long q1 = Long.divideUnsigned(un32, vn1);
+    long rhat = un32 - q1 * vn1;
+    while (Long.compareUnsigned(q1, base) >= 0
+        || Long.compareUnsigned(q1 * vn0, (rhat << 32) | un1) > 0) {
+      q1--;
+      rhat += vn1;
+      if (Long.compareUnsigned(rhat, base) >= 0) {
+        break;
+      }
+    }
+
+    final long un21 = (un32 << 32) + un1 - q1 * v;
+    long q0 = Long.divideUnsigned(un21, vn1);
+    rhat = un21 - q0 * vn1;
+    while (Long.compareUnsigned(q0, base) >= 0
+        || Long.compareUnsigned(q0 * vn0, (rhat << 32) | un0) > 0) {
+      q0--;
+      rhat += vn1;
+      if (Long.compareUnsigned(rhat, base) >= 0) {
+        break;
+      }
+    }
+
+    final long quotient = (q1 << 32) + q0;
+    final long remainder = (un21 << 32) + un0 - q0 * v;
+    return roundUp && remainder != 0 ? increment(quotient) : quotient;
+  }
+
+  /**
+   * Round an unsigned quotient up to the next amount.
+   *
+   * @throws ArithmeticException if the quotient is the largest UInt64.
+   */
+  private static long increment(final long quotient) {
+    if (quotient == -1L) {
+      throw new ArithmeticException("Amount does not fit in a UInt64.");
+    }
+    return quotient + 1;
+  }
+
+  /**
+   * Greedily removes the point of a curve whose removal has the smallest bound on the output
+   * lost, keeping the remaining points in a linked list and the candidates in a heap.
+   *
+   * <p>A point on or above the line between its neighbours is removed by joining them. A point
+   * below it is removed by extending the segment before it to the next point's input and lowering
+   * that point onto it. Neither raises the curve anywhere. Each segment carries a bound on how far
+   * it lies below the original curve, which grows by the height removed at each step.
+   */
+  private static final class Simplifier {
+
+    private final long[] inputs;
+    private final long[] outputs;
+    private final int[] previous;
+    private final int[] next;
+    /* a bound on the output lost in the segment starting at each point, or beyond the last */
+    private final long[] errors;
+    private final int[] versions;
+    private final PriorityQueue<Candidate> candidates;
+    private int size;
+
+    private Simplifier(final ArrayLiquidityCurve curve) {
+      this.size = curve.inputAmounts.length;
+      this.inputs = curve.inputAmounts;
+      this.outputs = curve.outputAmounts.clone();
+      this.previous = new int[size];
+      this.next = new int[size];
+      this.errors = new long[size];
+      this.versions = new int[size];
+      this.candidates = new PriorityQueue<>(Math.max(1, size));
+      for (int i = 0; i < size; i++) {
+        previous[i] = i - 1;
+        next[i] = i + 1;
+      }
+      for (int i = 1; i < size - 1; i++) {
+        candidates.add(candidate(i));
+      }
+    }
+
+    private ArrayLiquidityCurve simplify(final int maxPoints, final long maxError) {
+      while (!candidates.isEmpty()) {
+        final Candidate candidate = candidates.poll();
+        if (candidate.version != versions[candidate.point]) {
+          continue;
+        }
+        if (size <= maxPoints && Long.compareUnsigned(candidate.cost, maxError) > 0) {
+          break;
+        }
+        remove(candidate.point);
+      }
+
+      final long[] simplifiedInputs = new long[size];
+      final long[] simplifiedOutputs = new long[size];
+      for (int point = 0, i = 0; i < size; point = next[point], i++) {
+        simplifiedInputs[i] = inputs[point];
+        simplifiedOutputs[i] = outputs[point];
+      }
+      return new ArrayLiquidityCurve(simplifiedInputs, simplifiedOutputs);
+    }
+
+    private Candidate candidate(final int point) {
+      final int before = previous[point];
+      final int after = next[point];
+      final long lowered = loweredOutput(point);
+      final long cost;
+      if (lowered == outputs[after]) {
+        cost = saturatedAdd(unsignedMax(errors[before], errors[point]), heightAboveChord(point));
+      } else {
+        final long drop = outputs[after] - lowered;
+        cost = unsignedMax(saturatedAdd(unsignedMax(errors[before], errors[point]), drop),
+            saturatedAdd(errors[after], drop));
+      }
+      return new Candidate(cost, point, versions[point]);
+    }
+
+    private void remove(final int point) {
+      final int before = previous[point];
+      final int after = next[point];
+      final long lowered = loweredOutput(point);
+      final boolean lowers = lowered != outputs[after];
+      if (lowers) {
+        final long drop = outputs[after] - lowered;
+        errors[before] = saturatedAdd(unsignedMax(errors[before], errors[point]), drop);
+        errors[after] = saturatedAdd(errors[after], drop);
+        outputs[after] = lowered;
+      } else {
+        errors[before] = saturatedAdd(unsignedMax(errors[before], errors[point]),
+            heightAboveChord(point));
+      }
+
+      next[before] = after;
+      previous[after] = before;
+      versions[point]++;
+      size--;
+
+      /* candidates depend on the points and errors of their neighbours, which have changed */
+      update(previous[before]);
+      update(before);
+      update(after);
+      if (lowers && next[after] < inputs.length) {
+        update(next[after]);
+      }
+    }
+
+    private void update(final int point) {
+      if (point > 0 && next[point] < inputs.length) {
+        versions[point]++;
+        candidates.add(candidate(point));
+      }
+    }
+
+    /**
+     * The output of the point after {@code point} once the point is removed: unchanged if the
+     * point is on or above the chord between its neighbours, otherwise lowered onto the extension
+     * of the segment before the point.
+     */
+    private long loweredOutput(final int point) {
+      final int before = previous[point];
+      final int after = next[point];
+      final long chordRise = multiplyDivide(inputs[point] - inputs[before],
+          outputs[after] - outputs[before], inputs[after] - inputs[before], true);
+      if (Long.compareUnsigned(chordRise, outputs[point] - outputs[before]) <= 0) {
+        return outputs[after];
+      }
+      return outputs[before] + multiplyDivide(inputs[after] - inputs[before],
+          outputs[point] - outputs[before], inputs[point] - inputs[before], false);
+    }
+
+    private long heightAboveChord(final int point) {
+      final int before = previous[point];
+      final int after = next[point];
+      return outputs[point] - outputs[before] - multiplyDivide(inputs[point] - inputs[before],
+          outputs[after] - outputs[before], inputs[after] - inputs[before], false);
+    }
+
+    private static long unsignedMax(final long a, final long b) {
+      return Long.compareUnsigned(a, b) >= 0 ? a : b;
+    }
+
+    private static long saturatedAdd(final long a, final long b) {
+      final long sum = a + b;
+      return Long.compareUnsigned(sum, a) < 0 ? -1L : sum;
+    }
+  }
+
+  private static final class Candidate implements Comparable<Candidate> {
+
+    private final long cost;
+    private final int point;
+    private final int version;
+
+    private Candidate(final long cost, final int point, final int version) {
+      this.cost = cost;
+      this.point = point;
+      this.version = version;
+    }
+
+    @Override
+    public int compareTo(final Candidate other) {
+      final int byCost = Long.compareUnsigned(cost, other.cost);
+      return byCost != 0 ? byCost : Integer.compare(point, other.point);
+    }
+  }
+
+  static long toUnsignedLong(final BigInteger amount) {
+    if (amount.signum() < 0 || amount.compareTo(MAX_UINT64) > 0) {
+      throw new IllegalArgumentException("Liquidity amounts must be UInt64 values.");
+    }
+    return amount.longValue();
+  }
+
+  static BigInteger toBigInteger(final long unsigned) {
+    final BigInteger value = BigInteger.valueOf(unsigned & Long.MAX_VALUE);
+    return unsigned < 0 ? value.setBit(63) : value;
+  }
+
+}
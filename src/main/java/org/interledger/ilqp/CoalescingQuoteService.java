@@ -0,0 +1,152 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A {@link QuoteService} that collapses concurrent identical quote requests into a single call to
+ * the service it wraps, so that the load on connectors does not grow with the number of senders
+ * asking for the same quote at once.
+ *
+ * <p>Requests are identical if they are equal, which for the builders' implementations means equal
+ * in value, and are made with the same selection strategy or of the same connector. The first such
+ * request calls the wrapped service while the others wait for its result, which all of them then
+ * receive, including any {@link InterledgerQuotingException}. Nothing is cached: once the call
+ * completes the next identical request calls the wrapped service again.
+ *
+ * @param <T> the type of the quote requests.
+ * @param <R> the type of the quote responses.
+ */
+public class CoalescingQuoteService<T extends QuoteRequest, R extends QuoteResponse>
+    implements QuoteService<T, R> {
+
+  private final QuoteService<T, R> delegate;
+  private final Map<Key, CompletableFuture<R>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder upstreamRequests = new LongAdder();
+  private final LongAdder collapsedRequests = new LongAdder();
+
+  /**
+   * Wraps a quote service.
+   *
+   * @param delegate The service to make coalesced requests to.
+   */
+  public CoalescingQuoteService(final QuoteService<T, R> delegate) {
+    this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+  }
+
+  @Override
+  public R requestQuote(final T quoteRequest, final QuoteSelectionStrategy selectionStrategy)
+      throws InterledgerQuotingException {
+    Objects.requireNonNull(quoteRequest);
+    Objects.requireNonNull(selectionStrategy);
+    return coalesce(new Key(quoteRequest, selectionStrategy),
+        () -> delegate.requestQuote(quoteRequest, selectionStrategy));
+  }
+
+  @Override
+  public R requestQuote(final T quoteRequest, final InterledgerAddress connector)
+      throws InterledgerQuotingException {
+    Objects.requireNonNull(quoteRequest);
+    Objects.requireNonNull(connector);
+    return coalesce(new Key(quoteRequest, connector),
+        () -> delegate.requestQuote(quoteRequest, connector));
+  }
+
+  /**
+   * Get the number of requests made to the wrapped service.
+   *
+   * @return the number of upstream requests.
+   */
+  public long getUpstreamRequests() {
+    return upstreamRequests.sum();
+  }
+
+  /**
+   * Get the number of requests answered by waiting for an identical request in flight instead of
+   * calling the wrapped service.
+   *
+   * @return the number of collapsed requests.
+   */
+  public long getCollapsedRequests() {
+    return collapsedRequests.sum();
+  }
+
+  private R coalesce(final Key key, final Supplier<R> request) {
+    final CompletableFuture<R> call = new CompletableFuture<>();
+    final CompletableFuture<R> existing = inFlight.putIfAbsent(key, call);
+    if (existing != null) {
+      collapsedRequests.increment();
+      return await(existing);
+    }
+
+    upstreamRequests.increment();
+    try {
+      final R response = request.get();
+      call.complete(response);
+      return response;
+    } catch (Throwable e) {
+      /* complete on errors too, or the waiters would wait forever */
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, call);
+    }
+  }
+
+  private R await(final CompletableFuture<R> call) {
+    try {
+      return call.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterledgerQuotingException("Interrupted while waiting for quote", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof InterledgerQuotingException) {
+        throw (InterledgerQuotingException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new InterledgerQuotingException("Error requesting quote", e.getCause());
+    }
+  }
+
+  /**
+   * A request together with the strategy or connector it is made with.
+   */
+  private static final class Key {
+
+    private final QuoteRequest request;
+    private final Object target;
+
+    private Key(final QuoteRequest request, final Object target) {
+      this.request = request;
+      this.target = target;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final Key key = (Key) obj;
+      return request.equals(key.request) && target.equals(key.target);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * request.hashCode() + target.hashCode();
+    }
+  }
+
+}
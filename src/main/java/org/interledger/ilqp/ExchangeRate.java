@@ -0,0 +1,216 @@
+package org.interledger.ilqp;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * An exchange rate between the amounts of two ledgers, held as a ratio of two positive longs in
+ * lowest terms so that amounts can be converted exactly without {@link BigDecimal} arithmetic.
+ *
+ * <p>Amounts are the unsigned integers carried by ILP and ILQP packets. A rate that is quoted
+ * between whole units of assets whose ledgers use different scales, say dollars at a scale of 2
+ * and euros at a scale of 9, is adjusted to the ledgers' integer amounts with
+ * {@link #withScales(int, int)}.
+ */
+public final class ExchangeRate {
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final long numerator;
+  private final long denominator;
+
+  private ExchangeRate(final long numerator, final long denominator) {
+    this.numerator = numerator;
+    this.denominator = denominator;
+  }
+
+  /**
+   * Create a rate that converts {@code denominator} source units into {@code numerator}
+   * destination units.
+   *
+   * @param numerator   The destination amount of the ratio.
+   * @param denominator The source amount of the ratio.
+   *
+   * @return the rate, in lowest terms.
+   */
+  public static ExchangeRate of(final long numerator, final long denominator) {
+    if (numerator <= 0) {
+      throw new IllegalArgumentException("numerator must be positive");
+    }
+    if (denominator <= 0) {
+      throw new IllegalArgumentException("denominator must be positive");
+    }
+    final long divisor = gcd(numerator, denominator);
+    return new ExchangeRate(numerator / divisor, denominator / divisor);
+  }
+
+  /**
+   * Create a rate from a decimal number of destination units per source unit.
+   *
+   * @param rate The positive decimal rate.
+   *
+   * @return the rate, in lowest terms.
+   *
+   * @throws ArithmeticException if the rate cannot be held exactly as a ratio of two longs.
+   */
+  public static ExchangeRate of(final BigDecimal rate) {
+    Objects.requireNonNull(rate);
+    if (rate.signum() <= 0) {
+      throw new IllegalArgumentException("rate must be positive");
+    }
+    final BigDecimal stripped = rate.stripTrailingZeros();
+    BigInteger numerator = stripped.unscaledValue();
+    BigInteger denominator = BigInteger.ONE;
+    if (stripped.scale() > 0) {
+      denominator = BigInteger.TEN.pow(stripped.scale());
+    } else {
+      numerator = numerator.multiply(BigInteger.TEN.pow(-stripped.scale()));
+    }
+    final BigInteger divisor = numerator.gcd(denominator);
+    numerator = numerator.divide(divisor);
+    denominator = denominator.divide(divisor);
+    if (numerator.bitLength() > 63 || denominator.bitLength() > 63) {
+      throw new ArithmeticException("Exchange rate " + rate + " does not fit in two longs.");
+    }
+    return new ExchangeRate(numerator.longValue(), denominator.longValue());
+  }
+
+  public long getNumerator() {
+    return numerator;
+  }
+
+  public long getDenominator() {
+    return denominator;
+  }
+
+  /**
+   * Adjust a rate between whole units to the integer amounts of ledgers with the given scales,
+   * where an amount of {@code n} on a ledger of scale {@code s} is {@code n / 10^s} whole units.
+   *
+   * @param sourceScale      The scale of the source ledger.
+   * @param destinationScale The scale of the destination ledger.
+   *
+   * @return the adjusted rate, in lowest terms.
+   *
+   * @throws ArithmeticException if the adjusted rate cannot be held as a ratio of two longs.
+   */
+  public ExchangeRate withScales(final int sourceScale, final int destinationScale) {
+    final int shift = destinationScale - sourceScale;
+    if (shift == 0) {
+      return this;
+    }
+    if (Math.abs(shift) >= POWERS_OF_TEN.length) {
+      throw new ArithmeticException("Scale difference " + shift + " is too large.");
+    }
+    final long power = POWERS_OF_TEN[Math.abs(shift)];
+    try {
+      if (shift > 0) {
+        final long divisor = gcd(power, denominator);
+        return new ExchangeRate(Math.multiplyExact(numerator, power / divisor),
+            denominator / divisor);
+      }
+      final long divisor = gcd(power, numerator);
+      return new ExchangeRate(numerator / divisor,
+          Math.multiplyExact(denominator, power / divisor));
+    } catch (ArithmeticException e) {
+      throw new ArithmeticException("Exchange rate " + this + " at scales " + sourceScale
+          + " and " + destinationScale + " does not fit in two longs.");
+    }
+  }
+
+  /**
+   * Get the rate that converts in the opposite direction.
+   *
+   * @return the inverse rate.
+   */
+  public ExchangeRate inverse() {
+    return new ExchangeRate(denominator, numerator);
+  }
+
+  /**
+   * Convert a source amount to a destination amount. The product of the amount and the numerator
+   * is held in 128 bits, so only a result that does not fit in a UInt64 overflows.
+   *
+   * @param amount   The unsigned source amount.
+   * @param rounding The direction to round a fractional result in: {@link RoundingMode#DOWN} or
+   *                 {@link RoundingMode#FLOOR} to round down, {@link RoundingMode#UP} or
+   *                 {@link RoundingMode#CEILING} to round up.
+   *
+   * @return the unsigned destination amount.
+   *
+   * @throws ArithmeticException if the destination amount does not fit in a UInt64.
+   */
+  public long convert(final long amount, final RoundingMode rounding) {
+    return ArrayLiquidityCurve.multiplyDivide(amount, numerator, denominator, roundUp(rounding));
+  }
+
+  /**
+   * Convert a source amount to a destination amount. See {@link #convert(long, RoundingMode)}.
+   *
+   * @param amount   The source amount, a UInt64.
+   * @param rounding The direction to round a fractional result in.
+   *
+   * @return the destination amount.
+   *
+   * @throws ArithmeticException if the destination amount does not fit in a UInt64.
+   */
+  public BigInteger convert(final BigInteger amount, final RoundingMode rounding) {
+    return ArrayLiquidityCurve.toBigInteger(
+        convert(ArrayLiquidityCurve.toUnsignedLong(amount), rounding));
+  }
+
+  private static boolean roundUp(final RoundingMode rounding) {
+    switch (rounding) {
+      case UP:
+      case CEILING:
+        return true;
+      case DOWN:
+      case FLOOR:
+        return false;
+      default:
+        throw new IllegalArgumentException(
+            "rounding must be one of UP, DOWN, CEILING or FLOOR, not " + rounding);
+    }
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      final long remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final ExchangeRate other = (ExchangeRate) obj;
+    return numerator == other.numerator && denominator == other.denominator;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(numerator) + Long.hashCode(denominator);
+  }
+
+  @Override
+  public String toString() {
+    return "ExchangeRate{" + numerator + "/" + denominator + "}";
+  }
+
+}
@@ -0,0 +1,233 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Converts amounts between ledgers at the {@link ExchangeRate} for each pair of source and
+ * destination ledger prefixes.
+ *
+ * <p>The rates are held in an immutable snapshot, a map of source prefixes to maps of destination
+ * prefixes to rates, which conversions read without locking or allocating. Updates copy the
+ * snapshot, apply any number of changes to the copy and publish it in one step, so a conversion
+ * sees either all or none of the changes of an {@link Update}. This suits rate tables of up to a
+ * few thousand pairs that are read far more often than they change.
+ */
+public class ExchangeRateTable {
+
+  private volatile Map<String, Map<String, ExchangeRate>> rates = Collections.emptyMap();
+
+  /**
+   * Get the rate from one ledger to another.
+   *
+   * @param sourceLedger      The source ledger prefix.
+   * @param destinationLedger The destination ledger prefix.
+   *
+   * @return the rate, or null if there is none for the pair.
+   */
+  public ExchangeRate get(final InterledgerAddress sourceLedger,
+      final InterledgerAddress destinationLedger) {
+    Objects.requireNonNull(sourceLedger);
+    Objects.requireNonNull(destinationLedger);
+    final Map<String, ExchangeRate> destinations = rates.get(sourceLedger.getValue());
+    return destinations == null ? null : destinations.get(destinationLedger.getValue());
+  }
+
+  /**
+   * Convert an amount from one ledger to another. See
+   * {@link ExchangeRate#convert(long, RoundingMode)}.
+   *
+   * @param sourceLedger      The source ledger prefix.
+   * @param destinationLedger The destination ledger prefix.
+   * @param amount            The unsigned source amount.
+   * @param rounding          The direction to round a fractional result in.
+   *
+   * @return the unsigned destination amount.
+   *
+   * @throws InterledgerQuotingException if there is no rate for the pair.
+   * @throws ArithmeticException         if the destination amount does not fit in a UInt64.
+   */
+  public long convert(final InterledgerAddress sourceLedger,
+      final InterledgerAddress destinationLedger, final long amount, final RoundingMode rounding) {
+    return require(sourceLedger, destinationLedger).convert(amount, rounding);
+  }
+
+  /**
+   * Convert an amount from one ledger to another. See
+   * {@link ExchangeRate#convert(BigInteger, RoundingMode)}.
+   *
+   * @param sourceLedger      The source ledger prefix.
+   * @param destinationLedger The destination ledger prefix.
+   * @param amount            The source amount, a UInt64.
+   * @param rounding          The direction to round a fractional result in.
+   *
+   * @return the destination amount.
+   *
+   * @throws InterledgerQuotingException if there is no rate for the pair.
+   * @throws ArithmeticException         if the destination amount does not fit in a UInt64.
+   */
+  public BigInteger convert(final InterledgerAddress sourceLedger,
+      final InterledgerAddress destinationLedger, final BigInteger amount,
+      final RoundingMode rounding) {
+    return require(sourceLedger, destinationLedger).convert(amount, rounding);
+  }
+
+  /**
+   * Set the rate from one ledger to another, replacing any rate for the pair.
+   *
+   * @param sourceLedger      The source ledger prefix.
+   * @param destinationLedger The destination ledger prefix.
+   * @param rate              The exchange rate.
+   */
+  public void put(final InterledgerAddress sourceLedger,
+      final InterledgerAddress destinationLedger, final ExchangeRate rate) {
+    update().put(sourceLedger, destinationLedger, rate).apply();
+  }
+
+  /**
+   * Remove the rate from one ledger to another.
+   *
+   * @param sourceLedger      The source ledger prefix.
+   * @param destinationLedger The destination ledger prefix.
+   */
+  public void remove(final InterledgerAddress sourceLedger,
+      final InterledgerAddress destinationLedger) {
+    update().remove(sourceLedger, destinationLedger).apply();
+  }
+
+  /**
+   * Start a set of changes to apply to the table at once.
+   *
+   * @return an {@link Update} that changes this table when applied.
+   */
+  public Update update() {
+    return new Update();
+  }
+
+  /**
+   * Get the number of pairs of ledgers with a rate.
+   *
+   * @return the number of rates.
+   */
+  public int size() {
+    int size = 0;
+    for (Map<String, ExchangeRate> destinations : rates.values()) {
+      size += destinations.size();
+    }
+    return size;
+  }
+
+  private ExchangeRate require(final InterledgerAddress sourceLedger,
+      final InterledgerAddress destinationLedger) {
+    final ExchangeRate rate = get(sourceLedger, destinationLedger);
+    if (rate == null) {
+      throw new InterledgerQuotingException(
+          "No exchange rate from " + sourceLedger + " to " + destinationLedger + ".");
+    }
+    return rate;
+  }
+
+  /**
+   * A set of changes to the rates of an {@link ExchangeRateTable}, applied in the order they were
+   * made. Changes take effect together, when {@link #apply()} is called.
+   */
+  public class Update {
+
+    private final List<Change> changes = new ArrayList<>();
+    private boolean clear;
+
+    private Update() {
+    }
+
+    /**
+     * Set the rate from one ledger to another.
+     *
+     * @param sourceLedger      The source ledger prefix.
+     * @param destinationLedger The destination ledger prefix.
+     * @param rate              The exchange rate.
+     * @return This {@link Update} instance.
+     */
+    public Update put(final InterledgerAddress sourceLedger,
+        final InterledgerAddress destinationLedger, final ExchangeRate rate) {
+      changes.add(new Change(Objects.requireNonNull(sourceLedger).getValue(),
+          Objects.requireNonNull(destinationLedger).getValue(), Objects.requireNonNull(rate)));
+      return this;
+    }
+
+    /**
+     * Remove the rate from one ledger to another.
+     *
+     * @param sourceLedger      The source ledger prefix.
+     * @param destinationLedger The destination ledger prefix.
+     * @return This {@link Update} instance.
+     */
+    public Update remove(final InterledgerAddress sourceLedger,
+        final InterledgerAddress destinationLedger) {
+      changes.add(new Change(Objects.requireNonNull(sourceLedger).getValue(),
+          Objects.requireNonNull(destinationLedger).getValue(), null));
+      return this;
+    }
+
+    /**
+     * Remove all rates, including those put by this update so far, so that the table holds only
+     * the rates put after this call when the update is applied.
+     *
+     * @return This {@link Update} instance.
+     */
+    public Update clear() {
+      changes.clear();
+      clear = true;
+      return this;
+    }
+
+    /**
+     * Apply the changes to the table.
+     */
+    public void apply() {
+      synchronized (ExchangeRateTable.this) {
+        final Map<String, Map<String, ExchangeRate>> updated =
+            clear ? new HashMap<>() : new HashMap<>(rates);
+        /* copy each inner map once before changing it, since the published ones are shared */
+        final Map<String, Map<String, ExchangeRate>> copied = new HashMap<>();
+        for (Change change : changes) {
+          Map<String, ExchangeRate> destinations = copied.get(change.source);
+          if (destinations == null) {
+            final Map<String, ExchangeRate> published = updated.get(change.source);
+            destinations = published == null ? new HashMap<>() : new HashMap<>(published);
+            copied.put(change.source, destinations);
+            updated.put(change.source, destinations);
+          }
+          if (change.rate == null) {
+            destinations.remove(change.destination);
+          } else {
+            destinations.put(change.destination, change.rate);
+          }
+        }
+        updated.values().removeIf(Map::isEmpty);
+        rates = updated;
+      }
+    }
+  }
+
+  private static final class Change {
+
+    private final String source;
+    private final String destination;
+    private final ExchangeRate rate;
+
+    private Change(final String source, final String destination, final ExchangeRate rate) {
+      this.source = source;
+      this.destination = destination;
+      this.rate = rate;
+    }
+  }
+
+}
@@ -0,0 +1,233 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link QuoteService} that sends each quote request to a set of connectors at once through a
+ * {@link QuoteTransport}, so that a quote takes as long as the connectors needed to answer it
+ * rather than the sum of all of them.
+ *
+ * <p>Responses are collected until a quorum of connectors has responded, every connector has
+ * responded or failed, or the timeout elapses, whichever comes first. The selection strategy is
+ * then applied to the responses received so far and any outstanding requests are cancelled.
+ *
+ * @param <T> the type of the quote requests.
+ * @param <R> the type of the quote responses.
+ */
+public class FanOutQuoteService<T extends QuoteRequest, R extends QuoteResponse>
+    implements QuoteService<T, R> {
+
+  private final QuoteTransport<T, R> transport;
+  private final List<InterledgerAddress> connectors;
+  private final long timeoutNanos;
+  private final int quorum;
+
+  private FanOutQuoteService(final Builder<T, R> builder) {
+    this.transport = builder.transport;
+    this.connectors = Collections.unmodifiableList(new ArrayList<>(builder.connectors));
+    this.timeoutNanos = builder.timeout.toNanos();
+    this.quorum = builder.quorum == 0 ? connectors.size()
+        : Math.min(builder.quorum, connectors.size());
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @param <T> the type of the quote requests.
+   * @param <R> the type of the quote responses.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static <T extends QuoteRequest, R extends QuoteResponse> Builder<T, R> builder() {
+    return new Builder<>();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public R requestQuote(final T quoteRequest, final QuoteSelectionStrategy selectionStrategy)
+      throws InterledgerQuotingException {
+    Objects.requireNonNull(quoteRequest);
+    Objects.requireNonNull(selectionStrategy);
+
+    final Collector collector = new Collector();
+    final List<CompletableFuture<R>> requests = new ArrayList<>(connectors.size());
+    for (InterledgerAddress connector : connectors) {
+      final CompletableFuture<R> request;
+      try {
+        request = transport.send(quoteRequest, connector);
+      } catch (RuntimeException e) {
+        collector.failed();
+        continue;
+      }
+      requests.add(request);
+      request.whenComplete((response, error) -> {
+        if (response != null) {
+          collector.received(response);
+        } else {
+          collector.failed();
+        }
+      });
+    }
+
+    final Set<R> responses;
+    try {
+      responses = collector.await(System.nanoTime() + timeoutNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterledgerQuotingException("Interrupted while waiting for quotes", e);
+    } finally {
+      for (CompletableFuture<R> request : requests) {
+        request.cancel(true);
+      }
+    }
+
+    return responses.isEmpty() ? null : (R) selectionStrategy.apply(responses);
+  }
+
+  @Override
+  public R requestQuote(final T quoteRequest, final InterledgerAddress connector)
+      throws InterledgerQuotingException {
+    Objects.requireNonNull(quoteRequest);
+    Objects.requireNonNull(connector);
+
+    final CompletableFuture<R> request = transport.send(quoteRequest, connector);
+    try {
+      return request.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | CancellationException e) {
+      return null;
+    } catch (ExecutionException e) {
+      throw new InterledgerQuotingException("Error requesting quote from " + connector.getValue(),
+          e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterledgerQuotingException("Interrupted while waiting for quote", e);
+    } finally {
+      request.cancel(true);
+    }
+  }
+
+  /**
+   * Gathers the responses to one fanned out request, and wakes the requesting thread once no more
+   * are needed.
+   */
+  private final class Collector {
+
+    private final Set<R> responses = new HashSet<>();
+    private int received;
+    private int completed;
+
+    private synchronized void received(final R response) {
+      responses.add(response);
+      received++;
+      completed++;
+      notifyAll();
+    }
+
+    private synchronized void failed() {
+      completed++;
+      notifyAll();
+    }
+
+    private synchronized Set<R> await(final long deadlineNanos) throws InterruptedException {
+      long remaining = deadlineNanos - System.nanoTime();
+      while (received < quorum && completed < connectors.size() && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadlineNanos - System.nanoTime();
+      }
+      return new HashSet<>(responses);
+    }
+  }
+
+  /**
+   * A builder for instances of {@link FanOutQuoteService}.
+   *
+   * @param <T> the type of the quote requests.
+   * @param <R> the type of the quote responses.
+   */
+  public static class Builder<T extends QuoteRequest, R extends QuoteResponse> {
+
+    private QuoteTransport<T, R> transport;
+    private final List<InterledgerAddress> connectors = new ArrayList<>();
+    private Duration timeout = Duration.ofSeconds(5);
+    private int quorum;
+
+    /**
+     * Sets the transport used to deliver quote requests.
+     *
+     * @param transport An instance of {@link QuoteTransport}.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<T, R> transport(final QuoteTransport<T, R> transport) {
+      this.transport = Objects.requireNonNull(transport, "transport must not be null");
+      return this;
+    }
+
+    /**
+     * Adds a connector to request quotes of.
+     *
+     * @param connector The ILP address of the connector.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<T, R> connector(final InterledgerAddress connector) {
+      this.connectors.add(Objects.requireNonNull(connector, "connector must not be null"));
+      return this;
+    }
+
+    /**
+     * Sets the longest time to wait for responses before selecting among those received.
+     *
+     * @param timeout The timeout.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<T, R> timeout(final Duration timeout) {
+      Objects.requireNonNull(timeout, "timeout must not be null");
+      if (timeout.isNegative() || timeout.isZero()) {
+        throw new IllegalArgumentException("timeout must be positive");
+      }
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Sets the number of responses after which to stop waiting for the remaining connectors. By
+     * default every connector is waited for until the timeout.
+     *
+     * @param quorum The number of responses that is enough.
+     * @return This {@link Builder} instance.
+     */
+    public Builder<T, R> quorum(final int quorum) {
+      if (quorum < 1) {
+        throw new IllegalArgumentException("quorum must be positive");
+      }
+      this.quorum = quorum;
+      return this;
+    }
+
+    /**
+     * Builds the service.
+     *
+     * @return A new {@link FanOutQuoteService} instance.
+     */
+    public FanOutQuoteService<T, R> build() {
+      Objects.requireNonNull(transport, "transport must not be null");
+      if (connectors.isEmpty()) {
+        throw new IllegalArgumentException("at least one connector is required");
+      }
+      return new FanOutQuoteService<>(this);
+    }
+  }
+
+}
@@ -1,11 +1,10 @@
 package org.interledger.ilqp;
 
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
  * Liquidity curves describe the relationship between input and output amount for a given path
@@ -32,6 +31,26 @@ public interface LiquidityCurve {
 
   public Collection<LiquidityPoint> getLiquidityPoints();
 
+  /**
+   * Returns the output amount for an input amount, interpolating between points and rounding
+   * down. Input amounts below the first point yield zero, and input amounts beyond the last point
+   * yield the output amount of the last point.
+   *
+   * @param inputAmount A non-negative {@link BigInteger} amount.
+   * @return The {@link BigInteger} output amount.
+   */
+  BigInteger outputFor(BigInteger inputAmount);
+
+  /**
+   * Returns the smallest input amount that yields an output amount, interpolating between points
+   * and rounding up.
+   *
+   * @param outputAmount A non-negative {@link BigInteger} amount.
+   * @return The {@link BigInteger} input amount.
+   * @throws InterledgerQuotingException If the output amount exceeds that of the last point.
+   */
+  BigInteger inputFor(BigInteger outputAmount);
+
   /**
    * A builder for instances of {@link LiquidityCurve}.
    */
@@ -66,60 +85,16 @@ public interface LiquidityCurve {
     /**
      * The method that actually constructs a {@link LiquidityCurve} instance.
      * 
-     * @return An instance of {@link LiquidityCurve}.
+     * @return An instance of {@link LiquidityCurve}, backed by an {@link ArrayLiquidityCurve}.
+     * @throws IllegalArgumentException If two points have the same input amount, the amounts are
+     *                                  not increasing, or an amount is not a UInt64.
      */
     public LiquidityCurve build() {
-      return new Builder.Impl(this);
+      return ArrayLiquidityCurve.of(points);
     }
 
     public static Builder builder() {
       return new Builder();
     }
-
-    /**
-     * Concrete implementation of {@link LiquidityCurve}.
-     */
-    private static class Impl implements LiquidityCurve {
-      private final SortedSet<LiquidityPoint> curve;
-
-      private Impl(Builder builder) {
-        Objects.requireNonNull(builder);
-
-        Objects.requireNonNull(builder.points, "liquiditypoints must not be null!");
-
-        this.curve = new TreeSet<>();
-
-        this.curve.addAll(builder.points);
-      }
-
-      @Override
-      public Collection<LiquidityPoint> getLiquidityPoints() {
-        return this.curve;
-      }
-
-      @Override
-      public int hashCode() {
-        return Objects.hashCode(curve);
-      }
-
-      @Override
-      public boolean equals(Object obj) {
-        if (this == obj) {
-          return true;
-        }
-
-        if (obj == null || getClass() != obj.getClass()) {
-          return false;
-        }
-
-        Impl impl = (Impl) obj;
-        return curve.equals(impl.curve);
-      }
-
-      @Override
-      public String toString() {
-        return "LiquidityCurve.Impl{curve=" + curve + "}";
-      }
-    }
   }
 }
@@ -0,0 +1,353 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the liquidity curves of many address prefixes packed into a single buffer, by default
+ * outside the heap, and evaluates them in place.
+ *
+ * <p>Each curve occupies 16 bytes per point: its input amounts followed by its output amounts, as
+ * unsigned longs. An index maps each prefix to the buffer, offset and number of points of its
+ * curve. Replacing a curve appends the new points and swaps the prefix's index entry, so readers
+ * see either the old curve or the new one and never block. The space of replaced curves is
+ * reclaimed by compacting the live curves into a new buffer once the current one is full, so curve
+ * churn creates no garbage beyond one small index entry per replacement.
+ *
+ * <p>Lookups by destination use the curve of the longest stored prefix of the destination, as
+ * {@link LiquidityQuoteCache} does.
+ */
+public class LiquidityCurveStore {
+
+  private static final int AMOUNT_BYTES = Long.BYTES;
+
+  private final boolean direct;
+  private final Map<String, Slot> index = new ConcurrentHashMap<>();
+
+  /* the buffer new curves are appended to, and the number of bytes of it in use; guarded by this */
+  private ByteBuffer buffer;
+  private int used;
+  private long liveBytes;
+
+  private LiquidityCurveStore(final Builder builder) {
+    this.direct = builder.direct;
+    this.buffer = allocate(builder.initialPoints * 2 * AMOUNT_BYTES);
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Store the curve for a prefix, replacing any curve already stored for it.
+   *
+   * @param prefix The address prefix, or address, the curve applies to.
+   * @param curve  The liquidity curve.
+   */
+  public void put(final InterledgerAddress prefix, final ArrayLiquidityCurve curve) {
+    Objects.requireNonNull(prefix);
+    Objects.requireNonNull(curve);
+    final int points = curve.size();
+    final int length = points * 2 * AMOUNT_BYTES;
+
+    synchronized (this) {
+      if (buffer.capacity() - used < length) {
+        compact(length);
+      }
+      final int offset = used;
+      for (int i = 0; i < points; i++) {
+        buffer.putLong(offset + i * AMOUNT_BYTES, curve.getInputAmount(i));
+        buffer.putLong(offset + (points + i) * AMOUNT_BYTES, curve.getOutputAmount(i));
+      }
+      used += length;
+      liveBytes += length;
+
+      final Slot previous = index.put(prefix.getValue(), new Slot(buffer, offset, points));
+      if (previous != null) {
+        liveBytes -= previous.points * 2 * AMOUNT_BYTES;
+      }
+    }
+  }
+
+  /**
+   * Remove the curve stored for a prefix.
+   *
+   * @param prefix The address prefix, or address, the curve applies to.
+   *
+   * @return true if a curve was removed.
+   */
+  public boolean remove(final InterledgerAddress prefix) {
+    Objects.requireNonNull(prefix);
+    synchronized (this) {
+      final Slot previous = index.remove(prefix.getValue());
+      if (previous == null) {
+        return false;
+      }
+      liveBytes -= previous.points * 2 * AMOUNT_BYTES;
+      return true;
+    }
+  }
+
+  /**
+   * Get a copy of the curve stored for a prefix.
+   *
+   * @param prefix The address prefix, or address, the curve applies to.
+   *
+   * @return the curve, or null if none is stored for exactly this prefix.
+   */
+  public ArrayLiquidityCurve get(final InterledgerAddress prefix) {
+    Objects.requireNonNull(prefix);
+    final Slot slot = index.get(prefix.getValue());
+    if (slot == null) {
+      return null;
+    }
+
+    final long[] inputs = new long[slot.points];
+    final long[] outputs = new long[slot.points];
+    for (int i = 0; i < slot.points; i++) {
+      inputs[i] = slot.input(i);
+      outputs[i] = slot.output(i);
+    }
+    return ArrayLiquidityCurve.of(inputs, outputs);
+  }
+
+  /**
+   * Get the amount delivered to a destination for an input amount, by the curve of the longest
+   * stored prefix of the destination. See {@link ArrayLiquidityCurve#outputFor(long)}.
+   *
+   * @param destination The destination address.
+   * @param inputAmount The unsigned input amount.
+   *
+   * @return the unsigned output amount, rounded down.
+   *
+   * @throws InterledgerQuotingException if no curve applies to the destination.
+   */
+  public long outputFor(final InterledgerAddress destination, final long inputAmount) {
+    final Slot slot = find(destination);
+    final int last = slot.points - 1;
+    if (last < 0 || Long.compareUnsigned(inputAmount, slot.input(0)) < 0) {
+      return 0;
+    }
+    if (Long.compareUnsigned(inputAmount, slot.input(last)) >= 0) {
+      return slot.output(last);
+    }
+
+    int low = 0;
+    int high = last;
+    while (high - low > 1) {
+      final int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(slot.input(mid), inputAmount) <= 0) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+
+    final long lowInput = slot.input(low);
+    final long lowOutput = slot.output(low);
+    return lowOutput + ArrayLiquidityCurve.multiplyDivide(inputAmount - lowInput,
+        slot.output(high) - lowOutput, slot.input(high) - lowInput, false);
+  }
+
+  /**
+   * Get the smallest input amount that delivers an output amount to a destination, by the curve
+   * of the longest stored prefix of the destination. See
+   * {@link ArrayLiquidityCurve#inputFor(long)}.
+   *
+   * @param destination  The destination address.
+   * @param outputAmount The unsigned output amount.
+   *
+   * @return the unsigned input amount, rounded up.
+   *
+   * @throws InterledgerQuotingException if no curve applies to the destination, or the output
+   *                                     amount exceeds its liquidity.
+   */
+  public long inputFor(final InterledgerAddress destination, final long outputAmount) {
+    final Slot slot = find(destination);
+    final int last = slot.points - 1;
+    if (last < 0 || Long.compareUnsigned(outputAmount, slot.output(last)) > 0) {
+      throw new InterledgerQuotingException(
+          "Output amount " + Long.toUnsignedString(outputAmount) + " exceeds liquidity.");
+    }
+    if (Long.compareUnsigned(outputAmount, slot.output(0)) <= 0) {
+      return slot.input(0);
+    }
+
+    int low = 0;
+    int high = last;
+    while (high - low > 1) {
+      final int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(slot.output(mid), outputAmount) < 0) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+
+    final long lowInput = slot.input(low);
+    final long lowOutput = slot.output(low);
+    return lowInput + ArrayLiquidityCurve.multiplyDivide(outputAmount - lowOutput,
+        slot.input(high) - lowInput, slot.output(high) - lowOutput, true);
+  }
+
+  /**
+   * Get the number of curves stored.
+   *
+   * @return the number of prefixes with a curve.
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Get the number of bytes held by stored curves, excluding space left by replaced curves that
+   * has not yet been reclaimed.
+   *
+   * @return the live bytes.
+   */
+  public synchronized long getLiveBytes() {
+    return liveBytes;
+  }
+
+  /**
+   * Get the size of the buffer curves are packed into.
+   *
+   * @return the capacity in bytes.
+   */
+  public synchronized long getCapacityBytes() {
+    return buffer.capacity();
+  }
+
+  private Slot find(final InterledgerAddress destination) {
+    Objects.requireNonNull(destination);
+    final String address = destination.getValue();
+
+    Slot slot = index.get(address);
+    int end = address.length() - 1;
+    while (slot == null && end > 0) {
+      end = address.lastIndexOf('.', end - 1);
+      if (end < 0) {
+        break;
+      }
+      slot = index.get(address.substring(0, end + 1));
+    }
+    if (slot == null) {
+      throw new InterledgerQuotingException("No liquidity curve applies to " + address + ".");
+    }
+    return slot;
+  }
+
+  /**
+   * Copy the live curves into a new buffer with room for at least {@code required} more bytes,
+   * and point the index at the copies. Readers holding the old slots keep reading the old buffer
+   * until they are done with it.
+   */
+  private void compact(final int required) {
+    final long needed = liveBytes + required;
+    final long capacity = Math.max(needed * 2, buffer.capacity());
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Liquidity curves exceed the maximum store size.");
+    }
+
+    final ByteBuffer compacted = allocate((int) capacity);
+    int offset = 0;
+    for (Map.Entry<String, Slot> entry : index.entrySet()) {
+      final Slot slot = entry.getValue();
+      final int length = slot.points * 2 * AMOUNT_BYTES;
+      final ByteBuffer source = slot.buffer.duplicate();
+      source.limit(slot.offset + length).position(slot.offset);
+      compacted.position(offset);
+      compacted.put(source);
+      entry.setValue(new Slot(compacted, offset, slot.points));
+      offset += length;
+    }
+    compacted.clear();
+
+    buffer = compacted;
+    used = offset;
+  }
+
+  private ByteBuffer allocate(final int capacity) {
+    final ByteBuffer allocated = direct ? ByteBuffer.allocateDirect(capacity)
+        : ByteBuffer.allocate(capacity);
+    return allocated.order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * The location of one curve's points.
+   */
+  private static final class Slot {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int points;
+
+    private Slot(final ByteBuffer buffer, final int offset, final int points) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.points = points;
+    }
+
+    private long input(final int index) {
+      return buffer.getLong(offset + index * AMOUNT_BYTES);
+    }
+
+    private long output(final int index) {
+      return buffer.getLong(offset + (points + index) * AMOUNT_BYTES);
+    }
+  }
+
+  /**
+   * A builder for instances of {@link LiquidityCurveStore}.
+   */
+  public static class Builder {
+
+    private int initialPoints = 64 * 1024;
+    private boolean direct = true;
+
+    /**
+     * Sets the number of points to allocate room for initially.
+     *
+     * @param initialPoints The number of points.
+     * @return This {@link Builder} instance.
+     */
+    public Builder initialPoints(final int initialPoints) {
+      if (initialPoints < 0 || initialPoints > Integer.MAX_VALUE / (2 * AMOUNT_BYTES)) {
+        throw new IllegalArgumentException("initialPoints out of range");
+      }
+      this.initialPoints = initialPoints;
+      return this;
+    }
+
+    /**
+     * Sets whether to pack curves outside the heap, which is the default, or in a heap array.
+     *
+     * @param direct true to allocate direct buffers.
+     * @return This {@link Builder} instance.
+     */
+    public Builder direct(final boolean direct) {
+      this.direct = direct;
+      return this;
+    }
+
+    /**
+     * Builds the store.
+     *
+     * @return A new {@link LiquidityCurveStore} instance.
+     */
+    public LiquidityCurveStore build() {
+      return new LiquidityCurveStore(this);
+    }
+  }
+
+}
@@ -0,0 +1,345 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache of liquidity quotes, keyed by the address prefix each applies to, that answers quotes for
+ * a destination address from the most specific cached curve.
+ *
+ * <p>A lookup first tries the destination address itself, in case a curve applies to that account
+ * only, then each of its prefixes from the longest to the shortest. Lookups only read from a
+ * concurrent map and never block. Insertions and evictions are serialized on an index of entries
+ * ordered by expiry, which evicts entries once they have expired and, when the cache is full, the
+ * entry that expires soonest.
+ *
+ * <p>An entry may optionally be served for a grace period after it expires while a refresh is
+ * fetched in the background, so that a busy destination is not left without a quote while its
+ * curve is renewed. At most one refresh is outstanding per entry.
+ */
+public class LiquidityQuoteCache {
+
+  private static final char SEPARATOR = '.';
+
+  private final Clock clock;
+  private final int maximumSize;
+  private final long staleMillis;
+  private final Function<InterledgerAddress, CompletableFuture<QuoteLiquidityResponse>> refresher;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  /* entries ordered by expiry, guarded by itself */
+  private final TreeSet<Entry> index = new TreeSet<>(
+      Comparator.comparingLong((Entry entry) -> entry.expiresAtMillis)
+          .thenComparingLong(entry -> entry.sequence));
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private LiquidityQuoteCache(final Builder builder) {
+    this.clock = builder.clock;
+    this.maximumSize = builder.maximumSize;
+    this.staleMillis = builder.staleWhileRevalidate.toMillis();
+    this.refresher = builder.refresher;
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Cache a liquidity quote under the prefix it applies to, replacing any quote cached under the
+   * same prefix.
+   *
+   * @param response The liquidity quote.
+   */
+  public void put(final QuoteLiquidityResponse response) {
+    Objects.requireNonNull(response);
+    final String key = response.getAppliesToPrefix().getValue();
+    final long expiresAtMillis = response.getExpiresAt().toEpochMilli();
+    final Entry entry = new Entry(response, expiresAtMillis, sequence.getAndIncrement());
+
+    synchronized (index) {
+      final Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        index.remove(previous);
+      }
+      index.add(entry);
+
+      evictExpired(clock.millis());
+      while (entries.size() > maximumSize) {
+        evict(index.first());
+      }
+    }
+  }
+
+  /**
+   * Get the liquidity quote that applies to a destination, from the entry with the longest
+   * matching prefix.
+   *
+   * <p>If that entry has expired but is within its grace period it is returned, and a refresh is
+   * requested for the destination unless one is already outstanding.
+   *
+   * @param destination The destination address.
+   *
+   * @return the liquidity quote, or null if no unexpired quote applies to the destination.
+   */
+  public QuoteLiquidityResponse get(final InterledgerAddress destination) {
+    Objects.requireNonNull(destination);
+    final String address = destination.getValue();
+    final long now = clock.millis();
+
+    Entry entry = live(entries.get(address), now);
+    int end = address.length() - 1;
+    while (entry == null && end > 0) {
+      end = address.lastIndexOf(SEPARATOR, end - 1);
+      if (end < 0) {
+        break;
+      }
+      entry = live(entries.get(address.substring(0, end + 1)), now);
+    }
+
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    if (now < entry.expiresAtMillis) {
+      hits.increment();
+    } else {
+      staleHits.increment();
+      refresh(entry, destination);
+    }
+    return entry.response;
+  }
+
+  /**
+   * Remove all entries that are past their expiry and grace period. Entries are otherwise only
+   * evicted when quotes are added, so a cache that stops receiving quotes should call this
+   * periodically.
+   *
+   * @return the number of entries evicted.
+   */
+  public int evictExpired() {
+    synchronized (index) {
+      return evictExpired(clock.millis());
+    }
+  }
+
+  /**
+   * Get the number of cached entries, including expired entries not yet evicted.
+   *
+   * @return the number of entries.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Get a snapshot of the cache's lookup and eviction counts.
+   *
+   * @return the statistics.
+   */
+  public Statistics getStatistics() {
+    return new Statistics(hits.sum(), staleHits.sum(), misses.sum(), evictions.sum());
+  }
+
+  private Entry live(final Entry entry, final long now) {
+    return entry != null && now < entry.expiresAtMillis + staleMillis ? entry : null;
+  }
+
+  private void refresh(final Entry entry, final InterledgerAddress destination) {
+    if (refresher == null || !entry.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    final CompletableFuture<QuoteLiquidityResponse> refreshed;
+    try {
+      refreshed = refresher.apply(destination);
+    } catch (RuntimeException e) {
+      entry.refreshing.set(false);
+      return;
+    }
+    refreshed.whenComplete((response, error) -> {
+      if (response != null) {
+        put(response);
+      }
+      /* if the entry was not replaced, allow another attempt */
+      entry.refreshing.set(false);
+    });
+  }
+
+  private int evictExpired(final long now) {
+    int evicted = 0;
+    while (!index.isEmpty() && index.first().expiresAtMillis + staleMillis <= now) {
+      evict(index.first());
+      evicted++;
+    }
+    return evicted;
+  }
+
+  private void evict(final Entry entry) {
+    index.remove(entry);
+    entries.remove(entry.response.getAppliesToPrefix().getValue(), entry);
+    evictions.increment();
+  }
+
+  private static final class Entry {
+
+    private final QuoteLiquidityResponse response;
+    private final long expiresAtMillis;
+    private final long sequence;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(final QuoteLiquidityResponse response, final long expiresAtMillis,
+        final long sequence) {
+      this.response = response;
+      this.expiresAtMillis = expiresAtMillis;
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * A snapshot of the lookup and eviction counts of a {@link LiquidityQuoteCache}.
+   */
+  public static final class Statistics {
+
+    private final long hits;
+    private final long staleHits;
+    private final long misses;
+    private final long evictions;
+
+    private Statistics(final long hits, final long staleHits, final long misses,
+        final long evictions) {
+      this.hits = hits;
+      this.staleHits = staleHits;
+      this.misses = misses;
+      this.evictions = evictions;
+    }
+
+    /**
+     * Get the number of lookups answered by an unexpired quote.
+     *
+     * @return the number of fresh hits.
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * Get the number of lookups answered by an expired quote within its grace period.
+     *
+     * @return the number of stale hits.
+     */
+    public long getStaleHits() {
+      return staleHits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    /**
+     * Get the fraction of lookups answered by the cache, whether fresh or stale.
+     *
+     * @return the hit rate, or zero if there have been no lookups.
+     */
+    public double getHitRate() {
+      final long lookups = hits + staleHits + misses;
+      return lookups == 0 ? 0 : (double) (hits + staleHits) / lookups;
+    }
+
+    @Override
+    public String toString() {
+      return "Statistics{hits=" + hits + ", staleHits=" + staleHits + ", misses=" + misses
+          + ", evictions=" + evictions + "}";
+    }
+  }
+
+  /**
+   * A builder for instances of {@link LiquidityQuoteCache}.
+   */
+  public static class Builder {
+
+    private int maximumSize = 10_000;
+    private Duration staleWhileRevalidate = Duration.ZERO;
+    private Function<InterledgerAddress, CompletableFuture<QuoteLiquidityResponse>> refresher;
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Sets the maximum number of quotes to cache. When it is exceeded the quote that expires
+     * soonest is evicted.
+     *
+     * @param maximumSize The maximum number of entries.
+     * @return This {@link Builder} instance.
+     */
+    public Builder maximumSize(final int maximumSize) {
+      if (maximumSize < 1) {
+        throw new IllegalArgumentException("maximumSize must be positive");
+      }
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Serve quotes for a grace period after they expire while fetching a fresh quote.
+     *
+     * @param gracePeriod The time after expiry for which a quote may still be served.
+     * @param refresher   A function that requests a fresh liquidity quote for a destination.
+     * @return This {@link Builder} instance.
+     */
+    public Builder staleWhileRevalidate(final Duration gracePeriod,
+        final Function<InterledgerAddress, CompletableFuture<QuoteLiquidityResponse>> refresher) {
+      Objects.requireNonNull(gracePeriod, "gracePeriod must not be null");
+      if (gracePeriod.isNegative()) {
+        throw new IllegalArgumentException("gracePeriod must not be negative");
+      }
+      this.staleWhileRevalidate = gracePeriod;
+      this.refresher = Objects.requireNonNull(refresher, "refresher must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the clock used to decide whether quotes have expired.
+     *
+     * @param clock The clock.
+     * @return This {@link Builder} instance.
+     */
+    public Builder clock(final Clock clock) {
+      this.clock = Objects.requireNonNull(clock, "clock must not be null");
+      return this;
+    }
+
+    /**
+     * Builds the cache.
+     *
+     * @return A new {@link LiquidityQuoteCache} instance.
+     */
+    public LiquidityQuoteCache build() {
+      return new LiquidityQuoteCache(this);
+    }
+  }
+
+}
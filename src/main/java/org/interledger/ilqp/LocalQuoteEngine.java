@@ -0,0 +1,297 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.math.BigInteger;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers quotes by source amount and by destination amount locally, from the liquidity curves of
+ * {@link QuoteLiquidityResponse}s received earlier, instead of asking a connector each time.
+ *
+ * <p>A quote uses the unexpired curve of the longest prefix of its destination, evaluated
+ * forwards for a source amount or inverted for a destination amount on the curve's primitive
+ * arrays. The source hold duration quoted is the one of the liquidity response, or the requested
+ * destination hold duration plus a margin for the hops before the destination if that is longer.
+ *
+ * <p>Curves are held by reference in a concurrent map, so the engine may be updated and queried
+ * from any number of threads, and a quote allocates little more than the response it returns.
+ */
+public class LocalQuoteEngine {
+
+  private final Clock clock;
+  private final Duration holdDurationMargin;
+  private final InterledgerAddress address;
+  private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+  private final QuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse>
+      bySourceAmount = new LocalQuoteService<QuoteBySourceAmountRequest,
+      QuoteBySourceAmountResponse>() {
+        @Override
+        QuoteBySourceAmountResponse quote(final QuoteBySourceAmountRequest quoteRequest) {
+          return LocalQuoteEngine.this.quote(quoteRequest);
+        }
+      };
+
+  private final QuoteService<QuoteByDestinationAmountRequest, QuoteByDestinationAmountResponse>
+      byDestinationAmount = new LocalQuoteService<QuoteByDestinationAmountRequest,
+      QuoteByDestinationAmountResponse>() {
+        @Override
+        QuoteByDestinationAmountResponse quote(final QuoteByDestinationAmountRequest quoteRequest) {
+          return LocalQuoteEngine.this.quote(quoteRequest);
+        }
+      };
+
+  private LocalQuoteEngine(final Builder builder) {
+    this.clock = builder.clock;
+    this.holdDurationMargin = builder.holdDurationMargin;
+    this.address = builder.address;
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Add the liquidity curve of a liquidity quote, replacing any curve for the same prefix.
+   *
+   * @param response The liquidity quote.
+   */
+  public void put(final QuoteLiquidityResponse response) {
+    Objects.requireNonNull(response);
+    final LiquidityCurve curve = response.getLiquidityCurve();
+    routes.put(response.getAppliesToPrefix().getValue(), new Route(
+        curve instanceof ArrayLiquidityCurve ? (ArrayLiquidityCurve) curve
+            : ArrayLiquidityCurve.of(curve.getLiquidityPoints()),
+        response.getSourceHoldDuration(), response.getExpiresAt().toEpochMilli()));
+  }
+
+  /**
+   * Remove the liquidity curve for a prefix.
+   *
+   * @param prefix The prefix the curve applies to.
+   *
+   * @return true if a curve was removed.
+   */
+  public boolean remove(final InterledgerAddress prefix) {
+    Objects.requireNonNull(prefix);
+    return routes.remove(prefix.getValue()) != null;
+  }
+
+  /**
+   * Quote the amount delivered for a source amount.
+   *
+   * @param quoteRequest The quote request.
+   *
+   * @return the quote, or null if no unexpired curve applies to the destination.
+   *
+   * @throws InterledgerQuotingException if the source amount is outside the range of the curve.
+   */
+  public QuoteBySourceAmountResponse quote(final QuoteBySourceAmountRequest quoteRequest) {
+    Objects.requireNonNull(quoteRequest);
+    final Route route = find(quoteRequest.getDestinationAccount());
+    if (route == null) {
+      return null;
+    }
+
+    final ArrayLiquidityCurve curve = route.curve;
+    final long sourceAmount = toAmount(quoteRequest.getSourceAmount());
+    if (curve.size() == 0
+        || Long.compareUnsigned(sourceAmount, curve.getInputAmount(0)) < 0
+        || Long.compareUnsigned(sourceAmount, curve.getInputAmount(curve.size() - 1)) > 0) {
+      throw new InterledgerQuotingException(
+          "Source amount " + quoteRequest.getSourceAmount() + " is outside liquidity.");
+    }
+
+    return QuoteBySourceAmountResponse.Builder.builder()
+        .destinationAmount(ArrayLiquidityCurve.toBigInteger(curve.outputFor(sourceAmount)))
+        .sourceHoldDuration(sourceHoldDuration(route, quoteRequest))
+        .build();
+  }
+
+  /**
+   * Quote the source amount needed to deliver a destination amount.
+   *
+   * @param quoteRequest The quote request.
+   *
+   * @return the quote, or null if no unexpired curve applies to the destination.
+   *
+   * @throws InterledgerQuotingException if the destination amount exceeds the liquidity of the
+   *                                     curve.
+   */
+  public QuoteByDestinationAmountResponse quote(
+      final QuoteByDestinationAmountRequest quoteRequest) {
+    Objects.requireNonNull(quoteRequest);
+    final Route route = find(quoteRequest.getDestinationAccount());
+    if (route == null) {
+      return null;
+    }
+
+    final long destinationAmount = toAmount(quoteRequest.getDestinationAmount());
+    return QuoteByDestinationAmountResponse.Builder.builder()
+        .sourceAmount(ArrayLiquidityCurve.toBigInteger(route.curve.inputFor(destinationAmount)))
+        .sourceHoldDuration(sourceHoldDuration(route, quoteRequest))
+        .build();
+  }
+
+  /**
+   * Get a {@link QuoteService} that answers quotes by source amount with this engine.
+   *
+   * @return the quote service.
+   */
+  public QuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse> bySourceAmount() {
+    return bySourceAmount;
+  }
+
+  /**
+   * Get a {@link QuoteService} that answers quotes by destination amount with this engine.
+   *
+   * @return the quote service.
+   */
+  public QuoteService<QuoteByDestinationAmountRequest, QuoteByDestinationAmountResponse>
+      byDestinationAmount() {
+    return byDestinationAmount;
+  }
+
+  private Route find(final InterledgerAddress destination) {
+    Objects.requireNonNull(destination);
+    final String value = destination.getValue();
+    final long now = clock.millis();
+
+    Route route = live(routes.get(value), now);
+    int end = value.length() - 1;
+    while (route == null && end > 0) {
+      end = value.lastIndexOf('.', end - 1);
+      if (end < 0) {
+        break;
+      }
+      route = live(routes.get(value.substring(0, end + 1)), now);
+    }
+    return route;
+  }
+
+  private static Route live(final Route route, final long now) {
+    return route != null && now < route.expiresAtMillis ? route : null;
+  }
+
+  private Duration sourceHoldDuration(final Route route, final QuoteRequest quoteRequest) {
+    final Duration required = quoteRequest.getDestinationHoldDuration().plus(holdDurationMargin);
+    return required.compareTo(route.sourceHoldDuration) > 0 ? required : route.sourceHoldDuration;
+  }
+
+  private static long toAmount(final BigInteger amount) {
+    Objects.requireNonNull(amount);
+    if (amount.signum() < 0 || amount.bitLength() > 64) {
+      throw new InterledgerQuotingException("Amount " + amount + " is not a UInt64.");
+    }
+    return amount.longValue();
+  }
+
+  /**
+   * A liquidity curve with the hold duration and expiry it was quoted with.
+   */
+  private static final class Route {
+
+    private final ArrayLiquidityCurve curve;
+    private final Duration sourceHoldDuration;
+    private final long expiresAtMillis;
+
+    private Route(final ArrayLiquidityCurve curve, final Duration sourceHoldDuration,
+        final long expiresAtMillis) {
+      this.curve = curve;
+      this.sourceHoldDuration = sourceHoldDuration;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+
+  /**
+   * Adapts one direction of the engine to {@link QuoteService}. The engine gives a single answer,
+   * so there is nothing for a selection strategy to choose between, and it answers for any
+   * connector unless it was built with an address of its own.
+   */
+  private abstract class LocalQuoteService<T extends QuoteRequest, R extends QuoteResponse>
+      implements QuoteService<T, R> {
+
+    abstract R quote(T quoteRequest);
+
+    @Override
+    public R requestQuote(final T quoteRequest, final QuoteSelectionStrategy selectionStrategy) {
+      Objects.requireNonNull(selectionStrategy);
+      return quote(quoteRequest);
+    }
+
+    @Override
+    public R requestQuote(final T quoteRequest, final InterledgerAddress connector) {
+      Objects.requireNonNull(connector);
+      return address == null || address.equals(connector) ? quote(quoteRequest) : null;
+    }
+  }
+
+  /**
+   * A builder for instances of {@link LocalQuoteEngine}.
+   */
+  public static class Builder {
+
+    private Clock clock = Clock.systemUTC();
+    private Duration holdDurationMargin = Duration.ofSeconds(1);
+    private InterledgerAddress address;
+
+    /**
+     * Sets the time added to the requested destination hold duration to give the least source
+     * hold duration quoted.
+     *
+     * @param holdDurationMargin The margin.
+     * @return This {@link Builder} instance.
+     */
+    public Builder holdDurationMargin(final Duration holdDurationMargin) {
+      Objects.requireNonNull(holdDurationMargin, "holdDurationMargin must not be null");
+      if (holdDurationMargin.isNegative()) {
+        throw new IllegalArgumentException("holdDurationMargin must not be negative");
+      }
+      this.holdDurationMargin = holdDurationMargin;
+      return this;
+    }
+
+    /**
+     * Sets the address of the connector the engine quotes for. Requests of other connectors
+     * through {@link QuoteService#requestQuote(QuoteRequest, InterledgerAddress)} are not answered.
+     *
+     * @param address The connector's address.
+     * @return This {@link Builder} instance.
+     */
+    public Builder address(final InterledgerAddress address) {
+      this.address = Objects.requireNonNull(address, "address must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the clock used to decide whether curves have expired.
+     *
+     * @param clock The clock.
+     * @return This {@link Builder} instance.
+     */
+    public Builder clock(final Clock clock) {
+      this.clock = Objects.requireNonNull(clock, "clock must not be null");
+      return this;
+    }
+
+    /**
+     * Builds the engine.
+     *
+     * @return A new {@link LocalQuoteEngine} instance.
+     */
+    public LocalQuoteEngine build() {
+      return new LocalQuoteEngine(this);
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Plans how to split a payment across several connectors, given the liquidity curve each of them
+ * quoted for the destination, so that no single connector's liquidity limits the payment.
+ *
+ * <p>Each curve is reduced to the segments of its upper concave hull, starting from nothing sent
+ * for nothing received, so that the rate of each segment is lower than the one before it. The
+ * planner then repeatedly spends on the best remaining segment of any connector, keeping the next
+ * segment of each connector in a heap, which takes O(n log k) time for n points on k curves.
+ *
+ * <p>For concave curves, as the curves of connectors with diminishing liquidity are, the plan is
+ * optimal. Otherwise it is optimal for the hulls and the amounts reported are those of the actual
+ * curves. Only one connector's allocation can end part way along a segment, so a curve that is not
+ * concave costs at most the difference between its hull and itself on that one segment.
+ */
+public final class PaymentSplitPlanner {
+
+  private PaymentSplitPlanner() {
+  }
+
+  /**
+   * Split a source amount to deliver as much as possible to the destination.
+   *
+   * @param curves       The liquidity curve quoted by each connector.
+   * @param sourceAmount The amount to send.
+   *
+   * @return the split, which sends less than the source amount only if the connectors cannot
+   *     deliver more for it.
+   */
+  public static PaymentSplit maximizeDestinationAmount(
+      final Map<InterledgerAddress, ? extends LiquidityCurve> curves,
+      final BigInteger sourceAmount) {
+    final Plan plan = new Plan(curves);
+    long remaining = ArrayLiquidityCurve.toUnsignedLong(sourceAmount);
+
+    while (remaining != 0 && !plan.segments.isEmpty()) {
+      final Segment best = plan.segments.poll();
+      if (Long.compareUnsigned(best.input, remaining) <= 0) {
+        plan.sourceAmounts[best.curve] += best.input;
+        remaining -= best.input;
+        plan.advance(best);
+      } else {
+        plan.sourceAmounts[best.curve] += remaining;
+        remaining = 0;
+      }
+    }
+    return plan.toSplit();
+  }
+
+  /**
+   * Split a payment to deliver a destination amount for as little as possible.
+   *
+   * @param curves            The liquidity curve quoted by each connector.
+   * @param destinationAmount The amount to deliver.
+   *
+   * @return the split, which delivers at least the destination amount.
+   *
+   * @throws InterledgerQuotingException if the connectors together cannot deliver the amount.
+   */
+  public static PaymentSplit minimizeSourceAmount(
+      final Map<InterledgerAddress, ? extends LiquidityCurve> curves,
+      final BigInteger destinationAmount) {
+    final Plan plan = new Plan(curves);
+    long remaining = ArrayLiquidityCurve.toUnsignedLong(destinationAmount);
+
+    while (remaining != 0 && !plan.segments.isEmpty()) {
+      final Segment best = plan.segments.poll();
+      if (Long.compareUnsigned(best.output, remaining) <= 0) {
+        plan.sourceAmounts[best.curve] += best.input;
+        remaining -= best.output;
+        plan.advance(best);
+      } else {
+        plan.sourceAmounts[best.curve] +=
+            ArrayLiquidityCurve.multiplyDivide(remaining, best.input, best.output, true);
+        remaining = 0;
+      }
+    }
+
+    /* where a curve falls below its hull the plan delivers less, so top up along the curves */
+    BigInteger shortfall = destinationAmount.subtract(plan.destinationTotal());
+    for (int i = 0; i < plan.curves.length && shortfall.signum() > 0; i++) {
+      final ArrayLiquidityCurve curve = plan.curves[i];
+      if (curve.size() == 0) {
+        continue;
+      }
+      final long current = curve.outputFor(plan.sourceAmounts[i]);
+      final long maximum = curve.getOutputAmount(curve.size() - 1);
+      final long available = maximum - current;
+      final long added = shortfall.compareTo(ArrayLiquidityCurve.toBigInteger(available)) < 0
+          ? shortfall.longValue() : available;
+      if (added != 0) {
+        plan.sourceAmounts[i] = curve.inputFor(current + added);
+        shortfall = destinationAmount.subtract(plan.destinationTotal());
+      }
+    }
+    if (shortfall.signum() > 0) {
+      throw new InterledgerQuotingException(
+          "Insufficient liquidity to deliver " + destinationAmount + ".");
+    }
+    return plan.toSplit();
+  }
+
+  /**
+   * The amounts to send through each connector, and the amounts each is expected to deliver.
+   */
+  public static final class PaymentSplit {
+
+    private final Map<InterledgerAddress, BigInteger> sourceAmounts;
+    private final Map<InterledgerAddress, BigInteger> destinationAmounts;
+    private final BigInteger sourceAmount;
+    private final BigInteger destinationAmount;
+
+    private PaymentSplit(final Map<InterledgerAddress, BigInteger> sourceAmounts,
+        final Map<InterledgerAddress, BigInteger> destinationAmounts) {
+      this.sourceAmounts = Collections.unmodifiableMap(sourceAmounts);
+      this.destinationAmounts = Collections.unmodifiableMap(destinationAmounts);
+      this.sourceAmount = sourceAmounts.values().stream().reduce(BigInteger.ZERO, BigInteger::add);
+      this.destinationAmount = destinationAmounts.values().stream()
+          .reduce(BigInteger.ZERO, BigInteger::add);
+    }
+
+    /**
+     * Get the amount to send through each connector that is used, in the order the curves were
+     * given.
+     *
+     * @return the source amounts by connector.
+     */
+    public Map<InterledgerAddress, BigInteger> getSourceAmounts() {
+      return sourceAmounts;
+    }
+
+    /**
+     * Get the amount each connector that is used is expected to deliver for its source amount.
+     *
+     * @return the destination amounts by connector.
+     */
+    public Map<InterledgerAddress, BigInteger> getDestinationAmounts() {
+      return destinationAmounts;
+    }
+
+    public BigInteger getSourceAmount() {
+      return sourceAmount;
+    }
+
+    public BigInteger getDestinationAmount() {
+      return destinationAmount;
+    }
+
+    @Override
+    public String toString() {
+      return "PaymentSplit{sourceAmounts=" + sourceAmounts + ", destinationAmounts="
+          + destinationAmounts + "}";
+    }
+  }
+
+  /**
+   * The hull segments of each curve still to be spent on, best first, and the amounts allocated
+   * so far.
+   */
+  private static final class Plan {
+
+    private final InterledgerAddress[] connectors;
+    private final ArrayLiquidityCurve[] curves;
+    private final List<List<Segment>> hulls;
+    private final long[] sourceAmounts;
+    private final PriorityQueue<Segment> segments;
+
+    private Plan(final Map<InterledgerAddress, ? extends LiquidityCurve> curvesByConnector) {
+      Objects.requireNonNull(curvesByConnector);
+      final int count = curvesByConnector.size();
+      this.connectors = new InterledgerAddress[count];
+      this.curves = new ArrayLiquidityCurve[count];
+      this.hulls = new ArrayList<>(count);
+      this.sourceAmounts = new long[count];
+      this.segments = new PriorityQueue<>(Math.max(1, count));
+
+      int index = 0;
+      for (Map.Entry<InterledgerAddress, ? extends LiquidityCurve> entry
+          : curvesByConnector.entrySet()) {
+        connectors[index] = Objects.requireNonNull(entry.getKey());
+        final LiquidityCurve curve = Objects.requireNonNull(entry.getValue());
+        curves[index] = curve instanceof ArrayLiquidityCurve ? (ArrayLiquidityCurve) curve
+            : ArrayLiquidityCurve.of(curve.getLiquidityPoints());
+
+        final List<Segment> hull = hull(index, curves[index]);
+        hulls.add(hull);
+        if (!hull.isEmpty()) {
+          segments.add(hull.get(0));
+        }
+        index++;
+      }
+    }
+
+    private void advance(final Segment spent) {
+      final List<Segment> hull = hulls.get(spent.curve);
+      if (spent.index + 1 < hull.size()) {
+        segments.add(hull.get(spent.index + 1));
+      }
+    }
+
+    private BigInteger destinationTotal() {
+      BigInteger total = BigInteger.ZERO;
+      for (int i = 0; i < curves.length; i++) {
+        total = total.add(
+            ArrayLiquidityCurve.toBigInteger(curves[i].outputFor(sourceAmounts[i])));
+      }
+      return total;
+    }
+
+    private PaymentSplit toSplit() {
+      final Map<InterledgerAddress, BigInteger> sources = new LinkedHashMap<>();
+      final Map<InterledgerAddress, BigInteger> destinations = new LinkedHashMap<>();
+      for (int i = 0; i < curves.length; i++) {
+        if (sourceAmounts[i] != 0) {
+          sources.put(connectors[i], ArrayLiquidityCurve.toBigInteger(sourceAmounts[i]));
+          destinations.put(connectors[i],
+              ArrayLiquidityCurve.toBigInteger(curves[i].outputFor(sourceAmounts[i])));
+        }
+      }
+      return new PaymentSplit(sources, destinations);
+    }
+
+    /**
+     * Compute the segments of the upper concave hull of a curve and the origin, dropping those
+     * that deliver nothing.
+     */
+    private static List<Segment> hull(final int curve, final ArrayLiquidityCurve points) {
+      final int size = points.size();
+      final long[] inputs = new long[size + 1];
+      final long[] outputs = new long[size + 1];
+      int count = 1;
+      for (int i = 0; i < size; i++) {
+        final long input = points.getInputAmount(i);
+        final long output = points.getOutputAmount(i);
+        if (input == 0) {
+          outputs[0] = output;
+          continue;
+        }
+        /* drop the last vertex while it lies on or below the line to the new point */
+        while (count >= 2 && ArrayLiquidityCurve.compareProducts(
+            outputs[count - 1] - outputs[count - 2], input - inputs[count - 1],
+            output - outputs[count - 1], inputs[count - 1] - inputs[count - 2]) <= 0) {
+          count--;
+        }
+        inputs[count] = input;
+        outputs[count++] = output;
+      }
+
+      final List<Segment> segments = new ArrayList<>(count - 1);
+      for (int i = 1; i < count && outputs[i] != outputs[i - 1]; i++) {
+        segments.add(new Segment(curve, i - 1, inputs[i] - inputs[i - 1],
+            outputs[i] - outputs[i - 1]));
+      }
+      return segments;
+    }
+  }
+
+  /**
+   * A segment of a hull, ordered by decreasing rate of output to input.
+   */
+  private static final class Segment implements Comparable<Segment> {
+
+    private final int curve;
+    private final int index;
+    private final long input;
+    private final long output;
+
+    private Segment(final int curve, final int index, final long input, final long output) {
+      this.curve = curve;
+      this.index = index;
+      this.input = input;
+      this.output = output;
+    }
+
+    @Override
+    public int compareTo(final Segment other) {
+      final int byRate = ArrayLiquidityCurve.compareProducts(other.output, input, output,
+          other.input);
+      return byRate != 0 ? byRate : Integer.compare(curve, other.curve);
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers quote requests to connectors and completes with their responses, for use by
+ * {@link QuoteService} implementations that do not depend on a particular ledger plugin.
+ *
+ * @param <T> the type of the quote requests delivered.
+ * @param <R> the type of the quote responses received.
+ */
+@FunctionalInterface
+public interface QuoteTransport<T extends QuoteRequest, R extends QuoteResponse> {
+
+  /**
+   * Sends a quote request to a connector without waiting for its response.
+   *
+   * @param quoteRequest The quote requested.
+   * @param connector    The ILP address of the connector to send the request to.
+   *
+   * @return A future completed with the connector's response, or exceptionally if the request
+   *     fails. Cancelling the future indicates that the response is no longer needed.
+   */
+  CompletableFuture<R> send(T quoteRequest, InterledgerAddress connector);
+}
@@ -0,0 +1,332 @@
+package org.interledger.ipr;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.codecs.packettypes.InterledgerPacketType;
+import org.interledger.ilp.PreimageSha256;
+import org.interledger.psk.PskContext;
+import org.interledger.psk.PskCryptoProvider;
+import org.interledger.psk.PskCryptoProvider.AesGcm;
+import org.interledger.psk.PskCryptoProvider.HmacSha256;
+import org.interledger.psk.PskMessage;
+import org.interledger.psk.PskMessageTemplate;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues OER encoded {@link InterledgerPaymentRequest}s for a single receiver, writing them
+ * directly into a caller's buffer.
+ *
+ * <p>Building an IPR through {@link PskContext#seed(byte[])} and the codecs derives the receiver
+ * id and PSK generator from the receiver secret, draws the token from a blocking strong random
+ * source, and builds the payment, condition and request objects only to encode them. An issuer
+ * derives the per-receiver state once, draws tokens and nonces from a pool filled in bulk by a
+ * non-blocking {@link SecureRandom}, derives both keys for a token from one HMAC instance, seals
+ * the PSK message from a {@link PskMessageTemplate} and encodes each request field by field.
+ *
+ * <p>The issued requests are byte for byte those produced by the codecs for the same token and
+ * PSK message. The condition is always the final 32 bytes, so that the caller can, for example,
+ * hold the payment in a {@link org.interledger.ilp.PendingPaymentTable} without decoding it.
+ *
+ * <p>Issuers are not thread-safe. Create one per thread; doing so is cheap.
+ */
+public class InterledgerPaymentRequestIssuer {
+
+  private static final int IPR_VERSION = 2;
+  private static final int AMOUNT_LEN_BYTES = 8;
+  private static final int NONCE_LEN_BYTES = 16;
+  private static final int TOKEN_BASE64_LEN = 22;
+  private static final int REQUESTS_PER_REFILL = 256;
+
+  private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder()
+      .withoutPadding();
+
+  private final HmacSha256 pskGenerator;
+
+  /* re-keyed for every token, rather than created for each */
+  private final HmacSha256 keyDerivation;
+  private final HmacSha256 fulfillmentHmac;
+  private final AesGcm aesGcm;
+  private final byte[] addressPrefix;
+  private final int addressLength;
+
+  private final byte[] encryptionInfo =
+      PskContext.PSK_ENCRYPTION_STRING.getBytes(StandardCharsets.UTF_8);
+  private final byte[] conditionInfo =
+      PskContext.PSK_CONDITION_STRING.getBytes(StandardCharsets.UTF_8);
+
+  private final SecureRandom random;
+  private final byte[] randomPool =
+      new byte[(PskContext.TOKEN_LEN_BYTES + NONCE_LEN_BYTES) * REQUESTS_PER_REFILL];
+  private int randomPosition = randomPool.length;
+
+  private final byte[] token = new byte[PskContext.TOKEN_LEN_BYTES];
+  private final byte[] tokenBase64 = new byte[TOKEN_BASE64_LEN];
+  private final byte[] nonce = new byte[NONCE_LEN_BYTES];
+
+  /* the template of the last message issued, reused while callers pass the same message */
+  private PskMessage lastMessage;
+  private PskMessageTemplate lastTemplate;
+
+  private InterledgerPaymentRequestIssuer(final Builder builder) {
+    final PskCryptoProvider cryptoProvider = PskCryptoProvider.getDefault();
+    this.random = builder.random;
+
+    final byte[] generatorKey = cryptoProvider.newHmacSha256(builder.receiverSecret)
+        .doFinal(PskContext.PSK_GENERATION_STRING.getBytes(StandardCharsets.UTF_8));
+    this.pskGenerator = cryptoProvider.newHmacSha256(generatorKey);
+
+    final byte[] placeholderKey = new byte[PskContext.SHARED_KEY_LEN_BYTES];
+    this.keyDerivation = cryptoProvider.newHmacSha256(placeholderKey);
+    this.fulfillmentHmac = cryptoProvider.newHmacSha256(placeholderKey);
+    this.aesGcm = cryptoProvider.newAesGcm(new SecretKeySpec(placeholderKey, "AES"));
+
+    final byte[] receiverId = Arrays.copyOf(cryptoProvider.newHmacSha256(builder.receiverSecret)
+            .doFinal(PskContext.IPR_RECEIVER_ID_STRING.getBytes(StandardCharsets.UTF_8)),
+        PskContext.RECEIVER_ID_LEN_BYTES);
+    final String prefix = builder.ledgerPrefix.getValue()
+        + (builder.ledgerPrefix.isLedgerPrefix() ? "" : ".")
+        + BASE64_URL.encodeToString(receiverId);
+    this.addressPrefix = prefix.getBytes(StandardCharsets.US_ASCII);
+    this.addressLength = addressPrefix.length + TOKEN_BASE64_LEN;
+
+    /* validates the complete address once, rather than on every request */
+    InterledgerAddress.of(prefix + BASE64_URL.encodeToString(token));
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Get the length of an encoded request carrying a given message.
+   *
+   * @param message The PSK message the request will carry.
+   *
+   * @return the number of bytes {@link #issue(BigInteger, PskMessage, byte[], int)} will write.
+   */
+  public int getEncodedLength(final PskMessage message) {
+    return getEncodedLength(templateFor(message).getSealedLength());
+  }
+
+  private int getEncodedLength(final int dataLength) {
+    return 1 + 1 + AMOUNT_LEN_BYTES
+        + lengthPrefixLength(addressLength) + addressLength
+        + lengthPrefixLength(dataLength) + dataLength
+        + PreimageSha256.FINGERPRINT_LEN_BYTES;
+  }
+
+  /**
+   * Issue a request for a new token, as a new array.
+   *
+   * @param amount  The destination amount, which must fit in an unsigned 64-bit integer.
+   * @param message The unencrypted PSK message for the payment to carry. It is encrypted with the
+   *                key for the new token.
+   *
+   * @return the encoded request.
+   */
+  public byte[] issue(final BigInteger amount, final PskMessage message) {
+    final byte[] buffer = new byte[getEncodedLength(message)];
+    issue(amount, message, buffer, 0);
+    return buffer;
+  }
+
+  /**
+   * Issue a request for a new token into a buffer.
+   *
+   * @param amount  The destination amount, which must fit in an unsigned 64-bit integer.
+   * @param message The unencrypted PSK message for the payment to carry. It is encrypted with the
+   *                key for the new token.
+   * @param buffer  The buffer to write the request to.
+   * @param offset  The offset to write the request at. The buffer must hold at least
+   *                {@link #getEncodedLength(PskMessage)} bytes from here.
+   *
+   * @return the number of bytes written. The final 32 are the condition.
+   */
+  public int issue(final BigInteger amount, final PskMessage message, final byte[] buffer,
+      final int offset) {
+    Objects.requireNonNull(amount);
+    Objects.requireNonNull(message);
+    Objects.requireNonNull(buffer);
+    if (amount.signum() < 0 || amount.bitLength() > 64) {
+      throw new IllegalArgumentException("amount must fit in an unsigned 64-bit integer");
+    }
+    final PskMessageTemplate template = templateFor(message);
+    final int dataLength = template.getSealedLength();
+    if (offset < 0 || offset + getEncodedLength(dataLength) > buffer.length) {
+      throw new IndexOutOfBoundsException("Request does not fit in the buffer.");
+    }
+
+    nextRandom();
+    keyDerivation.init(pskGenerator.doFinal(token));
+    aesGcm.init(new SecretKeySpec(keyDerivation.doFinal(encryptionInfo), "AES"));
+    fulfillmentHmac.init(keyDerivation.doFinal(conditionInfo));
+
+    int position = offset;
+    buffer[position++] = IPR_VERSION;
+
+    final int paymentOffset = position;
+    buffer[position++] = InterledgerPacketType.ILP_PAYMENT_TYPE;
+    final long amountBits = amount.longValue();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buffer[position++] = (byte) (amountBits >>> shift);
+    }
+
+    position = writeLengthPrefix(addressLength, buffer, position);
+    System.arraycopy(addressPrefix, 0, buffer, position, addressPrefix.length);
+    position += addressPrefix.length;
+    BASE64_URL.encode(token, tokenBase64);
+    System.arraycopy(tokenBase64, 0, buffer, position, TOKEN_BASE64_LEN);
+    position += TOKEN_BASE64_LEN;
+
+    position = writeLengthPrefix(dataLength, buffer, position);
+    position += template.seal(aesGcm, nonce, buffer, position);
+
+    fulfillmentHmac.update(buffer, paymentOffset, position - paymentOffset);
+    PreimageSha256.fingerprint(fulfillmentHmac.doFinal(), buffer, position);
+    position += PreimageSha256.FINGERPRINT_LEN_BYTES;
+
+    return position - offset;
+  }
+
+  /**
+   * Issue a batch of requests for the same amount and message, each with its own token, back to
+   * back into a buffer.
+   *
+   * @param count   The number of requests to issue.
+   * @param amount  The destination amount of each request.
+   * @param message The unencrypted PSK message for each payment to carry.
+   * @param buffer  The buffer to write the requests to.
+   * @param offset  The offset to write the first request at. Each request is
+   *                {@link #getEncodedLength(PskMessage)} bytes long.
+   *
+   * @return the number of bytes written.
+   */
+  public int issue(final int count, final BigInteger amount, final PskMessage message,
+      final byte[] buffer, final int offset) {
+    int position = offset;
+    for (int i = 0; i < count; i++) {
+      position += issue(amount, message, buffer, position);
+    }
+    return position - offset;
+  }
+
+  private PskMessageTemplate templateFor(final PskMessage message) {
+    Objects.requireNonNull(message);
+    if (message != lastMessage) {
+      lastTemplate = PskMessageTemplate.of(message);
+      lastMessage = message;
+    }
+    return lastTemplate;
+  }
+
+  /**
+   * Take the next token and nonce from the pool, refilling it when empty.
+   */
+  private void nextRandom() {
+    if (randomPosition == randomPool.length) {
+      random.nextBytes(randomPool);
+      randomPosition = 0;
+    }
+    final int end = randomPosition + token.length + nonce.length;
+    System.arraycopy(randomPool, randomPosition, token, 0, token.length);
+    System.arraycopy(randomPool, randomPosition + token.length, nonce, 0, nonce.length);
+    /* tokens are secrets, so do not leave them in the pool once used */
+    Arrays.fill(randomPool, randomPosition, end, (byte) 0);
+    randomPosition = end;
+  }
+
+  private static int lengthPrefixLength(final int length) {
+    if (length < 128) {
+      return 1;
+    }
+    return 1 + (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+  }
+
+  private static int writeLengthPrefix(final int length, final byte[] buffer, int position) {
+    if (length < 128) {
+      buffer[position++] = (byte) length;
+      return position;
+    }
+    final int octets = lengthPrefixLength(length) - 1;
+    buffer[position++] = (byte) (128 + octets);
+    for (int shift = (octets - 1) * 8; shift >= 0; shift -= 8) {
+      buffer[position++] = (byte) (length >>> shift);
+    }
+    return position;
+  }
+
+  /**
+   * A builder for instances of {@link InterledgerPaymentRequestIssuer}.
+   */
+  public static class Builder {
+
+    private byte[] receiverSecret;
+    private InterledgerAddress ledgerPrefix;
+    private SecureRandom random;
+
+    /**
+     * Sets the receiver's local secret.
+     *
+     * @param receiverSecret The 32 byte receiver secret.
+     * @return This {@link Builder} instance.
+     */
+    public Builder receiverSecret(final byte[] receiverSecret) {
+      Objects.requireNonNull(receiverSecret, "receiverSecret must not be null");
+      if (receiverSecret.length != PskContext.RECEIVER_SECRET_LEN_BYTES) {
+        throw new IllegalArgumentException("Invalid secret. Expected "
+            + PskContext.RECEIVER_SECRET_LEN_BYTES + " bytes but got " + receiverSecret.length);
+      }
+      this.receiverSecret = receiverSecret.clone();
+      return this;
+    }
+
+    /**
+     * Sets the address under which receiver addresses are generated, as with
+     * {@link PskContext#generateReceiverAddress(InterledgerAddress)}.
+     *
+     * @param ledgerPrefix The address to append the receiver id and token to.
+     * @return This {@link Builder} instance.
+     */
+    public Builder ledgerPrefix(final InterledgerAddress ledgerPrefix) {
+      this.ledgerPrefix = Objects.requireNonNull(ledgerPrefix, "ledgerPrefix must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the source of tokens. By default a new non-blocking {@link SecureRandom} is used.
+     *
+     * @param random The random source.
+     * @return This {@link Builder} instance.
+     */
+    public Builder random(final SecureRandom random) {
+      this.random = Objects.requireNonNull(random, "random must not be null");
+      return this;
+    }
+
+    /**
+     * Builds the issuer.
+     *
+     * @return A new {@link InterledgerPaymentRequestIssuer} instance.
+     */
+    public InterledgerPaymentRequestIssuer build() {
+      Objects.requireNonNull(receiverSecret, "receiverSecret must be set");
+      Objects.requireNonNull(ledgerPrefix, "ledgerPrefix must be set");
+      if (random == null) {
+        random = new SecureRandom();
+      }
+      return new InterledgerPaymentRequestIssuer(this);
+    }
+  }
+
+}
@@ -0,0 +1,14 @@
+package org.interledger.psk;
+
+/**
+ * Holds the mutable default {@link PskCryptoProvider}, since interfaces cannot have non-final
+ * fields. Only {@link PskCryptoProvider#getDefault()} and
+ * {@link PskCryptoProvider#setDefault(PskCryptoProvider)} use it.
+ */
+final class DefaultPskCryptoProvider {
+
+  static volatile PskCryptoProvider provider = PskCryptoProvider.jce();
+
+  private DefaultPskCryptoProvider() {
+  }
+}
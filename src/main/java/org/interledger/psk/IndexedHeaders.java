@@ -0,0 +1,66 @@
+package org.interledger.psk;
+
+import org.interledger.psk.PskMessage.Header;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * An immutable, ordered block of PSK headers with a case-insensitive index by name, built once at
+ * construction. Lookups return read-only views rather than copies.
+ */
+final class IndexedHeaders {
+
+  static final IndexedHeaders EMPTY = new IndexedHeaders(Collections.emptyList());
+
+  private final List<Header> headers;
+  private final Map<String, List<Header>> headersByName;
+
+  /**
+   * Constructs an index over a copy of the given headers, preserving their order.
+   *
+   * @param headers The headers to index.
+   */
+  IndexedHeaders(final List<Header> headers) {
+    Objects.requireNonNull(headers);
+
+    this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+
+    final Map<String, List<Header>> index = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (Header header : this.headers) {
+      index.computeIfAbsent(header.getName(), name -> new ArrayList<>(1))
+          .add(header);
+    }
+    index.replaceAll((name, named) -> Collections.unmodifiableList(named));
+    this.headersByName = index;
+  }
+
+  /**
+   * Get all the headers, in the order they were added.
+   *
+   * @return a read-only view of the headers.
+   */
+  List<Header> getAll() {
+    return headers;
+  }
+
+  /**
+   * Get the headers with the given name, compared case-insensitively.
+   *
+   * @param headerName The name of the header(s) to return.
+   *
+   * @return a read-only view of the matching headers, or an empty list.
+   */
+  List<Header> get(final String headerName) {
+    if (headerName == null) {
+      return Collections.emptyList();
+    }
+    final List<Header> named = headersByName.get(headerName);
+    return named == null ? Collections.emptyList() : named;
+  }
+
+}
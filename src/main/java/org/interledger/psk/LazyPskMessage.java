@@ -0,0 +1,173 @@
+package org.interledger.psk;
+
+import org.interledger.codecs.psk.PskMessageIndex;
+import org.interledger.psk.PskMessage.Header.WellKnown;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.crypto.SecretKey;
+
+/**
+ * A {@link PskMessage} read of an encoded message that only parses the status line and public
+ * headers up front. The private section is decrypted and parsed the first time a private header or
+ * the data is accessed, so messages rejected on their public headers never pay for decryption.
+ *
+ * <p>The message presents the same view as {@link PskContext#open(byte[], int, int)}: the
+ * encryption header is reported as {@link PskEncryptionType#NONE}. The ciphertext is decrypted in
+ * place, so the buffer must not be modified while the message is in use.
+ */
+final class LazyPskMessage implements PskMessage {
+
+  private final PskCryptoProvider cryptoProvider;
+  private final SecretKey key;
+  private final PskMessageIndex index;
+
+  private final IndexedHeaders publicHeaders;
+  private final PskEncryptionHeader encryptionHeader;
+  private final PskNonceHeader nonceHeader;
+
+  /* populated on first access to the private section */
+  private volatile PrivateSection privateSection;
+
+  /**
+   * Constructs a lazy message over an indexed, encoded message.
+   *
+   * @param cryptoProvider The provider of the AES-GCM implementation.
+   * @param key            The AES key used to decrypt the private section.
+   * @param index          The index of the encoded message.
+   */
+  LazyPskMessage(final PskCryptoProvider cryptoProvider, final SecretKey key,
+      final PskMessageIndex index) {
+    this.cryptoProvider = Objects.requireNonNull(cryptoProvider);
+    this.key = Objects.requireNonNull(key);
+    this.index = Objects.requireNonNull(index);
+
+    PskEncryptionHeader encryption = null;
+    PskNonceHeader nonce = null;
+    final List<Header> headers = new ArrayList<>(index.getPublicHeaderCount());
+
+    for (int i = 0; i < index.getPublicHeaderCount(); i++) {
+      final Header header = new Header(index.getPublicHeaderName(i),
+          index.getPublicHeaderValue(i));
+      if (header.getName().equalsIgnoreCase(WellKnown.ENCRYPTION)) {
+        encryption = PskEncryptionHeader.fromHeader(header);
+      } else if (header.getName().equalsIgnoreCase(WellKnown.NONCE)) {
+        nonce = PskNonceHeader.fromHeader(header);
+      } else {
+        headers.add(header);
+      }
+    }
+
+    Objects.requireNonNull(nonce, "Message has no nonce header.");
+
+    headers.add(PskEncryptionHeader.none());
+    headers.add(nonce);
+
+    this.publicHeaders = new IndexedHeaders(headers);
+    this.encryptionHeader = encryption;
+    this.nonceHeader = nonce;
+  }
+
+  @Override
+  public List<Header> getPublicHeaders() {
+    return publicHeaders.getAll();
+  }
+
+  @Override
+  public List<Header> getPublicHeaders(final String headerName) {
+    return publicHeaders.get(headerName);
+  }
+
+  @Override
+  public List<Header> getPrivateHeaders() {
+    return getPrivateSection().headers.getAll();
+  }
+
+  @Override
+  public List<Header> getPrivateHeaders(final String headerName) {
+    return getPrivateSection().headers.get(headerName);
+  }
+
+  @Override
+  public PskEncryptionHeader getEncryptionHeader() {
+    return PskEncryptionHeader.none();
+  }
+
+  @Override
+  public PskNonceHeader getNonceHeader() {
+    return nonceHeader;
+  }
+
+  @Override
+  public byte[] getData() {
+    final ByteBuffer data = getPrivateSection().data.duplicate();
+    final byte[] copy = new byte[data.remaining()];
+    data.get(copy);
+    return copy;
+  }
+
+  @Override
+  public ByteBuffer getDataBuffer() {
+    return getPrivateSection().data.duplicate();
+  }
+
+  /**
+   * Indicates if the private section has been decrypted and parsed yet.
+   *
+   * @return true if a private header or the data has been accessed.
+   */
+  boolean isPrivateSectionRead() {
+    return privateSection != null;
+  }
+
+  private PrivateSection getPrivateSection() {
+    PrivateSection section = privateSection;
+    if (section == null) {
+      synchronized (this) {
+        section = privateSection;
+        if (section == null) {
+          section = readPrivateSection();
+          privateSection = section;
+        }
+      }
+    }
+    return section;
+  }
+
+  private PrivateSection readPrivateSection() {
+    final PskMessageIndex privateIndex;
+    if (index.isEncrypted()) {
+      final int length = cryptoProvider.newAesGcm(key)
+          .decrypt(nonceHeader.getNonce(), encryptionHeader.getAuthenticationTag(),
+              index.getBuffer(), index.getDataOffset(), index.getDataLength());
+      privateIndex =
+          PskMessageIndex.ofPrivateData(index.getBuffer(), index.getDataOffset(), length);
+    } else {
+      privateIndex = index;
+    }
+
+    final List<Header> headers = new ArrayList<>(privateIndex.getPrivateHeaderCount());
+    for (int i = 0; i < privateIndex.getPrivateHeaderCount(); i++) {
+      headers.add(new Header(privateIndex.getPrivateHeaderName(i),
+          privateIndex.getPrivateHeaderValue(i)));
+    }
+    return new PrivateSection(new IndexedHeaders(headers), privateIndex.getData());
+  }
+
+  /**
+   * The decrypted private headers and a read-only view of the decrypted data.
+   */
+  private static final class PrivateSection {
+
+    private final IndexedHeaders headers;
+    private final ByteBuffer data;
+
+    private PrivateSection(final IndexedHeaders headers, final ByteBuffer data) {
+      this.headers = headers;
+      this.data = data;
+    }
+  }
+
+}
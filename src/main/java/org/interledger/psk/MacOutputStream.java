@@ -0,0 +1,35 @@
+package org.interledger.psk;
+
+import org.interledger.psk.PskCryptoProvider.HmacSha256;
+
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An {@link OutputStream} that feeds everything written to it into an {@link HmacSha256}, so that
+ * an encoder can be authenticated without buffering its output.
+ */
+final class MacOutputStream extends OutputStream {
+
+  private final HmacSha256 mac;
+
+  /**
+   * Constructs a stream over a keyed {@link HmacSha256}.
+   *
+   * @param mac The MAC to update.
+   */
+  MacOutputStream(final HmacSha256 mac) {
+    this.mac = Objects.requireNonNull(mac);
+  }
+
+  @Override
+  public void write(final int value) {
+    mac.update((byte) value);
+  }
+
+  @Override
+  public void write(final byte[] buffer, final int offset, final int length) {
+    mac.update(buffer, offset, length);
+  }
+
+}
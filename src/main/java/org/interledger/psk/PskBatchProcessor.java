@@ -0,0 +1,159 @@
+package org.interledger.psk;
+
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.ilp.InterledgerPayment;
+import org.interledger.psk.PskContext.SenderPskContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import javax.crypto.SecretKey;
+
+/**
+ * Runs {@link PskContext} operations over batches of payments or messages in parallel, for
+ * example when replaying or reconciling a day of payments offline.
+ *
+ * <p>Each batch is split into contiguous ranges that are processed as tasks on a
+ * {@link ForkJoinPool}. Every range creates its own HMAC or cipher from the
+ * {@link PskCryptoProvider} of the context once and reuses it for all the items in the range, so
+ * workers never contend on shared crypto state. Results are returned in the same order as the
+ * inputs.
+ */
+public class PskBatchProcessor {
+
+  /* the number of ranges to aim for per thread in the pool, to even out uneven work */
+  private static final int RANGES_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private final PskCryptoProvider cryptoProvider;
+  private final SecretKey encryptionKey;
+  private final byte[] fulfillmentHmacKey;
+
+  /**
+   * Create a batch processor that runs on the common {@link ForkJoinPool}.
+   *
+   * @param context The PSK context to process batches with.
+   */
+  public PskBatchProcessor(final PskContext context) {
+    this(context, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a batch processor that runs on the given pool.
+   *
+   * @param context The PSK context to process batches with.
+   * @param pool    The pool to run the batches on.
+   */
+  public PskBatchProcessor(final PskContext context, final ForkJoinPool pool) {
+    Objects.requireNonNull(context, "context must not be null");
+    this.pool = Objects.requireNonNull(pool, "pool must not be null");
+    this.cryptoProvider = context.getCryptoProvider();
+    this.encryptionKey = context.getEncryptionKey();
+    this.fulfillmentHmacKey = context.getFulfillmentHmacKey();
+  }
+
+  /**
+   * Generate the fulfillments of a batch of payments.
+   *
+   * @param payments The payments for which fulfillments are required.
+   *
+   * @return The fulfillments, in the same order as the payments.
+   *
+   * @see PskContext#generateFulfillment(InterledgerPayment)
+   */
+  public List<Fulfillment> generateFulfillments(final List<InterledgerPayment> payments) {
+    return process(payments, () -> cryptoProvider.newHmacSha256(fulfillmentHmacKey),
+        SenderPskContext::generateFulfillment);
+  }
+
+  /**
+   * Encrypt a batch of messages.
+   *
+   * @param messages Unencrypted PSK messages.
+   *
+   * @return The encrypted messages, in the same order as the inputs.
+   *
+   * @see PskContext#encryptMessage(PskMessage)
+   */
+  public List<PskMessage> encryptMessages(final List<PskMessage> messages) {
+    return process(messages, () -> cryptoProvider.newAesGcm(encryptionKey),
+        SenderPskContext::encryptMessage);
+  }
+
+  /**
+   * Decrypt a batch of messages.
+   *
+   * @param messages Encrypted PSK messages.
+   *
+   * @return The decrypted messages, in the same order as the inputs.
+   *
+   * @see PskContext#decryptMessage(PskMessage)
+   */
+  public List<PskMessage> decryptMessages(final List<PskMessage> messages) {
+    return process(messages, () -> cryptoProvider.newAesGcm(encryptionKey),
+        SenderPskContext::decryptMessage);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <S, T, R> List<R> process(final List<T> inputs, final Supplier<S> state,
+      final BiFunction<S, T, R> operation) {
+    Objects.requireNonNull(inputs, "inputs must not be null");
+
+    final Object[] items = inputs.toArray();
+    final Object[] results = new Object[items.length];
+    if (items.length > 0) {
+      final int rangeSize = Math.max(1,
+          items.length / (pool.getParallelism() * RANGES_PER_THREAD));
+      pool.invoke(new RangeTask<>(items, results, 0, items.length, rangeSize, state, operation));
+    }
+    return Arrays.asList((R[]) results);
+  }
+
+  /**
+   * Splits a range of the batch in half until it is small enough, then processes it with its own
+   * crypto state.
+   */
+  private static final class RangeTask<S, T, R> extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] items;
+    private final Object[] results;
+    private final int from;
+    private final int to;
+    private final int rangeSize;
+    private final transient Supplier<S> state;
+    private final transient BiFunction<S, T, R> operation;
+
+    private RangeTask(final Object[] items, final Object[] results, final int from, final int to,
+        final int rangeSize, final Supplier<S> state, final BiFunction<S, T, R> operation) {
+      this.items = items;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.rangeSize = rangeSize;
+      this.state = state;
+      this.operation = operation;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void compute() {
+      if (to - from <= rangeSize) {
+        final S worker = state.get();
+        for (int i = from; i < to; i++) {
+          results[i] = operation.apply(worker, (T) items[i]);
+        }
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(new RangeTask<>(items, results, from, middle, rangeSize, state, operation),
+          new RangeTask<>(items, results, middle, to, rangeSize, state, operation));
+    }
+  }
+
+}
@@ -2,22 +2,26 @@ package org.interledger.psk;
 
 import org.interledger.InterledgerAddress;
 import org.interledger.InterledgerRuntimeException;
+import org.interledger.codecs.CodecContext;
 import org.interledger.codecs.CodecContextFactory;
 import org.interledger.codecs.psk.PskMessageBinaryCodec;
+import org.interledger.codecs.psk.PskMessageIndex;
 import org.interledger.cryptoconditions.Fulfillment;
 import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
 import org.interledger.ilp.InterledgerPayment;
-import org.interledger.psk.PskCryptoUtils.AesGcmEncryptResult;
+import org.interledger.psk.PskCryptoProvider.AesGcm;
+import org.interledger.psk.PskCryptoProvider.HmacSha256;
 import org.interledger.psk.PskMessage.Header.WellKnown;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Objects;
-import javax.crypto.Mac;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -207,13 +211,9 @@ public interface PskContext {
       throw new RuntimeException("Invalid SHA-256 HMAC key. Must be 32 bytes.");
     }
 
-    try {
-      Mac mac = Mac.getInstance(HMAC_ALGORITHM);
-      mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
-      return mac.doFinal(message);
-    } catch (InvalidKeyException | NoSuchAlgorithmException | IllegalStateException e) {
-      throw new InterledgerRuntimeException("Error getting HMAC", e);
-    }
+    return PskCryptoProvider.getDefault()
+        .newHmacSha256(key)
+        .doFinal(message);
   }
 
   /**
@@ -282,11 +282,74 @@ public interface PskContext {
    */
   PskMessage encryptMessage(PskMessage message);
 
+  /**
+   * Encrypts a PSK Message and encodes it, producing the wire format in a single pass.
+   *
+   * <p>The result is equivalent to encoding the output of {@link #encryptMessage(PskMessage)},
+   * except that the encryption header is written after the nonce header. The private headers and
+   * data are encoded once and encrypted in place.
+   *
+   * @param message An unencrypted PSK Message
+   *
+   * @return The encoded, encrypted PSK message.
+   */
+  byte[] seal(PskMessage message);
+
+  /**
+   * Encrypts a PSK Message and encodes it into a caller-supplied buffer.
+   *
+   * @param message An unencrypted PSK Message
+   * @param buffer  The buffer to write to. Must have at least {@link #getSealedLength(PskMessage)}
+   *                bytes available from {@code offset}.
+   * @param offset  The position in the buffer at which to start writing.
+   *
+   * @return the number of bytes written.
+   */
+  int seal(PskMessage message, byte[] buffer, int offset);
+
+  /**
+   * Calculate the number of bytes {@link #seal(PskMessage)} will produce for a message.
+   *
+   * @param message An unencrypted PSK Message
+   *
+   * @return the sealed length of the message, in bytes.
+   */
+  int getSealedLength(PskMessage message);
+
+  /**
+   * Decodes and decrypts an encrypted PSK message. The ciphertext is decrypted in place, so the
+   * contents of the buffer are modified.
+   *
+   * <p>To open the PSK message carried in an encoded payment, locate its data field with
+   * {@link org.interledger.codecs.oer.ilp.InterledgerPaymentOerCodec#locateData}.
+   *
+   * @param buffer The buffer holding the encoded, encrypted PSK message.
+   * @param offset The offset of the message within the buffer.
+   * @param length The length of the message.
+   *
+   * @return the decrypted PSK message (with private headers added)
+   */
+  PskMessage open(byte[] buffer, int offset, int length);
+
+  /**
+   * Reads an encoded PSK message, parsing only the status line and public headers. The private
+   * headers and data are decrypted in place the first time either is accessed, so a message can be
+   * rejected on its public headers without paying for decryption.
+   *
+   * @param buffer The buffer holding the encoded PSK message. Must not be modified while the
+   *               returned message is in use.
+   * @param offset The offset of the message within the buffer.
+   * @param length The length of the message.
+   *
+   * @return the PSK message, presented as if decrypted.
+   */
+  PskMessage openLazily(byte[] buffer, int offset, int length);
+
   /**
    * Generate a fulfillment of a given Interledger Payment.
    *
-   * <p>This will encode the payment to a byte array and then HMAC the data using a key derived of
-   * the pre-shared key.
+   * <p>This will HMAC the OER encoding of the payment using a key derived of the pre-shared key.
+   * The encoding is streamed into the HMAC rather than written to a byte array.
    *
    * @param payment The payment for which a fulfillment is required.
    *
@@ -294,6 +357,18 @@ public interface PskContext {
    */
   Fulfillment generateFulfillment(InterledgerPayment payment);
 
+  /**
+   * Generate a fulfillment of an Interledger Payment that has already been encoded, such as the
+   * packet as it was received. The bytes are used as they are, without decoding or re-encoding.
+   *
+   * @param packet The buffer holding the OER encoded payment.
+   * @param offset The offset of the packet within the buffer.
+   * @param length The length of the packet.
+   *
+   * @return The fulfillment for the given payment and this context.
+   */
+  Fulfillment generateFulfillment(byte[] packet, int offset, int length);
+
   /**
    * Generate a new address based on the given address by appending a new segment with the receiver
    * ID and token of this context.
@@ -343,12 +418,26 @@ public interface PskContext {
    */
   byte[] getFulfillmentHmacKey();
 
+  /**
+   * Get the provider of the ciphers and HMACs this context uses.
+   *
+   * @return the crypto provider.
+   */
+  PskCryptoProvider getCryptoProvider();
+
   class SenderPskContext implements PskContext {
 
+    private static final CodecContext CODEC_CONTEXT = CodecContextFactory.interledger();
+
+    private final PskCryptoProvider cryptoProvider;
     private final byte[] sharedKey;
     private final byte[] fulfillmentHmacKey;
     private final SecretKey encryptionKey;
 
+    /* an idle HMAC pre-keyed with the fulfillment HMAC key, if any; callers that find none, as
+     * when another thread holds it, key their own rather than wait */
+    private final AtomicReference<HmacSha256> idleFulfillmentHmac = new AtomicReference<>();
+
     protected SenderPskContext(byte[] preSharedKey) {
 
       Objects.requireNonNull(preSharedKey);
@@ -357,6 +446,7 @@ public interface PskContext {
             + preSharedKey.length + "]. " + "Expected [" + SHARED_KEY_LEN_BYTES + "].");
       }
 
+      this.cryptoProvider = PskCryptoProvider.getDefault();
       this.sharedKey = Arrays.copyOf(preSharedKey, preSharedKey.length);
       this.encryptionKey = generateEncryptionKey(this.sharedKey);
       this.fulfillmentHmacKey = generateFulfillmentHmacKey(this.sharedKey);
@@ -364,6 +454,19 @@ public interface PskContext {
 
     @Override
     public PskMessage decryptMessage(PskMessage message) {
+      return decryptMessage(cryptoProvider.newAesGcm(encryptionKey), message);
+    }
+
+    @Override
+    public PskMessage encryptMessage(PskMessage message) {
+      return encryptMessage(cryptoProvider.newAesGcm(encryptionKey), message);
+    }
+
+    /**
+     * Decrypts a PSK message using the given AES-GCM instance, so that callers handling many
+     * messages can reuse one per thread.
+     */
+    static PskMessage decryptMessage(AesGcm aesGcm, PskMessage message) {
 
       Objects.requireNonNull(message);
 
@@ -377,10 +480,11 @@ public interface PskContext {
         throw new IllegalArgumentException("Message is not encrypted.");
       }
 
-      byte[] decryptedData = PskCryptoUtils.decryptPskData(encryptionKey,
-          encryptionHeader.getAuthenticationTag(), nonceHeader.getNonce(), message.getData());
+      final byte[] data = message.getData();
+      final int length = aesGcm.decrypt(nonceHeader.getNonce(),
+          encryptionHeader.getAuthenticationTag(), data, 0, data.length);
 
-      PskMessage privateMessage = new PskMessageBinaryCodec().parsePrivateData(decryptedData);
+      final PskMessageIndex privateIndex = PskMessageIndex.ofPrivateData(data, 0, length);
       PskMessage.Builder builder = PskMessage.builder();
 
       message.getPublicHeaders()
@@ -391,19 +495,23 @@ public interface PskContext {
               .equals(WellKnown.NONCE)))
           .forEach(builder::addPublicHeader);
 
-      for (PskMessage.Header privateHeader : privateMessage.getPrivateHeaders()) {
-        builder.addPrivateHeader(privateHeader);
+      for (int i = 0; i < privateIndex.getPrivateHeaderCount(); i++) {
+        builder.addPrivateHeader(privateIndex.getPrivateHeaderName(i),
+            privateIndex.getPrivateHeaderValue(i));
       }
 
       builder.addPublicHeader(PskEncryptionHeader.none());
       builder.addPublicHeader(message.getNonceHeader());
 
-      builder.data(privateMessage.getData());
+      builder.data(Arrays.copyOfRange(data, privateIndex.getDataOffset(), length));
       return builder.build();
     }
 
-    @Override
-    public PskMessage encryptMessage(PskMessage message) {
+    /**
+     * Encrypts a PSK message using the given AES-GCM instance, so that callers handling many
+     * messages can reuse one per thread.
+     */
+    static PskMessage encryptMessage(AesGcm aesGcm, PskMessage message) {
 
       Objects.requireNonNull(message);
 
@@ -423,8 +531,8 @@ public interface PskContext {
 
       byte[] encryptedData = new PskMessageBinaryCodec().writePrivateData(message);
 
-      AesGcmEncryptResult result =
-          PskCryptoUtils.encryptPskData(encryptionKey, nonceHeader.getNonce(), encryptedData);
+      byte[] authenticationTag =
+          aesGcm.encrypt(nonceHeader.getNonce(), encryptedData, 0, encryptedData.length);
 
       PskMessage.Builder builder = PskMessage.builder();
 
@@ -436,20 +544,204 @@ public interface PskContext {
               .equals(WellKnown.NONCE)))
           .forEach(builder::addPublicHeader);
 
-      builder.addPublicHeader(PskEncryptionHeader.aesGcm(result.getAuthenticationTag()));
+      builder.addPublicHeader(PskEncryptionHeader.aesGcm(authenticationTag));
+      builder.addPublicHeader(nonceHeader);
+
+      builder.data(encryptedData);
+      return builder.build();
+
+    }
+
+    @Override
+    public byte[] seal(PskMessage message) {
+      final PskMessage envelope = getSealedEnvelope(message);
+      final PskMessageBinaryCodec codec = new PskMessageBinaryCodec();
+
+      final byte[] sealed =
+          new byte[codec.getEncodedLength(envelope) + codec.getPrivateDataLength(message)];
+      seal(codec, envelope, message, sealed, 0);
+      return sealed;
+    }
+
+    @Override
+    public int seal(PskMessage message, byte[] buffer, int offset) {
+      Objects.requireNonNull(buffer);
+      return seal(new PskMessageBinaryCodec(), getSealedEnvelope(message), message, buffer,
+          offset);
+    }
+
+    @Override
+    public int getSealedLength(PskMessage message) {
+      final PskMessageBinaryCodec codec = new PskMessageBinaryCodec();
+      return codec.getEncodedLength(getSealedEnvelope(message))
+          + codec.getPrivateDataLength(message);
+    }
+
+    /**
+     * Writes the public portion of the envelope, then the private portion of the message directly
+     * after it, encrypts that in place and fills in the auth tag. The encryption header is the
+     * last public header, so its tag ends just before the two line feeds that close the headers.
+     */
+    private int seal(PskMessageBinaryCodec codec, PskMessage envelope, PskMessage message,
+        byte[] buffer, int offset) {
+
+      final int headersLength = codec.write(envelope, buffer, offset);
+      final int dataLength = codec.writePrivateData(message, buffer, offset + headersLength);
+
+      final byte[] authTag = cryptoProvider.newAesGcm(encryptionKey)
+          .encrypt(envelope.getNonceHeader().getNonce(), buffer, offset + headersLength,
+              dataLength);
+
+      final byte[] encodedTag = Base64.getUrlEncoder()
+          .withoutPadding()
+          .encode(authTag);
+      System.arraycopy(encodedTag, 0, buffer, offset + headersLength - 2 - encodedTag.length,
+          encodedTag.length);
+
+      return headersLength + dataLength;
+    }
+
+    /**
+     * Builds the public portion of a sealed message, with a placeholder auth tag and no data.
+     */
+    static PskMessage getSealedEnvelope(PskMessage message) {
+
+      Objects.requireNonNull(message);
+
+      PskEncryptionHeader encryptionHeader = message.getEncryptionHeader();
+      PskNonceHeader nonceHeader = message.getNonceHeader();
+
+      Objects.requireNonNull(encryptionHeader,
+          "Message has no encryption header. May already be encrypted.");
+
+      if (nonceHeader == null) {
+        nonceHeader = PskNonceHeader.seed();
+      }
+
+      if (encryptionHeader.getEncryptionType() != PskEncryptionType.NONE) {
+        throw new IllegalArgumentException("Message is already encrypted.");
+      }
+
+      PskMessage.Builder builder = PskMessage.builder();
+
+      message.getPublicHeaders()
+          .stream()
+          .filter(header -> (!header.getName()
+              .equalsIgnoreCase(WellKnown.ENCRYPTION)
+              && !header.getName()
+              .equalsIgnoreCase(WellKnown.NONCE)))
+          .forEach(builder::addPublicHeader);
+
       builder.addPublicHeader(nonceHeader);
+      builder.addPublicHeader(PskEncryptionHeader.aesGcm(new byte[AUTH_TAG_LEN_BYTES]));
 
-      builder.data(result.getEncryptedData());
       return builder.build();
+    }
 
+    @Override
+    public PskMessage open(byte[] buffer, int offset, int length) {
+
+      Objects.requireNonNull(buffer);
+
+      final PskMessageIndex index = PskMessageIndex.of(buffer, offset, length);
+      if (!index.isEncrypted()) {
+        throw new IllegalArgumentException("Message is not encrypted.");
+      }
+
+      PskEncryptionHeader encryptionHeader = null;
+      PskNonceHeader nonceHeader = null;
+      PskMessage.Builder builder = PskMessage.builder();
+
+      for (int i = 0; i < index.getPublicHeaderCount(); i++) {
+        final PskMessage.Header header = new PskMessage.Header(index.getPublicHeaderName(i),
+            index.getPublicHeaderValue(i));
+        if (header.getName().equalsIgnoreCase(WellKnown.ENCRYPTION)) {
+          encryptionHeader = PskEncryptionHeader.fromHeader(header);
+        } else if (header.getName().equalsIgnoreCase(WellKnown.NONCE)) {
+          nonceHeader = PskNonceHeader.fromHeader(header);
+        } else {
+          builder.addPublicHeader(header);
+        }
+      }
+
+      Objects.requireNonNull(nonceHeader, "Message has no nonce header.");
+
+      final int dataLength = cryptoProvider.newAesGcm(encryptionKey)
+          .decrypt(nonceHeader.getNonce(), encryptionHeader.getAuthenticationTag(), buffer,
+              index.getDataOffset(), index.getDataLength());
+
+      final PskMessageIndex privateIndex =
+          PskMessageIndex.ofPrivateData(buffer, index.getDataOffset(), dataLength);
+      for (int i = 0; i < privateIndex.getPrivateHeaderCount(); i++) {
+        builder.addPrivateHeader(privateIndex.getPrivateHeaderName(i),
+            privateIndex.getPrivateHeaderValue(i));
+      }
+
+      builder.addPublicHeader(PskEncryptionHeader.none());
+      builder.addPublicHeader(nonceHeader);
+
+      final ByteBuffer data = privateIndex.getData();
+      final byte[] decryptedData = new byte[data.remaining()];
+      data.get(decryptedData);
+      builder.data(decryptedData);
+      return builder.build();
+    }
+
+    @Override
+    public PskMessage openLazily(byte[] buffer, int offset, int length) {
+      Objects.requireNonNull(buffer);
+      return new LazyPskMessage(cryptoProvider, encryptionKey,
+          PskMessageIndex.of(buffer, offset, length));
     }
 
     @Override
     public Fulfillment generateFulfillment(InterledgerPayment payment) {
+      final HmacSha256 hmac = takeFulfillmentHmac();
+      final Fulfillment fulfillment = generateFulfillment(hmac, payment);
+      idleFulfillmentHmac.set(hmac);
+      return fulfillment;
+    }
+
+    /**
+     * Generates a fulfillment by streaming the OER encoding of the payment into an HMAC keyed with
+     * the fulfillment HMAC key. The HMAC is left ready for the next payment however this ends,
+     * since a payment that fails part way through encoding has already been partly written to it.
+     */
+    static Fulfillment generateFulfillment(HmacSha256 fulfillmentHmac,
+        InterledgerPayment payment) {
       Objects.requireNonNull(payment);
-      byte[] packet = CodecContextFactory.interledger()
-          .write(InterledgerPayment.class, payment);
-      return new PreimageSha256Fulfillment(hmacSha256(fulfillmentHmacKey, packet));
+      boolean written = false;
+      try {
+        CODEC_CONTEXT.write(InterledgerPayment.class, payment,
+            new MacOutputStream(fulfillmentHmac));
+        written = true;
+      } catch (IOException e) {
+        throw new InterledgerRuntimeException("Error encoding payment", e);
+      } finally {
+        if (!written) {
+          fulfillmentHmac.reset();
+        }
+      }
+      return new PreimageSha256Fulfillment(fulfillmentHmac.doFinal());
+    }
+
+    @Override
+    public Fulfillment generateFulfillment(byte[] packet, int offset, int length) {
+      Objects.requireNonNull(packet);
+      final HmacSha256 hmac = takeFulfillmentHmac();
+      hmac.update(packet, offset, length);
+      final Fulfillment fulfillment = new PreimageSha256Fulfillment(hmac.doFinal());
+      idleFulfillmentHmac.set(hmac);
+      return fulfillment;
+    }
+
+    /**
+     * Take the idle HMAC keyed with the fulfillment HMAC key, or key a new one if there is none. A
+     * caller returns it only once it is complete, so a failed call leaves none behind.
+     */
+    private HmacSha256 takeFulfillmentHmac() {
+      final HmacSha256 hmac = idleFulfillmentHmac.getAndSet(null);
+      return hmac != null ? hmac : cryptoProvider.newHmacSha256(fulfillmentHmacKey);
     }
 
     @Override
@@ -485,6 +777,11 @@ public interface PskContext {
       return Arrays.copyOf(fulfillmentHmacKey, FULFILLMENT_KEY_LEN_BYTES);
     }
 
+    @Override
+    public PskCryptoProvider getCryptoProvider() {
+      return cryptoProvider;
+    }
+
   }
 
   class ReceiverPskContext extends SenderPskContext {
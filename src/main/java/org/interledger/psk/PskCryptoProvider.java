@@ -0,0 +1,307 @@
+package org.interledger.psk;
+
+import org.interledger.InterledgerRuntimeException;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A service provider interface for the HMAC-SHA256 and AES-256-GCM primitives used by the PSK
+ * protocol.
+ *
+ * <p>The default implementation uses whichever JCE provider comes first for each algorithm.
+ * Alternatives, such as a specific JCE provider or a pure-Java implementation for constrained
+ * runtimes, can be installed with {@link #setDefault(PskCryptoProvider)} or registered with
+ * {@link ServiceLoader} under {@code META-INF/services/org.interledger.psk.PskCryptoProvider}.
+ * The {@code PskCryptoBenchmark} of the tests measures the available providers on the running
+ * host.
+ *
+ * <p>Providers must be thread-safe, but the {@link HmacSha256} and {@link AesGcm} instances they
+ * create are used by one thread at a time. Instances can be re-keyed, so that callers working
+ * through many keys need not pay for creating a new instance for each.
+ */
+public interface PskCryptoProvider {
+
+  /**
+   * Get the provider used by new PSK contexts.
+   *
+   * @return the default provider.
+   */
+  static PskCryptoProvider getDefault() {
+    return DefaultPskCryptoProvider.provider;
+  }
+
+  /**
+   * Set the provider used by PSK contexts created after this call.
+   *
+   * @param provider The provider to use.
+   */
+  static void setDefault(final PskCryptoProvider provider) {
+    DefaultPskCryptoProvider.provider =
+        Objects.requireNonNull(provider, "provider must not be null");
+  }
+
+  /**
+   * Get a provider backed by the first JCE provider that supports each algorithm.
+   *
+   * @return a JCE backed provider.
+   */
+  static PskCryptoProvider jce() {
+    return new JceProvider(null);
+  }
+
+  /**
+   * Get a provider backed by a specific JCE provider.
+   *
+   * @param provider The JCE provider to use for both algorithms.
+   *
+   * @return a JCE backed provider.
+   */
+  static PskCryptoProvider jce(final Provider provider) {
+    return new JceProvider(Objects.requireNonNull(provider, "provider must not be null"));
+  }
+
+  /**
+   * List the providers available on this host: the default JCE lookup, each installed JCE provider
+   * that supports both algorithms, and any registered with {@link ServiceLoader}.
+   *
+   * @return the available providers.
+   */
+  static List<PskCryptoProvider> available() {
+    final List<PskCryptoProvider> providers = new ArrayList<>();
+    providers.add(jce());
+    for (Provider provider : Security.getProviders()) {
+      if (JceProvider.supports(provider)) {
+        providers.add(jce(provider));
+      }
+    }
+    for (PskCryptoProvider provider : ServiceLoader.load(PskCryptoProvider.class)) {
+      providers.add(provider);
+    }
+    return providers;
+  }
+
+  /**
+   * Get a name for this provider, for reporting.
+   *
+   * @return the name of the provider.
+   */
+  String getName();
+
+  /**
+   * Create a new HMAC-SHA256 instance, initialized with the given key.
+   *
+   * @param key The HMAC key.
+   *
+   * @return a keyed HMAC.
+   */
+  HmacSha256 newHmacSha256(byte[] key);
+
+  /**
+   * Create a new AES-256-GCM instance for the given key.
+   *
+   * @param key The AES key.
+   *
+   * @return an AES-GCM cipher.
+   */
+  AesGcm newAesGcm(SecretKey key);
+
+  /**
+   * A keyed HMAC-SHA256. Instances are reusable: {@link #doFinal()} resets the state for the next
+   * message.
+   */
+  interface HmacSha256 {
+
+    /**
+     * Change the key, discarding any partial message.
+     *
+     * @param key The new HMAC key.
+     */
+    void init(byte[] key);
+
+    void update(byte input);
+
+    void update(byte[] input, int offset, int length);
+
+    /**
+     * Complete the HMAC and reset for the next message.
+     *
+     * @return the 32 byte HMAC.
+     */
+    byte[] doFinal();
+
+    /**
+     * Discard any partial message.
+     */
+    void reset();
+
+    /**
+     * HMAC a complete message.
+     *
+     * @param message The message.
+     *
+     * @return the 32 byte HMAC.
+     */
+    default byte[] doFinal(final byte[] message) {
+      update(message, 0, message.length);
+      return doFinal();
+    }
+  }
+
+  /**
+   * AES-256-GCM with a 16 byte nonce and a 16 byte authentication tag, working in place.
+   */
+  interface AesGcm {
+
+    /**
+     * Change the key used by subsequent operations.
+     *
+     * @param key The new AES key.
+     */
+    void init(SecretKey key);
+
+    /**
+     * Encrypt data in place.
+     *
+     * @param nonce  The 16 byte nonce.
+     * @param buffer The buffer holding the plaintext.
+     * @param offset The offset of the plaintext within the buffer.
+     * @param length The length of the plaintext.
+     *
+     * @return the 16 byte authentication tag.
+     */
+    byte[] encrypt(byte[] nonce, byte[] buffer, int offset, int length);
+
+    /**
+     * Verify and decrypt data in place.
+     *
+     * @param nonce   The 16 byte nonce.
+     * @param authTag The 16 byte authentication tag.
+     * @param buffer  The buffer holding the ciphertext.
+     * @param offset  The offset of the ciphertext within the buffer.
+     * @param length  The length of the ciphertext.
+     *
+     * @return the length of the plaintext.
+     *
+     * @throws InterledgerRuntimeException if the data fails authentication.
+     */
+    int decrypt(byte[] nonce, byte[] authTag, byte[] buffer, int offset, int length);
+  }
+
+  /**
+   * A provider backed by JCE {@link Mac} and {@link Cipher} instances.
+   */
+  final class JceProvider implements PskCryptoProvider {
+
+    private final Provider provider;
+
+    private JceProvider(final Provider provider) {
+      this.provider = provider;
+    }
+
+    private static boolean supports(final Provider provider) {
+      try {
+        PskCryptoUtils.newCipher(provider);
+        Mac.getInstance(PskContext.HMAC_ALGORITHM, provider);
+        return true;
+      } catch (InterledgerRuntimeException | NoSuchAlgorithmException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public String getName() {
+      return provider == null ? "JCE" : "JCE " + provider.getName();
+    }
+
+    @Override
+    public HmacSha256 newHmacSha256(final byte[] key) {
+      Objects.requireNonNull(key);
+      final Mac mac;
+      try {
+        mac = provider == null ? Mac.getInstance(PskContext.HMAC_ALGORITHM)
+            : Mac.getInstance(PskContext.HMAC_ALGORITHM, provider);
+        mac.init(new SecretKeySpec(key, PskContext.HMAC_ALGORITHM));
+      } catch (InvalidKeyException | NoSuchAlgorithmException e) {
+        throw new InterledgerRuntimeException("Error getting HMAC", e);
+      }
+
+      return new HmacSha256() {
+        @Override
+        public void init(final byte[] key) {
+          Objects.requireNonNull(key);
+          try {
+            mac.init(new SecretKeySpec(key, PskContext.HMAC_ALGORITHM));
+          } catch (InvalidKeyException e) {
+            throw new InterledgerRuntimeException("Error initializing HMAC", e);
+          }
+        }
+
+        @Override
+        public void update(final byte input) {
+          mac.update(input);
+        }
+
+        @Override
+        public void update(final byte[] input, final int offset, final int length) {
+          mac.update(input, offset, length);
+        }
+
+        @Override
+        public byte[] doFinal() {
+          return mac.doFinal();
+        }
+
+        @Override
+        public void reset() {
+          mac.reset();
+        }
+      };
+    }
+
+    @Override
+    public AesGcm newAesGcm(final SecretKey initialKey) {
+      Objects.requireNonNull(initialKey);
+      final Cipher cipher = PskCryptoUtils.newCipher(provider);
+
+      return new AesGcm() {
+
+        private SecretKey key = initialKey;
+
+        @Override
+        public void init(final SecretKey key) {
+          this.key = Objects.requireNonNull(key);
+        }
+
+        @Override
+        public byte[] encrypt(final byte[] nonce, final byte[] buffer, final int offset,
+            final int length) {
+          return PskCryptoUtils.encryptInPlace(cipher, key, nonce, buffer, offset, length);
+        }
+
+        @Override
+        public int decrypt(final byte[] nonce, final byte[] authTag, final byte[] buffer,
+            final int offset, final int length) {
+          return PskCryptoUtils.decryptInPlace(cipher, key, authTag, nonce, buffer, offset,
+              length);
+        }
+      };
+    }
+
+    @Override
+    public String toString() {
+      return getName();
+    }
+  }
+
+}
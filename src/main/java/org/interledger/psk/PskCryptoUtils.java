@@ -5,6 +5,7 @@ import org.interledger.InterledgerRuntimeException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
 import java.util.Arrays;
 import java.util.Objects;
 import javax.crypto.BadPaddingException;
@@ -12,6 +13,7 @@ import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 
 /**
@@ -60,7 +62,7 @@ public class PskCryptoUtils {
 
     Cipher cipher;
     try {
-      cipher = Cipher.getInstance(CIPHER_SPEC);
+      cipher = newCipher();
 
       /* convert the auth tag length to bits */
       GCMParameterSpec spec = new GCMParameterSpec(AUTH_TAG_LEN_BYTES * 8, nonce);
@@ -96,8 +98,8 @@ public class PskCryptoUtils {
           return authTag;
         }
       };
-    } catch (BadPaddingException | NoSuchAlgorithmException | NoSuchPaddingException
-        | InvalidAlgorithmParameterException | IllegalBlockSizeException e) {
+    } catch (BadPaddingException | InvalidAlgorithmParameterException
+        | IllegalBlockSizeException e) {
       throw new InterledgerRuntimeException("Error encrypting data of PSK message.", e);
     } catch (InvalidKeyException e) {
       throw new InterledgerRuntimeException("Error encrypting data of PSK message. "
@@ -131,7 +133,7 @@ public class PskCryptoUtils {
 
     Cipher cipher;
     try {
-      cipher = Cipher.getInstance(CIPHER_SPEC);
+      cipher = newCipher();
       GCMParameterSpec spec = new GCMParameterSpec(AUTH_TAG_LEN_BYTES * 8, nonce);
       cipher.init(Cipher.DECRYPT_MODE, key, spec);
 
@@ -143,8 +145,8 @@ public class PskCryptoUtils {
 
       /* this should decrypt the data and verify the authentication tag at the same time */
       return cipher.doFinal(authTag);
-    } catch (InvalidAlgorithmParameterException | NoSuchPaddingException | IllegalBlockSizeException
-        | BadPaddingException | NoSuchAlgorithmException e) {
+    } catch (InvalidAlgorithmParameterException | IllegalBlockSizeException
+        | BadPaddingException e) {
       throw new InterledgerRuntimeException("Error decrypting data of PSK message.", e);
     } catch (InvalidKeyException e) {
       throw new InterledgerRuntimeException("Error decrypting data of PSK message. "
@@ -154,6 +156,174 @@ public class PskCryptoUtils {
 
   }
 
+  /*
+   * the standard name of the same transformation. GCM does not pad, and newer JDKs no longer accept
+   * the PKCS5Padding alias for it
+   */
+  private static final String CIPHER_SPEC_NO_PADDING = "AES/GCM/NoPadding";
+
+  /**
+   * Creates a new, uninitialized cipher for the PSK encryption scheme. A cipher may be reused for
+   * many messages by the same thread, saving the cost of looking it up every time.
+   *
+   * @return a new {@link Cipher} instance.
+   */
+  public static Cipher newCipher() {
+    return newCipher(null);
+  }
+
+  /**
+   * Creates a new, uninitialized cipher for the PSK encryption scheme from a specific JCE provider.
+   *
+   * @param provider The JCE provider, or null to use the first provider that supports it.
+   *
+   * @return a new {@link Cipher} instance.
+   */
+  public static Cipher newCipher(Provider provider) {
+    try {
+      return getCipher(CIPHER_SPEC, provider);
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+      try {
+        return getCipher(CIPHER_SPEC_NO_PADDING, provider);
+      } catch (NoSuchAlgorithmException | NoSuchPaddingException e2) {
+        throw new InterledgerRuntimeException("Error getting cipher " + CIPHER_SPEC, e2);
+      }
+    }
+  }
+
+  private static Cipher getCipher(String transformation, Provider provider)
+      throws NoSuchAlgorithmException, NoSuchPaddingException {
+    return provider == null ? Cipher.getInstance(transformation)
+        : Cipher.getInstance(transformation, provider);
+  }
+
+  /**
+   * Encrypts a block of data in place, overwriting the plaintext with the ciphertext and returning
+   * the authentication tag. AES-GCM does not change the length of the data, so no output buffer
+   * is needed.
+   *
+   * @param key    The AES encryption key.
+   * @param nonce  The 16 byte nonce to use as an IV.
+   * @param buffer The buffer holding the data to encrypt.
+   * @param offset The offset of the data within the buffer.
+   * @param length The length of the data.
+   *
+   * @return The 16 byte GCM authentication tag.
+   *
+   * @throws RuntimeException if there is an error encrypting the data
+   */
+  public static byte[] encryptInPlace(SecretKey key, byte[] nonce, byte[] buffer, int offset,
+      int length) {
+    return encryptInPlace(newCipher(), key, nonce, buffer, offset, length);
+  }
+
+  /**
+   * Encrypts a block of data in place using the given cipher, which is re-initialized with the key
+   * and nonce.
+   *
+   * @param cipher A cipher of {@link #newCipher()}. Not thread-safe.
+   * @param key    The AES encryption key.
+   * @param nonce  The 16 byte nonce to use as an IV.
+   * @param buffer The buffer holding the data to encrypt.
+   * @param offset The offset of the data within the buffer.
+   * @param length The length of the data.
+   *
+   * @return The 16 byte GCM authentication tag.
+   *
+   * @throws RuntimeException if there is an error encrypting the data
+   */
+  public static byte[] encryptInPlace(Cipher cipher, SecretKey key, byte[] nonce, byte[] buffer,
+      int offset, int length) {
+
+    Objects.requireNonNull(cipher, "cannot encrypt data without a cipher");
+    Objects.requireNonNull(key, "cannot encrypt data without the key");
+    Objects.requireNonNull(nonce, "cannot encrypt data without the nonce");
+    Objects.requireNonNull(buffer, "cannot encrypt null data");
+
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, key,
+          new GCMParameterSpec(AUTH_TAG_LEN_BYTES * 8, nonce));
+
+      final int written = cipher.update(buffer, offset, length, buffer, offset);
+
+      /* whatever the cipher held back, followed by the auth tag */
+      final byte[] tail = cipher.doFinal();
+      final int remaining = tail.length - AUTH_TAG_LEN_BYTES;
+      System.arraycopy(tail, 0, buffer, offset + written, remaining);
+      return Arrays.copyOfRange(tail, remaining, tail.length);
+    } catch (BadPaddingException | InvalidAlgorithmParameterException | IllegalBlockSizeException
+        | ShortBufferException e) {
+      throw new InterledgerRuntimeException("Error encrypting data of PSK message.", e);
+    } catch (InvalidKeyException e) {
+      throw new InterledgerRuntimeException("Error encrypting data of PSK message. "
+          + "Ensure Java Cryptography Extension (JCE) Unlimited Strength Jurisdiction Policy Files "
+          + "are installed to allow for 256-bit AES keys.", e);
+    }
+  }
+
+  /**
+   * Decrypts a block of data in place, overwriting the ciphertext with the plaintext once the
+   * authentication tag has been verified.
+   *
+   * @param key     The AES encryption key.
+   * @param authTag The 16 byte auth tag to verify.
+   * @param nonce   The 16 byte nonce to use as an IV.
+   * @param buffer  The buffer holding the data to decrypt.
+   * @param offset  The offset of the data within the buffer.
+   * @param length  The length of the data.
+   *
+   * @return The length of the decrypted data, which is always {@code length}.
+   */
+  public static int decryptInPlace(SecretKey key, byte[] authTag, byte[] nonce, byte[] buffer,
+      int offset, int length) {
+    return decryptInPlace(newCipher(), key, authTag, nonce, buffer, offset, length);
+  }
+
+  /**
+   * Decrypts a block of data in place using the given cipher, which is re-initialized with the key
+   * and nonce.
+   *
+   * @param cipher  A cipher of {@link #newCipher()}. Not thread-safe.
+   * @param key     The AES encryption key.
+   * @param authTag The 16 byte auth tag to verify.
+   * @param nonce   The 16 byte nonce to use as an IV.
+   * @param buffer  The buffer holding the data to decrypt.
+   * @param offset  The offset of the data within the buffer.
+   * @param length  The length of the data.
+   *
+   * @return The length of the decrypted data, which is always {@code length}.
+   */
+  public static int decryptInPlace(Cipher cipher, SecretKey key, byte[] authTag, byte[] nonce,
+      byte[] buffer, int offset, int length) {
+
+    Objects.requireNonNull(cipher, "cannot decrypt data without a cipher");
+    Objects.requireNonNull(key, "cannot decrypt data without the key");
+    Objects.requireNonNull(authTag, "cannot decrypt data without the authTag");
+    Objects.requireNonNull(nonce, "cannot decrypt data without the nonce");
+    Objects.requireNonNull(buffer, "cannot decrypt null data");
+
+    if (nonce.length != NONCE_LEN_BYTES) {
+      throw new InterledgerRuntimeException(
+          "Invalid PSK message - nonce must be " + NONCE_LEN_BYTES);
+    }
+
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, key,
+          new GCMParameterSpec(AUTH_TAG_LEN_BYTES * 8, nonce));
+
+      /* GCM holds back all plaintext until the tag has been verified in doFinal */
+      final int written = cipher.update(buffer, offset, length, buffer, offset);
+      return written + cipher.doFinal(authTag, 0, authTag.length, buffer, offset + written);
+    } catch (InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException
+        | ShortBufferException e) {
+      throw new InterledgerRuntimeException("Error decrypting data of PSK message.", e);
+    } catch (InvalidKeyException e) {
+      throw new InterledgerRuntimeException("Error decrypting data of PSK message. "
+          + "Ensure Java Cryptography Extension (JCE) Unlimited Strength Jurisdiction Policy Files "
+          + "are installed to allow for 256-bit AES keys.", e);
+    }
+  }
+
   public interface AesGcmEncryptResult {
 
     byte[] getEncryptedData();
@@ -106,16 +106,4 @@ public class PskEncryptionHeader extends PskMessage.Header {
     return PskMessage.Header.WellKnown.ENCRYPTION;
   }
 
-  @Override
-  public String getValue() {
-    if (getEncryptionType() == PskEncryptionType.NONE) {
-      return PskEncryptionType.NONE.toString();
-    }
-
-    return PskEncryptionType.AES_256_GCM.toString() + " "
-        + Base64.getUrlEncoder()
-        .withoutPadding()
-        .encodeToString(this.authTag);
-  }
-
 }
@@ -2,6 +2,7 @@ package org.interledger.psk;
 
 import org.interledger.InterledgerRuntimeException;
 
+import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
 import java.time.temporal.TemporalAmount;
 import java.util.ArrayList;
@@ -9,7 +10,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * This interface represents the message format as defined in the Pre-Shared Key Transport
@@ -31,7 +31,7 @@ public interface PskMessage {
   /**
    * Returns a list of all public headers in the message. Note that all parties may view the public
    * headers.
-   * @return all of the <b>public</b> headers, or an empty list.
+   * @return all of the <b>public</b> headers, or an empty list. The list may be read-only.
    */
   List<Header> getPublicHeaders();
 
@@ -86,6 +86,17 @@ public interface PskMessage {
    */
   byte[] getData();
 
+  /**
+   * Returns a read-only view of the application data, without copying it. The same conditions as
+   * {@link #getData()} apply.
+   *
+   * @return a read-only {@link ByteBuffer} positioned at the start of the data.
+   */
+  default ByteBuffer getDataBuffer() {
+    return ByteBuffer.wrap(getData())
+        .asReadOnlyBuffer();
+  }
+
   class Header {
 
     private final String name;
@@ -335,11 +346,11 @@ public interface PskMessage {
      */
     private static final class Impl implements PskMessage {
 
-      private final List<Header> publicHeaders;
+      private final IndexedHeaders publicHeaders;
       private final PskEncryptionHeader encryptionHeader;
       private final PskNonceHeader nonceHeader;
 
-      private final List<Header> privateHeaders;
+      private final IndexedHeaders privateHeaders;
 
       private final byte[] data;
 
@@ -348,8 +359,7 @@ public interface PskMessage {
        */
       public Impl(Builder builder) {
 
-        publicHeaders = new ArrayList<>(builder.publicHeaders);
-        privateHeaders = new ArrayList<>(builder.privateHeaders);
+        final List<Header> publicHeaders = new ArrayList<>(builder.publicHeaders);
 
         if (builder.nonceHeader == null) {
           nonceHeader = PskNonceHeader.seed();
@@ -366,10 +376,15 @@ public interface PskMessage {
         }
 
         if (encryptionHeader.getEncryptionType() != PskEncryptionType.NONE
-            && privateHeaders.size() > 0) {
+            && builder.privateHeaders.size() > 0) {
           throw new InterledgerRuntimeException(
               "Can't build an encrypted message with private headers");
         }
+
+        this.publicHeaders = new IndexedHeaders(publicHeaders);
+        this.privateHeaders = builder.privateHeaders.isEmpty() ? IndexedHeaders.EMPTY
+            : new IndexedHeaders(builder.privateHeaders);
+
         if (builder.data == null) {
           data = new byte[]{};
         } else {
@@ -380,28 +395,22 @@ public interface PskMessage {
 
       @Override
       public List<Header> getPublicHeaders() {
-        return new ArrayList<>(publicHeaders);
+        return publicHeaders.getAll();
       }
 
       @Override
       public List<Header> getPublicHeaders(final String headerName) {
-        return publicHeaders.stream()
-            .filter(h -> h.getName()
-                .equalsIgnoreCase(headerName))
-            .collect(Collectors.toList());
+        return publicHeaders.get(headerName);
       }
 
       @Override
       public List<Header> getPrivateHeaders() {
-        return new ArrayList<>(privateHeaders);
+        return privateHeaders.getAll();
       }
 
       @Override
       public List<Header> getPrivateHeaders(String headerName) {
-        return privateHeaders.stream()
-            .filter(h -> h.getName()
-                .equalsIgnoreCase(headerName))
-            .collect(Collectors.toList());
+        return privateHeaders.get(headerName);
       }
 
       @Override
@@ -409,6 +418,12 @@ public interface PskMessage {
         return Arrays.copyOf(data, data.length);
       }
 
+      @Override
+      public ByteBuffer getDataBuffer() {
+        return ByteBuffer.wrap(data)
+            .asReadOnlyBuffer();
+      }
+
       @Override
       public PskEncryptionHeader getEncryptionHeader() {
         return encryptionHeader;
@@ -0,0 +1,119 @@
+package org.interledger.psk;
+
+import org.interledger.codecs.psk.PskMessageBinaryCodec;
+import org.interledger.psk.PskContext.SenderPskContext;
+import org.interledger.psk.PskCryptoProvider.AesGcm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * A PSK message encoded once so that it can be sealed many times, under different keys and
+ * nonces, for instance when issuing a batch of payment requests that each carry the same message.
+ *
+ * <p>Sealing with a template copies the encoded message, writes the nonce into its public headers,
+ * encrypts the private section in place and writes the auth tag, without building or encoding any
+ * objects. The result is identical to {@link PskContext#seal(PskMessage, byte[], int)} of the
+ * message with the same nonce.
+ *
+ * <p>Templates are immutable and may be shared between threads.
+ */
+public final class PskMessageTemplate {
+
+  private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder()
+      .withoutPadding();
+
+  /* the public headers, with placeholder nonce and auth tag, then the unencrypted private data */
+  private final byte[] encoded;
+  private final int headersLength;
+  private final int nonceOffset;
+  private final int authTagOffset;
+
+  private PskMessageTemplate(final byte[] encoded, final int headersLength,
+      final int nonceOffset, final int authTagOffset) {
+    this.encoded = encoded;
+    this.headersLength = headersLength;
+    this.nonceOffset = nonceOffset;
+    this.authTagOffset = authTagOffset;
+  }
+
+  /**
+   * Encode a template of an unencrypted message.
+   *
+   * @param message The unencrypted PSK message.
+   *
+   * @return a template for sealing the message.
+   */
+  public static PskMessageTemplate of(final PskMessage message) {
+    final PskMessage envelope = SenderPskContext.getSealedEnvelope(message);
+    final PskMessageBinaryCodec codec = new PskMessageBinaryCodec();
+
+    final byte[] encoded =
+        new byte[codec.getEncodedLength(envelope) + codec.getPrivateDataLength(message)];
+    final int headersLength = codec.write(envelope, encoded, 0);
+    codec.writePrivateData(message, encoded, headersLength);
+
+    /* the envelope ends with the nonce header, then the encryption header, then an empty line */
+    final PskMessage.Header encryptionHeader = envelope.getEncryptionHeader();
+    final int encryptionLineLength = utf8Length(encryptionHeader.getName()) + 1
+        + utf8Length(encryptionHeader.getValue()) + 1;
+    final int nonceLength = utf8Length(envelope.getNonceHeader().getValue());
+    final int nonceOffset = headersLength - 1 - encryptionLineLength - 1 - nonceLength;
+    final int authTagOffset = headersLength - 2 - encodedLength(PskContext.AUTH_TAG_LEN_BYTES);
+
+    return new PskMessageTemplate(encoded, headersLength, nonceOffset, authTagOffset);
+  }
+
+  /**
+   * Get the length of the message once sealed.
+   *
+   * @return the number of bytes {@link #seal(AesGcm, byte[], byte[], int)} writes.
+   */
+  public int getSealedLength() {
+    return encoded.length;
+  }
+
+  /**
+   * Seal the message into a buffer.
+   *
+   * @param aesGcm The cipher for the key to seal the message with.
+   * @param nonce  The 16 byte nonce, which must never be reused with the same key.
+   * @param buffer The buffer to write the sealed message to.
+   * @param offset The offset to write at. The buffer must hold {@link #getSealedLength()} bytes
+   *               from here.
+   *
+   * @return the number of bytes written.
+   */
+  public int seal(final AesGcm aesGcm, final byte[] nonce, final byte[] buffer,
+      final int offset) {
+    Objects.requireNonNull(aesGcm);
+    Objects.requireNonNull(nonce);
+    Objects.requireNonNull(buffer);
+    if (nonce.length != PskCryptoUtils.NONCE_LEN_BYTES) {
+      throw new IllegalArgumentException("Nonce must be " + PskCryptoUtils.NONCE_LEN_BYTES
+          + " bytes.");
+    }
+
+    System.arraycopy(encoded, 0, buffer, offset, encoded.length);
+
+    final byte[] encodedNonce = BASE64_URL.encode(nonce);
+    System.arraycopy(encodedNonce, 0, buffer, offset + nonceOffset, encodedNonce.length);
+
+    final byte[] authTag =
+        aesGcm.encrypt(nonce, buffer, offset + headersLength, encoded.length - headersLength);
+    final byte[] encodedTag = BASE64_URL.encode(authTag);
+    System.arraycopy(encodedTag, 0, buffer, offset + authTagOffset, encodedTag.length);
+
+    return encoded.length;
+  }
+
+  private static int utf8Length(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private static int encodedLength(final int bytes) {
+    return (bytes * 8 + 5) / 6;
+  }
+
+}
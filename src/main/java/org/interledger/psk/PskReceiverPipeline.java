@@ -0,0 +1,551 @@
+package org.interledger.psk;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.InterledgerRuntimeException;
+import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.codecs.psk.PskMessageIndex;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.ilp.InterledgerPayment;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A receiver that takes encoded {@link InterledgerPayment} packets through four {@link Stage}s:
+ * decoding the payment, resolving the {@link PskContext} from its destination address, opening the
+ * {@link PskMessage} it carries, and generating its fulfillment.
+ *
+ * <p>Each stage reads from its own bounded queue and is run by a configurable number of workers.
+ * When a stage falls behind its queue fills, and {@link #submit(byte[])} blocks, so that a slow
+ * stage pushes back on the caller rather than buffering without limit. {@link #getStatistics}
+ * reports the depth of each queue and the latency of each stage, to show where to add workers.
+ *
+ * <p>Workers block only on the queues and never while holding a monitor, so they run equally well
+ * on a fixed pool of platform threads or, on JVMs that have them, on virtual threads:
+ *
+ * <pre>
+ * PskReceiverPipeline.builder()
+ *     .receiverSecret(secret)
+ *     .executor(Executors.newVirtualThreadPerTaskExecutor())
+ *     .build();
+ * </pre>
+ *
+ * <p>An executor supplied to the builder must be able to run every worker at once; it is not shut
+ * down by {@link #close()}.
+ */
+public class PskReceiverPipeline implements AutoCloseable {
+
+  /* how often idle workers check whether the pipeline has been closed */
+  private static final long POLL_MILLIS = 50;
+
+  private static final CodecContext CODEC_CONTEXT = CodecContextFactory.interledger();
+
+  /**
+   * The stages of the pipeline, in the order payments pass through them.
+   */
+  public enum Stage {
+    DECODE, RESOLVE, OPEN, FULFILL
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+
+  private final Function<InterledgerAddress, PskContext> contextResolver;
+  private final ExecutorService ownedExecutor;
+  private final Map<Stage, BlockingQueue<Work>> queues = new EnumMap<>(Stage.class);
+  private final Map<Stage, StageMetrics> metrics = new EnumMap<>(Stage.class);
+  private final CountDownLatch workersStopped;
+
+  private volatile boolean running = true;
+
+  private PskReceiverPipeline(final Builder builder) {
+    this.contextResolver = builder.contextResolver;
+
+    int workers = 0;
+    for (Stage stage : STAGES) {
+      queues.put(stage, new ArrayBlockingQueue<>(builder.queueCapacity));
+      metrics.put(stage, new StageMetrics());
+      workers += builder.parallelism.get(stage);
+    }
+    this.workersStopped = new CountDownLatch(workers);
+
+    final Executor executor;
+    if (builder.executor == null) {
+      ownedExecutor = Executors.newFixedThreadPool(workers, runnable -> {
+        final Thread thread = new Thread(runnable, "psk-receiver-pipeline");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor = ownedExecutor;
+    } else {
+      ownedExecutor = null;
+      executor = builder.executor;
+    }
+
+    for (Stage stage : STAGES) {
+      for (int i = 0; i < builder.parallelism.get(stage); i++) {
+        executor.execute(() -> runWorker(stage));
+      }
+    }
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Submit an encoded payment packet, blocking while the first stage's queue is full.
+   *
+   * @param packet The OER encoded payment, including its type byte. The pipeline owns the array
+   *               until the returned future completes.
+   *
+   * @return a future that completes with the received payment, or exceptionally if any stage
+   *     fails or the pipeline is closed first.
+   *
+   * @throws InterruptedException if interrupted while waiting for space in the queue.
+   */
+  public CompletableFuture<Received> submit(final byte[] packet) throws InterruptedException {
+    return submit(packet, 0, packet.length);
+  }
+
+  /**
+   * Submit an encoded payment packet from a region of a buffer, blocking while the first stage's
+   * queue is full.
+   *
+   * @param buffer The buffer holding the OER encoded payment, including its type byte. The pipeline
+   *               owns the region until the returned future completes.
+   * @param offset The offset of the packet within the buffer.
+   * @param length The length of the packet.
+   *
+   * @return a future that completes with the received payment, or exceptionally if any stage
+   *     fails or the pipeline is closed first.
+   *
+   * @throws InterruptedException if interrupted while waiting for space in the queue.
+   */
+  public CompletableFuture<Received> submit(final byte[] buffer, final int offset,
+      final int length) throws InterruptedException {
+    Objects.requireNonNull(buffer);
+    if (offset < 0 || length < 0 || offset + length > buffer.length) {
+      throw new IndexOutOfBoundsException("Packet is outside the buffer.");
+    }
+
+    final Work work = new Work(buffer, offset, length);
+    final BlockingQueue<Work> queue = queues.get(Stage.DECODE);
+    while (running) {
+      work.enqueuedNanos = System.nanoTime();
+      if (queue.offer(work, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        /* a close that raced with the offer may already have drained the queue */
+        if (!running && queue.remove(work)) {
+          break;
+        }
+        return work.result;
+      }
+    }
+    fail(work, new InterledgerRuntimeException("Pipeline is closed."));
+    return work.result;
+  }
+
+  /**
+   * Get the current queue depth and latency of a stage.
+   *
+   * @param stage The stage.
+   *
+   * @return a snapshot of the stage's statistics.
+   */
+  public StageStatistics getStatistics(final Stage stage) {
+    Objects.requireNonNull(stage);
+    return metrics.get(stage)
+        .snapshot(queues.get(stage).size());
+  }
+
+  /**
+   * Stop the workers and fail any payments still in the pipeline. Blocks until the workers have
+   * finished the payments they are processing.
+   */
+  @Override
+  public void close() {
+    running = false;
+    try {
+      workersStopped.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
+    }
+    for (BlockingQueue<Work> queue : queues.values()) {
+      Work work;
+      while ((work = queue.poll()) != null) {
+        fail(work, new InterledgerRuntimeException("Pipeline is closed."));
+      }
+    }
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  private void runWorker(final Stage stage) {
+    final BlockingQueue<Work> input = queues.get(stage);
+    final BlockingQueue<Work> output = stage.ordinal() + 1 < STAGES.length
+        ? queues.get(STAGES[stage.ordinal() + 1]) : null;
+    final StageMetrics stageMetrics = metrics.get(stage);
+
+    try {
+      while (running) {
+        final Work work = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (work == null) {
+          continue;
+        }
+
+        final long started = System.nanoTime();
+        try {
+          process(stage, work);
+        } catch (Throwable e) {
+          /* fail only this payment, even on an error, so the stage keeps all of its workers */
+          stageMetrics.record(work.enqueuedNanos, started, System.nanoTime(), false);
+          fail(work, e);
+          continue;
+        }
+        final long finished = System.nanoTime();
+        stageMetrics.record(work.enqueuedNanos, started, finished, true);
+
+        if (output == null) {
+          work.result.complete(new Received(work.payment, work.message, work.fulfillment));
+        } else {
+          forward(work, output);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
+    } finally {
+      workersStopped.countDown();
+    }
+  }
+
+  private void process(final Stage stage, final Work work) {
+    switch (stage) {
+      case DECODE:
+        work.payment = CODEC_CONTEXT.read(InterledgerPayment.class, work.packet());
+        break;
+      case RESOLVE:
+        work.context = contextResolver.apply(work.payment.getDestinationAccount());
+        break;
+      case OPEN:
+        final byte[] data = work.payment.getData();
+        final PskMessageIndex index = PskMessageIndex.of(data);
+        work.message = index.isEncrypted() ? work.context.open(data, 0, data.length)
+            : index.toMessage();
+        break;
+      case FULFILL:
+        work.fulfillment = work.context.generateFulfillment(work.buffer, work.offset, work.length);
+        break;
+      default:
+        throw new IllegalStateException("Unknown stage " + stage);
+    }
+  }
+
+  private void forward(final Work work, final BlockingQueue<Work> output)
+      throws InterruptedException {
+    work.enqueuedNanos = System.nanoTime();
+    while (!output.offer(work, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+      if (!running) {
+        fail(work, new InterledgerRuntimeException("Pipeline is closed."));
+        return;
+      }
+    }
+  }
+
+  private static void fail(final Work work, final Throwable cause) {
+    work.result.completeExceptionally(cause);
+  }
+
+  /**
+   * A payment as it moves through the pipeline, accumulating the output of each stage.
+   */
+  private static final class Work {
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final CompletableFuture<Received> result = new CompletableFuture<>();
+
+    private long enqueuedNanos;
+    private InterledgerPayment payment;
+    private PskContext context;
+    private PskMessage message;
+    private Fulfillment fulfillment;
+
+    private Work(final byte[] buffer, final int offset, final int length) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    private byte[] packet() {
+      if (offset == 0 && length == buffer.length) {
+        return buffer;
+      }
+      final byte[] packet = new byte[length];
+      System.arraycopy(buffer, offset, packet, 0, length);
+      return packet;
+    }
+  }
+
+  /**
+   * Accumulates the latency of one stage. Adders keep workers from contending on the counters.
+   */
+  private static final class StageMetrics {
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private void record(final long enqueued, final long started, final long finished,
+        final boolean succeeded) {
+      (succeeded ? completed : failed).increment();
+      waitNanos.add(started - enqueued);
+      serviceNanos.add(finished - started);
+      maxLatencyNanos.accumulateAndGet(finished - enqueued, Math::max);
+    }
+
+    private StageStatistics snapshot(final int queueDepth) {
+      return new StageStatistics(queueDepth, completed.sum(), failed.sum(), waitNanos.sum(),
+          serviceNanos.sum(), maxLatencyNanos.get());
+    }
+  }
+
+  /**
+   * A snapshot of the queue depth and latency of a stage. Latencies are in nanoseconds and cover
+   * every payment the stage has processed since the pipeline was built.
+   */
+  public static final class StageStatistics {
+
+    private final int queueDepth;
+    private final long completed;
+    private final long failed;
+    private final long totalWaitNanos;
+    private final long totalServiceNanos;
+    private final long maxLatencyNanos;
+
+    private StageStatistics(final int queueDepth, final long completed, final long failed,
+        final long totalWaitNanos, final long totalServiceNanos, final long maxLatencyNanos) {
+      this.queueDepth = queueDepth;
+      this.completed = completed;
+      this.failed = failed;
+      this.totalWaitNanos = totalWaitNanos;
+      this.totalServiceNanos = totalServiceNanos;
+      this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * Get the number of payments waiting for this stage.
+     *
+     * @return the depth of the stage's input queue.
+     */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    public long getCompleted() {
+      return completed;
+    }
+
+    public long getFailed() {
+      return failed;
+    }
+
+    /**
+     * Get the mean time payments waited in this stage's queue before a worker took them.
+     *
+     * @return the mean wait in nanoseconds.
+     */
+    public double getMeanWaitNanos() {
+      return mean(totalWaitNanos);
+    }
+
+    /**
+     * Get the mean time a worker spent processing each payment.
+     *
+     * @return the mean service time in nanoseconds.
+     */
+    public double getMeanServiceNanos() {
+      return mean(totalServiceNanos);
+    }
+
+    /**
+     * Get the longest time any payment spent in this stage, from entering its queue to leaving it.
+     *
+     * @return the maximum latency in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+      return maxLatencyNanos;
+    }
+
+    private double mean(final long total) {
+      final long count = completed + failed;
+      return count == 0 ? 0 : (double) total / count;
+    }
+
+    @Override
+    public String toString() {
+      return "StageStatistics{"
+          + "queueDepth=" + queueDepth
+          + ", completed=" + completed
+          + ", failed=" + failed
+          + ", meanWaitNanos=" + getMeanWaitNanos()
+          + ", meanServiceNanos=" + getMeanServiceNanos()
+          + ", maxLatencyNanos=" + maxLatencyNanos
+          + '}';
+    }
+  }
+
+  /**
+   * A payment that has passed through every stage.
+   */
+  public static final class Received {
+
+    private final InterledgerPayment payment;
+    private final PskMessage message;
+    private final Fulfillment fulfillment;
+
+    private Received(final InterledgerPayment payment, final PskMessage message,
+        final Fulfillment fulfillment) {
+      this.payment = payment;
+      this.message = message;
+      this.fulfillment = fulfillment;
+    }
+
+    public InterledgerPayment getPayment() {
+      return payment;
+    }
+
+    /**
+     * Get the PSK message carried by the payment, decrypted if it was encrypted.
+     *
+     * @return the PSK message.
+     */
+    public PskMessage getMessage() {
+      return message;
+    }
+
+    public Fulfillment getFulfillment() {
+      return fulfillment;
+    }
+  }
+
+  /**
+   * A builder for instances of {@link PskReceiverPipeline}.
+   */
+  public static class Builder {
+
+    private Function<InterledgerAddress, PskContext> contextResolver;
+    private Executor executor;
+    private int queueCapacity = 1024;
+    private final Map<Stage, Integer> parallelism = new EnumMap<>(Stage.class);
+
+    private Builder() {
+      for (Stage stage : STAGES) {
+        parallelism.put(stage, 1);
+      }
+    }
+
+    /**
+     * Resolve each payment's {@link PskContext} from its destination address and the receiver's
+     * secret, as with {@link PskContext#fromReceiverAddress(byte[], InterledgerAddress)}.
+     *
+     * @param receiverSecret The receiver's local secret.
+     * @return This {@link Builder} instance.
+     */
+    public Builder receiverSecret(final byte[] receiverSecret) {
+      Objects.requireNonNull(receiverSecret, "receiverSecret must not be null");
+      final byte[] secret = receiverSecret.clone();
+      this.contextResolver = address -> PskContext.fromReceiverAddress(secret, address);
+      return this;
+    }
+
+    /**
+     * Sets how each payment's {@link PskContext} is resolved from its destination address, for
+     * example from a cache or a table of pre-shared keys.
+     *
+     * @param contextResolver The resolver, which must be thread-safe.
+     * @return This {@link Builder} instance.
+     */
+    public Builder contextResolver(
+        final Function<InterledgerAddress, PskContext> contextResolver) {
+      this.contextResolver =
+          Objects.requireNonNull(contextResolver, "contextResolver must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the executor the workers run on. By default the pipeline creates and owns a fixed pool
+     * with one thread per worker.
+     *
+     * @param executor An executor able to run every worker at once.
+     * @return This {@link Builder} instance.
+     */
+    public Builder executor(final Executor executor) {
+      this.executor = Objects.requireNonNull(executor, "executor must not be null");
+      return this;
+    }
+
+    /**
+     * Sets the capacity of the queue in front of each stage.
+     *
+     * @param queueCapacity The number of payments each queue can hold.
+     * @return This {@link Builder} instance.
+     */
+    public Builder queueCapacity(final int queueCapacity) {
+      if (queueCapacity < 1) {
+        throw new IllegalArgumentException("queueCapacity must be at least 1");
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets the number of workers for a stage.
+     *
+     * @param stage   The stage.
+     * @param workers The number of workers.
+     * @return This {@link Builder} instance.
+     */
+    public Builder parallelism(final Stage stage, final int workers) {
+      Objects.requireNonNull(stage, "stage must not be null");
+      if (workers < 1) {
+        throw new IllegalArgumentException("workers must be at least 1");
+      }
+      this.parallelism.put(stage, workers);
+      return this;
+    }
+
+    /**
+     * Builds the pipeline and starts its workers.
+     *
+     * @return A new {@link PskReceiverPipeline} instance.
+     */
+    public PskReceiverPipeline build() {
+      Objects.requireNonNull(contextResolver, "receiverSecret or contextResolver must be set");
+      return new PskReceiverPipeline(this);
+    }
+  }
+
+}
@@ -0,0 +1,461 @@
+package org.interledger.psk;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Detects replayed PSK messages by remembering the 16 byte nonces seen within an expiry window.
+ *
+ * <p>The window is divided into a ring of time buckets. Each nonce is recorded in the bucket for
+ * the current time, and checked against every bucket still inside the window. When time moves past
+ * the oldest bucket it is replaced with an empty one, so memory is bounded by the number of nonces
+ * expected per bucket rather than growing with traffic.
+ *
+ * <p>Buckets are either exact open-addressing sets of 128-bit keys stored in primitive arrays, or,
+ * if configured, Bloom filters which use less memory at the cost of occasionally reporting a new
+ * nonce as a replay. Recording and checking exact buckets is lock-free, the only coordination
+ * being a compare-and-set when a bucket is rotated. A Bloom filter cannot tell which of two
+ * threads setting the bits of one nonce was first, so recording into one takes a lock chosen by
+ * the nonce, which only threads recording nonces that share it contend for.
+ *
+ * <p>A bucket that is full fails closed: further nonces are reported as replays until it rotates.
+ * If two copies of a nonce arrive at the same instant across a bucket boundary, both may be
+ * rejected. Both can never be accepted.
+ */
+public class PskReplayDetector {
+
+  private static final int NONCE_LEN_BYTES = 16;
+
+  private final Clock clock;
+  private final long bucketMillis;
+  private final int windowBuckets;
+  private final AtomicReferenceArray<Bucket> ring;
+  private final BucketFactory bucketFactory;
+
+  /* per-instance hash seeds, so that chosen nonces cannot be made to collide */
+  private final long seedHigh;
+  private final long seedLow;
+
+  private PskReplayDetector(final Builder builder) {
+    this.clock = builder.clock;
+    this.windowBuckets = builder.buckets;
+    this.bucketMillis = Math.max(1, builder.expiry.toMillis() / builder.buckets);
+
+    final int noncesPerBucket = builder.noncesPerBucket;
+    final double falsePositiveRate = builder.falsePositiveRate;
+    this.bucketFactory = falsePositiveRate > 0
+        ? epoch -> new BloomBucket(epoch, noncesPerBucket, falsePositiveRate)
+        : epoch -> new ExactBucket(epoch, noncesPerBucket);
+
+    /* the window, the current bucket and one spare for a bucket rotated in by a faster thread */
+    this.ring = new AtomicReferenceArray<>(windowBuckets + 2);
+
+    final SecureRandom random = new SecureRandom();
+    this.seedHigh = random.nextLong();
+    this.seedLow = random.nextLong();
+  }
+
+  /**
+   * Get the default builder.
+   *
+   * @return a {@link Builder} instance.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Record the nonce of a message, reporting whether it has been seen within the expiry window.
+   *
+   * @param nonceHeader The nonce header of the message.
+   *
+   * @return true if the nonce is new, false if it is a replay and the message should be rejected.
+   */
+  public boolean record(final PskNonceHeader nonceHeader) {
+    Objects.requireNonNull(nonceHeader, "nonceHeader must not be null");
+    return record(nonceHeader.getNonce());
+  }
+
+  /**
+   * Record a nonce, reporting whether it has been seen within the expiry window.
+   *
+   * @param nonce The 16 byte nonce.
+   *
+   * @return true if the nonce is new, false if it is a replay and the message should be rejected.
+   */
+  public boolean record(final byte[] nonce) {
+    Objects.requireNonNull(nonce, "nonce must not be null");
+    if (nonce.length != NONCE_LEN_BYTES) {
+      throw new IllegalArgumentException(
+          "Invalid nonce. Expected " + NONCE_LEN_BYTES + " bytes but got " + nonce.length);
+    }
+    return record(toLong(nonce, 0), toLong(nonce, 8));
+  }
+
+  /**
+   * Record a nonce given as two big-endian 64-bit halves, reporting whether it has been seen within
+   * the expiry window.
+   *
+   * @param high The first 8 bytes of the nonce.
+   * @param low  The last 8 bytes of the nonce.
+   *
+   * @return true if the nonce is new, false if it is a replay and the message should be rejected.
+   */
+  public boolean record(final long high, final long low) {
+    final long epoch = clock.millis() / bucketMillis;
+    final long hash = mix(high ^ seedHigh) ^ mix(low ^ seedLow);
+
+    if (!getBucket(epoch).add(high, low, hash)) {
+      return false;
+    }
+
+    /* check every other live bucket, including one a faster thread may have rotated in */
+    for (long other = epoch - windowBuckets; other <= epoch + 1; other++) {
+      if (other == epoch) {
+        continue;
+      }
+      final Bucket bucket = ring.get(slot(other));
+      if (bucket != null && bucket.epoch == other && bucket.contains(high, low, hash)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check whether a nonce has been seen within the expiry window, without recording it.
+   *
+   * @param nonce The 16 byte nonce.
+   *
+   * @return true if the nonce has been recorded and has not yet expired.
+   */
+  public boolean contains(final byte[] nonce) {
+    Objects.requireNonNull(nonce, "nonce must not be null");
+    if (nonce.length != NONCE_LEN_BYTES) {
+      throw new IllegalArgumentException(
+          "Invalid nonce. Expected " + NONCE_LEN_BYTES + " bytes but got " + nonce.length);
+    }
+    final long high = toLong(nonce, 0);
+    final long low = toLong(nonce, 8);
+    final long hash = mix(high ^ seedHigh) ^ mix(low ^ seedLow);
+
+    final long epoch = clock.millis() / bucketMillis;
+    for (long other = epoch - windowBuckets; other <= epoch + 1; other++) {
+      final Bucket bucket = ring.get(slot(other));
+      if (bucket != null && bucket.epoch == other && bucket.contains(high, low, hash)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int slot(final long epoch) {
+    return (int) Math.floorMod(epoch, (long) ring.length());
+  }
+
+  /**
+   * Get the bucket for an epoch, replacing an expired bucket in its slot if necessary.
+   */
+  private Bucket getBucket(final long epoch) {
+    final int slot = slot(epoch);
+    while (true) {
+      final Bucket bucket = ring.get(slot);
+      if (bucket != null && bucket.epoch >= epoch) {
+        /* a lagging thread may find a newer bucket, which is safe to record into */
+        return bucket;
+      }
+      final Bucket replacement = bucketFactory.create(epoch);
+      if (ring.compareAndSet(slot, bucket, replacement)) {
+        return replacement;
+      }
+    }
+  }
+
+  private static long toLong(final byte[] bytes, final int offset) {
+    long value = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      value = (value << 8) | (bytes[i] & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * The 64-bit finalizer of MurmurHash3.
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  private interface BucketFactory {
+
+    Bucket create(long epoch);
+  }
+
+  /**
+   * The nonces recorded in one time slice of the window.
+   */
+  private abstract static class Bucket {
+
+    private final long epoch;
+
+    Bucket(final long epoch) {
+      this.epoch = epoch;
+    }
+
+    /**
+     * Add a nonce, returning false if it was already present or the bucket is full.
+     */
+    abstract boolean add(long high, long low, long hash);
+
+    abstract boolean contains(long high, long low, long hash);
+  }
+
+  /**
+   * An open-addressing set of 128-bit keys with linear probing. A slot is claimed by moving its
+   * state from empty to writing, the key is written, and the state is then published as full.
+   * Readers that meet a slot being written wait for it to be published.
+   */
+  private static final class ExactBucket extends Bucket {
+
+    private static final int EMPTY = 0;
+    private static final int WRITING = 1;
+    private static final int FULL = 2;
+
+    private final AtomicIntegerArray states;
+    private final AtomicLongArray keys;
+    private final AtomicInteger size = new AtomicInteger();
+    private final int mask;
+    private final int maxSize;
+
+    ExactBucket(final long epoch, final int noncesPerBucket) {
+      super(epoch);
+      /* keep the load factor at or below one half */
+      final int slots = Integer.highestOneBit(Math.max(2, noncesPerBucket) * 2 - 1) << 1;
+      this.states = new AtomicIntegerArray(slots);
+      this.keys = new AtomicLongArray(slots * 2);
+      this.mask = slots - 1;
+      this.maxSize = noncesPerBucket;
+    }
+
+    @Override
+    boolean add(final long high, final long low, final long hash) {
+      int index = (int) hash & mask;
+      while (true) {
+        final int state = awaitWritten(index);
+        if (state == EMPTY) {
+          if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            return false;
+          }
+          if (states.compareAndSet(index, EMPTY, WRITING)) {
+            keys.set(index * 2, high);
+            keys.set(index * 2 + 1, low);
+            states.set(index, FULL);
+            return true;
+          }
+          /* lost the slot to another writer, so look at what it wrote */
+          size.decrementAndGet();
+          continue;
+        }
+        if (keys.get(index * 2) == high && keys.get(index * 2 + 1) == low) {
+          return false;
+        }
+        index = (index + 1) & mask;
+      }
+    }
+
+    @Override
+    boolean contains(final long high, final long low, final long hash) {
+      int index = (int) hash & mask;
+      while (true) {
+        if (awaitWritten(index) == EMPTY) {
+          return false;
+        }
+        if (keys.get(index * 2) == high && keys.get(index * 2 + 1) == low) {
+          return true;
+        }
+        index = (index + 1) & mask;
+      }
+    }
+
+    private int awaitWritten(final int index) {
+      int state = states.get(index);
+      while (state == WRITING) {
+        Thread.yield();
+        state = states.get(index);
+      }
+      return state;
+    }
+  }
+
+  /**
+   * A Bloom filter over the nonce hash, using double hashing to derive the probe positions.
+   */
+  private static final class BloomBucket extends Bucket {
+
+    /* the number of locks that adds are spread over, a power of two */
+    private static final int LOCK_STRIPES = 64;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+
+    BloomBucket(final long epoch, final int noncesPerBucket, final double falsePositiveRate) {
+      super(epoch);
+      final double ln2 = Math.log(2);
+      final long optimalBits = (long) Math.ceil(
+          -noncesPerBucket * Math.log(falsePositiveRate) / (ln2 * ln2));
+      this.numBits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+      this.numHashes = Math.max(1, (int) Math.round((double) numBits / noncesPerBucket * ln2));
+      this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+      for (int i = 0; i < LOCK_STRIPES; i++) {
+        locks[i] = new Object();
+      }
+    }
+
+    /**
+     * Add a nonce. Adds of the same nonce are serialized, so that exactly one of them finds a bit
+     * unset; adds of nonces under other locks set their bits concurrently.
+     */
+    @Override
+    boolean add(final long high, final long low, final long hash) {
+      boolean added = false;
+      final int first = (int) hash;
+      final int second = (int) (hash >>> 32) | 1;
+      synchronized (locks[(int) (hash >>> 58) & (LOCK_STRIPES - 1)]) {
+        for (int i = 0; i < numHashes; i++) {
+          final int bit = Math.floorMod(first + i * second, numBits);
+          final long mask = 1L << bit;
+          final int word = bit >>> 6;
+          long current = bits.get(word);
+          while ((current & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+              added = true;
+              break;
+            }
+            current = bits.get(word);
+          }
+        }
+      }
+      return added;
+    }
+
+    @Override
+    boolean contains(final long high, final long low, final long hash) {
+      final int first = (int) hash;
+      final int second = (int) (hash >>> 32) | 1;
+      for (int i = 0; i < numHashes; i++) {
+        final int bit = Math.floorMod(first + i * second, numBits);
+        if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A builder for instances of {@link PskReplayDetector}.
+   */
+  public static class Builder {
+
+    private Duration expiry = Duration.ofMinutes(5);
+    private int buckets = 10;
+    private int noncesPerBucket = 1 << 16;
+    private double falsePositiveRate = 0;
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Sets how long a nonce is remembered. Messages are expected to carry an expiry no longer than
+     * this.
+     *
+     * @param expiry The expiry window.
+     * @return This {@link Builder} instance.
+     */
+    public Builder expiry(final Duration expiry) {
+      Objects.requireNonNull(expiry, "expiry must not be null");
+      if (expiry.isNegative() || expiry.isZero()) {
+        throw new IllegalArgumentException("expiry must be positive");
+      }
+      this.expiry = expiry;
+      return this;
+    }
+
+    /**
+     * Sets the number of buckets the expiry window is divided into. More buckets expire nonces
+     * closer to the exact window, at the cost of more buckets to check.
+     *
+     * @param buckets The number of buckets.
+     * @return This {@link Builder} instance.
+     */
+    public Builder buckets(final int buckets) {
+      if (buckets < 1) {
+        throw new IllegalArgumentException("buckets must be at least 1");
+      }
+      this.buckets = buckets;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of nonces each bucket can hold, which bounds the memory used.
+     *
+     * @param noncesPerBucket The capacity of each bucket.
+     * @return This {@link Builder} instance.
+     */
+    public Builder noncesPerBucket(final int noncesPerBucket) {
+      if (noncesPerBucket < 1 || noncesPerBucket > 1 << 28) {
+        throw new IllegalArgumentException("noncesPerBucket must be between 1 and 2^28");
+      }
+      this.noncesPerBucket = noncesPerBucket;
+      return this;
+    }
+
+    /**
+     * Use Bloom filters instead of exact sets, sized for the given false positive rate when each
+     * bucket holds its expected number of nonces.
+     *
+     * @param falsePositiveRate The acceptable rate of new nonces reported as replays.
+     * @return This {@link Builder} instance.
+     */
+    public Builder bloomFilter(final double falsePositiveRate) {
+      if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+        throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+      }
+      this.falsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
+    /**
+     * Sets the clock used to assign nonces to buckets.
+     *
+     * @param clock The clock.
+     * @return This {@link Builder} instance.
+     */
+    public Builder clock(final Clock clock) {
+      this.clock = Objects.requireNonNull(clock, "clock must not be null");
+      return this;
+    }
+
+    /**
+     * Builds the replay detector.
+     *
+     * @return A new {@link PskReplayDetector} instance.
+     */
+    public PskReplayDetector build() {
+      return new PskReplayDetector(this);
+    }
+  }
+
+}
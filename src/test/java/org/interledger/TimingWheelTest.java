@@ -0,0 +1,182 @@
+package org.interledger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link TimingWheel}.
+ */
+public class TimingWheelTest {
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void testExpiresAtDeadline() {
+    final TimingWheel<String> wheel = TimingWheel.<String>builder().clock(clock).build();
+    wheel.schedule("quote", Duration.ofMillis(100));
+    wheel.schedule("payment", clock.instant().plusSeconds(30));
+
+    final List<String> expired = new ArrayList<>();
+    clock.advance(Duration.ofMillis(99));
+    assertEquals(0, wheel.advance(expired::addAll));
+
+    clock.advance(Duration.ofMillis(1));
+    assertEquals(1, wheel.advance(expired::addAll));
+    assertEquals(Collections.singletonList("quote"), expired);
+    assertEquals(1, wheel.size());
+
+    clock.advance(Duration.ofMinutes(5));
+    assertEquals(1, wheel.advance(expired::addAll));
+    assertEquals(Arrays.asList("quote", "payment"), expired);
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testBatchesExpiredItems() {
+    final TimingWheel<Integer> wheel = TimingWheel.<Integer>builder().clock(clock).build();
+    for (int i = 0; i < 1000; i++) {
+      wheel.schedule(i, Duration.ofMillis(i * 7));
+    }
+
+    final List<List<Integer>> batches = new ArrayList<>();
+    clock.advance(Duration.ofSeconds(10));
+    assertEquals(1000, wheel.advance(batches::add));
+    assertEquals(1, batches.size());
+    assertEquals(1000, batches.get(0).size());
+  }
+
+  @Test
+  public void testCancel() {
+    final TimingWheel<String> wheel = TimingWheel.<String>builder().clock(clock).build();
+    final TimingWheel.Timeout<String> cancelled = wheel.schedule("a", Duration.ofMillis(10));
+    final TimingWheel.Timeout<String> expired = wheel.schedule("b", Duration.ofMillis(10));
+    wheel.schedule("c", Duration.ofMillis(10));
+
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.cancel());
+    assertEquals(2, wheel.size());
+
+    final List<String> items = new ArrayList<>();
+    clock.advance(Duration.ofMillis(10));
+    wheel.advance(items::addAll);
+    assertEquals(2, items.size());
+    assertFalse(items.contains("a"));
+    assertFalse(expired.cancel());
+  }
+
+  @Test
+  public void testPastDeadlineExpiresOnNextAdvance() {
+    final TimingWheel<String> wheel = TimingWheel.<String>builder().clock(clock).build();
+    wheel.schedule("late", clock.instant().minusSeconds(1));
+
+    final List<String> items = new ArrayList<>();
+    assertEquals(0, wheel.advance(items::addAll));
+    clock.advance(Duration.ofMillis(1));
+    assertEquals(1, wheel.advance(items::addAll));
+  }
+
+  @Test
+  public void testPastDeadlineScheduledAtEndOfSlotRun() {
+    final TimingWheel<String> wheel = TimingWheel.<String>builder().clock(clock).build();
+    /* the next tick starts a run of slots, so the item is cascaded before it expires */
+    clock.advance(Duration.ofMillis(63 - Math.floorMod(clock.millis(), 64)));
+    final List<String> items = new ArrayList<>();
+    wheel.advance(items::addAll);
+    wheel.schedule("late", 10L);
+
+    clock.advance(Duration.ofMillis(5000));
+    assertEquals(1, wheel.advance(items::addAll));
+    assertEquals(Collections.singletonList("late"), items);
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testTickDurationRoundsDeadlinesUp() {
+    final TimingWheel<String> wheel = TimingWheel.<String>builder()
+        .tickDuration(Duration.ofMillis(10))
+        .clock(clock)
+        .build();
+    wheel.schedule("item", Duration.ofMillis(15));
+
+    clock.advance(Duration.ofMillis(15));
+    assertEquals(0, wheel.advance(items -> { }));
+    clock.advance(Duration.ofMillis(5));
+    assertEquals(1, wheel.advance(items -> { }));
+  }
+
+  @Test
+  public void testRandomDeadlines() {
+    final TimingWheel<Long> wheel = TimingWheel.<Long>builder().clock(clock).build();
+    final Random random = new Random(7);
+    final long start = clock.millis();
+    final List<Long> deadlines = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      /* spread deadlines over every level up to a few years */
+      final long deadline = start + (random.nextLong() >>> (random.nextInt(64 - 29) + 29));
+      deadlines.add(deadline);
+      wheel.schedule(deadline, deadline);
+    }
+    Collections.sort(deadlines);
+
+    int index = 0;
+    long now = start;
+    while (index < deadlines.size()) {
+      final long step = random.nextBoolean() ? random.nextInt(200)
+          : random.nextLong() >>> (random.nextInt(64 - 34) + 34);
+      clock.advance(Duration.ofMillis(step));
+      now += step;
+      final List<Long> expired = new ArrayList<>();
+      wheel.advance(expired::addAll);
+      for (long deadline : expired) {
+        assertTrue(deadline <= now);
+      }
+
+      int due = 0;
+      while (index < deadlines.size() && deadlines.get(index) <= now) {
+        index++;
+        due++;
+      }
+      assertEquals(due, expired.size());
+    }
+    assertEquals(0, wheel.size());
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private volatile Instant instant = Instant.parse("2017-08-01T10:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+}
@@ -0,0 +1,315 @@
+package org.interledger.codecs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.InterledgerPacket;
+import org.interledger.ilp.InterledgerPayment;
+import org.interledger.ilqp.QuoteBySourceAmountRequest;
+import org.interledger.ilqp.QuoteLiquidityRequest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link InterledgerPacketDecoder}.
+ */
+public class InterledgerPacketDecoderTest {
+
+  private final CodecContext context = CodecContextFactory.interledger();
+  private final RecordingSubscriber subscriber = new RecordingSubscriber();
+
+  @Test
+  public void testDecodesAcrossChunkBoundaries() {
+    final List<InterledgerPacket> packets = packets(50);
+    final byte[] stream = encode(packets);
+    final InterledgerPacketDecoder decoder = decoder(64 * 1024);
+    decoder.request(Long.MAX_VALUE);
+
+    final Random random = new Random(3);
+    int offset = 0;
+    while (offset < stream.length) {
+      final int length = Math.min(stream.length - offset, 1 + random.nextInt(9));
+      assertTrue(decoder.offer(ByteBuffer.wrap(stream, offset, length)));
+      offset += length;
+    }
+    decoder.complete();
+
+    assertEquals(packets, subscriber.packets);
+    assertTrue(subscriber.completed);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void testHonorsDemand() {
+    final List<InterledgerPacket> packets = packets(3);
+    final InterledgerPacketDecoder decoder = decoder(64 * 1024);
+    assertTrue(decoder.offer(ByteBuffer.wrap(encode(packets))));
+    decoder.complete();
+    assertEquals(0, subscriber.packets.size());
+
+    decoder.request(2);
+    assertEquals(packets.subList(0, 2), subscriber.packets);
+    assertFalse(subscriber.completed);
+
+    decoder.request(1);
+    assertEquals(packets, subscriber.packets);
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void testRefusesBytesWhenFull() {
+    final List<InterledgerPacket> packets = packets(20);
+    final byte[] stream = encode(packets);
+    final AtomicInteger resumed = new AtomicInteger();
+    final ByteBuffer chunk = ByteBuffer.wrap(stream);
+    final InterledgerPacketDecoder decoder = InterledgerPacketDecoder.builder()
+        .codecContext(context)
+        .subscriber(subscriber)
+        .resumeListener(resumed::incrementAndGet)
+        .maximumBufferSize(128)
+        .build();
+
+    assertFalse(decoder.offer(chunk));
+    assertEquals(128, chunk.position());
+
+    decoder.request(1);
+    assertEquals(1, subscriber.packets.size());
+    assertEquals(1, resumed.get());
+
+    /* each resumption offers the rest, until the stream has all been decoded */
+    subscriber.requestOnNext = decoder;
+    decoder.request(1);
+    while (chunk.hasRemaining()) {
+      decoder.offer(chunk);
+    }
+    decoder.complete();
+    assertEquals(packets, subscriber.packets);
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void testResumesWhenSubscriberThrows() {
+    final AtomicInteger resumed = new AtomicInteger();
+    final InterledgerPacketDecoder decoder = InterledgerPacketDecoder.builder()
+        .codecContext(context)
+        .subscriber(new InterledgerPacketDecoder.Subscriber() {
+          @Override
+          public void onNext(final InterledgerPacket packet) {
+            throw new IllegalStateException("subscriber failed");
+          }
+
+          @Override
+          public void onError(final CodecException error) {
+          }
+
+          @Override
+          public void onComplete() {
+          }
+        })
+        .resumeListener(resumed::incrementAndGet)
+        .maximumBufferSize(128)
+        .build();
+    assertFalse(decoder.offer(ByteBuffer.wrap(encode(packets(20)))));
+
+    try {
+      decoder.request(1);
+      fail("Expected the subscriber to throw.");
+    } catch (IllegalStateException e) {
+      assertEquals(1, resumed.get());
+    }
+  }
+
+  @Test
+  public void testResumesOnlyAfterRefusal() {
+    final List<InterledgerPacket> packets = packets(60);
+    final byte[] stream = encode(packets);
+    assertTrue(stream.length > 3 * 1024);
+    final List<String> events = new ArrayList<>();
+    final InterledgerPacketDecoder decoder = InterledgerPacketDecoder.builder()
+        .codecContext(context)
+        .subscriber(subscriber)
+        .resumeListener(() -> events.add("resume"))
+        .maximumBufferSize(1024)
+        .build();
+    decoder.request(Long.MAX_VALUE);
+
+    /* the subscriber keeps up, so the decoder makes room for the whole chunk */
+    events.add("offer returned " + decoder.offer(ByteBuffer.wrap(stream)));
+    assertEquals(Collections.singletonList("offer returned true"), events);
+    assertEquals(packets, subscriber.packets);
+  }
+
+  @Test
+  public void testConcurrentRequestsDeliverEveryPacket() throws Exception {
+    final List<InterledgerPacket> packets = packets(40);
+    final byte[] stream = encode(packets);
+    final int threads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int round = 0; round < 500; round++) {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        final InterledgerPacketDecoder decoder = InterledgerPacketDecoder.builder()
+            .codecContext(context)
+            .subscriber(subscriber)
+            .build();
+        assertTrue(decoder.offer(ByteBuffer.wrap(stream)));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+          futures.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < packets.size() / threads; i++) {
+              decoder.request(1);
+            }
+            return null;
+          }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+        synchronized (decoder) {
+          assertEquals(packets.size(), subscriber.packets.size());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testTruncatedStream() {
+    final byte[] stream = encode(packets(2));
+    final InterledgerPacketDecoder decoder = decoder(64 * 1024);
+    decoder.request(10);
+    decoder.offer(ByteBuffer.wrap(stream, 0, stream.length - 1));
+    decoder.complete();
+
+    assertEquals(1, subscriber.packets.size());
+    assertFalse(subscriber.completed);
+    assertNotNull(subscriber.error);
+  }
+
+  @Test
+  public void testMalformedPacket() {
+    final InterledgerPacketDecoder decoder = decoder(64 * 1024);
+    decoder.request(10);
+    assertTrue(decoder.offer(ByteBuffer.wrap(new byte[] {(byte) 0xee, 1, 2, 3})));
+
+    assertNotNull(subscriber.error);
+    assertTrue(decoder.offer(ByteBuffer.wrap(encode(packets(1)))));
+    assertEquals(0, subscriber.packets.size());
+  }
+
+  @Test
+  public void testPacketLargerThanBuffer() {
+    final InterledgerPacketDecoder decoder = decoder(32);
+    decoder.request(1);
+    final InterledgerPayment payment = InterledgerPayment.builder()
+        .destinationAccount(InterledgerAddress.of("g.us.bank.alice"))
+        .destinationAmount(BigInteger.TEN)
+        .data(new byte[100])
+        .build();
+    decoder.offer(ByteBuffer.wrap(context.write(payment)));
+
+    assertNotNull(subscriber.error);
+  }
+
+  private InterledgerPacketDecoder decoder(final int maximumBufferSize) {
+    return InterledgerPacketDecoder.builder()
+        .codecContext(context)
+        .subscriber(subscriber)
+        .maximumBufferSize(maximumBufferSize)
+        .build();
+  }
+
+  private byte[] encode(final List<InterledgerPacket> packets) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (InterledgerPacket packet : packets) {
+      final byte[] bytes = context.write(packet);
+      out.write(bytes, 0, bytes.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static List<InterledgerPacket> packets(final int count) {
+    final List<InterledgerPacket> packets = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final InterledgerAddress destination = InterledgerAddress.of("g.us.bank.user" + i);
+      switch (i % 3) {
+        case 0:
+          final byte[] data = new byte[i * 3];
+          Arrays.fill(data, (byte) i);
+          packets.add(InterledgerPayment.builder()
+              .destinationAccount(destination)
+              .destinationAmount(BigInteger.valueOf(1000 + i))
+              .data(data)
+              .build());
+          break;
+        case 1:
+          packets.add(QuoteLiquidityRequest.Builder.builder()
+              .destinationAccount(destination)
+              .destinationHoldDuration(Duration.ofSeconds(i))
+              .build());
+          break;
+        default:
+          packets.add(QuoteBySourceAmountRequest.Builder.builder()
+              .destinationAccount(destination)
+              .sourceAmount(BigInteger.valueOf(i))
+              .destinationHoldDuration(Duration.ofSeconds(i))
+              .build());
+          break;
+      }
+    }
+    return packets;
+  }
+
+  private static final class RecordingSubscriber implements InterledgerPacketDecoder.Subscriber {
+
+    private final List<InterledgerPacket> packets = new ArrayList<>();
+    private CodecException error;
+    private boolean completed;
+    private InterledgerPacketDecoder requestOnNext;
+
+    @Override
+    public void onNext(final InterledgerPacket packet) {
+      packets.add(packet);
+      if (requestOnNext != null) {
+        requestOnNext.request(1);
+      }
+    }
+
+    @Override
+    public void onError(final CodecException error) {
+      this.error = error;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+}
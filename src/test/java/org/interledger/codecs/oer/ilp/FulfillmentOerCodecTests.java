@@ -0,0 +1,41 @@
+package org.interledger.codecs.oer.ilp;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.codecs.CodecException;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.ilp.PreimageSha256;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FulfillmentOerCodec}.
+ */
+public class FulfillmentOerCodecTests {
+
+  private final CodecContext context = CodecContextFactory.interledger();
+
+  @Test
+  public void testWritesRawPreimage() {
+    final byte[] preimage = new byte[32];
+    for (int i = 0; i < preimage.length; i++) {
+      preimage[i] = (byte) (i * 7);
+    }
+
+    final byte[] encoded =
+        context.write(Fulfillment.class, new PreimageSha256Fulfillment(preimage));
+    assertArrayEquals(preimage, encoded);
+
+    final Fulfillment decoded = context.read(Fulfillment.class, encoded);
+    assertArrayEquals(preimage, PreimageSha256.getPreimage(decoded));
+  }
+
+  @Test(expected = CodecException.class)
+  public void testReadTruncated() {
+    context.read(Fulfillment.class, new byte[31]);
+  }
+
+}
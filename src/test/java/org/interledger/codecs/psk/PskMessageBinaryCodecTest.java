@@ -0,0 +1,99 @@
+package org.interledger.codecs.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.codecs.CodecException;
+import org.interledger.psk.PskEncryptionHeader;
+import org.interledger.psk.PskMessage;
+import org.interledger.psk.PskNonceHeader;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Unit tests for the buffer based read and write methods of {@link PskMessageBinaryCodec}.
+ */
+public class PskMessageBinaryCodecTest {
+
+  private static final PskMessage MESSAGE = PskMessage.builder()
+      .addPublicHeader(PskNonceHeader.fromNonce(new byte[16]))
+      .addPublicHeader(PskEncryptionHeader.none())
+      .addPublicHeader("Payment-Id", "69338171-5240-4392-8c77-d417bd977962")
+      .addPrivateHeader("Expires-At", "2017-08-01T10:00:00Z")
+      .addPrivateHeader("Greeting", "gr\u00fc\u00df dich \u20ac \ud83d\ude00")
+      .data("binary data goes here".getBytes(StandardCharsets.UTF_8))
+      .build();
+
+  private static final String ENCODED = "PSK/1.0\n"
+      + "Nonce:AAAAAAAAAAAAAAAAAAAAAA\n"
+      + "Encryption:none\n"
+      + "Payment-Id:69338171-5240-4392-8c77-d417bd977962\n"
+      + "\n"
+      + "Expires-At:2017-08-01T10:00:00Z\n"
+      + "Greeting:gr\u00fc\u00df dich \u20ac \ud83d\ude00\n"
+      + "\n"
+      + "binary data goes here";
+
+  private final PskMessageBinaryCodec codec = new PskMessageBinaryCodec();
+
+  @Test
+  public void testWriteToStream() {
+    byte[] encoded = CodecContextFactory.interledger().write(PskMessage.class, MESSAGE);
+    assertArrayEquals(ENCODED.getBytes(StandardCharsets.UTF_8), encoded);
+  }
+
+  @Test
+  public void testWriteToBufferAtOffset() {
+    int length = codec.getEncodedLength(MESSAGE);
+    assertEquals(ENCODED.getBytes(StandardCharsets.UTF_8).length, length);
+
+    byte[] buffer = new byte[length + 10];
+    assertEquals(length, codec.write(MESSAGE, buffer, 4));
+    assertArrayEquals(ENCODED.getBytes(StandardCharsets.UTF_8),
+        Arrays.copyOfRange(buffer, 4, 4 + length));
+
+    PskMessage decoded = codec.read(buffer, 4, length);
+    assertEquals(MESSAGE.getPublicHeaders(), decoded.getPublicHeaders());
+    assertEquals(MESSAGE.getPrivateHeaders(), decoded.getPrivateHeaders());
+    assertArrayEquals(MESSAGE.getData(), decoded.getData());
+  }
+
+  @Test
+  public void testWritePrivateData() {
+    String expected = ENCODED.substring(ENCODED.indexOf("Expires-At"));
+
+    assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8),
+        codec.writePrivateData(MESSAGE));
+    assertEquals(expected.getBytes(StandardCharsets.UTF_8).length,
+        codec.getPrivateDataLength(MESSAGE));
+  }
+
+  @Test
+  public void testWriteEncryptedOmitsPrivateHeaders() {
+    PskMessage message = PskMessage.builder()
+        .addPublicHeader(PskNonceHeader.fromNonce(new byte[16]))
+        .addPublicHeader(PskEncryptionHeader.aesGcm(new byte[16]))
+        .data(new byte[] {1, 2, 3})
+        .build();
+
+    byte[] buffer = new byte[codec.getEncodedLength(message)];
+    codec.write(message, buffer, 0);
+
+    byte[] expected = ("PSK/1.0\n"
+        + "Nonce:AAAAAAAAAAAAAAAAAAAAAA\n"
+        + "Encryption:aes-256-gcm AAAAAAAAAAAAAAAAAAAAAA\n"
+        + "\n"
+        + "\u0001\u0002\u0003").getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(expected, buffer);
+  }
+
+  @Test(expected = CodecException.class)
+  public void testWriteToSmallBuffer() {
+    codec.write(MESSAGE, new byte[codec.getEncodedLength(MESSAGE)], 1);
+  }
+
+}
@@ -0,0 +1,147 @@
+package org.interledger.codecs.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.codecs.CodecException;
+import org.interledger.psk.PskEncryptionType;
+import org.interledger.psk.PskMessage;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link PskMessageIndex}.
+ */
+public class PskMessageIndexTest {
+
+  private static final String UNENCRYPTED = "PSK/1.0\n"
+      + "Nonce: AAAAAAAAAAAAAAAAAAAAAA\n"
+      + "Encryption: none\n"
+      + "Payment-Id:\t69338171-5240-4392-8c77-d417bd977962  \n"
+      + "\n"
+      + "Expires-At: 2017-08-01T10:00:00Z\r\n"
+      + "\n"
+      + "binary data goes here";
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] remaining(ByteBuffer buffer) {
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return data;
+  }
+
+  @Test
+  public void testIndexUnencrypted() {
+    PskMessageIndex index = PskMessageIndex.of(bytes(UNENCRYPTED));
+
+    assertFalse(index.isEncrypted());
+    assertEquals(3, index.getPublicHeaderCount());
+    assertEquals("Payment-Id", index.getPublicHeaderName(2));
+    assertEquals("69338171-5240-4392-8c77-d417bd977962", index.getPublicHeaderValue(2));
+    assertEquals(2, index.indexOfPublicHeader("payment-id"));
+    assertEquals(-1, index.indexOfPublicHeader("Expires-At"));
+
+    assertEquals(1, index.getPrivateHeaderCount());
+    assertEquals(0, index.indexOfPrivateHeader("EXPIRES-AT"));
+    assertEquals("2017-08-01T10:00:00Z", index.getPrivateHeaderValue(0));
+
+    assertArrayEquals(bytes("binary data goes here"), remaining(index.getData()));
+  }
+
+  @Test
+  public void testIndexEncrypted() {
+    String message = "PSK/1.0\n"
+        + "Encryption: aes-256-gcm 2COt1EnkoRIkIGhXmIqKSQ\n"
+        + "\n"
+        + "PrivateHeader1: some value\n"
+        + "\n"
+        + "binary data goes here";
+
+    PskMessageIndex index = PskMessageIndex.of(bytes(message));
+
+    assertTrue(index.isEncrypted());
+    assertEquals(1, index.getPublicHeaderCount());
+    assertEquals(0, index.getPrivateHeaderCount());
+    assertArrayEquals(bytes(message.substring(message.indexOf("PrivateHeader1"))),
+        remaining(index.getData()));
+  }
+
+  @Test
+  public void testDataIsNotCopied() {
+    byte[] buffer = bytes("xxPSK/1.0\nEncryption: none\n\n\nabcyy");
+    PskMessageIndex index = PskMessageIndex.of(buffer, 2, buffer.length - 4);
+
+    ByteBuffer data = index.getData();
+    assertEquals(3, data.remaining());
+    assertTrue(data.isReadOnly());
+
+    buffer[index.getDataOffset()] = 'z';
+    assertEquals('z', data.get(0));
+  }
+
+  @Test
+  public void testIndexByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(UNENCRYPTED.length());
+    buffer.put(bytes(UNENCRYPTED));
+    buffer.flip();
+
+    PskMessageIndex index = PskMessageIndex.of(buffer);
+
+    assertEquals(0, buffer.position());
+    assertEquals(3, index.getPublicHeaderCount());
+    assertArrayEquals(bytes("binary data goes here"), remaining(index.getData()));
+  }
+
+  @Test
+  public void testIndexPrivateData() {
+    byte[] buffer = bytes("Expires-At: 2017-08-01T10:00:00Z\nSecret: stuff\n\ndata");
+    PskMessageIndex index = PskMessageIndex.ofPrivateData(buffer, 0, buffer.length);
+
+    assertEquals(0, index.getPublicHeaderCount());
+    assertEquals(2, index.getPrivateHeaderCount());
+    assertEquals("Secret", index.getPrivateHeaderName(1));
+    assertArrayEquals(bytes("data"), remaining(index.getData()));
+  }
+
+  @Test
+  public void testToMessageMatchesCodec() {
+    PskMessage original = PskMessage.builder()
+        .addPublicHeader("question", "What is the answer?")
+        .addPrivateHeader("answer", "Choice, the problem is choice.")
+        .data(bytes("{\"oracle\":\"candy\"}"))
+        .build();
+    byte[] encoded = CodecContextFactory.interledger().write(PskMessage.class, original);
+
+    PskMessage decoded = PskMessageIndex.of(encoded).toMessage();
+
+    assertEquals(original.getPublicHeaders(), decoded.getPublicHeaders());
+    assertEquals(original.getPrivateHeaders(), decoded.getPrivateHeaders());
+    assertEquals(PskEncryptionType.NONE, decoded.getEncryptionHeader().getEncryptionType());
+    assertArrayEquals(original.getData(), decoded.getData());
+  }
+
+  @Test(expected = CodecException.class)
+  public void testBadStatusLine() {
+    PskMessageIndex.of(bytes("PSK/2.0\nEncryption: none\n\n\n"));
+  }
+
+  @Test(expected = CodecException.class)
+  public void testMissingSeparator() {
+    PskMessageIndex.of(bytes("PSK/1.0\nEncryption none\n\n\n"));
+  }
+
+  @Test(expected = CodecException.class)
+  public void testMissingEncryptionHeader() {
+    PskMessageIndex.of(bytes("PSK/1.0\nHeader: stuff\n\n\n"));
+  }
+
+}
@@ -0,0 +1,149 @@
+package org.interledger.ilp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link PendingPaymentTable}.
+ */
+public class PendingPaymentTableTest {
+
+  private final MutableClock clock = new MutableClock();
+  private final PendingPaymentTable<String> table = PendingPaymentTable.<String>builder()
+      .expectedSize(4)
+      .concurrencyLevel(2)
+      .clock(clock)
+      .build();
+
+  @Test
+  public void testPutAndFulfill() {
+    final Fulfillment fulfillment = fulfillment(1);
+    final Condition condition = fulfillment.getCondition();
+
+    assertTrue(table.put(condition, clock.instant().plusSeconds(10), "payment"));
+    assertFalse(table.put(condition, clock.instant().plusSeconds(10), "duplicate"));
+    assertEquals("payment", table.get(condition));
+
+    assertEquals("payment", table.fulfill(fulfillment));
+    assertNull(table.get(condition));
+    assertNull(table.fulfill(fulfillment));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testFulfillAfterExpiryFails() {
+    final Fulfillment fulfillment = fulfillment(1);
+    table.put(fulfillment.getCondition(), clock.instant().plusSeconds(10), "payment");
+
+    clock.advance(Duration.ofSeconds(10));
+
+    assertNull(table.fulfill(fulfillment));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testExpire() {
+    final int count = 1000;
+    for (int i = 0; i < count; i++) {
+      table.put(fulfillment(i).getCondition(), clock.instant().plusSeconds(i % 2 == 0 ? 5 : 15),
+          Integer.toString(i));
+    }
+    assertEquals(count, table.size());
+
+    clock.advance(Duration.ofSeconds(10));
+    final List<String> expired = new ArrayList<>();
+    assertEquals(count / 2, table.expire(expired::add));
+    assertEquals(count / 2, expired.size());
+
+    for (int i = 0; i < count; i++) {
+      final String value = table.get(fulfillment(i).getCondition());
+      if (i % 2 == 0) {
+        assertNull(value);
+      } else {
+        assertEquals(Integer.toString(i), value);
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentPutAndFulfill() throws Exception {
+    final int threads = 4;
+    final int perThread = 2000;
+    final AtomicInteger fulfilled = new AtomicInteger();
+
+    final List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int base = t * perThread;
+      workers.add(new Thread(() -> {
+        for (int i = base; i < base + perThread; i++) {
+          table.put(fulfillment(i).getCondition(), clock.instant().plusSeconds(60), "payment");
+        }
+        for (int i = base; i < base + perThread; i += 2) {
+          if (table.fulfill(fulfillment(i)) != null) {
+            fulfilled.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertEquals(threads * perThread / 2, fulfilled.get());
+    assertEquals(threads * perThread / 2, table.size());
+  }
+
+  private static Fulfillment fulfillment(final int index) {
+    final byte[] preimage = new byte[32];
+    preimage[0] = (byte) (index >>> 24);
+    preimage[1] = (byte) (index >>> 16);
+    preimage[2] = (byte) (index >>> 8);
+    preimage[3] = (byte) index;
+    return new PreimageSha256Fulfillment(preimage);
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private volatile Instant instant = Instant.parse("2017-08-01T10:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+}
@@ -0,0 +1,70 @@
+package org.interledger.ilp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Condition;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+
+import org.junit.Test;
+
+import java.util.Base64;
+
+/**
+ * Unit tests for {@link PreimageSha256}.
+ */
+public class PreimageSha256Test {
+
+  private static final byte[] TEST_PREIMAGE = new byte[32];
+  private static final byte[] TEST_FINGERPRINT =
+      Base64.getUrlDecoder().decode("Zmh6rfhivXdsj8GLjp-OIAiXFIVu4jOzkCpZHQ1fKSU");
+
+  @Test
+  public void testGetPreimage() {
+    final byte[] preimage = new byte[32];
+    preimage[0] = 1;
+    preimage[31] = (byte) 0xff;
+
+    assertArrayEquals(preimage,
+        PreimageSha256.getPreimage(new PreimageSha256Fulfillment(preimage)));
+  }
+
+  @Test
+  public void testFingerprint() {
+    final byte[] buffer = new byte[40];
+    PreimageSha256.fingerprint(TEST_PREIMAGE, buffer, 8);
+
+    final byte[] fingerprint = new byte[32];
+    System.arraycopy(buffer, 8, fingerprint, 0, 32);
+    assertArrayEquals(TEST_FINGERPRINT, fingerprint);
+  }
+
+  @Test
+  public void testVerify() {
+    final Fulfillment fulfillment = new PreimageSha256Fulfillment(TEST_PREIMAGE);
+    final Condition condition = new PreimageSha256Condition(32, TEST_FINGERPRINT);
+
+    assertTrue(PreimageSha256.verify(fulfillment, condition));
+    assertTrue(PreimageSha256.verify(TEST_PREIMAGE, TEST_FINGERPRINT));
+  }
+
+  @Test
+  public void testVerifyWrongPreimage() {
+    final byte[] preimage = new byte[32];
+    preimage[0] = 1;
+
+    assertFalse(PreimageSha256.verify(new PreimageSha256Fulfillment(preimage),
+        new PreimageSha256Condition(32, TEST_FINGERPRINT)));
+    assertFalse(PreimageSha256.verify(new byte[31], TEST_FINGERPRINT));
+  }
+
+  @Test
+  public void testVerifyWrongCost() {
+    assertFalse(PreimageSha256.verify(new PreimageSha256Fulfillment(TEST_PREIMAGE),
+        new PreimageSha256Condition(31, TEST_FINGERPRINT)));
+  }
+
+}
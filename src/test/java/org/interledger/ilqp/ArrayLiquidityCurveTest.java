@@ -0,0 +1,365 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecContextFactory;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link ArrayLiquidityCurve}.
+ */
+public class ArrayLiquidityCurveTest {
+
+  private final ArrayLiquidityCurve curve = ArrayLiquidityCurve.of(
+      new long[] {10, 20, 30, 40},
+      new long[] {0, 100, 100, 103});
+
+  @Test
+  public void testOutputFor() {
+    assertEquals(0, curve.outputFor(0));
+    assertEquals(0, curve.outputFor(10));
+    assertEquals(50, curve.outputFor(15));
+    assertEquals(100, curve.outputFor(20));
+    assertEquals(100, curve.outputFor(25));
+    assertEquals(100, curve.outputFor(33));
+    assertEquals(101, curve.outputFor(34));
+    assertEquals(103, curve.outputFor(40));
+    assertEquals(103, curve.outputFor(1000));
+  }
+
+  @Test
+  public void testInputFor() {
+    assertEquals(10, curve.inputFor(0));
+    assertEquals(11, curve.inputFor(1));
+    assertEquals(20, curve.inputFor(100));
+    assertEquals(34, curve.inputFor(101));
+    assertEquals(37, curve.inputFor(102));
+    assertEquals(40, curve.inputFor(103));
+
+    try {
+      curve.inputFor(104);
+      fail();
+    } catch (InterledgerQuotingException e) {
+      assertEquals("Output amount 104 exceeds liquidity.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testBigIntegerAmounts() {
+    assertEquals(BigInteger.valueOf(50), curve.outputFor(BigInteger.valueOf(15)));
+    assertEquals(BigInteger.valueOf(103), curve.outputFor(BigInteger.ONE.shiftLeft(100)));
+    assertEquals(BigInteger.valueOf(34), curve.inputFor(BigInteger.valueOf(101)));
+  }
+
+  @Test
+  public void testUnsignedAmounts() {
+    final BigInteger max = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    final LiquidityCurve large = LiquidityCurve.Builder.builder()
+        .liquidityPoint(point(BigInteger.ZERO, BigInteger.ZERO))
+        .liquidityPoint(point(max, max.shiftRight(1)))
+        .build();
+
+    assertEquals(max.shiftRight(2), large.outputFor(max.shiftRight(1)));
+    assertEquals(max.shiftRight(1), large.outputFor(max));
+    assertEquals(max, large.inputFor(max.shiftRight(1)));
+  }
+
+  @Test
+  public void testBuilderSortsPoints() {
+    final LiquidityCurve built = LiquidityCurve.Builder.builder()
+        .liquidityPoint(point(BigInteger.valueOf(30), BigInteger.valueOf(100)))
+        .liquidityPoint(point(BigInteger.valueOf(10), BigInteger.ZERO))
+        .liquidityPoint(point(BigInteger.valueOf(40), BigInteger.valueOf(103)))
+        .liquidityPoint(point(BigInteger.valueOf(20), BigInteger.valueOf(100)))
+        .build();
+
+    assertEquals(curve, built);
+    assertEquals(curve, LiquidityCurve.Builder.builder().liquidityCurve(built).build());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecreasingOutput() {
+    ArrayLiquidityCurve.of(new long[] {1, 2}, new long[] {2, 1});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRepeatedInput() {
+    ArrayLiquidityCurve.of(new long[] {1, 1}, new long[] {1, 2});
+  }
+
+  @Test
+  public void testMultiplyDivideMatchesBigInteger() {
+    final Random random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      final long c = random.nextLong() >>> random.nextInt(64) | 1;
+      final long a = Long.remainderUnsigned(random.nextLong() >>> random.nextInt(64), c);
+      final long b = random.nextLong() >>> random.nextInt(64);
+
+      final BigInteger product = unsigned(a).multiply(unsigned(b));
+      final BigInteger[] quotient = product.divideAndRemainder(unsigned(c));
+      final BigInteger roundedUp = quotient[1].signum() == 0 ? quotient[0]
+          : quotient[0].add(BigInteger.ONE);
+
+      assertEquals(quotient[0], unsigned(ArrayLiquidityCurve.multiplyDivide(a, b, c, false)));
+      assertEquals(roundedUp, unsigned(ArrayLiquidityCurve.multiplyDivide(a, b, c, true)));
+    }
+  }
+
+  @Test
+  public void testInterpolationMatchesBigDecimal() {
+    final long[] inputs = {0, 3_000_000_000_000L, 9_000_000_000_000_000L};
+    final long[] outputs = {0, 7_000_000_000_000L, 8_000_000_000_000_000L};
+    final ArrayLiquidityCurve wide = ArrayLiquidityCurve.of(inputs, outputs);
+
+    final Random random = new Random(2);
+    for (int i = 0; i < 10_000; i++) {
+      final long input = (random.nextLong() >>> 1) % inputs[2];
+      final int segment = input < inputs[1] ? 0 : 1;
+      final BigInteger expected = new BigDecimal(input - inputs[segment])
+          .multiply(new BigDecimal(outputs[segment + 1] - outputs[segment]))
+          .divide(new BigDecimal(inputs[segment + 1] - inputs[segment]), 0,
+              RoundingMode.FLOOR)
+          .toBigInteger()
+          .add(BigInteger.valueOf(outputs[segment]));
+      final long output = wide.outputFor(input);
+      assertEquals(expected.longValueExact(), output);
+
+      final long minimumInput = wide.inputFor(output);
+      assertEquals(output, wide.outputFor(minimumInput));
+      assertTrue(minimumInput <= input);
+    }
+  }
+
+  @Test
+  public void testCompose() {
+    final ArrayLiquidityCurve next = ArrayLiquidityCurve.of(
+        new long[] {50, 100, 200},
+        new long[] {5, 10, 11});
+    final ArrayLiquidityCurve composed = curve.compose(next);
+
+    /* exact wherever this curve or the next has a point, including the step at the input that
+     * first reaches the next curve's minimum */
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {10, 14, 15, 20, 30, 40},
+        new long[] {0, 0, 5, 10, 10, 10}), composed);
+
+    for (long input = 0; input <= 50; input++) {
+      assertEquals(next.outputFor(curve.outputFor(input)), composed.outputFor(input));
+    }
+  }
+
+  @Test
+  public void testComposeKeepsBendsBetweenWholeAmounts() {
+    final ArrayLiquidityCurve first = ArrayLiquidityCurve.of(
+        new long[] {22, 29, 38, 49, 68, 71}, new long[] {10, 29, 29, 44, 63, 70});
+    final ArrayLiquidityCurve second = ArrayLiquidityCurve.of(
+        new long[] {5, 13, 28, 29, 43}, new long[] {19, 33, 49, 68, 76});
+    final ArrayLiquidityCurve composed = first.compose(second);
+
+    for (long input = 0; input <= 80; input++) {
+      assertTrue(composed.outputFor(input) <= second.outputFor(first.outputFor(input)) + 1);
+    }
+  }
+
+  @Test
+  public void testComposeRandomCurves() {
+    final Random random = new Random(3);
+    for (int round = 0; round < 100; round++) {
+      final ArrayLiquidityCurve first = randomCurve(random, 1 + random.nextInt(20));
+      final ArrayLiquidityCurve second = randomCurve(random, 1 + random.nextInt(20));
+      final ArrayLiquidityCurve composed = first.compose(second);
+
+      /* exact at the points of the first curve, and never above the hops in turn elsewhere */
+      for (int i = 0; i < first.size(); i++) {
+        final long input = first.getInputAmount(i);
+        assertEquals(second.outputFor(first.outputFor(input)), composed.outputFor(input));
+      }
+      for (int i = 0; i < composed.size(); i++) {
+        final long input = composed.getInputAmount(i);
+        assertTrue(composed.getOutputAmount(i) <= second.outputFor(first.outputFor(input)));
+      }
+
+      /* the composed curve never promises more than the hops deliver, beyond rounding its own
+       * output down once, and falls short of them by at most two steps of the second curve */
+      long tolerance = 0;
+      for (int i = 1; i < second.size(); i++) {
+        final long rise = second.getOutputAmount(i) - second.getOutputAmount(i - 1);
+        final long run = second.getInputAmount(i) - second.getInputAmount(i - 1);
+        tolerance = Math.max(tolerance, 2 * (1 + (rise + run - 1) / run));
+      }
+      for (int i = 0; i < 100; i++) {
+        final long input = random.nextInt(1_200_000);
+        final long expected = second.outputFor(first.outputFor(input));
+        final long actual = composed.outputFor(input);
+        assertTrue(actual <= expected + 1);
+        assertTrue(expected - actual <= tolerance);
+      }
+    }
+  }
+
+  @Test
+  public void testShift() {
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {15, 20, 30, 40},
+        new long[] {0, 50, 50, 53}), curve.shift(50));
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {20, 30, 40},
+        new long[] {0, 0, 3}), curve.shift(100));
+    assertEquals(curve, curve.shift(0));
+    assertEquals(0, curve.shift(104).size());
+  }
+
+  @Test
+  public void testScale() {
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {10, 20, 30, 40},
+        new long[] {0, 66, 66, 68}), curve.scale(2, 3));
+
+    try {
+      ArrayLiquidityCurve.of(new long[] {0, 1}, new long[] {0, Long.MAX_VALUE}).scale(3, 1);
+      fail();
+    } catch (ArithmeticException e) {
+      assertEquals("Amount does not fit in a UInt64.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testClip() {
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {10, 15},
+        new long[] {0, 50}), curve.clip(50));
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {10, 20},
+        new long[] {0, 100}), curve.clip(100));
+    assertEquals(ArrayLiquidityCurve.of(
+        new long[] {10, 20, 30, 34},
+        new long[] {0, 100, 100, 101}), curve.clip(101));
+    assertEquals(curve, curve.clip(103));
+  }
+
+  @Test
+  public void testSimplifyRemovesCollinearPoints() {
+    final ArrayLiquidityCurve line = ArrayLiquidityCurve.of(
+        new long[] {0, 10, 20, 30, 40},
+        new long[] {0, 20, 40, 60, 80});
+
+    assertEquals(ArrayLiquidityCurve.of(new long[] {0, 40}, new long[] {0, 80}),
+        line.simplifyToError(0));
+    assertEquals(curve, curve.simplifyToError(0));
+  }
+
+  @Test
+  public void testSimplifyToSize() {
+    final Random random = new Random(4);
+    for (int round = 0; round < 50; round++) {
+      final ArrayLiquidityCurve original = randomCurve(random, 2 + random.nextInt(200));
+      final int maxPoints = 2 + random.nextInt(10);
+      final ArrayLiquidityCurve simplified = original.simplifyToSize(maxPoints);
+
+      assertTrue(simplified.size() <= maxPoints);
+      assertEquals(original.getInputAmount(0), simplified.getInputAmount(0));
+      assertEquals(original.getInputAmount(original.size() - 1),
+          simplified.getInputAmount(simplified.size() - 1));
+      assertConservative(original, simplified, Long.MAX_VALUE, random);
+    }
+  }
+
+  @Test
+  public void testSimplifyToError() {
+    final Random random = new Random(5);
+    for (int round = 0; round < 50; round++) {
+      final ArrayLiquidityCurve original = randomCurve(random, 2 + random.nextInt(200));
+      final long maxError = random.nextInt(50_000);
+      final ArrayLiquidityCurve simplified = original.simplifyToError(maxError);
+
+      assertTrue(simplified.size() <= original.size());
+      assertConservative(original, simplified, maxError, random);
+    }
+  }
+
+  @Test
+  public void testSimplifyConcaveCurve() {
+    /* a curve of diminishing rates, as a connector with limited liquidity would quote */
+    final int size = 1000;
+    final long[] inputs = new long[size];
+    final long[] outputs = new long[size];
+    for (int i = 0; i < size; i++) {
+      inputs[i] = i * 1000L;
+      outputs[i] = (long) (1_000_000 * Math.sqrt(i));
+    }
+    final ArrayLiquidityCurve original = ArrayLiquidityCurve.of(inputs, outputs);
+    final ArrayLiquidityCurve simplified = original.simplifyToError(1000);
+
+    assertTrue(simplified.size() < size / 5);
+    assertEquals(original.getOutputAmount(size - 1),
+        simplified.getOutputAmount(simplified.size() - 1));
+    assertConservative(original, simplified, 1000, new Random(6));
+  }
+
+  private static void assertConservative(final ArrayLiquidityCurve original,
+      final ArrayLiquidityCurve simplified, final long maxError, final Random random) {
+    final long end = original.getInputAmount(original.size() - 1) + 10;
+    for (int i = 0; i < 2000; i++) {
+      final long input = i < original.size() ? original.getInputAmount(i)
+          : (random.nextLong() >>> 1) % end;
+      final long lost = original.outputFor(input) - simplified.outputFor(input);
+      assertTrue(lost >= 0);
+      assertTrue(lost <= maxError);
+    }
+  }
+
+  @Test
+  public void testCodecRoundTrip() throws Exception {
+    final CodecContext context = CodecContextFactory.interledger();
+    final QuoteLiquidityResponse response = QuoteLiquidityResponse.Builder.builder()
+        .liquidityCurve(ArrayLiquidityCurve.of(new long[] {0, -1L}, new long[] {0, -2L}))
+        .appliesTo(InterledgerAddress.of("test1.foo"))
+        .sourceHoldDuration(Duration.ofSeconds(10))
+        .expiresAt(Instant.parse("2017-08-01T10:00:00Z"))
+        .build();
+
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    context.write(response, outputStream);
+    final QuoteLiquidityResponse decoded = (QuoteLiquidityResponse) context
+        .read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+    assertEquals(response.getLiquidityCurve(), decoded.getLiquidityCurve());
+  }
+
+  private static LiquidityPoint point(final BigInteger input, final BigInteger output) {
+    return LiquidityPoint.builder().inputAmount(input).outputAmount(output).build();
+  }
+
+  private static ArrayLiquidityCurve randomCurve(final Random random, final int size) {
+    final long[] inputs = new long[size];
+    final long[] outputs = new long[size];
+    long input = random.nextInt(1000);
+    long output = random.nextInt(1000);
+    for (int i = 0; i < size; i++) {
+      inputs[i] = input;
+      outputs[i] = output;
+      input += 1 + random.nextInt(50_000);
+      output += random.nextInt(60_000);
+    }
+    return ArrayLiquidityCurve.of(inputs, outputs);
+  }
+
+  private static BigInteger unsigned(final long value) {
+    return new BigInteger(Long.toUnsignedString(value));
+  }
+
+}
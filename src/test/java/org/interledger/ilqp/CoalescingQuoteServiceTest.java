@@ -0,0 +1,168 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link CoalescingQuoteService}.
+ */
+public class CoalescingQuoteServiceTest {
+
+  private static final InterledgerAddress CONNECTOR = InterledgerAddress.of("test1.connector");
+  private static final QuoteSelectionStrategy FIRST = responses -> responses.iterator().next();
+
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private volatile RuntimeException failure;
+  private volatile Error error;
+
+  private final QuoteService<QuoteLiquidityRequest, QuoteLiquidityResponse> upstream =
+      new QuoteService<QuoteLiquidityRequest, QuoteLiquidityResponse>() {
+        @Override
+        public QuoteLiquidityResponse requestQuote(final QuoteLiquidityRequest quoteRequest,
+            final QuoteSelectionStrategy selectionStrategy) {
+          return requestQuote(quoteRequest, CONNECTOR);
+        }
+
+        @Override
+        public QuoteLiquidityResponse requestQuote(final QuoteLiquidityRequest quoteRequest,
+            final InterledgerAddress connector) {
+          upstreamCalls.incrementAndGet();
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          if (failure != null) {
+            throw failure;
+          }
+          if (error != null) {
+            throw error;
+          }
+          return QuoteLiquidityResponse.Builder.builder()
+              .liquidityCurve(ArrayLiquidityCurve.of(new long[] {0, 100}, new long[] {0, 99}))
+              .appliesTo(quoteRequest.getDestinationAccount())
+              .sourceHoldDuration(Duration.ofSeconds(10))
+              .expiresAt(Instant.now().plusSeconds(60))
+              .build();
+        }
+      };
+
+  private final CoalescingQuoteService<QuoteLiquidityRequest, QuoteLiquidityResponse> service =
+      new CoalescingQuoteService<>(upstream);
+
+  @Test
+  public void testConcurrentIdenticalRequestsShareOneCall() throws Exception {
+    final int callers = 16;
+    final List<Future<QuoteLiquidityResponse>> results = requestConcurrently(callers,
+        () -> service.requestQuote(request("test1.bob"), FIRST));
+
+    final QuoteLiquidityResponse response = results.get(0).get(10, TimeUnit.SECONDS);
+    for (Future<QuoteLiquidityResponse> result : results) {
+      assertSame(response, result.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, upstreamCalls.get());
+    assertEquals(1, service.getUpstreamRequests());
+    assertEquals(callers - 1, service.getCollapsedRequests());
+
+    /* nothing is cached once the call completes */
+    service.requestQuote(request("test1.bob"), FIRST);
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void testDifferentRequestsAreNotCollapsed() throws Exception {
+    final AtomicInteger next = new AtomicInteger();
+    final List<Future<QuoteLiquidityResponse>> results = requestConcurrently(4,
+        () -> service.requestQuote(request("test1.user" + next.getAndIncrement()), CONNECTOR));
+    for (Future<QuoteLiquidityResponse> result : results) {
+      result.get(10, TimeUnit.SECONDS);
+    }
+
+    assertEquals(4, upstreamCalls.get());
+    assertEquals(0, service.getCollapsedRequests());
+  }
+
+  @Test
+  public void testFailureIsSharedByWaiters() throws Exception {
+    failure = new InterledgerQuotingException("no route");
+    final List<Future<QuoteLiquidityResponse>> results = requestConcurrently(8,
+        () -> service.requestQuote(request("test1.bob"), CONNECTOR));
+
+    for (Future<QuoteLiquidityResponse> result : results) {
+      try {
+        result.get(10, TimeUnit.SECONDS);
+        fail("Expected every waiter to fail.");
+      } catch (ExecutionException e) {
+        assertSame(failure, e.getCause());
+      }
+    }
+    assertEquals(1, upstreamCalls.get());
+  }
+
+  @Test
+  public void testErrorIsSharedByWaiters() throws Exception {
+    error = new OutOfMemoryError("no room for the quote");
+    final List<Future<QuoteLiquidityResponse>> results = requestConcurrently(8,
+        () -> service.requestQuote(request("test1.bob"), CONNECTOR));
+
+    for (Future<QuoteLiquidityResponse> result : results) {
+      try {
+        result.get(10, TimeUnit.SECONDS);
+        fail("Expected every waiter to fail.");
+      } catch (ExecutionException e) {
+        assertSame(error, e.getCause());
+      }
+    }
+    assertEquals(1, upstreamCalls.get());
+  }
+
+  /**
+   * Start callers, wait until all but the first are waiting on the first's upstream call, then let
+   * the upstream call complete.
+   */
+  private List<Future<QuoteLiquidityResponse>> requestConcurrently(final int callers,
+      final Callable<QuoteLiquidityResponse> call) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(callers);
+    final List<Future<QuoteLiquidityResponse>> results = new ArrayList<>();
+    for (int i = 0; i < callers; i++) {
+      results.add(executor.submit(call));
+    }
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (service.getUpstreamRequests() + service.getCollapsedRequests() < callers
+        && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertTrue(System.nanoTime() < deadline);
+    release.countDown();
+    executor.shutdown();
+    return results;
+  }
+
+  private static QuoteLiquidityRequest request(final String destination) {
+    return QuoteLiquidityRequest.Builder.builder()
+        .destinationAccount(InterledgerAddress.of(destination))
+        .destinationHoldDuration(Duration.ofSeconds(10))
+        .build();
+  }
+
+}
@@ -0,0 +1,100 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Measures how many amounts an {@link ExchangeRateTable} converts per second on one thread of the
+ * running host.
+ *
+ * <p>Run from the command line, with the test classes on the class path:
+ *
+ * <pre>
+ * java -cp ... org.interledger.ilqp.ExchangeRateTableBenchmark [milliseconds]
+ * </pre>
+ *
+ * <p>The table holds a rate between each pair of 50 ledgers, and the conversions are between
+ * random pairs, alternately rounding down and up.
+ */
+public class ExchangeRateTableBenchmark {
+
+  /* the number of distinct conversions made between checks of the clock */
+  private static final int BATCH_SIZE = 256;
+
+  /* the share of the measurement time spent warming up before measuring */
+  private static final int WARMUP_DIVISOR = 4;
+
+  private static final int LEDGERS = 50;
+
+  /**
+   * Runs the benchmark and prints the result.
+   *
+   * @param args optionally, the number of milliseconds to measure for.
+   */
+  public static void main(final String[] args) {
+    final Duration duration = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 5000);
+    System.out.printf("%.0f conversions/s on one thread%n", run(duration));
+  }
+
+  /**
+   * Convert amounts on the calling thread for the given time.
+   *
+   * @param duration How long to measure for.
+   *
+   * @return the number of amounts converted per second.
+   */
+  public static double run(final Duration duration) {
+    Objects.requireNonNull(duration);
+
+    final Random random = new Random(42);
+    final InterledgerAddress[] ledgers = new InterledgerAddress[LEDGERS];
+    for (int i = 0; i < LEDGERS; i++) {
+      ledgers[i] = InterledgerAddress.of("g.ledger" + i + ".");
+    }
+    final ExchangeRateTable table = new ExchangeRateTable();
+    final ExchangeRateTable.Update update = table.update();
+    for (InterledgerAddress source : ledgers) {
+      for (InterledgerAddress destination : ledgers) {
+        update.put(source, destination,
+            ExchangeRate.of(1 + random.nextInt(1_000_000), 1 + random.nextInt(1_000_000)));
+      }
+    }
+    update.apply();
+
+    final InterledgerAddress[] sources = new InterledgerAddress[BATCH_SIZE];
+    final InterledgerAddress[] destinations = new InterledgerAddress[BATCH_SIZE];
+    final long[] amounts = new long[BATCH_SIZE];
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      sources[i] = ledgers[random.nextInt(LEDGERS)];
+      destinations[i] = ledgers[random.nextInt(LEDGERS)];
+      amounts[i] = random.nextInt(Integer.MAX_VALUE);
+    }
+
+    final long nanos = duration.toNanos();
+    convertFor(table, sources, destinations, amounts, nanos / WARMUP_DIVISOR);
+    final long start = System.nanoTime();
+    final long converted = convertFor(table, sources, destinations, amounts, nanos);
+    return converted * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static long convertFor(final ExchangeRateTable table, final InterledgerAddress[] sources,
+      final InterledgerAddress[] destinations, final long[] amounts, final long nanos) {
+    final long deadline = System.nanoTime() + nanos;
+    long converted = 0;
+    long total = 0;
+    do {
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        total += table.convert(sources[i], destinations[i], amounts[i],
+            (i & 1) == 0 ? RoundingMode.DOWN : RoundingMode.UP);
+      }
+      converted += BATCH_SIZE;
+    } while (System.nanoTime() < deadline);
+    /* keep the conversions from being optimized away */
+    return total == 42 ? converted + 1 : converted;
+  }
+
+}
@@ -0,0 +1,76 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.interledger.InterledgerAddress;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Unit tests for {@link ExchangeRateTable}.
+ */
+public class ExchangeRateTableTest {
+
+  private static final InterledgerAddress USD = InterledgerAddress.of("g.us.bank.");
+  private static final InterledgerAddress EUR = InterledgerAddress.of("g.eu.bank.");
+  private static final InterledgerAddress JPY = InterledgerAddress.of("g.jp.bank.");
+
+  @Test
+  public void testConvert() {
+    final ExchangeRateTable table = new ExchangeRateTable();
+    table.put(USD, EUR, ExchangeRate.of(9, 10));
+
+    assertEquals(90, table.convert(USD, EUR, 100, RoundingMode.DOWN));
+    assertEquals(BigInteger.valueOf(91),
+        table.convert(USD, EUR, BigInteger.valueOf(101), RoundingMode.UP));
+    assertNull(table.get(EUR, USD));
+  }
+
+  @Test(expected = InterledgerQuotingException.class)
+  public void testMissingRate() {
+    final ExchangeRateTable table = new ExchangeRateTable();
+    table.put(USD, EUR, ExchangeRate.of(9, 10));
+    table.convert(EUR, USD, 100, RoundingMode.DOWN);
+  }
+
+  @Test
+  public void testUpdateAppliesTogether() {
+    final ExchangeRateTable table = new ExchangeRateTable();
+    table.put(USD, EUR, ExchangeRate.of(9, 10));
+
+    final ExchangeRateTable.Update update = table.update()
+        .put(USD, JPY, ExchangeRate.of(110, 1))
+        .put(USD, EUR, ExchangeRate.of(8, 10))
+        .remove(USD, EUR);
+    assertEquals(ExchangeRate.of(9, 10), table.get(USD, EUR));
+    assertNull(table.get(USD, JPY));
+
+    update.apply();
+    assertNull(table.get(USD, EUR));
+    assertEquals(ExchangeRate.of(110, 1), table.get(USD, JPY));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testClearReplacesAllRates() {
+    final ExchangeRateTable table = new ExchangeRateTable();
+    table.put(USD, EUR, ExchangeRate.of(9, 10));
+    table.put(EUR, USD, ExchangeRate.of(10, 9));
+
+    table.update()
+        .put(USD, JPY, ExchangeRate.of(110, 1))
+        .clear()
+        .put(JPY, USD, ExchangeRate.of(1, 110))
+        .apply();
+    assertEquals(1, table.size());
+    assertEquals(ExchangeRate.of(1, 110), table.get(JPY, USD));
+
+    table.remove(JPY, USD);
+    assertEquals(0, table.size());
+  }
+
+}
@@ -0,0 +1,93 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Unit tests for {@link ExchangeRate}.
+ */
+public class ExchangeRateTest {
+
+  @Test
+  public void testLowestTerms() {
+    final ExchangeRate rate = ExchangeRate.of(150, 100);
+    assertEquals(3, rate.getNumerator());
+    assertEquals(2, rate.getDenominator());
+    assertEquals(rate, ExchangeRate.of(new BigDecimal("1.500")));
+    assertEquals(ExchangeRate.of(2, 3), rate.inverse());
+    assertEquals(ExchangeRate.of(1200, 1), ExchangeRate.of(new BigDecimal("1.2E+3")));
+  }
+
+  @Test
+  public void testRounding() {
+    final ExchangeRate rate = ExchangeRate.of(2, 3);
+    assertEquals(6, rate.convert(10, RoundingMode.DOWN));
+    assertEquals(6, rate.convert(10, RoundingMode.FLOOR));
+    assertEquals(7, rate.convert(10, RoundingMode.UP));
+    assertEquals(7, rate.convert(10, RoundingMode.CEILING));
+    assertEquals(6, rate.convert(9, RoundingMode.UP));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedRounding() {
+    ExchangeRate.of(2, 3).convert(10, RoundingMode.HALF_UP);
+  }
+
+  @Test
+  public void testScales() {
+    /* 1.1 euros per dollar, from cents to nano-euros */
+    final ExchangeRate rate = ExchangeRate.of(new BigDecimal("1.1")).withScales(2, 9);
+    assertEquals(11_000_000, rate.getNumerator());
+    assertEquals(1, rate.getDenominator());
+    assertEquals(1_100_000_000L, rate.convert(100, RoundingMode.DOWN));
+
+    final ExchangeRate inverse = rate.inverse();
+    assertEquals(ExchangeRate.of(1, 11_000_000), inverse);
+    assertEquals(ExchangeRate.of(10, 11), ExchangeRate.of(new BigDecimal("1.1"))
+        .inverse().withScales(9, 9));
+    assertEquals(ExchangeRate.of(1, 1), ExchangeRate.of(100, 1).withScales(4, 2));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testScaleOverflow() {
+    ExchangeRate.of(Long.MAX_VALUE / 3, 1).withScales(0, 1);
+  }
+
+  @Test
+  public void testLargeAmounts() {
+    final ExchangeRate rate = ExchangeRate.of(Long.MAX_VALUE, Long.MAX_VALUE - 1);
+    assertEquals(Long.MAX_VALUE, rate.convert(Long.MAX_VALUE - 1, RoundingMode.DOWN));
+
+    final BigInteger max = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    assertEquals(max, ExchangeRate.of(1, 1).convert(max, RoundingMode.DOWN));
+    assertEquals(max.divide(BigInteger.valueOf(3)),
+        ExchangeRate.of(1, 3).convert(max, RoundingMode.DOWN));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testConversionOverflow() {
+    ExchangeRate.of(3, 1).convert(-1L, RoundingMode.DOWN);
+  }
+
+  @Test
+  public void testRoundingUpOverflows() {
+    /* the quotient is the largest UInt64 with a remainder, so only rounding down fits */
+    final long amount = BigInteger.ONE.shiftLeft(66).subtract(BigInteger.ONE)
+        .divide(BigInteger.valueOf(7)).longValue();
+    final ExchangeRate rate = ExchangeRate.of(7, 4);
+    assertEquals(-1L, rate.convert(amount, RoundingMode.DOWN));
+    try {
+      rate.convert(amount, RoundingMode.UP);
+      fail("Expected an ArithmeticException");
+    } catch (ArithmeticException e) {
+      /* expected */
+    }
+  }
+
+}
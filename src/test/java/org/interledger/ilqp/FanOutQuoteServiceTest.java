@@ -0,0 +1,147 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link FanOutQuoteService}.
+ */
+public class FanOutQuoteServiceTest {
+
+  private static final InterledgerAddress FAST = InterledgerAddress.of("test1.fast");
+  private static final InterledgerAddress SLOW = InterledgerAddress.of("test1.slow");
+  private static final InterledgerAddress HUNG = InterledgerAddress.of("test1.hung");
+  private static final InterledgerAddress BROKEN = InterledgerAddress.of("test1.broken");
+
+  private static final QuoteSelectionStrategy BEST_DESTINATION_AMOUNT = responses -> responses
+      .stream()
+      .map(response -> (QuoteBySourceAmountResponse) response)
+      .max(Comparator.comparing(QuoteBySourceAmountResponse::getDestinationAmount))
+      .orElse(null);
+
+  private final InMemoryQuoteTransport<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse>
+      transport = new InMemoryQuoteTransport<QuoteBySourceAmountRequest,
+      QuoteBySourceAmountResponse>()
+      .connector(FAST, Duration.ofMillis(10), request -> quote(request, 90))
+      .connector(SLOW, Duration.ofMillis(200), request -> quote(request, 95))
+      .connector(HUNG, Duration.ofHours(1), request -> quote(request, 99))
+      .connector(BROKEN, Duration.ofMillis(5), request -> {
+        throw new InterledgerQuotingException("no route");
+      });
+
+  private final QuoteBySourceAmountRequest request = QuoteBySourceAmountRequest.Builder.builder()
+      .destinationAccount(InterledgerAddress.of("test1.bob"))
+      .sourceAmount(BigInteger.valueOf(100))
+      .destinationHoldDuration(Duration.ofSeconds(10))
+      .build();
+
+  @After
+  public void tearDown() {
+    transport.close();
+  }
+
+  @Test
+  public void testSelectsAmongResponsesBeforeDeadline() {
+    final FanOutQuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse> service =
+        service(Duration.ofSeconds(1), FAST, SLOW, HUNG, BROKEN).build();
+
+    final long start = System.nanoTime();
+    final QuoteBySourceAmountResponse best = service.requestQuote(request, BEST_DESTINATION_AMOUNT);
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(BigInteger.valueOf(95), best.getDestinationAmount());
+    assertTrue(elapsedMillis >= 1000);
+    assertTrue(elapsedMillis < 5000);
+  }
+
+  @Test
+  public void testQuorumReturnsEarly() {
+    final FanOutQuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse> service =
+        service(Duration.ofSeconds(30), FAST, SLOW, HUNG, BROKEN).quorum(1).build();
+
+    final long start = System.nanoTime();
+    final QuoteBySourceAmountResponse best = service.requestQuote(request, BEST_DESTINATION_AMOUNT);
+
+    assertEquals(BigInteger.valueOf(90), best.getDestinationAmount());
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 10_000);
+    assertTrue(transport.getCancelled() >= 2);
+  }
+
+  @Test
+  public void testReturnsOnceAllConnectorsHaveAnswered() {
+    final FanOutQuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse> service =
+        service(Duration.ofSeconds(30), FAST, SLOW, BROKEN).build();
+
+    final Set<QuoteResponse> offered = new HashSet<>();
+    final long start = System.nanoTime();
+    service.requestQuote(request, responses -> {
+      offered.addAll(responses);
+      return BEST_DESTINATION_AMOUNT.apply(responses);
+    });
+
+    assertEquals(2, offered.size());
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 10_000);
+  }
+
+  @Test
+  public void testNoResponses() {
+    final FanOutQuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse> service =
+        service(Duration.ofMillis(50), HUNG, BROKEN).build();
+
+    assertNull(service.requestQuote(request, BEST_DESTINATION_AMOUNT));
+  }
+
+  @Test
+  public void testSingleConnector() {
+    final FanOutQuoteService<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse> service =
+        service(Duration.ofMillis(100), FAST).build();
+
+    assertEquals(BigInteger.valueOf(90),
+        service.requestQuote(request, FAST).getDestinationAmount());
+    assertNull(service.requestQuote(request, HUNG));
+    try {
+      service.requestQuote(request, BROKEN);
+      fail();
+    } catch (InterledgerQuotingException e) {
+      assertEquals("no route", e.getCause().getMessage());
+    }
+  }
+
+  private FanOutQuoteService.Builder<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse>
+      service(final Duration timeout, final InterledgerAddress... connectors) {
+    final FanOutQuoteService.Builder<QuoteBySourceAmountRequest, QuoteBySourceAmountResponse>
+        builder = FanOutQuoteService.<QuoteBySourceAmountRequest,
+        QuoteBySourceAmountResponse>builder()
+        .transport(transport)
+        .timeout(timeout);
+    for (InterledgerAddress connector : connectors) {
+      builder.connector(connector);
+    }
+    return builder;
+  }
+
+  private static QuoteBySourceAmountResponse quote(final QuoteBySourceAmountRequest request,
+      final int percent) {
+    return QuoteBySourceAmountResponse.Builder.builder()
+        .destinationAmount(request.getSourceAmount()
+            .multiply(BigInteger.valueOf(percent))
+            .divide(BigInteger.valueOf(100)))
+        .sourceHoldDuration(Duration.ofSeconds(11))
+        .build();
+  }
+
+}
@@ -0,0 +1,87 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A {@link QuoteTransport} that stands in for connectors in tests, answering each request after a
+ * configured delay with a configured function of the request.
+ */
+class InMemoryQuoteTransport<T extends QuoteRequest, R extends QuoteResponse>
+    implements QuoteTransport<T, R>, AutoCloseable {
+
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, task -> {
+    final Thread thread = new Thread(task, "in-memory-connector");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final Map<InterledgerAddress, Connector> connectors = new ConcurrentHashMap<>();
+  private final AtomicInteger cancelled = new AtomicInteger();
+
+  /**
+   * Adds a connector that answers with a function of the request after a delay. The function may
+   * throw to fail the request.
+   */
+  InMemoryQuoteTransport<T, R> connector(final InterledgerAddress address, final Duration delay,
+      final Function<T, R> quote) {
+    connectors.put(address, new Connector(delay, quote));
+    return this;
+  }
+
+  int getCancelled() {
+    return cancelled.get();
+  }
+
+  @Override
+  public CompletableFuture<R> send(final T quoteRequest, final InterledgerAddress connector) {
+    final Connector target = connectors.get(connector);
+    final CompletableFuture<R> response = new CompletableFuture<>();
+    if (target == null) {
+      response.completeExceptionally(
+          new InterledgerQuotingException("Unknown connector " + connector.getValue()));
+      return response;
+    }
+
+    final ScheduledFuture<?> answer = scheduler.schedule(() -> {
+      try {
+        response.complete(target.quote.apply(quoteRequest));
+      } catch (RuntimeException e) {
+        response.completeExceptionally(e);
+      }
+    }, target.delay.toNanos(), TimeUnit.NANOSECONDS);
+    response.whenComplete((result, error) -> {
+      if (response.isCancelled()) {
+        answer.cancel(false);
+        cancelled.incrementAndGet();
+      }
+    });
+    return response;
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  private final class Connector {
+
+    private final Duration delay;
+    private final Function<T, R> quote;
+
+    private Connector(final Duration delay, final Function<T, R> quote) {
+      this.delay = delay;
+      this.quote = quote;
+    }
+  }
+
+}
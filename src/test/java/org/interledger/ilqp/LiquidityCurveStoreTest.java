@@ -0,0 +1,130 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link LiquidityCurveStore}.
+ */
+public class LiquidityCurveStoreTest {
+
+  private static final InterledgerAddress LEDGER = InterledgerAddress.of("g.us.bank.");
+  private static final InterledgerAddress ALICE = InterledgerAddress.of("g.us.bank.alice");
+
+  private final ArrayLiquidityCurve curve = ArrayLiquidityCurve.of(
+      new long[] {10, 20, 30, 40},
+      new long[] {0, 100, 100, 103});
+
+  @Test
+  public void testEvaluatesLikeTheCurve() {
+    final LiquidityCurveStore store = LiquidityCurveStore.builder().build();
+    store.put(LEDGER, curve);
+
+    assertEquals(curve, store.get(LEDGER));
+    for (long amount = 0; amount < 50; amount++) {
+      assertEquals(curve.outputFor(amount), store.outputFor(ALICE, amount));
+    }
+    for (long amount = 0; amount <= 103; amount++) {
+      assertEquals(curve.inputFor(amount), store.inputFor(ALICE, amount));
+    }
+    try {
+      store.inputFor(ALICE, 104);
+      fail();
+    } catch (InterledgerQuotingException e) {
+      assertEquals("Output amount 104 exceeds liquidity.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testLongestPrefix() {
+    final LiquidityCurveStore store = LiquidityCurveStore.builder().direct(false).build();
+    store.put(InterledgerAddress.of("g.us."), ArrayLiquidityCurve.of(
+        new long[] {0, 100}, new long[] {0, 50}));
+    store.put(LEDGER, curve);
+
+    assertEquals(100, store.outputFor(ALICE, 25));
+    assertEquals(12, store.outputFor(InterledgerAddress.of("g.us.other.bob"), 25));
+    try {
+      store.outputFor(InterledgerAddress.of("g.eu.bank.carol"), 25);
+      fail();
+    } catch (InterledgerQuotingException e) {
+      assertEquals("No liquidity curve applies to g.eu.bank.carol.", e.getMessage());
+    }
+
+    assertTrue(store.remove(LEDGER));
+    assertFalse(store.remove(LEDGER));
+    assertNull(store.get(LEDGER));
+    assertEquals(12, store.outputFor(ALICE, 25));
+  }
+
+  @Test
+  public void testReplacementReclaimsSpace() {
+    final LiquidityCurveStore store = LiquidityCurveStore.builder().initialPoints(16).build();
+    final Random random = new Random(8);
+    for (int i = 0; i < 10_000; i++) {
+      store.put(InterledgerAddress.of("g.ledger" + (i % 100) + "."), randomCurve(random));
+    }
+
+    assertEquals(100, store.size());
+    assertTrue(store.getCapacityBytes() <= 4 * store.getLiveBytes() + 1024);
+
+    final ArrayLiquidityCurve last = randomCurve(random);
+    store.put(InterledgerAddress.of("g.ledger7."), last);
+    assertEquals(last, store.get(InterledgerAddress.of("g.ledger7.")));
+  }
+
+  @Test
+  public void testReadersSeeWholeCurvesDuringChurn() throws Exception {
+    final LiquidityCurveStore store = LiquidityCurveStore.builder().initialPoints(8).build();
+    final ArrayLiquidityCurve low = ArrayLiquidityCurve.of(
+        new long[] {0, 100, 200}, new long[] {0, 10, 20});
+    final ArrayLiquidityCurve high = ArrayLiquidityCurve.of(
+        new long[] {0, 100, 200}, new long[] {0, 1000, 2000});
+    store.put(LEDGER, low);
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicReference<String> error = new AtomicReference<>();
+    final Thread reader = new Thread(() -> {
+      while (running.get()) {
+        final long output = store.outputFor(ALICE, 150);
+        if (output != 15 && output != 1500) {
+          error.set("read " + output);
+        }
+      }
+    });
+    reader.start();
+
+    final Random random = new Random(9);
+    for (int i = 0; i < 20_000; i++) {
+      store.put(LEDGER, i % 2 == 0 ? high : low);
+      store.put(InterledgerAddress.of("g.other" + random.nextInt(50) + "."), randomCurve(random));
+    }
+    running.set(false);
+    reader.join();
+
+    assertNull(error.get());
+  }
+
+  private static ArrayLiquidityCurve randomCurve(final Random random) {
+    final int size = 1 + random.nextInt(20);
+    final long[] inputs = new long[size];
+    final long[] outputs = new long[size];
+    for (int i = 1; i < size; i++) {
+      inputs[i] = inputs[i - 1] + 1 + random.nextInt(1000);
+      outputs[i] = outputs[i - 1] + random.nextInt(1000);
+    }
+    return ArrayLiquidityCurve.of(inputs, outputs);
+  }
+
+}
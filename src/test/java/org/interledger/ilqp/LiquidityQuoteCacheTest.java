@@ -0,0 +1,173 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.interledger.InterledgerAddress;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Unit tests for {@link LiquidityQuoteCache}.
+ */
+public class LiquidityQuoteCacheTest {
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void testLongestPrefixMatch() {
+    final LiquidityQuoteCache cache = LiquidityQuoteCache.builder().clock(clock).build();
+    final QuoteLiquidityResponse ledger = response("g.us.bank.", 60);
+    final QuoteLiquidityResponse neighborhood = response("g.us.", 60);
+    final QuoteLiquidityResponse account = response("g.us.bank.bob", 60);
+    cache.put(neighborhood);
+    cache.put(ledger);
+    cache.put(account);
+
+    assertSame(ledger, cache.get(InterledgerAddress.of("g.us.bank.alice")));
+    assertSame(account, cache.get(InterledgerAddress.of("g.us.bank.bob")));
+    assertSame(neighborhood, cache.get(InterledgerAddress.of("g.us.other.carol")));
+    assertSame(ledger, cache.get(InterledgerAddress.of("g.us.bank.")));
+    assertNull(cache.get(InterledgerAddress.of("g.eu.bank.dave")));
+
+    final LiquidityQuoteCache.Statistics statistics = cache.getStatistics();
+    assertEquals(4, statistics.getHits());
+    assertEquals(1, statistics.getMisses());
+    assertEquals(0.8, statistics.getHitRate(), 0);
+  }
+
+  @Test
+  public void testExpiredEntriesFallBackAndAreEvicted() {
+    final LiquidityQuoteCache cache = LiquidityQuoteCache.builder().clock(clock).build();
+    final QuoteLiquidityResponse ledger = response("g.us.bank.", 10);
+    final QuoteLiquidityResponse neighborhood = response("g.us.", 60);
+    cache.put(ledger);
+    cache.put(neighborhood);
+
+    clock.advance(Duration.ofSeconds(10));
+    assertSame(neighborhood, cache.get(InterledgerAddress.of("g.us.bank.alice")));
+    assertEquals(2, cache.size());
+
+    assertEquals(1, cache.evictExpired());
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getStatistics().getEvictions());
+  }
+
+  @Test
+  public void testCapacityEvictsSoonestExpiry() {
+    final LiquidityQuoteCache cache = LiquidityQuoteCache.builder()
+        .maximumSize(2)
+        .clock(clock)
+        .build();
+    cache.put(response("g.a.", 30));
+    cache.put(response("g.b.", 10));
+    cache.put(response("g.c.", 20));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get(InterledgerAddress.of("g.b.alice")));
+    assertEquals(InterledgerAddress.of("g.a."),
+        cache.get(InterledgerAddress.of("g.a.alice")).getAppliesToPrefix());
+    assertEquals(InterledgerAddress.of("g.c."),
+        cache.get(InterledgerAddress.of("g.c.alice")).getAppliesToPrefix());
+  }
+
+  @Test
+  public void testStaleWhileRevalidate() {
+    final List<CompletableFuture<QuoteLiquidityResponse>> refreshes = new ArrayList<>();
+    final List<InterledgerAddress> refreshed = new ArrayList<>();
+    final LiquidityQuoteCache cache = LiquidityQuoteCache.builder()
+        .staleWhileRevalidate(Duration.ofSeconds(5), destination -> {
+          refreshed.add(destination);
+          final CompletableFuture<QuoteLiquidityResponse> refresh = new CompletableFuture<>();
+          refreshes.add(refresh);
+          return refresh;
+        })
+        .clock(clock)
+        .build();
+    final QuoteLiquidityResponse stale = response("g.us.bank.", 10);
+    cache.put(stale);
+
+    clock.advance(Duration.ofSeconds(12));
+    final InterledgerAddress alice = InterledgerAddress.of("g.us.bank.alice");
+    assertSame(stale, cache.get(alice));
+    assertSame(stale, cache.get(alice));
+    assertEquals(1, refreshes.size());
+    assertEquals(alice, refreshed.get(0));
+
+    final QuoteLiquidityResponse fresh = response("g.us.bank.", 60);
+    refreshes.get(0).complete(fresh);
+    assertSame(fresh, cache.get(alice));
+
+    final LiquidityQuoteCache.Statistics statistics = cache.getStatistics();
+    assertEquals(2, statistics.getStaleHits());
+    assertEquals(1, statistics.getHits());
+
+    clock.advance(Duration.ofSeconds(65));
+    assertNull(cache.get(alice));
+  }
+
+  @Test
+  public void testFailedRefreshIsRetried() {
+    final List<CompletableFuture<QuoteLiquidityResponse>> refreshes = new ArrayList<>();
+    final LiquidityQuoteCache cache = LiquidityQuoteCache.builder()
+        .staleWhileRevalidate(Duration.ofSeconds(5), destination -> {
+          final CompletableFuture<QuoteLiquidityResponse> refresh = new CompletableFuture<>();
+          refreshes.add(refresh);
+          return refresh;
+        })
+        .clock(clock)
+        .build();
+    cache.put(response("g.us.bank.", 10));
+
+    clock.advance(Duration.ofSeconds(11));
+    cache.get(InterledgerAddress.of("g.us.bank.alice"));
+    refreshes.get(0).completeExceptionally(new InterledgerQuotingException("timed out"));
+    cache.get(InterledgerAddress.of("g.us.bank.alice"));
+
+    assertEquals(2, refreshes.size());
+  }
+
+  private QuoteLiquidityResponse response(final String appliesTo, final int expirySeconds) {
+    return QuoteLiquidityResponse.Builder.builder()
+        .liquidityCurve(ArrayLiquidityCurve.of(new long[] {0, 100}, new long[] {0, 99}))
+        .appliesTo(InterledgerAddress.of(appliesTo))
+        .sourceHoldDuration(Duration.ofSeconds(10))
+        .expiresAt(clock.instant().plusSeconds(expirySeconds))
+        .build();
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private volatile Instant instant = Instant.parse("2017-08-01T10:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+}
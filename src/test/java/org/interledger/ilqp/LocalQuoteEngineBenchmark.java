@@ -0,0 +1,121 @@
+package org.interledger.ilqp;
+
+import org.interledger.InterledgerAddress;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Measures how many quotes a {@link LocalQuoteEngine} answers per second on one thread of the
+ * running host.
+ *
+ * <p>Run from the command line, with the test classes on the class path:
+ *
+ * <pre>
+ * java -cp ... org.interledger.ilqp.LocalQuoteEngineBenchmark [milliseconds]
+ * </pre>
+ *
+ * <p>The engine holds a curve of 32 points for each of 10,000 ledger prefixes, and the requests
+ * alternate between quotes by source amount and by destination amount to accounts on random
+ * ledgers.
+ */
+public class LocalQuoteEngineBenchmark {
+
+  /* the number of distinct requests quoted between checks of the clock */
+  private static final int BATCH_SIZE = 256;
+
+  /* the share of the measurement time spent warming up before measuring */
+  private static final int WARMUP_DIVISOR = 4;
+
+  private static final int LEDGERS = 10_000;
+  private static final int POINTS = 32;
+
+  /**
+   * Runs the benchmark and prints the result.
+   *
+   * @param args optionally, the number of milliseconds to measure for.
+   */
+  public static void main(final String[] args) {
+    final Duration duration = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 5000);
+    System.out.printf("%.0f quotes/s on one thread%n", run(duration));
+  }
+
+  /**
+   * Answer quotes on the calling thread for the given time.
+   *
+   * @param duration How long to measure for.
+   *
+   * @return the number of quotes answered per second.
+   */
+  public static double run(final Duration duration) {
+    Objects.requireNonNull(duration);
+
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder().build();
+    final Random random = new Random(42);
+    final long[] inputs = new long[POINTS];
+    final long[] outputs = new long[POINTS];
+    for (int ledger = 0; ledger < LEDGERS; ledger++) {
+      long input = 0;
+      long output = 0;
+      for (int i = 0; i < POINTS; i++) {
+        inputs[i] = input;
+        outputs[i] = output;
+        final long step = 1000 + random.nextInt(1000);
+        input += step;
+        output += step * (POINTS - i) / POINTS;
+      }
+      engine.put(QuoteLiquidityResponse.Builder.builder()
+          .liquidityCurve(ArrayLiquidityCurve.of(inputs, outputs))
+          .appliesTo(InterledgerAddress.of("g.ledger" + ledger + "."))
+          .sourceHoldDuration(Duration.ofSeconds(10))
+          .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+          .build());
+    }
+
+    final QuoteBySourceAmountRequest[] bySource = new QuoteBySourceAmountRequest[BATCH_SIZE];
+    final QuoteByDestinationAmountRequest[] byDestination =
+        new QuoteByDestinationAmountRequest[BATCH_SIZE];
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      final InterledgerAddress destination =
+          InterledgerAddress.of("g.ledger" + random.nextInt(LEDGERS) + ".alice");
+      bySource[i] = QuoteBySourceAmountRequest.Builder.builder()
+          .destinationAccount(destination)
+          .sourceAmount(BigInteger.valueOf(random.nextInt(POINTS * 1000)))
+          .destinationHoldDuration(Duration.ofSeconds(5))
+          .build();
+      byDestination[i] = QuoteByDestinationAmountRequest.Builder.builder()
+          .destinationAccount(destination)
+          .destinationAmount(BigInteger.valueOf(random.nextInt(POINTS * 400)))
+          .destinationHoldDuration(Duration.ofSeconds(5))
+          .build();
+    }
+
+    final long nanos = duration.toNanos();
+    quoteFor(engine, bySource, byDestination, nanos / WARMUP_DIVISOR);
+    final long start = System.nanoTime();
+    final long quoted = quoteFor(engine, bySource, byDestination, nanos);
+    return quoted * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static long quoteFor(final LocalQuoteEngine engine,
+      final QuoteBySourceAmountRequest[] bySource,
+      final QuoteByDestinationAmountRequest[] byDestination, final long nanos) {
+    final long deadline = System.nanoTime() + nanos;
+    long quoted = 0;
+    do {
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        if (engine.quote(bySource[i]) != null) {
+          quoted++;
+        }
+        if (engine.quote(byDestination[i]) != null) {
+          quoted++;
+        }
+      }
+    } while (System.nanoTime() < deadline);
+    return quoted;
+  }
+
+}
@@ -0,0 +1,168 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.interledger.InterledgerAddress;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Unit tests for {@link LocalQuoteEngine}.
+ */
+public class LocalQuoteEngineTest {
+
+  private static final InterledgerAddress ALICE = InterledgerAddress.of("g.us.bank.alice");
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void testQuoteBySourceAmount() {
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder().clock(clock).build();
+    engine.put(response("g.us.bank.", new long[] {0, 100, 200}, new long[] {0, 99, 149}, 60));
+
+    final QuoteBySourceAmountResponse quote = engine.quote(bySource(ALICE, 150, 5));
+    assertEquals(BigInteger.valueOf(124), quote.getDestinationAmount());
+    assertEquals(Duration.ofSeconds(10), quote.getSourceHoldDuration());
+
+    assertEquals(BigInteger.valueOf(149),
+        engine.quote(bySource(ALICE, 200, 5)).getDestinationAmount());
+  }
+
+  @Test(expected = InterledgerQuotingException.class)
+  public void testQuoteBySourceAmountBeyondLiquidity() {
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder().clock(clock).build();
+    engine.put(response("g.us.bank.", new long[] {0, 100}, new long[] {0, 99}, 60));
+    engine.quote(bySource(ALICE, 101, 5));
+  }
+
+  @Test
+  public void testQuoteByDestinationAmount() {
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder().clock(clock).build();
+    engine.put(response("g.us.bank.", new long[] {0, 100, 200}, new long[] {0, 99, 149}, 60));
+
+    final QuoteByDestinationAmountResponse quote = engine.quote(byDestination(ALICE, 124, 5));
+    assertEquals(BigInteger.valueOf(150), quote.getSourceAmount());
+    assertEquals(Duration.ofSeconds(10), quote.getSourceHoldDuration());
+  }
+
+  @Test(expected = InterledgerQuotingException.class)
+  public void testQuoteByDestinationAmountBeyondLiquidity() {
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder().clock(clock).build();
+    engine.put(response("g.us.bank.", new long[] {0, 100}, new long[] {0, 99}, 60));
+    engine.quote(byDestination(ALICE, 100, 5));
+  }
+
+  @Test
+  public void testSourceHoldCoversDestinationHold() {
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder()
+        .holdDurationMargin(Duration.ofSeconds(2))
+        .clock(clock)
+        .build();
+    engine.put(response("g.us.bank.", new long[] {0, 100}, new long[] {0, 99}, 60));
+
+    assertEquals(Duration.ofSeconds(20),
+        engine.quote(bySource(ALICE, 50, 18)).getSourceHoldDuration());
+    assertEquals(Duration.ofSeconds(10),
+        engine.quote(byDestination(ALICE, 50, 8)).getSourceHoldDuration());
+  }
+
+  @Test
+  public void testLongestUnexpiredPrefix() {
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder().clock(clock).build();
+    engine.put(response("g.us.", new long[] {0, 100}, new long[] {0, 50}, 60));
+    engine.put(response("g.us.bank.", new long[] {0, 100}, new long[] {0, 90}, 10));
+
+    assertEquals(BigInteger.valueOf(90),
+        engine.quote(bySource(ALICE, 100, 5)).getDestinationAmount());
+    assertNull(engine.quote(bySource(InterledgerAddress.of("g.eu.bank.bob"), 100, 5)));
+
+    clock.advance(Duration.ofSeconds(10));
+    assertEquals(BigInteger.valueOf(50),
+        engine.quote(bySource(ALICE, 100, 5)).getDestinationAmount());
+
+    engine.remove(InterledgerAddress.of("g.us."));
+    assertNull(engine.quote(bySource(ALICE, 100, 5)));
+  }
+
+  @Test
+  public void testQuoteServices() {
+    final InterledgerAddress connector = InterledgerAddress.of("g.us.connector");
+    final LocalQuoteEngine engine = LocalQuoteEngine.builder()
+        .address(connector)
+        .clock(clock)
+        .build();
+    engine.put(response("g.us.bank.", new long[] {0, 100}, new long[] {0, 99}, 60));
+
+    final QuoteBySourceAmountRequest request = bySource(ALICE, 100, 5);
+    assertEquals(engine.quote(request), engine.bySourceAmount().requestQuote(request, connector));
+    assertEquals(engine.quote(request), engine.bySourceAmount()
+        .requestQuote(request, responses -> responses.iterator().next()));
+    assertNull(engine.bySourceAmount()
+        .requestQuote(request, InterledgerAddress.of("g.us.other")));
+
+    final QuoteByDestinationAmountRequest inverse = byDestination(ALICE, 99, 5);
+    assertEquals(BigInteger.valueOf(100),
+        engine.byDestinationAmount().requestQuote(inverse, connector).getSourceAmount());
+  }
+
+  private QuoteLiquidityResponse response(final String appliesTo, final long[] inputs,
+      final long[] outputs, final int expirySeconds) {
+    return QuoteLiquidityResponse.Builder.builder()
+        .liquidityCurve(ArrayLiquidityCurve.of(inputs, outputs))
+        .appliesTo(InterledgerAddress.of(appliesTo))
+        .sourceHoldDuration(Duration.ofSeconds(10))
+        .expiresAt(clock.instant().plusSeconds(expirySeconds))
+        .build();
+  }
+
+  private static QuoteBySourceAmountRequest bySource(final InterledgerAddress destination,
+      final long sourceAmount, final int holdSeconds) {
+    return QuoteBySourceAmountRequest.Builder.builder()
+        .destinationAccount(destination)
+        .sourceAmount(BigInteger.valueOf(sourceAmount))
+        .destinationHoldDuration(Duration.ofSeconds(holdSeconds))
+        .build();
+  }
+
+  private static QuoteByDestinationAmountRequest byDestination(
+      final InterledgerAddress destination, final long destinationAmount, final int holdSeconds) {
+    return QuoteByDestinationAmountRequest.Builder.builder()
+        .destinationAccount(destination)
+        .destinationAmount(BigInteger.valueOf(destinationAmount))
+        .destinationHoldDuration(Duration.ofSeconds(holdSeconds))
+        .build();
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private volatile Instant instant = Instant.parse("2017-08-01T10:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+}
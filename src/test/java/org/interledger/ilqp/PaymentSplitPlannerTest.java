@@ -0,0 +1,125 @@
+package org.interledger.ilqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.ilqp.PaymentSplitPlanner.PaymentSplit;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link PaymentSplitPlanner}.
+ */
+public class PaymentSplitPlannerTest {
+
+  private static final InterledgerAddress ALPHA = InterledgerAddress.of("test1.alpha");
+  private static final InterledgerAddress BETA = InterledgerAddress.of("test1.beta");
+
+  /* alpha has the better rate up to 100, then a liquidity cliff */
+  private final Map<InterledgerAddress, ArrayLiquidityCurve> curves = new LinkedHashMap<>();
+
+  {
+    curves.put(ALPHA, ArrayLiquidityCurve.of(new long[] {0, 100, 200}, new long[] {0, 100, 120}));
+    curves.put(BETA, ArrayLiquidityCurve.of(new long[] {0, 1000}, new long[] {0, 900}));
+  }
+
+  @Test
+  public void testMaximizeDestinationAmount() {
+    final PaymentSplit split = PaymentSplitPlanner.maximizeDestinationAmount(curves,
+        BigInteger.valueOf(300));
+
+    assertEquals(BigInteger.valueOf(100), split.getSourceAmounts().get(ALPHA));
+    assertEquals(BigInteger.valueOf(200), split.getSourceAmounts().get(BETA));
+    assertEquals(BigInteger.valueOf(300), split.getSourceAmount());
+    assertEquals(BigInteger.valueOf(280), split.getDestinationAmount());
+  }
+
+  @Test
+  public void testMaximizeBeyondLiquidity() {
+    final PaymentSplit split = PaymentSplitPlanner.maximizeDestinationAmount(curves,
+        BigInteger.valueOf(5000));
+
+    assertEquals(BigInteger.valueOf(1200), split.getSourceAmount());
+    assertEquals(BigInteger.valueOf(1020), split.getDestinationAmount());
+  }
+
+  @Test
+  public void testMinimizeSourceAmount() {
+    final PaymentSplit split = PaymentSplitPlanner.minimizeSourceAmount(curves,
+        BigInteger.valueOf(280));
+
+    assertEquals(BigInteger.valueOf(100), split.getSourceAmounts().get(ALPHA));
+    assertEquals(BigInteger.valueOf(200), split.getSourceAmounts().get(BETA));
+    assertEquals(BigInteger.valueOf(280), split.getDestinationAmount());
+
+    try {
+      PaymentSplitPlanner.minimizeSourceAmount(curves, BigInteger.valueOf(1021));
+      fail();
+    } catch (InterledgerQuotingException e) {
+      assertEquals("Insufficient liquidity to deliver 1021.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testMinimumAmountCurve() {
+    /* gamma only accepts payments of at least 50, which its hull spreads from zero */
+    final InterledgerAddress gamma = InterledgerAddress.of("test1.gamma");
+    final Map<InterledgerAddress, ArrayLiquidityCurve> minimum = new LinkedHashMap<>();
+    minimum.put(gamma, ArrayLiquidityCurve.of(new long[] {50, 100}, new long[] {60, 110}));
+    minimum.put(BETA, curves.get(BETA));
+
+    final PaymentSplit split = PaymentSplitPlanner.minimizeSourceAmount(minimum,
+        BigInteger.valueOf(30));
+    assertTrue(split.getDestinationAmount().compareTo(BigInteger.valueOf(30)) >= 0);
+    assertEquals(BigInteger.valueOf(50), split.getSourceAmount());
+  }
+
+  @Test
+  public void testMatchesExhaustiveSearchOnConcaveCurves() {
+    final Random random = new Random(7);
+    for (int round = 0; round < 20; round++) {
+      final Map<InterledgerAddress, ArrayLiquidityCurve> concave = new LinkedHashMap<>();
+      concave.put(ALPHA, concaveCurve(random));
+      concave.put(BETA, concaveCurve(random));
+      final long source = random.nextInt(400);
+
+      long best = 0;
+      for (long alpha = 0; alpha <= source; alpha++) {
+        best = Math.max(best, concave.get(ALPHA).outputFor(alpha)
+            + concave.get(BETA).outputFor(source - alpha));
+      }
+
+      final long planned = PaymentSplitPlanner.maximizeDestinationAmount(concave,
+          BigInteger.valueOf(source)).getDestinationAmount().longValue();
+      /* only the last, partially used segment rounds its output down */
+      assertTrue(best - planned <= 1);
+
+      final PaymentSplit reverse = PaymentSplitPlanner.minimizeSourceAmount(concave,
+          BigInteger.valueOf(planned));
+      assertTrue(reverse.getSourceAmount().longValue() <= source);
+      assertTrue(reverse.getDestinationAmount().longValue() >= planned);
+    }
+  }
+
+  private static ArrayLiquidityCurve concaveCurve(final Random random) {
+    final int size = 2 + random.nextInt(5);
+    final long[] inputs = new long[size];
+    final long[] outputs = new long[size];
+    long rate = 1 + random.nextInt(100);
+    for (int i = 1; i < size; i++) {
+      final long run = 1 + random.nextInt(100);
+      inputs[i] = inputs[i - 1] + run;
+      outputs[i] = outputs[i - 1] + run * rate / 10;
+      rate = random.nextInt((int) rate + 1);
+    }
+    return ArrayLiquidityCurve.of(inputs, outputs);
+  }
+
+}
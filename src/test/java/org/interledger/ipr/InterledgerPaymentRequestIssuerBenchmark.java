@@ -0,0 +1,82 @@
+package org.interledger.ipr;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.psk.PskMessage;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Measures how many {@link InterledgerPaymentRequest}s an {@link InterledgerPaymentRequestIssuer}
+ * issues per second on one thread of the running host.
+ *
+ * <p>Run from the command line, with the test classes on the class path:
+ *
+ * <pre>
+ * java -cp ... org.interledger.ipr.InterledgerPaymentRequestIssuerBenchmark [milliseconds]
+ * </pre>
+ *
+ * <p>Each request carries a PSK message with a payment id, an expiry and a short private header,
+ * typical of an invoice.
+ */
+public class InterledgerPaymentRequestIssuerBenchmark {
+
+  /* the number of requests issued into the buffer between checks of the clock */
+  private static final int BATCH_SIZE = 256;
+
+  /* the share of the measurement time spent warming up before measuring */
+  private static final int WARMUP_DIVISOR = 4;
+
+  /**
+   * Runs the benchmark and prints the result.
+   *
+   * @param args optionally, the number of milliseconds to measure for.
+   */
+  public static void main(final String[] args) {
+    final Duration duration = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 5000);
+    System.out.printf("%.0f IPRs/s on one thread%n", run(duration));
+  }
+
+  /**
+   * Issue requests on the calling thread for the given time.
+   *
+   * @param duration How long to measure for.
+   *
+   * @return the number of requests issued per second.
+   */
+  public static double run(final Duration duration) {
+    Objects.requireNonNull(duration);
+
+    final InterledgerPaymentRequestIssuer issuer = InterledgerPaymentRequestIssuer.builder()
+        .receiverSecret(new byte[32])
+        .ledgerPrefix(InterledgerAddress.of("g.example.merchant."))
+        .build();
+    final PskMessage message = PskMessage.builder()
+        .paymentId(UUID.randomUUID())
+        .expiry(Duration.ofSeconds(30))
+        .addPrivateHeader("Invoice", "INV-0000000001")
+        .build();
+    final BigInteger amount = BigInteger.valueOf(1000);
+    final byte[] buffer = new byte[issuer.getEncodedLength(message) * BATCH_SIZE];
+
+    final long nanos = duration.toNanos();
+    issueFor(issuer, amount, message, buffer, nanos / WARMUP_DIVISOR);
+    final long start = System.nanoTime();
+    final long issued = issueFor(issuer, amount, message, buffer, nanos);
+    return issued * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static long issueFor(final InterledgerPaymentRequestIssuer issuer,
+      final BigInteger amount, final PskMessage message, final byte[] buffer, final long nanos) {
+    final long deadline = System.nanoTime() + nanos;
+    long issued = 0;
+    do {
+      issuer.issue(BATCH_SIZE, amount, message, buffer, 0);
+      issued += BATCH_SIZE;
+    } while (System.nanoTime() < deadline);
+    return issued;
+  }
+
+}
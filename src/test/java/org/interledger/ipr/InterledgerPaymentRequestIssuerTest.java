@@ -0,0 +1,98 @@
+package org.interledger.ipr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.ilp.InterledgerPayment;
+import org.interledger.ilp.PreimageSha256;
+import org.interledger.psk.PskContext;
+import org.interledger.psk.PskMessage;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link InterledgerPaymentRequestIssuer}.
+ */
+public class InterledgerPaymentRequestIssuerTest {
+
+  private static final byte[] SECRET = new byte[32];
+  private static final InterledgerAddress PREFIX = InterledgerAddress.of("test1.merchant.");
+
+  private final CodecContext codecContext = CodecContextFactory.interledger();
+  private final InterledgerPaymentRequestIssuer issuer = InterledgerPaymentRequestIssuer.builder()
+      .receiverSecret(SECRET)
+      .ledgerPrefix(PREFIX)
+      .build();
+  private final PskMessage message = PskMessage.builder()
+      .addPrivateHeader("Invoice", "1234")
+      .data(new byte[] {1, 2, 3})
+      .build();
+
+  @Test
+  public void testIssuedRequestMatchesCodec() {
+    final byte[] encoded = issuer.issue(BigInteger.valueOf(1000), message);
+    assertEquals(issuer.getEncodedLength(message), encoded.length);
+
+    final InterledgerPaymentRequest ipr =
+        codecContext.read(InterledgerPaymentRequest.class, encoded);
+    final InterledgerPayment payment = ipr.getInterledgerPayment();
+    assertEquals(BigInteger.valueOf(1000), payment.getDestinationAmount());
+    assertTrue(payment.getDestinationAccount()
+        .startsWith(PREFIX));
+
+    assertArrayEquals(encoded, codecContext.write(InterledgerPaymentRequest.class, ipr));
+  }
+
+  @Test
+  public void testReceiverCanOpenAndFulfill() {
+    final InterledgerPaymentRequest ipr = codecContext.read(InterledgerPaymentRequest.class,
+        issuer.issue(BigInteger.ONE, message));
+    final InterledgerPayment payment = ipr.getInterledgerPayment();
+
+    final PskContext context =
+        PskContext.fromReceiverAddress(SECRET, payment.getDestinationAccount());
+    final byte[] data = payment.getData();
+    final PskMessage opened = context.open(data, 0, data.length);
+    assertEquals("1234", opened.getPrivateHeaders("Invoice")
+        .get(0)
+        .getValue());
+    assertArrayEquals(new byte[] {1, 2, 3}, opened.getData());
+
+    assertTrue(PreimageSha256.verify(context.generateFulfillment(payment), ipr.getCondition()));
+  }
+
+  @Test
+  public void testBatchUsesNewTokens() {
+    final int length = issuer.getEncodedLength(message);
+    final byte[] buffer = new byte[length * 3 + 5];
+
+    assertEquals(length * 3, issuer.issue(3, BigInteger.TEN, message, buffer, 5));
+
+    final InterledgerAddress first = addressAt(buffer, 5, length);
+    final InterledgerAddress second = addressAt(buffer, 5 + length, length);
+    final InterledgerAddress third = addressAt(buffer, 5 + 2 * length, length);
+    assertFalse(first.equals(second));
+    assertFalse(second.equals(third));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAmountTooLarge() {
+    issuer.issue(BigInteger.ONE.shiftLeft(64), message);
+  }
+
+  private InterledgerAddress addressAt(final byte[] buffer, final int offset, final int length) {
+    return codecContext.read(InterledgerPaymentRequest.class,
+        Arrays.copyOfRange(buffer, offset, offset + length))
+        .getInterledgerPayment()
+        .getDestinationAccount();
+  }
+
+}
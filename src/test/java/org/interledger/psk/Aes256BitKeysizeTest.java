@@ -44,7 +44,7 @@ public class Aes256BitKeysizeTest {
     byte[] data = new byte[256];
     sr.nextBytes(data);
 
-    Cipher cipher = Cipher.getInstance("AES/GCM/PKCS5Padding");
+    Cipher cipher = PskCryptoUtils.newCipher();
     GCMParameterSpec paramSpec = new GCMParameterSpec(128, nonce);
 
     try {
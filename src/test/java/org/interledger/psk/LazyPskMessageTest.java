@@ -0,0 +1,74 @@
+package org.interledger.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.interledger.InterledgerRuntimeException;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link LazyPskMessage}.
+ */
+public class LazyPskMessageTest {
+
+  private static final byte[] TEST_SHARED_KEY = new byte[32];
+  private static final UUID TEST_PAYMENT_ID =
+      UUID.fromString("69338171-5240-4392-8c77-d417bd977962");
+  private static final byte[] TEST_DATA = "binary data goes here".getBytes(StandardCharsets.UTF_8);
+
+  private final PskContext context = PskContext.fromPreSharedKey(TEST_SHARED_KEY);
+
+  private byte[] sealTestMessage() {
+    return context.seal(PskMessage.builder()
+        .paymentId(TEST_PAYMENT_ID)
+        .addPrivateHeader("Secret", "stuff")
+        .data(TEST_DATA)
+        .build());
+  }
+
+  @Test
+  public void testPublicHeadersDoNotDecrypt() {
+    byte[] sealed = sealTestMessage();
+    byte[] original = Arrays.copyOf(sealed, sealed.length);
+
+    LazyPskMessage message = (LazyPskMessage) context.openLazily(sealed, 0, sealed.length);
+
+    assertEquals(TEST_PAYMENT_ID.toString(),
+        message.getPublicHeaders(PskMessage.Header.WellKnown.PAYMENT_ID).get(0).getValue());
+    assertEquals(PskEncryptionType.NONE, message.getEncryptionHeader().getEncryptionType());
+    assertEquals(3, message.getPublicHeaders().size());
+
+    assertFalse(message.isPrivateSectionRead());
+    assertArrayEquals(original, sealed);
+  }
+
+  @Test
+  public void testPrivateAccessDecrypts() {
+    byte[] sealed = sealTestMessage();
+    LazyPskMessage message = (LazyPskMessage) context.openLazily(sealed, 0, sealed.length);
+
+    assertEquals("stuff", message.getPrivateHeaders("secret").get(0).getValue());
+    assertTrue(message.isPrivateSectionRead());
+    assertArrayEquals(TEST_DATA, message.getData());
+    assertEquals(1, message.getPrivateHeaders().size());
+  }
+
+  @Test(expected = InterledgerRuntimeException.class)
+  public void testTamperedMessageFailsOnlyOnPrivateAccess() {
+    byte[] sealed = sealTestMessage();
+    sealed[sealed.length - 1] ^= 1;
+
+    PskMessage message = context.openLazily(sealed, 0, sealed.length);
+    assertEquals(1, message.getPublicHeaders(PskMessage.Header.WellKnown.PAYMENT_ID).size());
+
+    message.getData();
+  }
+
+}
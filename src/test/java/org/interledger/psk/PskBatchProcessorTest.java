@@ -0,0 +1,85 @@
+package org.interledger.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.ilp.InterledgerPayment;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for {@link PskBatchProcessor}.
+ */
+public class PskBatchProcessorTest {
+
+  private static final int BATCH_SIZE = 100;
+
+  private final PskContext context = PskContext.fromPreSharedKey(new byte[32]);
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+  private final PskBatchProcessor processor = new PskBatchProcessor(context, pool);
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void testGenerateFulfillmentsInOrder() {
+    List<InterledgerPayment> payments = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      payments.add(InterledgerPayment.builder()
+          .destinationAccount(InterledgerAddress.of("test1.alice"))
+          .destinationAmount(BigInteger.valueOf(i))
+          .data(new byte[] {(byte) i})
+          .build());
+    }
+
+    List<Fulfillment> fulfillments = processor.generateFulfillments(payments);
+
+    assertEquals(BATCH_SIZE, fulfillments.size());
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      assertEquals(((PreimageSha256Fulfillment) context.generateFulfillment(payments.get(i)))
+              .getPreimage(),
+          ((PreimageSha256Fulfillment) fulfillments.get(i)).getPreimage());
+    }
+  }
+
+  @Test
+  public void testEncryptThenDecryptInOrder() {
+    List<PskMessage> messages = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      messages.add(PskMessage.builder()
+          .addPrivateHeader("Index", Integer.toString(i))
+          .data(new byte[] {(byte) i, 1, 2, 3})
+          .build());
+    }
+
+    List<PskMessage> encrypted = processor.encryptMessages(messages);
+    List<PskMessage> decrypted = processor.decryptMessages(encrypted);
+
+    assertEquals(BATCH_SIZE, decrypted.size());
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      assertEquals(PskEncryptionType.AES_256_GCM,
+          encrypted.get(i).getEncryptionHeader().getEncryptionType());
+      assertEquals(Integer.toString(i),
+          decrypted.get(i).getPrivateHeaders("Index").get(0).getValue());
+      assertArrayEquals(messages.get(i).getData(), decrypted.get(i).getData());
+    }
+  }
+
+  @Test
+  public void testEmptyBatch() {
+    assertEquals(0, processor.generateFulfillments(Collections.emptyList()).size());
+  }
+
+}
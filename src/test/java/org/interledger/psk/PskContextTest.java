@@ -2,8 +2,11 @@ package org.interledger.psk;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import org.interledger.InterledgerAddress;
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.codecs.oer.ilp.InterledgerPaymentOerCodec;
 import org.interledger.cryptoconditions.Fulfillment;
 import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
 import org.interledger.ilp.InterledgerPayment;
@@ -13,6 +16,7 @@ import com.google.common.io.BaseEncoding;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.UUID;
 
@@ -135,6 +139,91 @@ public class PskContextTest {
     assertArrayEquals("Incorrect data.", encryptedMessage.getData(), ENCRYPTED_TEST_DATA);
   }
 
+  @Test
+  public final void testSealMessage() {
+    PskMessage decryptedMessage = PskMessage.builder()
+        .addPublicHeader(PskEncryptionHeader.none())
+        .addPublicHeader(PskNonceHeader.fromNonce(TEST_NONCE))
+        .paymentId(UUID.fromString(TEST_PAYMENT_ID))
+        .addPrivateHeader(TEST_PRIVATE_HEADER_N, TEST_PRIVATE_HEADER_V)
+        .data(TEST_DATA)
+        .build();
+
+    PskContext context = PskContext.fromToken(TEST_SECRET, TEST_TOKEN);
+    byte[] sealed = context.seal(decryptedMessage);
+    assertEquals("Incorrect sealed length.", context.getSealedLength(decryptedMessage),
+        sealed.length);
+
+    PskMessage encryptedMessage = CodecContextFactory.interledger()
+        .read(PskMessage.class, sealed);
+
+    assertEquals("Invalid encryption type.", PskEncryptionType.AES_256_GCM,
+        encryptedMessage.getEncryptionHeader()
+            .getEncryptionType());
+    assertArrayEquals("Incorrect auth tag.", TEST_AUTHENTICATION_TAG,
+        encryptedMessage.getEncryptionHeader()
+            .getAuthenticationTag());
+    assertEquals("Incorrect number of private headers.", 0,
+        encryptedMessage.getPrivateHeaders()
+            .size());
+    assertArrayEquals("Incorrect data.", ENCRYPTED_TEST_DATA, encryptedMessage.getData());
+  }
+
+  @Test
+  public final void testSealAndOpenInBuffer() {
+    PskMessage decryptedMessage = PskMessage.builder()
+        .addPublicHeader(PskNonceHeader.fromNonce(TEST_NONCE))
+        .paymentId(UUID.fromString(TEST_PAYMENT_ID))
+        .addPrivateHeader(TEST_PRIVATE_HEADER_N, TEST_PRIVATE_HEADER_V)
+        .data(TEST_DATA)
+        .build();
+
+    PskContext context = PskContext.fromToken(TEST_SECRET, TEST_TOKEN);
+    byte[] buffer = new byte[context.getSealedLength(decryptedMessage) + 8];
+    int length = context.seal(decryptedMessage, buffer, 4);
+
+    PskMessage openedMessage = context.open(buffer, 4, length);
+
+    assertEquals("Invalid encryption type.", PskEncryptionType.NONE,
+        openedMessage.getEncryptionHeader()
+            .getEncryptionType());
+    assertEquals("Incorrect payment id.", TEST_PAYMENT_ID, openedMessage.getPublicHeaders()
+        .get(0)
+        .getValue());
+    assertEquals("Incorrect private headers.", decryptedMessage.getPrivateHeaders(),
+        openedMessage.getPrivateHeaders());
+    assertArrayEquals("Incorrect nonce.", TEST_NONCE, openedMessage.getNonceHeader()
+        .getNonce());
+    assertArrayEquals("Incorrect data.", TEST_DATA, openedMessage.getData());
+  }
+
+  @Test
+  public final void testOpenPaymentData() {
+    PskMessage encryptedMessage = PskMessage.builder()
+        .addPublicHeader(PskEncryptionHeader.aesGcm(TEST_AUTHENTICATION_TAG))
+        .addPublicHeader(PskNonceHeader.fromNonce(TEST_NONCE))
+        .data(ENCRYPTED_TEST_DATA)
+        .build();
+
+    InterledgerPayment payment = InterledgerPayment.builder()
+        .destinationAccount(TEST_ADDRESS)
+        .destinationAmount(BigInteger.valueOf(100L))
+        .data(CodecContextFactory.interledger()
+            .write(PskMessage.class, encryptedMessage))
+        .build();
+    byte[] packet = CodecContextFactory.interledger()
+        .write(InterledgerPayment.class, payment);
+
+    ByteBuffer data = InterledgerPaymentOerCodec.locateData(packet, 0, packet.length);
+    PskMessage decryptedMessage = PskContext.fromToken(TEST_SECRET, TEST_TOKEN)
+        .open(packet, data.position(), data.remaining());
+
+    assertEquals("Incorrect number of private headers.", 1,
+        decryptedMessage.getPrivateHeaders()
+            .size());
+    assertArrayEquals("Incorrect data.", TEST_DATA, decryptedMessage.getData());
+  }
+
   @Test
   public final void testGenerateReceiverAddress() {
 
@@ -164,5 +253,67 @@ public class PskContextTest {
 
   }
 
+  @Test
+  public final void testGenerateFulfillmentFromEncodedPayment() {
+    PskContext context = PskContext.fromReceiverAddress(TEST_SECRET, TEST_ADDRESS);
+
+    InterledgerPayment payment = InterledgerPayment.builder()
+        .destinationAccount(TEST_ADDRESS)
+        .destinationAmount(BigInteger.valueOf(100L))
+        .data(TEST_MESSAGE)
+        .build();
+    byte[] packet = CodecContextFactory.interledger()
+        .write(InterledgerPayment.class, payment);
+    byte[] buffer = new byte[packet.length + 2];
+    System.arraycopy(packet, 0, buffer, 1, packet.length);
+
+    assertEquals("Incorrect fulfillment.",
+        ((PreimageSha256Fulfillment) context.generateFulfillment(buffer, 1, packet.length))
+            .getPreimage(),
+        Base64.getUrlEncoder().encodeToString(TEST_PREIMAGE));
+
+    /* the pre-keyed HMAC must be reusable */
+    assertEquals("Incorrect fulfillment.",
+        ((PreimageSha256Fulfillment) context.generateFulfillment(payment)).getPreimage(),
+        Base64.getUrlEncoder().encodeToString(TEST_PREIMAGE));
+  }
+
+  @Test
+  public final void testGenerateFulfillmentAfterEncodingFails() {
+    PskContext context = PskContext.fromReceiverAddress(TEST_SECRET, TEST_ADDRESS);
+
+    /* the type, amount and address are written before the missing data fails the encoding */
+    InterledgerPayment broken = new InterledgerPayment() {
+      @Override
+      public InterledgerAddress getDestinationAccount() {
+        return TEST_ADDRESS;
+      }
+
+      @Override
+      public BigInteger getDestinationAmount() {
+        return BigInteger.valueOf(100L);
+      }
+
+      @Override
+      public byte[] getData() {
+        return null;
+      }
+    };
+    try {
+      context.generateFulfillment(broken);
+      fail("Expected the payment to fail to encode.");
+    } catch (RuntimeException e) {
+      /* expected */
+    }
+
+    InterledgerPayment payment = InterledgerPayment.builder()
+        .destinationAccount(TEST_ADDRESS)
+        .destinationAmount(BigInteger.valueOf(100L))
+        .data(TEST_MESSAGE)
+        .build();
+    assertEquals("Incorrect fulfillment.",
+        ((PreimageSha256Fulfillment) context.generateFulfillment(payment)).getPreimage(),
+        Base64.getUrlEncoder().encodeToString(TEST_PREIMAGE));
+  }
 
 }
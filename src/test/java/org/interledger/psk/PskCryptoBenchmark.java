@@ -0,0 +1,171 @@
+package org.interledger.psk;
+
+import org.interledger.psk.PskCryptoProvider.AesGcm;
+import org.interledger.psk.PskCryptoProvider.HmacSha256;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Measures the throughput of {@link PskCryptoProvider} implementations on the running host, so
+ * that operators can choose the fastest.
+ *
+ * <p>Run from the command line, with the test classes on the class path, to print a report for
+ * every available provider:
+ *
+ * <pre>
+ * java -cp ... org.interledger.psk.PskCryptoBenchmark [milliseconds-per-provider]
+ * </pre>
+ *
+ * <p>Each provider is measured on payment-sized messages: an HMAC-SHA256 of an encoded payment,
+ * as done for every fulfillment, and an AES-256-GCM encryption of a PSK message's private section.
+ */
+public class PskCryptoBenchmark {
+
+  /* the size of the data HMACed and encrypted, typical of a payment carrying a PSK message */
+  private static final int MESSAGE_LEN_BYTES = 512;
+
+  /* the share of the measurement time spent warming up before measuring */
+  private static final int WARMUP_DIVISOR = 4;
+
+  /**
+   * Runs the benchmark over all {@link PskCryptoProvider#available()} providers and prints the
+   * results, fastest first.
+   *
+   * @param args optionally, the number of milliseconds to measure each provider for.
+   */
+  public static void main(final String[] args) {
+    final Duration duration = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 2000);
+
+    final List<Result> results = run(PskCryptoProvider.available(), duration);
+    System.out.printf("%-32s %16s %16s%n", "Provider", "HMAC ops/s", "AES-GCM ops/s");
+    for (Result result : results) {
+      System.out.printf("%-32s %16.0f %16.0f%n", result.getProvider().getName(),
+          result.getHmacOpsPerSecond(), result.getAesGcmOpsPerSecond());
+    }
+  }
+
+  /**
+   * Measure each provider in turn.
+   *
+   * @param providers The providers to measure.
+   * @param duration  How long to measure each provider for, split between the two algorithms.
+   *
+   * @return the results, ordered fastest first.
+   */
+  public static List<Result> run(final List<PskCryptoProvider> providers,
+      final Duration duration) {
+    Objects.requireNonNull(providers);
+    Objects.requireNonNull(duration);
+
+    final List<Result> results = new ArrayList<>(providers.size());
+    for (PskCryptoProvider provider : providers) {
+      results.add(measure(provider, duration));
+    }
+    results.sort(Comparator.comparingDouble(Result::getScore)
+        .reversed());
+    return results;
+  }
+
+  /**
+   * Measure the given providers and return the fastest.
+   *
+   * @param providers The providers to choose between.
+   * @param duration  How long to measure each provider for.
+   *
+   * @return the provider with the best combined throughput.
+   */
+  public static PskCryptoProvider fastest(final List<PskCryptoProvider> providers,
+      final Duration duration) {
+    if (providers.isEmpty()) {
+      throw new IllegalArgumentException("No providers to choose between.");
+    }
+    return run(providers, duration).get(0)
+        .getProvider();
+  }
+
+  private static Result measure(final PskCryptoProvider provider, final Duration duration) {
+    final long nanosPerAlgorithm = duration.toNanos() / 2;
+    final byte[] message = new byte[MESSAGE_LEN_BYTES];
+    final byte[] nonce = new byte[PskCryptoUtils.NONCE_LEN_BYTES];
+
+    final HmacSha256 hmac = provider.newHmacSha256(new byte[PskContext.FULFILLMENT_KEY_LEN_BYTES]);
+    final Runnable hmacOperation = () -> hmac.doFinal(message);
+
+    final AesGcm aesGcm = provider.newAesGcm(
+        new SecretKeySpec(new byte[PskCryptoUtils.AES_KEY_LEN_BYTES], "AES"));
+    final Runnable aesGcmOperation = () -> {
+      /* a real sender never reuses a nonce, and some providers refuse to, so count through them */
+      int i = 0;
+      while (i < nonce.length && ++nonce[i] == 0) {
+        i++;
+      }
+      aesGcm.encrypt(nonce, message, 0, message.length);
+    };
+
+    return new Result(provider, opsPerSecond(hmacOperation, nanosPerAlgorithm),
+        opsPerSecond(aesGcmOperation, nanosPerAlgorithm));
+  }
+
+  private static double opsPerSecond(final Runnable operation, final long nanos) {
+    repeatFor(operation, nanos / WARMUP_DIVISOR);
+    final long start = System.nanoTime();
+    final long operations = repeatFor(operation, nanos);
+    return operations * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static long repeatFor(final Runnable operation, final long nanos) {
+    final long deadline = System.nanoTime() + nanos;
+    long operations = 0;
+    do {
+      for (int i = 0; i < 64; i++) {
+        operation.run();
+      }
+      operations += 64;
+    } while (System.nanoTime() < deadline);
+    return operations;
+  }
+
+  /**
+   * The measured throughput of one provider.
+   */
+  public static final class Result {
+
+    private final PskCryptoProvider provider;
+    private final double hmacOpsPerSecond;
+    private final double aesGcmOpsPerSecond;
+
+    private Result(final PskCryptoProvider provider, final double hmacOpsPerSecond,
+        final double aesGcmOpsPerSecond) {
+      this.provider = provider;
+      this.hmacOpsPerSecond = hmacOpsPerSecond;
+      this.aesGcmOpsPerSecond = aesGcmOpsPerSecond;
+    }
+
+    public PskCryptoProvider getProvider() {
+      return provider;
+    }
+
+    public double getHmacOpsPerSecond() {
+      return hmacOpsPerSecond;
+    }
+
+    public double getAesGcmOpsPerSecond() {
+      return aesGcmOpsPerSecond;
+    }
+
+    /**
+     * A combined score: the rate at which a receiver could both fulfill and decrypt payments.
+     *
+     * @return the harmonic combination of the two rates.
+     */
+    public double getScore() {
+      return 1 / (1 / hmacOpsPerSecond + 1 / aesGcmOpsPerSecond);
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+package org.interledger.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKey;
+
+/**
+ * Unit tests for {@link PskCryptoProvider} and {@link PskCryptoBenchmark}.
+ */
+public class PskCryptoProviderTest {
+
+  private final PskCryptoProvider original = PskCryptoProvider.getDefault();
+
+  @After
+  public void restoreDefault() {
+    PskCryptoProvider.setDefault(original);
+  }
+
+  @Test
+  public void testJceProviderRoundTrip() {
+    PskCryptoProvider provider = PskCryptoProvider.jce();
+    SecretKey key = PskContext.generateEncryptionKey(new byte[32]);
+    byte[] nonce = new byte[16];
+    byte[] data = "binary data goes here".getBytes();
+    byte[] buffer = data.clone();
+
+    byte[] tag = provider.newAesGcm(key).encrypt(nonce, buffer, 0, buffer.length);
+    assertFalse(Arrays.equals(data, buffer));
+
+    assertEquals(data.length, provider.newAesGcm(key).decrypt(nonce, tag, buffer, 0,
+        buffer.length));
+    assertArrayEquals(data, buffer);
+  }
+
+  @Test
+  public void testReinitWithNewKey() {
+    PskCryptoProvider provider = PskCryptoProvider.jce();
+    byte[] firstKey = new byte[32];
+    byte[] secondKey = new byte[32];
+    secondKey[0] = 1;
+    byte[] message = "message".getBytes();
+
+    PskCryptoProvider.HmacSha256 hmac = provider.newHmacSha256(firstKey);
+    hmac.update(message, 0, 3);
+    hmac.init(secondKey);
+    assertArrayEquals(provider.newHmacSha256(secondKey).doFinal(message), hmac.doFinal(message));
+
+    SecretKey encryptionKey = PskContext.generateEncryptionKey(secondKey);
+    byte[] nonce = new byte[16];
+    byte[] buffer = message.clone();
+    PskCryptoProvider.AesGcm aesGcm =
+        provider.newAesGcm(PskContext.generateEncryptionKey(firstKey));
+    aesGcm.init(encryptionKey);
+    byte[] tag = aesGcm.encrypt(nonce, buffer, 0, buffer.length);
+
+    provider.newAesGcm(encryptionKey).decrypt(nonce, tag, buffer, 0, buffer.length);
+    assertArrayEquals(message, buffer);
+  }
+
+  @Test
+  public void testContextsUseDefaultProvider() {
+    final AtomicInteger hmacs = new AtomicInteger();
+    final PskCryptoProvider jce = PskCryptoProvider.jce();
+    PskCryptoProvider.setDefault(new PskCryptoProvider() {
+      @Override
+      public String getName() {
+        return "counting";
+      }
+
+      @Override
+      public HmacSha256 newHmacSha256(byte[] key) {
+        hmacs.incrementAndGet();
+        return jce.newHmacSha256(key);
+      }
+
+      @Override
+      public AesGcm newAesGcm(SecretKey key) {
+        return jce.newAesGcm(key);
+      }
+    });
+
+    PskContext context = PskContext.fromPreSharedKey(new byte[32]);
+    assertTrue(hmacs.get() > 0);
+
+    PskMessage message = PskMessage.builder()
+        .data(new byte[] {1, 2, 3})
+        .build();
+    assertArrayEquals(message.getData(),
+        context.decryptMessage(context.encryptMessage(message)).getData());
+  }
+
+  @Test
+  public void testAvailableIncludesJce() {
+    List<PskCryptoProvider> providers = PskCryptoProvider.available();
+    assertTrue(providers.size() >= 1);
+    assertEquals("JCE", providers.get(0).getName());
+  }
+
+  @Test
+  public void testBenchmarkReportsThroughput() {
+    List<PskCryptoBenchmark.Result> results = PskCryptoBenchmark.run(
+        Collections.singletonList(PskCryptoProvider.jce()), Duration.ofMillis(50));
+
+    assertEquals(1, results.size());
+    assertTrue(results.get(0).getHmacOpsPerSecond() > 0);
+    assertTrue(results.get(0).getAesGcmOpsPerSecond() > 0);
+  }
+
+}
@@ -3,11 +3,13 @@ package org.interledger.psk;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import org.interledger.InterledgerRuntimeException;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Base64;
 
 /**
@@ -107,4 +109,40 @@ public class PskMessageBuilderTest {
     assertArrayEquals("Application Data".getBytes(), message.getData());
   }
 
+  @Test
+  public void test_headerLookupIsCaseInsensitiveAndOrdered() {
+    PskMessage message = PskMessage.builder()
+        .addPublicHeader("Header-A", "1")
+        .addPublicHeader("header-a", "2")
+        .addPublicHeader("Header-B", "3")
+        .addPrivateHeader("Expires-At", "2017-08-01T10:00:00Z")
+        .build();
+
+    assertEquals(2, message.getPublicHeaders("HEADER-A").size());
+    assertEquals("2", message.getPublicHeaders("Header-A").get(1).getValue());
+    assertEquals("Header-B", message.getPublicHeaders().get(2).getName());
+    assertEquals(0, message.getPublicHeaders("Header-C").size());
+    assertEquals(1, message.getPrivateHeaders("expires-at").size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void test_headersAreReadOnly() {
+    PskMessage.builder()
+        .build()
+        .getPublicHeaders()
+        .add(new PskMessage.Header("Header", "value"));
+  }
+
+  @Test
+  public void test_dataBufferIsReadOnlyView() {
+    PskMessage message = PskMessage.builder()
+        .data("Application Data".getBytes())
+        .build();
+
+    ByteBuffer data = message.getDataBuffer();
+    assertTrue(data.isReadOnly());
+    assertEquals("Application Data".length(), data.remaining());
+    assertEquals('A', data.get(0));
+  }
+
 }
@@ -0,0 +1,57 @@
+package org.interledger.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PskMessageTemplate}.
+ */
+public class PskMessageTemplateTest {
+
+  private final PskContext context = PskContext.fromPreSharedKey(new byte[32]);
+
+  @Test
+  public void testSealMatchesContextSeal() {
+    final byte[] nonce = new byte[16];
+    nonce[0] = 7;
+    final PskMessage message = PskMessage.builder()
+        .addPublicHeader("Public", "value")
+        .addPublicHeader(PskNonceHeader.fromNonce(nonce))
+        .addPrivateHeader("Private", "secret")
+        .data(new byte[] {1, 2, 3})
+        .build();
+
+    final PskMessageTemplate template = PskMessageTemplate.of(message);
+    final byte[] sealed = new byte[template.getSealedLength()];
+    template.seal(PskCryptoProvider.getDefault().newAesGcm(context.getEncryptionKey()), nonce,
+        sealed, 0);
+
+    assertArrayEquals(context.seal(message), sealed);
+  }
+
+  @Test
+  public void testSealWithNewNonces() {
+    final PskMessage message = PskMessage.builder()
+        .addPrivateHeader("Private", "secret")
+        .data(new byte[] {1, 2, 3})
+        .build();
+    final PskMessageTemplate template = PskMessageTemplate.of(message);
+    final PskCryptoProvider.AesGcm aesGcm =
+        PskCryptoProvider.getDefault().newAesGcm(context.getEncryptionKey());
+
+    for (int i = 0; i < 3; i++) {
+      final byte[] nonce = new byte[16];
+      nonce[15] = (byte) i;
+      final byte[] sealed = new byte[template.getSealedLength() + 4];
+      assertEquals(template.getSealedLength(), template.seal(aesGcm, nonce, sealed, 4));
+
+      final PskMessage opened = context.open(sealed, 4, template.getSealedLength());
+      assertArrayEquals(nonce, opened.getNonceHeader().getNonce());
+      assertEquals("secret", opened.getPrivateHeaders("Private").get(0).getValue());
+      assertArrayEquals(new byte[] {1, 2, 3}, opened.getData());
+    }
+  }
+
+}
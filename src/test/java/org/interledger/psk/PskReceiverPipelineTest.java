@@ -0,0 +1,174 @@
+package org.interledger.psk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.interledger.InterledgerAddress;
+import org.interledger.codecs.CodecContext;
+import org.interledger.codecs.CodecContextFactory;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.ilp.InterledgerPayment;
+import org.interledger.psk.PskReceiverPipeline.Received;
+import org.interledger.psk.PskReceiverPipeline.Stage;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for {@link PskReceiverPipeline}.
+ */
+public class PskReceiverPipelineTest {
+
+  private static final byte[] SECRET = new byte[32];
+  private static final int PAYMENTS = 50;
+
+  private final CodecContext codecContext = CodecContextFactory.interledger();
+  private final PskContext receiverContext = PskContext.seed(SECRET);
+  private final InterledgerAddress address =
+      receiverContext.generateReceiverAddress(InterledgerAddress.of("test1.bob."));
+
+  private final PskReceiverPipeline pipeline = PskReceiverPipeline.builder()
+      .receiverSecret(SECRET)
+      .queueCapacity(8)
+      .parallelism(Stage.OPEN, 2)
+      .build();
+
+  @After
+  public void tearDown() {
+    pipeline.close();
+  }
+
+  @Test
+  public void testReceivesEncryptedPayments() throws Exception {
+    final List<byte[]> packets = new ArrayList<>();
+    final List<CompletableFuture<Received>> results = new ArrayList<>();
+    for (int i = 0; i < PAYMENTS; i++) {
+      final PskMessage message = PskMessage.builder()
+          .addPrivateHeader("Index", Integer.toString(i))
+          .data(new byte[] {(byte) i})
+          .build();
+      final byte[] packet = encodePayment(i, receiverContext.encryptMessage(message));
+      packets.add(packet.clone());
+      results.add(pipeline.submit(packet));
+    }
+
+    for (int i = 0; i < PAYMENTS; i++) {
+      final Received received = results.get(i)
+          .get(5, TimeUnit.SECONDS);
+      assertEquals(BigInteger.valueOf(i), received.getPayment()
+          .getDestinationAmount());
+      assertEquals(Integer.toString(i), received.getMessage()
+          .getPrivateHeaders("Index")
+          .get(0)
+          .getValue());
+      assertArrayEquals(new byte[] {(byte) i}, received.getMessage()
+          .getData());
+      assertEquals(((PreimageSha256Fulfillment) receiverContext.generateFulfillment(
+              codecContext.read(InterledgerPayment.class, packets.get(i)))).getPreimage(),
+          ((PreimageSha256Fulfillment) received.getFulfillment()).getPreimage());
+    }
+
+    for (Stage stage : Stage.values()) {
+      assertEquals(PAYMENTS, pipeline.getStatistics(stage)
+          .getCompleted());
+    }
+  }
+
+  @Test
+  public void testReceivesUnencryptedPayment() throws Exception {
+    final PskMessage message = PskMessage.builder()
+        .addPublicHeader("Public", "value")
+        .data(new byte[] {1, 2, 3})
+        .build();
+
+    final Received received = pipeline.submit(encodePayment(1, message))
+        .get(5, TimeUnit.SECONDS);
+
+    assertEquals("value", received.getMessage()
+        .getPublicHeaders("Public")
+        .get(0)
+        .getValue());
+  }
+
+  @Test
+  public void testFailsPaymentForAnotherReceiver() throws Exception {
+    final byte[] packet = codecContext.write(InterledgerPayment.class,
+        InterledgerPayment.builder()
+            .destinationAccount(InterledgerAddress.of("test1.bob.someoneelse"))
+            .destinationAmount(BigInteger.ONE)
+            .data(new byte[0])
+            .build());
+
+    try {
+      pipeline.submit(packet)
+          .get(5, TimeUnit.SECONDS);
+      fail("Expected the payment to fail.");
+    } catch (ExecutionException e) {
+      assertEquals(1, pipeline.getStatistics(Stage.RESOLVE)
+          .getFailed());
+    }
+  }
+
+  @Test
+  public void testErrorFailsOnlyItsPayment() throws Exception {
+    final LinkageError error = new LinkageError("provider missing");
+    final AtomicBoolean broken = new AtomicBoolean(true);
+    final PskReceiverPipeline resolving = PskReceiverPipeline.builder()
+        .contextResolver(destination -> {
+          if (broken.getAndSet(false)) {
+            throw error;
+          }
+          return PskContext.fromReceiverAddress(SECRET, destination);
+        })
+        .build();
+    try {
+      final PskMessage message = PskMessage.builder()
+          .data(new byte[] {1})
+          .build();
+      try {
+        resolving.submit(encodePayment(1, message))
+            .get(5, TimeUnit.SECONDS);
+        fail("Expected the payment to fail.");
+      } catch (ExecutionException e) {
+        assertSame(error, e.getCause());
+      }
+
+      /* the resolve stage still has its worker */
+      assertArrayEquals(new byte[] {1}, resolving.submit(encodePayment(2, message))
+          .get(5, TimeUnit.SECONDS)
+          .getMessage()
+          .getData());
+    } finally {
+      resolving.close();
+    }
+  }
+
+  @Test
+  public void testSubmitAfterCloseFails() throws Exception {
+    pipeline.close();
+
+    assertTrue(pipeline.submit(encodePayment(1, PskMessage.builder()
+        .build()))
+        .isCompletedExceptionally());
+  }
+
+  private byte[] encodePayment(final int amount, final PskMessage message) {
+    return codecContext.write(InterledgerPayment.class, InterledgerPayment.builder()
+        .destinationAccount(address)
+        .destinationAmount(BigInteger.valueOf(amount))
+        .data(codecContext.write(PskMessage.class, message))
+        .build());
+  }
+
+}
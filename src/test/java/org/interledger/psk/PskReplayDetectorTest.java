@@ -0,0 +1,201 @@
+package org.interledger.psk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link PskReplayDetector}.
+ */
+public class PskReplayDetectorTest {
+
+  private final MutableClock clock = new MutableClock();
+
+  private static byte[] nonce(int value) {
+    byte[] nonce = new byte[16];
+    nonce[0] = (byte) (value >>> 24);
+    nonce[1] = (byte) (value >>> 16);
+    nonce[14] = (byte) (value >>> 8);
+    nonce[15] = (byte) value;
+    return nonce;
+  }
+
+  @Test
+  public void testDetectsReplay() {
+    PskReplayDetector detector = PskReplayDetector.builder()
+        .clock(clock)
+        .build();
+
+    assertTrue(detector.record(nonce(1)));
+    assertTrue(detector.record(nonce(2)));
+    assertFalse(detector.record(nonce(1)));
+    assertFalse(detector.record(PskNonceHeader.fromNonce(nonce(2))));
+    assertTrue(detector.contains(nonce(1)));
+    assertFalse(detector.contains(nonce(3)));
+  }
+
+  @Test
+  public void testNoncesExpireAfterWindow() {
+    PskReplayDetector detector = PskReplayDetector.builder()
+        .expiry(Duration.ofSeconds(10))
+        .buckets(5)
+        .clock(clock)
+        .build();
+
+    assertTrue(detector.record(nonce(1)));
+
+    clock.advance(Duration.ofSeconds(9));
+    assertFalse(detector.record(nonce(1)));
+
+    clock.advance(Duration.ofSeconds(12));
+    assertFalse(detector.contains(nonce(1)));
+    assertTrue(detector.record(nonce(1)));
+  }
+
+  @Test
+  public void testFullBucketFailsClosed() {
+    PskReplayDetector detector = PskReplayDetector.builder()
+        .noncesPerBucket(4)
+        .clock(clock)
+        .build();
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(detector.record(nonce(i)));
+    }
+    assertFalse(detector.record(nonce(4)));
+  }
+
+  @Test
+  public void testBloomFilter() {
+    PskReplayDetector detector = PskReplayDetector.builder()
+        .noncesPerBucket(1000)
+        .bloomFilter(0.001)
+        .clock(clock)
+        .build();
+
+    int accepted = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (detector.record(nonce(i))) {
+        accepted++;
+      }
+    }
+    assertTrue(accepted > 990);
+    for (int i = 0; i < 1000; i++) {
+      assertFalse(detector.record(nonce(i)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testContainsRejectsShortNonce() {
+    PskReplayDetector.builder().clock(clock).build().contains(new byte[8]);
+  }
+
+  @Test
+  public void testConcurrentRecordAcceptsEachNonceOnce() throws Exception {
+    final PskReplayDetector detector = PskReplayDetector.builder()
+        .noncesPerBucket(10000)
+        .clock(clock)
+        .build();
+    final AtomicInteger accepted = new AtomicInteger();
+    final int threads = 4;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      Future<?>[] futures = new Future<?>[threads];
+      for (int t = 0; t < threads; t++) {
+        futures[t] = executor.submit(() -> {
+          for (int i = 0; i < 5000; i++) {
+            if (detector.record(nonce(i))) {
+              accepted.incrementAndGet();
+            }
+          }
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(5000, accepted.get());
+  }
+
+  @Test
+  public void testConcurrentBloomFilterAcceptsSameNonceOnce() throws Exception {
+    final int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int round = 0; round < 5000; round++) {
+        final PskReplayDetector detector = PskReplayDetector.builder()
+            .noncesPerBucket(100)
+            .bloomFilter(0.001)
+            .clock(clock)
+            .build();
+        final byte[] nonce = nonce(round);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger accepted = new AtomicInteger();
+
+        Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+          futures[t] = executor.submit(() -> {
+            start.await();
+            if (detector.record(nonce)) {
+              accepted.incrementAndGet();
+            }
+            return null;
+          });
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(1, accepted.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A clock that only moves when told to.
+   */
+  private static final class MutableClock extends Clock {
+
+    private volatile Instant instant = Instant.parse("2017-08-01T10:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+}